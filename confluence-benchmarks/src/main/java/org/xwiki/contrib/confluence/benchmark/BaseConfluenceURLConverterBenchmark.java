@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.confluence.filter.ConfluencePackageGenerator;
+import org.xwiki.contrib.confluence.filter.url.internal.BaseConfluenceURLConverter;
+import org.xwiki.contrib.confluence.parser.xhtml.ConfluenceURLConverter;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+
+/**
+ * Measure the conversion of the paths of Confluence URLs by {@link BaseConfluenceURLConverter}, cycling over the
+ * supported URL patterns.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BaseConfluenceURLConverterBenchmark
+{
+    private BaseConfluenceURLConverter converter;
+
+    private String[] paths;
+
+    private int index;
+
+    /**
+     * @param state the package the URLs point to
+     * @throws Exception when failing to initialize the converter
+     */
+    @Setup(Level.Trial)
+    public void setup(PackageState state) throws Exception
+    {
+        state.enter();
+        this.converter = state.getComponentManager().getInstance(ConfluenceURLConverter.class, "base");
+
+        ConfluencePackageGenerator generator = state.getGenerator();
+        long pageId = generator.getPageId(0, 1);
+        String spaceKey = generator.getSpaceKey(0);
+        String title = generator.getPageTitle(0, 2).replace(' ', '+');
+        this.paths = new String[] {
+            "display/" + spaceKey + '/' + title,
+            "display/" + spaceKey + '/',
+            "pages/viewpage.action?pageId=" + pageId,
+            "spaces/viewspace.action?key=" + spaceKey,
+            "spaces/" + spaceKey + "/pages/" + pageId + '/' + title + "#section",
+            "download/attachments/" + pageId + "/image.png?version=1&api=v2",
+            "images/icons/emoticons/smile.svg",
+            "unknown/path"
+        };
+    }
+
+    /**
+     * @return the converted reference of the next path
+     */
+    @Benchmark
+    public ResourceReference convertPath()
+    {
+        String path = this.paths[this.index];
+        this.index = (this.index + 1) % this.paths.length;
+        return this.converter.convertPath(path);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.confluence.filter.internal.input.ConfluenceSpaceHelpers;
+import org.xwiki.contrib.confluence.resolvers.ConfluencePageIdResolver;
+import org.xwiki.contrib.confluence.resolvers.ConfluencePageTitleResolver;
+import org.xwiki.contrib.confluence.resolvers.ConfluenceSpaceKeyResolver;
+import org.xwiki.environment.Environment;
+import org.xwiki.filter.input.InputFilterStreamFactory;
+import org.xwiki.model.validation.EntityNameValidation;
+import org.xwiki.model.validation.EntityNameValidationManager;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Set up the components the benchmarks need, the same way the confluence-xml integration tests do: all the
+ * components found in the classpath, with the XWiki instance related ones mocked.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public final class BenchmarkComponents
+{
+    private BenchmarkComponents()
+    {
+        // Used only for its annotations
+    }
+
+    /**
+     * @return a new component manager, to dispose with {@link MockitoComponentManager#shutdownTest()}
+     * @throws Exception when failing to initialize the components
+     */
+    public static MockitoComponentManager create() throws Exception
+    {
+        MockitoComponentManager componentManager = new MockitoComponentManager();
+        componentManager.initializeTest(new BenchmarkComponents());
+
+        Environment environment = componentManager.registerMockComponent(Environment.class);
+        when(environment.getTemporaryDirectory())
+            .thenReturn(Files.createTempDirectory("confluence-benchmark").toFile());
+
+        EntityNameValidationManager validationManager =
+            componentManager.registerMockComponent(EntityNameValidationManager.class);
+        EntityNameValidation validation = Mockito.mock(EntityNameValidation.class);
+        when(validationManager.getEntityReferenceNameStrategy()).thenReturn(validation);
+        when(validation.transform(anyString())).thenAnswer(i -> i.getArgument(0));
+
+        // Nothing is resolved outside the package
+        componentManager.registerMockComponent(ConfluencePageIdResolver.class);
+        componentManager.registerMockComponent(ConfluencePageTitleResolver.class);
+        componentManager.registerMockComponent(ConfluenceSpaceKeyResolver.class);
+        componentManager.registerMockComponent(ConfluenceSpaceHelpers.class);
+
+        componentManager.registerMockComponent(ObservationManager.class);
+        componentManager.registerMockComponent(InputFilterStreamFactory.class, "xwiki+instance");
+
+        return componentManager;
+    }
+
+    /**
+     * @param blackhole where to send the events
+     * @return a listener sending all the events it receives to the blackhole, so that the benchmarks measure the
+     *     production of the events and not their consumption
+     */
+    public static Listener blackhole(Blackhole blackhole)
+    {
+        return (Listener) blackhole(blackhole, Collections.<Class<?>>singletonList(Listener.class));
+    }
+
+    /**
+     * @param blackhole where to send the events
+     * @param interfaces the filter interfaces to implement
+     * @return a filter sending all the events it receives to the blackhole
+     */
+    public static Object blackhole(Blackhole blackhole, Collection<Class<?>> interfaces)
+    {
+        return Proxy.newProxyInstance(BenchmarkComponents.class.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+            (proxy, method, args) -> {
+                if (method.getDeclaringClass() == Object.class) {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            return "BlackholeFilter";
+                    }
+                }
+                blackhole.consume(args);
+                return null;
+            });
+    }
+}
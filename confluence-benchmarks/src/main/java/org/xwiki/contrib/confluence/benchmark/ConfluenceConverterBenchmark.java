@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.confluence.filter.ConfluencePackageGenerator;
+import org.xwiki.contrib.confluence.filter.internal.input.ConfluenceConverter;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Measure the conversion of page ids and titles to XWiki references by {@link ConfluenceConverter}, cycling over all
+ * the pages of the package.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ConfluenceConverterBenchmark
+{
+    private ConfluenceConverter converter;
+
+    private long[] pageIds;
+
+    private String[] spaceKeys;
+
+    private String[] pageTitles;
+
+    private int index;
+
+    /**
+     * @param state the package the converted pages belong to
+     * @throws Exception when failing to initialize the converter
+     */
+    @Setup(Level.Trial)
+    public void setup(PackageState state) throws Exception
+    {
+        state.enter();
+        this.converter = state.getComponentManager().getInstance(ConfluenceConverter.class);
+
+        ConfluencePackageGenerator generator = state.getGenerator();
+        int count = state.spaces * state.pagesPerSpace;
+        this.pageIds = new long[count];
+        this.spaceKeys = new String[count];
+        this.pageTitles = new String[count];
+        for (int space = 0; space < state.spaces; space++) {
+            for (int page = 0; page < state.pagesPerSpace; page++) {
+                int i = space * state.pagesPerSpace + page;
+                this.pageIds[i] = generator.getPageId(space, page);
+                this.spaceKeys[i] = generator.getSpaceKey(space);
+                this.pageTitles[i] = generator.getPageTitle(space, page);
+            }
+        }
+    }
+
+    private int next()
+    {
+        int i = this.index;
+        this.index = i + 1 == this.pageIds.length ? 0 : i + 1;
+        return i;
+    }
+
+    /**
+     * @return the reference of the next page
+     */
+    @Benchmark
+    public EntityReference convertDocumentReference()
+    {
+        return this.converter.convertDocumentReference(this.pageIds[next()], false);
+    }
+
+    /**
+     * @return the serialized reference of the next page
+     */
+    @Benchmark
+    public String convertDocumentReferenceByTitle()
+    {
+        int i = next();
+        return this.converter.convertDocumentReference(this.spaceKeys[i], this.pageTitles[i]);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.confluence.filter.ConfluencePackageGenerator;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
+import org.xwiki.contrib.confluence.filter.internal.input.ConfluenceInputFilterStream;
+import org.xwiki.contrib.confluence.filter.internal.input.ConfluenceInputFilterStreamFactory;
+import org.xwiki.filter.input.BeanInputFilterStreamFactory;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.filter.input.InputFilterStream;
+import org.xwiki.filter.input.InputFilterStreamFactory;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+/**
+ * Measure a whole import of a generated package by {@link ConfluenceInputFilterStream}, from the indexing of the
+ * package to the conversion of every page, the produced events going to a blackhole.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ConfluenceInputFilterStreamBenchmark
+{
+    /**
+     * The number of spaces in the package.
+     */
+    @Param("2")
+    public int spaces;
+
+    /**
+     * The number of pages in each space.
+     */
+    @Param("500")
+    public int pagesPerSpace;
+
+    /**
+     * The number of versions of each page.
+     */
+    @Param("2")
+    public int revisions;
+
+    /**
+     * The number of comments on each page.
+     */
+    @Param("1")
+    public int comments;
+
+    /**
+     * The number of attachments on each page.
+     */
+    @Param("1")
+    public int attachments;
+
+    private MockitoComponentManager componentManager;
+
+    private BeanInputFilterStreamFactory<ConfluenceInputProperties> factory;
+
+    private File directory;
+
+    /**
+     * Generate the package.
+     *
+     * @throws Exception when failing to generate the package
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.create();
+        this.factory = this.componentManager.getInstance(InputFilterStreamFactory.class,
+            ConfluenceInputFilterStreamFactory.ROLEHINT);
+
+        this.directory = Files.createTempDirectory("confluence-package").toFile();
+
+        ConfluencePackageGenerator generator = new ConfluencePackageGenerator();
+        generator.setSpaces(this.spaces);
+        generator.setPagesPerSpace(this.pagesPerSpace);
+        generator.setRevisions(this.revisions);
+        generator.setComments(this.comments);
+        generator.setAttachments(this.attachments);
+        generator.setLabels(10);
+        generator.setLabelsPerPage(1);
+        generator.setUsers(10);
+        generator.setGroups(2);
+        generator.setMemberships(1);
+        generator.setSpacePermissions(4);
+        generator.setPermissionSets(1);
+        generator.write(this.directory);
+    }
+
+    /**
+     * Remove the package and release the components.
+     *
+     * @throws Exception when failing to remove the package
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        this.componentManager.shutdownTest();
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    /**
+     * @param blackhole where to send the events
+     * @throws Exception when failing to import the package
+     */
+    @Benchmark
+    public void read(Blackhole blackhole) throws Exception
+    {
+        ConfluenceInputProperties properties = new ConfluenceInputProperties();
+        properties.setSource(new DefaultFileInputSource(this.directory));
+        properties.setRoot(new SpaceReference("xwiki", "Root"));
+        properties.setDefaultLocale(Locale.ENGLISH);
+        properties.setVerbose(false);
+
+        try (InputFilterStream stream = this.factory.createInputFilterStream(properties)) {
+            stream.read(BenchmarkComponents.blackhole(blackhole, this.factory.getFilterInterfaces()));
+        }
+    }
+}
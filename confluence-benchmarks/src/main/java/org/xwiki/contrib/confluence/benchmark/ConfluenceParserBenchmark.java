@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.confluence.parser.confluence.internal.ConfluenceParser;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+/**
+ * Measure the parsing of Confluence wiki syntax bodies by {@link ConfluenceParser}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ConfluenceParserBenchmark
+{
+    /**
+     * The kind of body to parse.
+     */
+    @Param({ SampleContent.TABLE, SampleContent.MACROS, SampleContent.LIST })
+    public String content;
+
+    private MockitoComponentManager componentManager;
+
+    private StreamParser parser;
+
+    private Listener listener;
+
+    private String body;
+
+    /**
+     * @param blackhole where to send the events
+     * @throws Exception when failing to initialize the parser
+     */
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) throws Exception
+    {
+        this.componentManager = BenchmarkComponents.create();
+        this.parser = this.componentManager.getInstance(StreamParser.class, ConfluenceParser.SYNTAX_STRING);
+        this.listener = BenchmarkComponents.blackhole(blackhole);
+        this.body = SampleContent.wiki(this.content);
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.componentManager.shutdownTest();
+    }
+
+    /**
+     * @throws ParseException when failing to parse the body
+     */
+    @Benchmark
+    public void parse() throws ParseException
+    {
+        this.parser.parse(new StringReader(this.body), this.listener);
+    }
+}
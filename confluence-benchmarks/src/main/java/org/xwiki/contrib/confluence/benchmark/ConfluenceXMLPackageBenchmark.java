@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.confluence.filter.ConfluencePackageGenerator;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+/**
+ * Measure the indexing of a generated package by {@link ConfluenceXMLPackage#read()}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ConfluenceXMLPackageBenchmark
+{
+    /**
+     * The number of spaces in the package.
+     */
+    @Param("10")
+    public int spaces;
+
+    /**
+     * The number of pages in each space.
+     */
+    @Param("1000")
+    public int pagesPerSpace;
+
+    /**
+     * The number of versions of each page.
+     */
+    @Param("3")
+    public int revisions;
+
+    /**
+     * The number of comments on each page.
+     */
+    @Param("2")
+    public int comments;
+
+    /**
+     * The number of attachments on each page.
+     */
+    @Param("1")
+    public int attachments;
+
+    private MockitoComponentManager componentManager;
+
+    private File directory;
+
+    /**
+     * Generate the package.
+     *
+     * @throws Exception when failing to generate the package
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.create();
+        this.directory = Files.createTempDirectory("confluence-package").toFile();
+
+        ConfluencePackageGenerator generator = new ConfluencePackageGenerator();
+        generator.setSpaces(this.spaces);
+        generator.setPagesPerSpace(this.pagesPerSpace);
+        generator.setRevisions(this.revisions);
+        generator.setComments(this.comments);
+        generator.setAttachments(this.attachments);
+        generator.write(this.directory);
+    }
+
+    /**
+     * Remove the package and release the components.
+     *
+     * @throws Exception when failing to remove the package
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        this.componentManager.shutdownTest();
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    /**
+     * @return the number of indexed spaces
+     * @throws Exception when failing to read the package
+     */
+    @Benchmark
+    public int read() throws Exception
+    {
+        try (ConfluenceXMLPackage confluencePackage =
+            this.componentManager.getInstance(ConfluenceXMLPackage.class)) {
+            confluencePackage.setSource(new DefaultFileInputSource(this.directory));
+            confluencePackage.read();
+
+            return confluencePackage.getPages().size();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The byte per byte implementation of
+ * {@link org.xwiki.contrib.confluence.filter.internal.WithoutControlCharactersReader} used until 9.96.0, kept as a
+ * baseline.
+ *
+ * @version $Id$
+ */
+public class LegacyWithoutControlCharactersReader extends InputStream
+{
+    private final InputStream is;
+
+    /**
+     * @param is the input stream from which to ignore the control characters
+     */
+    public LegacyWithoutControlCharactersReader(InputStream is)
+    {
+        this.is = is;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        for (int i = 0; i < len; i++) {
+            int c = read();
+            if (c == -1) {
+                if (i == 0) {
+                    return -1;
+                }
+                return i;
+            }
+            b[off + i] = (byte) c;
+        }
+        return len;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int c1 = is.read();
+        while (c1 > 0 && c1 < 32 && c1 != 10 && c1 != 13) {
+            c1 = is.read();
+        }
+        return c1;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        is.close();
+    }
+}
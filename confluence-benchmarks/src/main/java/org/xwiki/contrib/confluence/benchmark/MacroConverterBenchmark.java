@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.confluence.filter.MacroConverter;
+import org.xwiki.contrib.confluence.filter.internal.macros.DefaultMacroConverter;
+import org.xwiki.rendering.listener.Listener;
+
+/**
+ * Measure the conversion of Confluence macros by {@link DefaultMacroConverter}, for macros with and without a
+ * specific converter.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MacroConverterBenchmark
+{
+    /**
+     * The id of the Confluence macro to convert.
+     */
+    @Param({ "info", "warning", "toc", "children", "unknownmacro" })
+    public String macro;
+
+    private final Map<String, String> parameters = Map.of("title", "Note", "icon", "true", "depth", "2");
+
+    private MacroConverter converter;
+
+    private Listener listener;
+
+    /**
+     * @param state the package the converted macros belong to
+     * @param blackhole where to send the events
+     * @throws Exception when failing to initialize the converter
+     */
+    @Setup(Level.Trial)
+    public void setup(PackageState state, Blackhole blackhole) throws Exception
+    {
+        state.enter();
+        this.converter = state.getComponentManager().getInstance(MacroConverter.class);
+        this.listener = BenchmarkComponents.blackhole(blackhole);
+    }
+
+    /**
+     * Convert a block macro.
+     */
+    @Benchmark
+    public void toXWiki()
+    {
+        this.converter.toXWiki(this.macro, this.parameters, "<p>Some content</p>", false, this.listener);
+    }
+}
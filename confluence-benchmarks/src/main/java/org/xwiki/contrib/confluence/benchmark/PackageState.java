@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xwiki.contrib.confluence.filter.ConfluencePackageGenerator;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputContext;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
+import org.xwiki.contrib.confluence.filter.internal.input.DefaultConfluenceInputContext;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+/**
+ * A read {@link ConfluencePackageGenerator generated package}, shared by the benchmarks which need an import in progress.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+public class PackageState
+{
+    /**
+     * The number of spaces in the package.
+     */
+    @Param("10")
+    public int spaces;
+
+    /**
+     * The number of pages in each space.
+     */
+    @Param("1000")
+    public int pagesPerSpace;
+
+    private MockitoComponentManager componentManager;
+
+    private ConfluencePackageGenerator generator;
+
+    private File directory;
+
+    private ConfluenceXMLPackage confluencePackage;
+
+    private ConfluenceInputProperties properties;
+
+    /**
+     * Generate and read the package.
+     *
+     * @throws Exception when failing to generate or read the package
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.create();
+
+        this.directory = Files.createTempDirectory("confluence-package").toFile();
+        this.generator = new ConfluencePackageGenerator();
+        this.generator.setSpaces(this.spaces);
+        this.generator.setPagesPerSpace(this.pagesPerSpace);
+        this.generator.write(this.directory);
+
+        this.confluencePackage = this.componentManager.getInstance(ConfluenceXMLPackage.class);
+        this.confluencePackage.setSource(new DefaultFileInputSource(this.directory));
+        this.confluencePackage.read();
+
+        this.properties = new ConfluenceInputProperties();
+        this.properties.setRoot(new SpaceReference("xwiki", "Root"));
+        this.properties.setDefaultLocale(Locale.ENGLISH);
+    }
+
+    /**
+     * Release the package and the components.
+     *
+     * @throws Exception when failing to release the package
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        this.confluencePackage.close();
+        this.componentManager.shutdownTest();
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    /**
+     * Make the calling thread work on the package, the way the input filter stream does. The import context being
+     * per thread, this must be called from the thread running the benchmark.
+     *
+     * @throws Exception when failing to get the input context
+     */
+    public void enter() throws Exception
+    {
+        DefaultConfluenceInputContext context =
+            (DefaultConfluenceInputContext) this.componentManager.getInstance(ConfluenceInputContext.class);
+        context.set(this.confluencePackage, this.properties, Collections.emptyMap());
+        context.setCurrentSpace(this.generator.getSpaceKey(0));
+        context.setCurrentPage(this.generator.getPageId(0, 0));
+    }
+
+    /**
+     * @return the generator of the package, to compute the identifiers and titles of its content
+     */
+    public ConfluencePackageGenerator getGenerator()
+    {
+        return this.generator;
+    }
+
+    /**
+     * @return the components
+     */
+    public MockitoComponentManager getComponentManager()
+    {
+        return this.componentManager;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+/**
+ * Representative page bodies, in Confluence XHTML and in Confluence wiki syntax.
+ *
+ * @version $Id$
+ */
+public final class SampleContent
+{
+    /**
+     * A large table with formatted cells.
+     */
+    public static final String TABLE = "table";
+
+    /**
+     * Macros nested in the rich text body of other macros.
+     */
+    public static final String MACROS = "macros";
+
+    /**
+     * A huge list with sub lists.
+     */
+    public static final String LIST = "list";
+
+    /**
+     * A short plain text paragraph, like most comments.
+     */
+    public static final String COMMENT = "comment";
+
+    private static final String CELL = "Cell %d.%d with <strong>bold</strong>, <em>italic</em> and a "
+        + "<a href=\"https://www.example.com/%d\">link</a>";
+
+    private static final String MACRO_START = "<ac:structured-macro ac:name=\"%s\">"
+        + "<ac:parameter ac:name=\"title\">Level %d</ac:parameter><ac:rich-text-body>";
+
+    private static final String MACRO_END = "</ac:rich-text-body></ac:structured-macro>";
+
+    private SampleContent()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param kind the kind of content, one of {@link #TABLE}, {@link #MACROS}, {@link #LIST} or {@link #COMMENT}
+     * @return a Confluence XHTML body of this kind
+     */
+    public static String xhtml(String kind)
+    {
+        StringBuilder builder = new StringBuilder();
+        switch (kind) {
+            case TABLE:
+                builder.append("<table><tbody><tr>");
+                for (int col = 0; col < 6; col++) {
+                    builder.append("<th><p>Header ").append(col).append("</p></th>");
+                }
+                builder.append("</tr>");
+                for (int row = 0; row < 200; row++) {
+                    builder.append("<tr>");
+                    for (int col = 0; col < 6; col++) {
+                        builder.append("<td><p>").append(String.format(CELL, row, col, row)).append("</p></td>");
+                    }
+                    builder.append("</tr>");
+                }
+                builder.append("</tbody></table>");
+                break;
+            case MACROS:
+                for (int i = 0; i < 20; i++) {
+                    for (int depth = 0; depth < 6; depth++) {
+                        builder.append(String.format(MACRO_START, depth % 2 == 0 ? "expand" : "info", depth));
+                        builder.append("<p>Some text at level ").append(depth).append("</p>");
+                    }
+                    builder.append("<ac:structured-macro ac:name=\"code\"><ac:parameter ac:name=\"language\">java"
+                        + "</ac:parameter><ac:plain-text-body><![CDATA[int answer = 42;]]></ac:plain-text-body>"
+                        + "</ac:structured-macro>");
+                    for (int depth = 0; depth < 6; depth++) {
+                        builder.append(MACRO_END);
+                    }
+                }
+                break;
+            case LIST:
+                builder.append("<ul>");
+                for (int i = 0; i < 5000; i++) {
+                    builder.append("<li>Item ").append(i);
+                    if (i % 10 == 0) {
+                        builder.append("<ol><li>First sub item</li><li>Second <strong>sub</strong> item</li></ol>");
+                    }
+                    builder.append("</li>");
+                }
+                builder.append("</ul>");
+                break;
+            case COMMENT:
+                builder.append("<p>Thanks, it looks good to me. Merging it now!</p>");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown content kind [" + kind + "]");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param kind the kind of content, one of {@link #TABLE}, {@link #MACROS}, {@link #LIST} or {@link #COMMENT}
+     * @return a Confluence wiki syntax body of this kind
+     */
+    public static String wiki(String kind)
+    {
+        StringBuilder builder = new StringBuilder();
+        switch (kind) {
+            case TABLE:
+                builder.append("||Header 1||Header 2||Header 3||\n");
+                for (int row = 0; row < 200; row++) {
+                    builder.append("|Cell ").append(row).append(" with *bold*|_italic_ ").append(row)
+                        .append("|[link|https://www.example.com/").append(row).append("]|\n");
+                }
+                break;
+            case MACROS:
+                for (int i = 0; i < 20; i++) {
+                    builder.append("{info:title=Note ").append(i).append("}\nSome *text* in the note.\n{info}\n");
+                    builder.append("{panel:title=Panel}\n{code:language=java}\nint answer = 42;\n{code}\n{panel}\n");
+                }
+                break;
+            case LIST:
+                for (int i = 0; i < 5000; i++) {
+                    builder.append("* Item ").append(i).append('\n');
+                    if (i % 10 == 0) {
+                        builder.append("** First sub item\n** Second *sub* item\n");
+                    }
+                }
+                break;
+            case COMMENT:
+                builder.append("Thanks, it looks good to me. Merging it now!");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown content kind [" + kind + "]");
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.confluence.filter.internal.WithoutControlCharactersReader;
+
+/**
+ * Compare the throughput of {@link WithoutControlCharactersReader} with its former byte per byte implementation when
+ * reading a generated entities.xml like file, the way the package indexing does.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class WithoutControlCharactersReaderBenchmark
+{
+    private static final String OBJECT = "<object class=\"BodyContent\" package=\"com.atlassian.confluence.core\">\n"
+        + "<id name=\"id\">%d</id>\n<property name=\"body\"><![CDATA[<p>Some text with an %s in it, "
+        + "<ac:structured-macro ac:name=\"info\"><ac:rich-text-body><p>é à ü</p></ac:rich-text-body>"
+        + "</ac:structured-macro></p>]]></property>\n</object>\n";
+
+    /**
+     * The size of the generated file, 1 GB by default.
+     */
+    @Param("1073741824")
+    public long size;
+
+    private File file;
+
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * Generate the file to read, with a control character every few objects.
+     *
+     * @throws IOException when failing to write the file
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        this.file = Files.createTempFile("entities", ".xml").toFile();
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(this.file))) {
+            long written = 0;
+            for (long i = 0; written < this.size; i++) {
+                String control = i % 8 == 0 ? "\u0002" : "x";
+                byte[] object = String.format(OBJECT, i, control).getBytes(StandardCharsets.UTF_8);
+                stream.write(object);
+                written += object.length;
+            }
+        }
+    }
+
+    /**
+     * Remove the generated file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.file.delete();
+    }
+
+    private long consume(InputStream stream) throws IOException
+    {
+        long count = 0;
+        try (stream) {
+            for (int n = stream.read(this.buffer); n != -1; n = stream.read(this.buffer)) {
+                count += n;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of bytes read
+     * @throws IOException when failing to read the file
+     */
+    @Benchmark
+    public long current() throws IOException
+    {
+        return consume(
+            new WithoutControlCharactersReader(new BufferedInputStream(new FileInputStream(this.file))));
+    }
+
+    /**
+     * @return the number of bytes read
+     * @throws IOException when failing to read the file
+     */
+    @Benchmark
+    public long legacy() throws IOException
+    {
+        return consume(
+            new LegacyWithoutControlCharactersReader(new BufferedInputStream(new FileInputStream(this.file))));
+    }
+
+    /**
+     * @return the number of bytes read, without filtering, as a reference
+     * @throws IOException when failing to read the file
+     */
+    @Benchmark
+    public long unfiltered() throws IOException
+    {
+        return consume(new BufferedInputStream(new FileInputStream(this.file)));
+    }
+}
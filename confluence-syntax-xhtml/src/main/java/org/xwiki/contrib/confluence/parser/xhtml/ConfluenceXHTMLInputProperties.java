@@ -72,6 +72,11 @@ public class ConfluenceXHTMLInputProperties extends DefaultFilterStreamPropertie
      */
     private ConfluenceMacroSupport macroSupport;
 
+    /**
+     * @see #isFastParser()
+     */
+    private boolean fastParser;
+
     /**
      * @return The source to load the wiki from
      */
@@ -165,4 +170,27 @@ public class ConfluenceXHTMLInputProperties extends DefaultFilterStreamPropertie
     {
         this.macroSupport = macroSupport;
     }
+
+    /**
+     * @return true if the simple paragraphs, headings, lists and tables of the contents should be converted without
+     *     going through the XHTML parser
+     * @since 9.96.0
+     */
+    @PropertyName("Fast parser")
+    @PropertyDescription("Convert the simple paragraphs, headings, lists and tables of the contents without going"
+        + " through the XHTML parser. The other elements are parsed as usual.")
+    public boolean isFastParser()
+    {
+        return this.fastParser;
+    }
+
+    /**
+     * @param fastParser true if the simple paragraphs, headings, lists and tables of the contents should be converted
+     *     without going through the XHTML parser
+     * @since 9.96.0
+     */
+    public void setFastParser(boolean fastParser)
+    {
+        this.fastParser = fastParser;
+    }
 }
@@ -0,0 +1,819 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Singleton;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.input.SequenceReader;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.util.IdGenerator;
+
+/**
+ * Fast path for the simple Confluence XHTML contents, which is what most comments and many small pages are. Such
+ * contents are read with a StAX reader and their events sent directly, without going through the SAX filters,
+ * WikiModel and the tag handlers.
+ * <p>
+ * The fast path converts the top level elements it is sure to convert exactly like {@link ConfluenceXHTMLParser}:
+ * <ul>
+ * <li>paragraphs ({@code p}) of text and simple inline formatting ({@code strong}, {@code b}, {@code em}, {@code i},
+ * {@code u}, {@code ins}, {@code s}, {@code del}, {@code strike}, {@code sup}, {@code sub}), not nested and containing
+ * only text;</li>
+ * <li>headings ({@code h1} to {@code h6}) of text;</li>
+ * <li>lists ({@code ul}, {@code ol}) whose items contain formatted text, one paragraph, one nested list, or one
+ * paragraph followed by one nested list;</li>
+ * <li>tables ({@code table}, {@code tbody}, {@code tr}, {@code th}, {@code td}) whose cells contain formatted text or
+ * paragraphs.</li>
+ * </ul>
+ * The elements must not have attributes, and the text must be made of words, ASCII punctuation and single spaces
+ * between them.
+ * <p>
+ * Each top level element which is not supported, with everything it contains, is parsed by the fallback parser
+ * instead, which is {@link ConfluenceXHTMLParser}; consecutive unsupported elements are parsed together, so that
+ * inline elements stay in the same paragraph. This is how the Confluence elements ({@code ac:link}, {@code ri:*},
+ * {@code ac:structured-macro}, {@code ac:image}, ...) are converted: their events depend on the reference converter,
+ * the macro support and the tag handlers state, which the fast path does not duplicate.
+ * <p>
+ * The whole content is parsed by {@link ConfluenceXHTMLParser} when it has no supported element, or when the fast
+ * path cannot keep the result exact: text or comments at the top level, entities which are not predefined by XML,
+ * headings anywhere else than at the top level (the sections they open span the following elements). A content is
+ * fully read before any event is sent, so declining never leaves partial events behind.
+ * <p>
+ * This class is thread safe.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+@Component(roles = ConfluenceXHTMLFastParser.class)
+@Singleton
+public class ConfluenceXHTMLFastParser
+{
+    /**
+     * Parses the parts of a content which are not supported by the fast path.
+     *
+     * @version $Id$
+     * @since 9.96.0
+     */
+    @FunctionalInterface
+    public interface FallbackParser
+    {
+        /**
+         * @param content the Confluence XHTML part to parse
+         * @param listener the listener to send the events to
+         * @throws ParseException when failing to parse the content
+         */
+        void parse(String content, Listener listener) throws ParseException;
+    }
+
+    private static final String ROOT = "void";
+
+    private static final String PARAGRAPH = "p";
+
+    private static final String LIST_ITEM = "li";
+
+    private static final String TABLE_BODY = "tbody";
+
+    private static final String TABLE_ROW = "tr";
+
+    private static final String TABLE_HEAD_CELL = "th";
+
+    private static final String TABLE_CELL = "td";
+
+    private static final String HEADER_ID_PREFIX = "H";
+
+    private static final String SPECIAL_SYMBOLS = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+    private static final Map<String, ListType> LISTS = Map.of("ul", ListType.BULLETED, "ol", ListType.NUMBERED);
+
+    private static final Map<String, Format> FORMATS = Map.ofEntries(
+        Map.entry("strong", Format.BOLD),
+        Map.entry("b", Format.BOLD),
+        Map.entry("em", Format.ITALIC),
+        Map.entry("i", Format.ITALIC),
+        Map.entry("u", Format.UNDERLINED),
+        Map.entry("ins", Format.UNDERLINED),
+        Map.entry("s", Format.STRIKEDOUT),
+        Map.entry("del", Format.STRIKEDOUT),
+        Map.entry("strike", Format.STRIKEDOUT),
+        Map.entry("sup", Format.SUPERSCRIPT),
+        Map.entry("sub", Format.SUBSCRIPT)
+    );
+
+    private static final Map<String, HeaderLevel> HEADERS = Map.of(
+        "h1", HeaderLevel.LEVEL1,
+        "h2", HeaderLevel.LEVEL2,
+        "h3", HeaderLevel.LEVEL3,
+        "h4", HeaderLevel.LEVEL4,
+        "h5", HeaderLevel.LEVEL5,
+        "h6", HeaderLevel.LEVEL6
+    );
+
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private final XMLInputFactory inputFactory;
+
+    /**
+     * An element or a text of the content.
+     */
+    private static final class Node
+    {
+        private final String name;
+
+        private final List<String[]> attributes = new ArrayList<>();
+
+        private final List<Node> children = new ArrayList<>();
+
+        private final StringBuilder text;
+
+        private final boolean cdata;
+
+        Node(String name)
+        {
+            this.name = name;
+            this.text = null;
+            this.cdata = false;
+        }
+
+        Node(boolean cdata)
+        {
+            this.name = null;
+            this.text = new StringBuilder();
+            this.cdata = cdata;
+        }
+
+        boolean isElement()
+        {
+            return this.name != null;
+        }
+
+        boolean isText()
+        {
+            return this.text != null && !this.cdata;
+        }
+
+        boolean isWhiteSpace()
+        {
+            return isText() && this.text.chars().allMatch(Character::isWhitespace);
+        }
+
+        boolean is(String elementName)
+        {
+            return elementName.equals(this.name);
+        }
+
+        /**
+         * @return the child nodes which are not white spaces between elements
+         */
+        List<Node> getElementChildren()
+        {
+            List<Node> elements = new ArrayList<>(this.children.size());
+            for (Node child : this.children) {
+                if (!child.isWhiteSpace()) {
+                    elements.add(child);
+                }
+            }
+
+            return elements;
+        }
+    }
+
+    /**
+     * Ignore the document events of the contents parsed by the fallback parser, they are parts of the fast parsed
+     * document.
+     */
+    private static final class FragmentListener extends WrappingListener
+    {
+        FragmentListener(Listener listener)
+        {
+            setWrappedListener(listener);
+        }
+
+        @Override
+        public void beginDocument(MetaData metadata)
+        {
+            // Part of the fast parsed document
+        }
+
+        @Override
+        public void endDocument(MetaData metadata)
+        {
+            // Part of the fast parsed document
+        }
+    }
+
+    /**
+     * Default constructor.
+     */
+    public ConfluenceXHTMLFastParser()
+    {
+        // The JDK implementation, which can tell the CDATA sections apart, so that they are given as is to the fallback
+        // parser
+        this.inputFactory = XMLInputFactory.newDefaultFactory();
+        this.inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        this.inputFactory.setProperty(REPORT_CDATA, true);
+        // Report the entities which are not predefined instead of failing on them, so that the content is declined
+        this.inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+    }
+
+    /**
+     * @param content the Confluence XHTML content
+     * @param listener the listener to send the events to, if the content is supported
+     * @param idGenerator the generator of the header ids, shared with the fallback parser
+     * @param fallback the parser of the top level elements which are not supported
+     * @return true if the content was supported and its events sent, false if it must be parsed by
+     *     {@link ConfluenceXHTMLParser}
+     * @throws ParseException when the fallback parser fails to parse a part of the content
+     */
+    public boolean parse(Reader content, Listener listener, IdGenerator idGenerator, FallbackParser fallback)
+        throws ParseException
+    {
+        Node root = read(content);
+        if (root == null) {
+            return false;
+        }
+
+        // Each part is either a supported top level element or the XHTML of the consecutive unsupported ones
+        List<Object> parts = split(root);
+        if (parts == null) {
+            return false;
+        }
+
+        Listener fragmentListener = new FragmentListener(listener);
+        int sectionLevel = 0;
+
+        listener.beginDocument(MetaData.EMPTY);
+        for (Object part : parts) {
+            if (part instanceof String) {
+                fallback.parse((String) part, fragmentListener);
+            } else {
+                Node element = (Node) part;
+                HeaderLevel level = HEADERS.get(element.name);
+                if (level != null) {
+                    sectionLevel = sendHeader(element, level, sectionLevel, listener, idGenerator);
+                } else {
+                    sendBlock(element, listener);
+                }
+            }
+        }
+        for (; sectionLevel > 0; sectionLevel--) {
+            listener.endSection(Listener.EMPTY_PARAMETERS);
+        }
+        listener.endDocument(MetaData.EMPTY);
+
+        return true;
+    }
+
+    /**
+     * @param content the Confluence XHTML content
+     * @return the root of the content, or null if the content is not supported
+     */
+    private Node read(Reader content)
+    {
+        try {
+            XMLStreamReader reader = this.inputFactory.createXMLStreamReader(
+                new SequenceReader(new StringReader('<' + ROOT + '>'), content, new StringReader("</" + ROOT + '>')));
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Not well formed, or using entities defined by the XHTML DTD
+            return null;
+        }
+    }
+
+    private Node read(XMLStreamReader reader) throws XMLStreamException
+    {
+        List<Node> stack = new ArrayList<>();
+        Node root = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Node element = new Node(reader.getLocalName());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        String prefix = reader.getAttributePrefix(i);
+                        String name = reader.getAttributeLocalName(i);
+                        element.attributes.add(new String[] {
+                            prefix == null || prefix.isEmpty() ? name : prefix + ':' + name,
+                            reader.getAttributeValue(i) });
+                    }
+                    if (stack.isEmpty()) {
+                        root = element;
+                    } else {
+                        stack.get(stack.size() - 1).children.add(element);
+                    }
+                    stack.add(element);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    stack.remove(stack.size() - 1);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    addText(stack.get(stack.size() - 1), reader, event == XMLStreamConstants.CDATA);
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    break;
+                default:
+                    // Comments, processing instructions, entity references, ...
+                    return null;
+            }
+        }
+
+        return root;
+    }
+
+    private static void addText(Node parent, XMLStreamReader reader, boolean cdata)
+    {
+        // The reader may report a text in several parts
+        Node text = parent.children.isEmpty() ? null : parent.children.get(parent.children.size() - 1);
+        if (text == null || text.isElement() || text.cdata != cdata) {
+            text = new Node(cdata);
+            parent.children.add(text);
+        }
+        text.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+    }
+
+    /**
+     * @param root the root of the content
+     * @return the supported top level elements and the XHTML of the consecutive unsupported ones, or null if the
+     *     content is not supported
+     */
+    private static List<Object> split(Node root)
+    {
+        List<Object> parts = new ArrayList<>();
+        StringBuilder unsupported = null;
+        boolean supported = false;
+        for (Node child : root.children) {
+            if (child.isElement() && isSupportedBlock(child)) {
+                if (unsupported != null) {
+                    parts.add(unsupported.toString());
+                    unsupported = null;
+                }
+                parts.add(child);
+                supported = true;
+            } else if (child.isWhiteSpace()) {
+                if (unsupported != null) {
+                    serialize(child, unsupported);
+                }
+            } else if (child.isElement() && !containsHeader(child)) {
+                if (unsupported == null) {
+                    unsupported = new StringBuilder();
+                }
+                serialize(child, unsupported);
+            } else {
+                // Text at the top level, or a header the fallback parser would open sections for
+                return null;
+            }
+        }
+        if (unsupported != null) {
+            parts.add(unsupported.toString());
+        }
+
+        return supported ? parts : null;
+    }
+
+    private static boolean containsHeader(Node node)
+    {
+        if (!node.isElement()) {
+            return false;
+        }
+        if (HEADERS.containsKey(node.name)) {
+            return true;
+        }
+
+        for (Node child : node.children) {
+            if (containsHeader(child)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void serialize(Node node, StringBuilder xhtml)
+    {
+        if (node.isElement()) {
+            xhtml.append('<').append(node.name);
+            for (String[] attribute : node.attributes) {
+                xhtml.append(' ').append(attribute[0]).append("=\"");
+                escape(attribute[1], xhtml);
+                xhtml.append('"');
+            }
+            xhtml.append('>');
+            for (Node child : node.children) {
+                serialize(child, xhtml);
+            }
+            xhtml.append("</").append(node.name).append('>');
+        } else if (node.cdata) {
+            xhtml.append("<![CDATA[").append(node.text).append("]]>");
+        } else {
+            escape(node.text, xhtml);
+        }
+    }
+
+    private static void escape(CharSequence text, StringBuilder xhtml)
+    {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    xhtml.append("&amp;");
+                    break;
+                case '<':
+                    xhtml.append("&lt;");
+                    break;
+                case '>':
+                    xhtml.append("&gt;");
+                    break;
+                case '"':
+                    xhtml.append("&quot;");
+                    break;
+                default:
+                    xhtml.append(c);
+            }
+        }
+    }
+
+    private static boolean isSupportedBlock(Node element)
+    {
+        if (HEADERS.containsKey(element.name)) {
+            return isSupportedHeader(element);
+        }
+        if (LISTS.containsKey(element.name)) {
+            return isSupportedList(element);
+        }
+        if (element.is("table")) {
+            return isSupportedTable(element);
+        }
+
+        return isSupportedParagraph(element);
+    }
+
+    private static boolean isSupportedHeader(Node header)
+    {
+        return header.attributes.isEmpty() && header.children.size() == 1 && header.children.get(0).isText()
+            && isSupportedText(header.children.get(0).text);
+    }
+
+    private static boolean isSupportedParagraph(Node element)
+    {
+        return element.is(PARAGRAPH) && element.attributes.isEmpty() && isSupportedInline(element.children);
+    }
+
+    /**
+     * @param nodes the content of a paragraph
+     * @return true if the content is made of text and simple inline formatting, not nested and containing only text
+     */
+    private static boolean isSupportedInline(List<Node> nodes)
+    {
+        if (nodes.isEmpty()) {
+            return false;
+        }
+
+        StringBuilder text = new StringBuilder();
+        boolean previousFormat = false;
+        for (Node node : nodes) {
+            if (node.isText()) {
+                text.append(node.text);
+                previousFormat = false;
+            } else if (!previousFormat && isSupportedFormat(node)) {
+                text.append(node.children.get(0).text);
+                previousFormat = true;
+            } else {
+                return false;
+            }
+        }
+
+        return isSupportedText(text);
+    }
+
+    private static boolean isSupportedFormat(Node element)
+    {
+        if (!element.isElement() || !FORMATS.containsKey(element.name) || !element.attributes.isEmpty()
+            || element.children.size() != 1) {
+            return false;
+        }
+
+        // The white spaces at the limits of a format are kept out of it by the text check of the whole paragraph
+        Node child = element.children.get(0);
+        return child.isText() && isSupportedText(child.text);
+    }
+
+    private static boolean isSupportedList(Node list)
+    {
+        if (!list.attributes.isEmpty()) {
+            return false;
+        }
+
+        List<Node> items = list.getElementChildren();
+        if (items.isEmpty()) {
+            return false;
+        }
+        for (Node item : items) {
+            if (!isSupportedListItem(item)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSupportedListItem(Node item)
+    {
+        if (!item.is(LIST_ITEM) || !item.attributes.isEmpty()) {
+            return false;
+        }
+
+        if (isSupportedInline(item.children)) {
+            return true;
+        }
+
+        // A paragraph, a list, or a paragraph followed by a list: the listener removes such a paragraph without
+        // wrapping the item content in a group
+        List<Node> content = item.getElementChildren();
+        int size = content.size();
+        if (size == 1) {
+            return isSupportedParagraph(content.get(0)) || isSupportedNestedList(content.get(0));
+        }
+
+        return size == 2 && isSupportedParagraph(content.get(0)) && isSupportedNestedList(content.get(1));
+    }
+
+    private static boolean isSupportedNestedList(Node node)
+    {
+        return node.isElement() && LISTS.containsKey(node.name) && isSupportedList(node);
+    }
+
+    private static boolean isSupportedTable(Node table)
+    {
+        if (!table.attributes.isEmpty()) {
+            return false;
+        }
+
+        List<Node> rows = getTableRows(table);
+        if (rows == null || rows.isEmpty()) {
+            return false;
+        }
+        for (Node row : rows) {
+            if (!isSupportedTableRow(row)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param table the table
+     * @return the rows of the table, or null if the table content is not supported
+     */
+    private static List<Node> getTableRows(Node table)
+    {
+        List<Node> content = table.getElementChildren();
+        if (content.size() == 1 && content.get(0).is(TABLE_BODY)) {
+            Node body = content.get(0);
+            return body.attributes.isEmpty() ? body.getElementChildren() : null;
+        }
+
+        return content;
+    }
+
+    private static boolean isSupportedTableRow(Node row)
+    {
+        if (!row.is(TABLE_ROW) || !row.attributes.isEmpty()) {
+            return false;
+        }
+
+        List<Node> cells = row.getElementChildren();
+        if (cells.isEmpty()) {
+            return false;
+        }
+        for (Node cell : cells) {
+            if (!isSupportedTableCell(cell)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSupportedTableCell(Node cell)
+    {
+        if (!(cell.is(TABLE_CELL) || cell.is(TABLE_HEAD_CELL)) || !cell.attributes.isEmpty()) {
+            return false;
+        }
+
+        if (isSupportedInline(cell.children)) {
+            return true;
+        }
+
+        List<Node> paragraphs = cell.getElementChildren();
+        if (paragraphs.isEmpty()) {
+            return false;
+        }
+        for (Node paragraph : paragraphs) {
+            if (!isSupportedParagraph(paragraph)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSupportedText(CharSequence text)
+    {
+        int length = text.length();
+        if (length == 0 || text.charAt(0) == ' ' || text.charAt(length - 1) == ' ') {
+            return false;
+        }
+
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                if (previous == ' ') {
+                    return false;
+                }
+            } else if (!Character.isLetterOrDigit(c) && SPECIAL_SYMBOLS.indexOf(c) == -1) {
+                return false;
+            }
+            previous = c;
+        }
+
+        return true;
+    }
+
+    private static int sendHeader(Node header, HeaderLevel level, int sectionLevel, Listener listener,
+        IdGenerator idGenerator)
+    {
+        // A section for each level, like WikiModel does
+        int currentLevel = sectionLevel;
+        for (; currentLevel >= level.getAsInt(); currentLevel--) {
+            listener.endSection(Listener.EMPTY_PARAMETERS);
+        }
+        for (; currentLevel < level.getAsInt(); currentLevel++) {
+            listener.beginSection(Listener.EMPTY_PARAMETERS);
+        }
+
+        String text = header.children.get(0).text.toString();
+        String id = idGenerator.generateUniqueId(HEADER_ID_PREFIX, text);
+        listener.beginHeader(level, id, Listener.EMPTY_PARAMETERS);
+        sendText(text, listener);
+        listener.endHeader(level, id, Listener.EMPTY_PARAMETERS);
+
+        return currentLevel;
+    }
+
+    private static void sendBlock(Node element, Listener listener)
+    {
+        if (LISTS.containsKey(element.name)) {
+            sendList(element, listener);
+        } else if (element.is("table")) {
+            sendTable(element, listener);
+        } else {
+            sendParagraph(element, listener);
+        }
+    }
+
+    private static void sendParagraph(Node paragraph, Listener listener)
+    {
+        listener.beginParagraph(Listener.EMPTY_PARAMETERS);
+        sendInline(paragraph.children, listener);
+        listener.endParagraph(Listener.EMPTY_PARAMETERS);
+    }
+
+    private static void sendInline(List<Node> nodes, Listener listener)
+    {
+        for (Node node : nodes) {
+            if (node.isText()) {
+                sendText(node.text, listener);
+            } else {
+                Format format = FORMATS.get(node.name);
+                listener.beginFormat(format, Listener.EMPTY_PARAMETERS);
+                sendText(node.children.get(0).text, listener);
+                listener.endFormat(format, Listener.EMPTY_PARAMETERS);
+            }
+        }
+    }
+
+    private static void sendList(Node list, Listener listener)
+    {
+        ListType type = LISTS.get(list.name);
+        listener.beginList(type, Listener.EMPTY_PARAMETERS);
+        for (Node item : list.getElementChildren()) {
+            listener.beginListItem(Listener.EMPTY_PARAMETERS);
+            if (isSupportedInline(item.children)) {
+                sendInline(item.children, listener);
+            } else {
+                // Without the paragraph, see ConfluenceXWikiGeneratorListener#handleListItem
+                for (Node child : item.getElementChildren()) {
+                    if (child.is(PARAGRAPH)) {
+                        sendInline(child.children, listener);
+                    } else {
+                        sendList(child, listener);
+                    }
+                }
+            }
+            listener.endListItem(Listener.EMPTY_PARAMETERS);
+        }
+        listener.endList(type, Listener.EMPTY_PARAMETERS);
+    }
+
+    private static void sendTable(Node table, Listener listener)
+    {
+        listener.beginTable(Listener.EMPTY_PARAMETERS);
+        for (Node row : getTableRows(table)) {
+            listener.beginTableRow(Listener.EMPTY_PARAMETERS);
+            for (Node cell : row.getElementChildren()) {
+                boolean head = cell.is(TABLE_HEAD_CELL);
+                if (head) {
+                    listener.beginTableHeadCell(Listener.EMPTY_PARAMETERS);
+                } else {
+                    listener.beginTableCell(Listener.EMPTY_PARAMETERS);
+                }
+                // The cell content is an embedded document, which becomes a group
+                listener.beginGroup(Listener.EMPTY_PARAMETERS);
+                if (isSupportedInline(cell.children)) {
+                    sendParagraph(cell, listener);
+                } else {
+                    for (Node paragraph : cell.getElementChildren()) {
+                        sendParagraph(paragraph, listener);
+                    }
+                }
+                listener.endGroup(Listener.EMPTY_PARAMETERS);
+                if (head) {
+                    listener.endTableHeadCell(Listener.EMPTY_PARAMETERS);
+                } else {
+                    listener.endTableCell(Listener.EMPTY_PARAMETERS);
+                }
+            }
+            listener.endTableRow(Listener.EMPTY_PARAMETERS);
+        }
+        listener.endTable(Listener.EMPTY_PARAMETERS);
+    }
+
+    private static void sendText(CharSequence text, Listener listener)
+    {
+        int wordStart = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (wordStart == -1) {
+                    wordStart = i;
+                }
+            } else {
+                if (wordStart != -1) {
+                    listener.onWord(text.subSequence(wordStart, i).toString());
+                    wordStart = -1;
+                }
+                if (c == ' ') {
+                    listener.onSpace();
+                } else {
+                    listener.onSpecialSymbol(c);
+                }
+            }
+        }
+
+        if (wordStart != -1) {
+            listener.onWord(text.subSequence(wordStart, text.length()).toString());
+        }
+    }
+}
@@ -87,35 +87,57 @@ public class ConfluenceXHTMLInputFilterStream
     @Override
     protected void read(Object filter, Listener proxyFilter) throws FilterException
     {
-        if (this.confluenceXHTMLParser instanceof ConfluenceXHTMLParser) {
-            ConfluenceXHTMLParser parser = (ConfluenceXHTMLParser) this.confluenceXHTMLParser;
-            Syntax targetSyntax = getSyntax();
-
-            if (targetSyntax != null) {
-                try {
-                    parser.setMacroContentSyntax(targetSyntax);
-                } catch (ComponentLookupException e) {
-                    throw new FilterException("Failed to initialize the Confluence XHTML input filter", e);
-                }
-                parser.setReferenceConverter(this.properties.getReferenceConverter());
-                parser.setURLConverter(this.properties.getURLConverter());
-                parser.setMacroSupport(this.properties.getMacroSupport());
-            } else {
-                this.renderingContext.getTargetSyntax();
-            }
+        ConfluenceXHTMLParserPool parserPool = this.properties instanceof InternalConfluenceXHTMLInputProperties
+            ? ((InternalConfluenceXHTMLInputProperties) this.properties).getParserPool()
+            : null;
 
+        if (parserPool != null) {
+            ConfluenceXHTMLParser parser = parserPool.acquire();
             try {
-                if (this.properties instanceof InternalConfluenceXHTMLInputProperties) {
-                    InternalConfluenceXHTMLInputProperties p = (InternalConfluenceXHTMLInputProperties) this.properties;
-                    UnaryOperator<Listener> converterProvider = p.getConverterProvider();
-                    parser.setConverterProvider(converterProvider);
-                    parser.parse(getSource(), converterProvider.apply((Listener) filter));
-                } else {
-                    this.confluenceXHTMLParser.parse(getSource(), (Listener) filter);
-                }
-            } catch (ParseException e) {
-                throw new FilterException("Failed to parse Confluence XHTML content", e);
+                read(parser, filter);
+            } finally {
+                parserPool.release(parser);
+            }
+        } else if (this.confluenceXHTMLParser instanceof ConfluenceXHTMLParser) {
+            read((ConfluenceXHTMLParser) this.confluenceXHTMLParser, filter);
+        }
+    }
+
+    private void read(ConfluenceXHTMLParser parser, Object filter) throws FilterException
+    {
+        Syntax targetSyntax = getSyntax();
+
+        // Everything is set, even when not provided, so that nothing is left from the previous content parsed by a
+        // pooled parser. The tag handlers are only created again when the converters or the macro support change.
+        try {
+            parser.setMacroContentSyntax(targetSyntax);
+        } catch (ComponentLookupException e) {
+            throw new FilterException("Failed to initialize the Confluence XHTML input filter", e);
+        }
+        if (targetSyntax != null) {
+            parser.setReferenceConverter(this.properties.getReferenceConverter());
+            parser.setURLConverter(this.properties.getURLConverter());
+            parser.setMacroSupport(this.properties.getMacroSupport());
+        } else {
+            parser.setReferenceConverter(null);
+            parser.setURLConverter(null);
+            parser.setMacroSupport(null);
+        }
+
+        parser.setFastParserEnabled(this.properties.isFastParser());
+
+        try {
+            if (this.properties instanceof InternalConfluenceXHTMLInputProperties) {
+                InternalConfluenceXHTMLInputProperties p = (InternalConfluenceXHTMLInputProperties) this.properties;
+                UnaryOperator<Listener> converterProvider = p.getConverterProvider();
+                parser.setConverterProvider(converterProvider);
+                parser.parse(getSource(), converterProvider.apply((Listener) filter));
+            } else {
+                parser.setConverterProvider(null);
+                parser.parse(getSource(), (Listener) filter);
             }
+        } catch (ParseException e) {
+            throw new FilterException("Failed to parse Confluence XHTML content", e);
         }
     }
 }
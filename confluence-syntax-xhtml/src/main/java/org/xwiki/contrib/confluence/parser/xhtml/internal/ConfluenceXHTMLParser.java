@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.confluence.parser.xhtml.internal;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -30,13 +31,10 @@ import java.util.function.UnaryOperator;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.SequenceReader;
 import org.apache.commons.lang3.reflect.ConstructorUtils;
-import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
@@ -52,6 +50,7 @@ import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.ADFContentHa
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.ADFMarkHandler;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.ADFNodeHandler;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.AttachmentTagHandler;
+import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.CachedEntityXMLFilter;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.CaptionHandler;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.CodeTagHandler;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.ConfluenceAttributeXMLFilter;
@@ -108,7 +107,9 @@ import org.xwiki.rendering.parser.StreamParser;
 import org.xwiki.rendering.renderer.PrintRendererFactory;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
+import org.xwiki.rendering.wikimodel.WikiParserException;
 import org.xwiki.rendering.wikimodel.xhtml.XhtmlParser;
 import org.xwiki.rendering.wikimodel.xhtml.filter.AccumulationXMLFilter;
 import org.xwiki.rendering.wikimodel.xhtml.filter.DTDXMLFilter;
@@ -130,6 +131,17 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
      */
     public static final String SYNTAX_STRING = ConfluenceXHTMLInputProperties.FILTER_STREAM_TYPE_STRING;
 
+    private static final String DOCUMENT_START = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\""
+        + " \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\"><void>";
+
+    private static final String DOCUMENT_END = "</void>";
+
+    /**
+     * The maximum number of characters of a content given to the fast parser. Bigger contents are streamed to the XHTML
+     * parser without being read first.
+     */
+    private static final int FAST_PARSER_MAX_LENGTH = 8192;
+
     /**
      * @see #getLinkReferenceParser()
      */
@@ -152,6 +164,17 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
     @Named("context")
     private Provider<ComponentManager> componentManagerProvider;
 
+    @Inject
+    private XMLReaderPool xmlReaderPool;
+
+    @Inject
+    private ConfluenceXHTMLFastParser fastParser;
+
+    private boolean fastParserEnabled;
+
+    // Reused by the successive parses: a parser instance is only used by one thread at a time
+    private char[] fastParserBuffer;
+
     private PrintRendererFactory macroContentRendererFactory;
 
     private UnaryOperator<Listener> converterProvider;
@@ -162,6 +185,33 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
 
     private ConfluenceMacroSupport macroSupport;
 
+    // The tag handlers don't keep any state, they are shared by all the contents parsed with this configuration
+    private Map<String, TagHandler> handlers;
+
+    /**
+     * Parse with a SAX reader taken from the pool for the duration of the parse.
+     */
+    private final class PooledXhtmlParser extends XhtmlParser
+    {
+        @Override
+        public void parse(Reader reader, IWemListener listener) throws WikiParserException
+        {
+            XMLReader xmlReader;
+            try {
+                xmlReader = xmlReaderPool.acquire();
+            } catch (Exception e) {
+                throw new WikiParserException("Failed to create XMLReader", e);
+            }
+
+            try {
+                setXmlReader(createXMLReader(xmlReader));
+                super.parse(reader, listener);
+            } finally {
+                xmlReaderPool.release(xmlReader);
+            }
+        }
+    }
+
     @Override
     public Syntax getSyntax()
     {
@@ -196,14 +246,25 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
     @Override
     public IWikiParser createWikiModelParser() throws ParseException
     {
-        ConfluenceReferenceConverter refConverter = referenceConverter == null
-            ? new FallbackConfluenceReferenceConverter()
-            : referenceConverter;
+        if (this.handlers == null) {
+            this.handlers = createHandlers();
+        }
 
-        XhtmlParser parser = new XhtmlParser();
+        XhtmlParser parser = new PooledXhtmlParser();
 
         parser.setNamespacesEnabled(false);
 
+        parser.setExtraHandlers(this.handlers);
+
+        return parser;
+    }
+
+    private Map<String, TagHandler> createHandlers() throws ParseException
+    {
+        ConfluenceReferenceConverter refConverter = referenceConverter == null
+            ? new FallbackConfluenceReferenceConverter()
+            : referenceConverter;
+
         // Override some of the WikiModel XHTML parser tag handlers to introduce our own logic.
         Map<String, TagHandler> handlers = new HashMap<>();
 
@@ -283,25 +344,16 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
 
         handlers.put("ac:inline-comment-marker", new ConfluenceInlineCommentTagHandler());
 
-        parser.setExtraHandlers(handlers);
-
-        try {
-            parser.setXmlReader(createXMLReader());
-        } catch (Exception e) {
-            throw new ParseException("Failed to create XMLReader", e);
-        }
-
-        return parser;
+        return handlers;
     }
 
-    private XMLReader createXMLReader() throws ParserConfigurationException, SAXException
+    private XMLReader createXMLReader(XMLReader xmlReader)
     {
-        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-        SAXParser parser = parserFactory.newSAXParser();
-        XMLReader xmlReader = parser.getXMLReader();
+        // Resolve the XHTML DTD from memory instead of loading it again for each content
+        CachedEntityXMLFilter entityFilter = new CachedEntityXMLFilter(xmlReader, this.xmlReaderPool.getEntityCache());
 
         // Ignore SAX callbacks when the parser parses the DTD
-        DTDXMLFilter dtdFilter = new DTDXMLFilter(xmlReader);
+        DTDXMLFilter dtdFilter = new DTDXMLFilter(entityFilter);
 
         // Add an XML Filter to accumulate onCharacters() calls since SAX
         // parser may call it several times.
@@ -319,21 +371,41 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
     @Override
     public void parse(final Reader source, Listener listener, IdGenerator idGenerator) throws ParseException
     {
-        String content;
-        try {
-            content = IOUtils.toString(source);
-        } catch (IOException e) {
-            throw new ParseException("Failed to read source", e);
-        }
+        if (this.fastParserEnabled) {
+            // Only the small contents are worth trying the fast path: read at most one character more than the limit
+            // to know if the content fits, without copying the bigger ones
+            if (this.fastParserBuffer == null) {
+                this.fastParserBuffer = new char[FAST_PARSER_MAX_LENGTH + 1];
+            }
+            char[] buffer = this.fastParserBuffer;
+            int length;
+            try {
+                length = IOUtils.read(source, buffer);
+            } catch (IOException e) {
+                throw new ParseException("Failed to read the Confluence XHTML content", e);
+            }
 
-        // Add <void> element around the content to make sure to have valid xml
-        content = "<void>" + content + "</void>";
+            if (length <= FAST_PARSER_MAX_LENGTH) {
+                if (!this.fastParser.parse(new CharArrayReader(buffer, 0, length), listener, idGenerator,
+                    (part, partListener) -> parseXHTML(new StringReader(part), partListener, idGenerator))) {
+                    parseXHTML(new CharArrayReader(buffer, 0, length), listener, idGenerator);
+                }
+            } else {
+                parseXHTML(new SequenceReader(new CharArrayReader(buffer, 0, length), source), listener,
+                    idGenerator);
+            }
+        } else {
+            parseXHTML(source, listener, idGenerator);
+        }
+    }
 
-        // Add XHTML entities
-        content = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\""
-            + " \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">" + content;
+    private void parseXHTML(Reader source, Listener listener, IdGenerator idGenerator) throws ParseException
+    {
+        // Add XHTML entities and a <void> element around the content to make sure to have valid xml, without copying
+        // the content
+        Reader content = new SequenceReader(new StringReader(DOCUMENT_START), source, new StringReader(DOCUMENT_END));
 
-        super.parse(new StringReader(content), listener, idGenerator);
+        super.parse(content, listener, idGenerator);
     }
 
     @Override
@@ -394,7 +466,21 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
      */
     public void setReferenceConverter(ConfluenceReferenceConverter referenceConverter)
     {
-        this.referenceConverter = referenceConverter;
+        if (this.referenceConverter != referenceConverter) {
+            this.referenceConverter = referenceConverter;
+            this.handlers = null;
+        }
+    }
+
+    /**
+     * @param fastParserEnabled true to convert the simple paragraphs, headings, lists and tables without going
+     *     through the XHTML parser; only the contents of at most 8192 characters are tried, the other ones are
+     *     streamed to the XHTML parser
+     * @since 9.96.0
+     */
+    public void setFastParserEnabled(boolean fastParserEnabled)
+    {
+        this.fastParserEnabled = fastParserEnabled;
     }
 
     /**
@@ -412,7 +498,10 @@ public class ConfluenceXHTMLParser extends AbstractWikiModelParser
      */
     public void setMacroSupport(ConfluenceMacroSupport macroSupport)
     {
-        this.macroSupport = macroSupport;
+        if (this.macroSupport != macroSupport) {
+            this.macroSupport = macroSupport;
+            this.handlers = null;
+        }
     }
 
     /**
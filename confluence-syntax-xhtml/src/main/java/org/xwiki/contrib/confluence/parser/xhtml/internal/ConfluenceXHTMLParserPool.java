@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Pool of Confluence XHTML parsers, so that the contents of an import are parsed by a few parsers which keep their
+ * tag handlers instead of a new parser each.
+ * <p>
+ * A parser is only used by one thread at a time: it is taken out of the pool for the duration of the parse, so that
+ * contents parsed while another one is being parsed get their own parser.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class ConfluenceXHTMLParserPool
+{
+    private final Supplier<ConfluenceXHTMLParser> factory;
+
+    private final Queue<ConfluenceXHTMLParser> parsers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param factory creates the parsers when the pool is empty
+     */
+    public ConfluenceXHTMLParserPool(Supplier<ConfluenceXHTMLParser> factory)
+    {
+        this.factory = factory;
+    }
+
+    /**
+     * @return a parser which is not used by anyone else, to be given back with
+     *     {@link #release(ConfluenceXHTMLParser)}
+     */
+    public ConfluenceXHTMLParser acquire()
+    {
+        ConfluenceXHTMLParser parser = this.parsers.poll();
+
+        return parser != null ? parser : this.factory.get();
+    }
+
+    /**
+     * @param parser a parser obtained from {@link #acquire()}, which must not be used anymore by the caller
+     */
+    public void release(ConfluenceXHTMLParser parser)
+    {
+        // Don't keep what was specific to the parsed content. The converters, macro support and macro content syntax
+        // are set again for each content, which only recreates the tag handlers when they change.
+        parser.setConverterProvider(null);
+        this.parsers.offer(parser);
+    }
+}
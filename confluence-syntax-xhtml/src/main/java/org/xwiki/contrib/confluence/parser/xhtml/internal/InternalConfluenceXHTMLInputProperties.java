@@ -34,6 +34,8 @@ public class InternalConfluenceXHTMLInputProperties extends ConfluenceXHTMLInput
 {
     private UnaryOperator<Listener> converterProvider;
 
+    private ConfluenceXHTMLParserPool parserPool;
+
     /**
      * @param converterProvider provides a filter to use between the parser and the renderer
      * @since 9.92.0
@@ -51,4 +53,22 @@ public class InternalConfluenceXHTMLInputProperties extends ConfluenceXHTMLInput
     {
         return converterProvider;
     }
+
+    /**
+     * @param parserPool the parsers to use instead of a new one
+     * @since 9.96.0
+     */
+    public void setParserPool(ConfluenceXHTMLParserPool parserPool)
+    {
+        this.parserPool = parserPool;
+    }
+
+    /**
+     * @return the parsers to use instead of a new one, null to use a new one
+     * @since 9.96.0
+     */
+    public ConfluenceXHTMLParserPool getParserPool()
+    {
+        return parserPool;
+    }
 }
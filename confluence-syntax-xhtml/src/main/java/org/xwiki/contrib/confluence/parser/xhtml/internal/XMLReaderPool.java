@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.inject.Singleton;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel.EntityCache;
+
+/**
+ * Pool of the SAX readers under the XML filters of the Confluence XHTML parser, so that a new SAX parser does not
+ * have to be looked up and configured for each parsed content.
+ * <p>
+ * Only the SAX readers are pooled: the XML filters keep the state of the document being parsed and are created for
+ * each parse. A reader is reset by the SAX parser when a parse starts, and its handlers are replaced by a handler
+ * doing nothing when it is released, so that it doesn't keep anything from the previous document.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+@Component(roles = XMLReaderPool.class)
+@Singleton
+public class XMLReaderPool
+{
+    private static final int MAX_SIZE = 32;
+
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final DefaultHandler2 NO_HANDLER = new DefaultHandler2();
+
+    private final BlockingQueue<XMLReader> readers = new ArrayBlockingQueue<>(MAX_SIZE);
+
+    private final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+    private final EntityCache entityCache = new EntityCache();
+
+    /**
+     * @return the external entities of the parsed contents, shared by all the parses
+     */
+    public EntityCache getEntityCache()
+    {
+        return this.entityCache;
+    }
+
+    /**
+     * @return a SAX reader which is not used by anyone else, to be given back with {@link #release(XMLReader)}
+     * @throws ParserConfigurationException when failing to create a SAX parser
+     * @throws SAXException when failing to create a SAX parser
+     */
+    public XMLReader acquire() throws ParserConfigurationException, SAXException
+    {
+        XMLReader reader = this.readers.poll();
+        if (reader != null) {
+            return reader;
+        }
+
+        // SAXParserFactory is not thread safe
+        synchronized (this.parserFactory) {
+            return this.parserFactory.newSAXParser().getXMLReader();
+        }
+    }
+
+    /**
+     * @param reader a reader obtained from {@link #acquire()}, which must not be used anymore by the caller
+     */
+    public void release(XMLReader reader)
+    {
+        try {
+            reader.setContentHandler(NO_HANDLER);
+            reader.setDTDHandler(NO_HANDLER);
+            reader.setEntityResolver(NO_HANDLER);
+            reader.setErrorHandler(NO_HANDLER);
+            reader.setProperty(LEXICAL_HANDLER, NO_HANDLER);
+        } catch (SAXException e) {
+            // The reader can't be cleaned up, don't reuse it
+            return;
+        }
+
+        this.readers.offer(reader);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel;
+
+import java.io.IOException;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xwiki.rendering.wikimodel.xhtml.filter.DefaultXMLFilter;
+
+/**
+ * Resolve the external entities from an {@link EntityCache}, without ever fetching them from the network.
+ *
+ * @since 9.96.0
+ * @version $Id$
+ */
+public class CachedEntityXMLFilter extends DefaultXMLFilter
+{
+    private final EntityCache entityCache;
+
+    /**
+     * Constructor.
+     * @param reader the reader
+     * @param entityCache the bundled external entities
+     */
+    public CachedEntityXMLFilter(XMLReader reader, EntityCache entityCache)
+    {
+        super(reader);
+
+        this.entityCache = entityCache;
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException
+    {
+        return this.entityCache.resolve(publicId, systemId);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.xml.sax.InputSource;
+
+/**
+ * Keep the external entities of the parsed contents (the XHTML 1.0 Strict DTD and the entity sets it includes) in
+ * memory. They are loaded once from the resources bundled with this module and never fetched from the network: any
+ * other external entity is resolved as empty.
+ * <p>
+ * This class is thread safe.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class EntityCache
+{
+    private static final byte[] EMPTY = new byte[0];
+
+    // The entities by public identifier and by file name, the entity sets being referenced by a relative system
+    // identifier from the DTD
+    private static final Map<String, byte[]> ENTITIES_BY_PUBLIC_ID = new HashMap<>();
+
+    private static final Map<String, byte[]> ENTITIES_BY_FILE_NAME = new HashMap<>();
+
+    static {
+        load("-//W3C//DTD XHTML 1.0 Strict//EN", "xhtml1-strict.dtd");
+        load("-//W3C//ENTITIES Latin 1 for XHTML//EN", "xhtml-lat1.ent");
+        load("-//W3C//ENTITIES Symbols for XHTML//EN", "xhtml-symbol.ent");
+        load("-//W3C//ENTITIES Special for XHTML//EN", "xhtml-special.ent");
+    }
+
+    private static void load(String publicId, String fileName)
+    {
+        try (InputStream stream = EntityCache.class.getResourceAsStream(fileName)) {
+            if (stream == null) {
+                throw new IOException("Missing resource");
+            }
+            byte[] content = IOUtils.toByteArray(stream);
+            ENTITIES_BY_PUBLIC_ID.put(publicId, content);
+            ENTITIES_BY_FILE_NAME.put(fileName, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load the bundled XHTML entity [" + fileName + "]", e);
+        }
+    }
+
+    /**
+     * @param publicId the public identifier of the entity
+     * @param systemId the system identifier of the entity
+     * @return the entity, empty if it is not bundled
+     */
+    public InputSource resolve(String publicId, String systemId)
+    {
+        byte[] content = publicId != null ? ENTITIES_BY_PUBLIC_ID.get(publicId) : null;
+        if (content == null && systemId != null) {
+            content = ENTITIES_BY_FILE_NAME.get(FilenameUtils.getName(systemId));
+        }
+
+        // Unknown entities are ignored rather than fetched from the network
+        InputSource source = new InputSource(new ByteArrayInputStream(content != null ? content : EMPTY));
+        source.setPublicId(publicId);
+        source.setSystemId(systemId);
+
+        return source;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link ConfluenceXHTMLFastParser} against {@link ConfluenceXHTMLParser}: every content accepted by the fast
+ * path must produce exactly the same events as the XHTML parser.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@AllComponents
+class ConfluenceXHTMLFastParserTest
+{
+    private static final String FIXTURES = "confluence+xhtml10";
+
+    private static final String INPUT = ".input|confluence+xhtml/1.0";
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private String parseFast(String content) throws Exception
+    {
+        return parseFast(content, new ArrayList<>());
+    }
+
+    private String parseFast(String content, List<String> fallbackParts) throws Exception
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        PrintRenderer renderer = getRendererFactory().createRenderer(printer);
+
+        ConfluenceXHTMLParser parser = getParser(false);
+        IdGenerator idGenerator = new IdGenerator();
+        if (!this.componentManager.<ConfluenceXHTMLFastParser>getInstance(ConfluenceXHTMLFastParser.class)
+            .parse(new StringReader(content), renderer, idGenerator, (part, listener) -> {
+                fallbackParts.add(part);
+                parser.parse(new StringReader(part), listener, idGenerator);
+            })) {
+            return null;
+        }
+
+        return printer.toString();
+    }
+
+    private String parseXHTML(String content, boolean fastParserEnabled) throws Exception
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        PrintRenderer renderer = getRendererFactory().createRenderer(printer);
+
+        getParser(fastParserEnabled).parse(new StringReader(content), renderer);
+
+        return printer.toString();
+    }
+
+    private ConfluenceXHTMLParser getParser(boolean fastParserEnabled) throws Exception
+    {
+        ConfluenceXHTMLParser parser =
+            this.componentManager.getInstance(StreamParser.class, ConfluenceXHTMLParser.SYNTAX_STRING);
+        parser.setFastParserEnabled(fastParserEnabled);
+
+        return parser;
+    }
+
+    private PrintRendererFactory getRendererFactory() throws Exception
+    {
+        return this.componentManager.getInstance(PrintRendererFactory.class, "event/1.0");
+    }
+
+    private void assertSameEvents(String name, String content) throws Exception
+    {
+        String fast = parseFast(content);
+        if (fast != null) {
+            assertEquals(parseXHTML(content, false), fast, name);
+        }
+
+        // Whatever the fast path decides, enabling it must not change the result
+        assertEquals(parseXHTML(content, false), parseXHTML(content, true), name);
+    }
+
+    private static List<String> readInputs(Path file) throws IOException
+    {
+        List<String> inputs = new ArrayList<>();
+        if (file.toString().endsWith(".xml")) {
+            inputs.add(Files.readString(file, StandardCharsets.UTF_8));
+        } else {
+            List<String> section = null;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.startsWith(".#")) {
+                    continue;
+                }
+                if (line.startsWith(".input|") || line.startsWith(".expect|")) {
+                    if (section != null) {
+                        inputs.add(String.join("\n", section));
+                    }
+                    section = line.equals(INPUT) ? new ArrayList<>() : null;
+                } else if (section != null) {
+                    section.add(line);
+                }
+            }
+            if (section != null) {
+                inputs.add(String.join("\n", section));
+            }
+        }
+
+        return inputs;
+    }
+
+    private static List<Path> getFixtures() throws IOException, URISyntaxException
+    {
+        Path root = Paths.get(ConfluenceXHTMLFastParserTest.class.getClassLoader().getResource(FIXTURES).toURI());
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(f -> f.toString().endsWith(".test") || f.toString().endsWith(".in.xml")).sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void fixtures() throws Exception
+    {
+        int accepted = 0;
+        int total = 0;
+        for (Path fixture : getFixtures()) {
+            for (String input : readInputs(fixture)) {
+                assertSameEvents(fixture.getFileName().toString(), input);
+                total++;
+                if (parseFast(input) != null) {
+                    accepted++;
+                }
+            }
+        }
+
+        assertTrue(total > 30, "Only " + total + " fixtures found");
+        assertTrue(accepted > 0, "No fixture accepted by the fast path");
+    }
+
+    @Test
+    void plainParagraphs() throws Exception
+    {
+        assertSameEvents("words", "<p>Hello world</p>");
+        assertSameEvents("punctuation", "<p>Hello, world! (see #42: a-b_c.d)</p>");
+        assertSameEvents("paragraphs", "<p>first</p>\n\n<p>second</p>");
+
+        assertEquals("beginDocument\nbeginParagraph\nonWord [Hello]\nonSpecialSymbol [,]\nonSpace\nonWord [world]\n"
+            + "endParagraph\nendDocument", parseFast("<p>Hello, world</p>"));
+    }
+
+    @Test
+    void declined() throws Exception
+    {
+        assertNull(parseFast(""));
+        assertNull(parseFast("<p></p>"));
+        assertNull(parseFast("<p> leading</p>"));
+        assertNull(parseFast("<p>trailing </p>"));
+        assertNull(parseFast("<p>two  spaces</p>"));
+        assertNull(parseFast("<p>line\nbreak</p>"));
+        assertNull(parseFast("<p>non&nbsp;breaking</p>"));
+        assertNull(parseFast("<p>a <strong><em>b</em></strong></p>"));
+        assertNull(parseFast("<p class=\"x\">a</p>"));
+        assertNull(parseFast("text"));
+        assertNull(parseFast("text<p>a</p>"));
+        assertNull(parseFast("<p>a</p><!-- comment -->"));
+        assertNull(parseFast("<p>not closed"));
+        assertNull(parseFast("<p>a</p><ul><li><h2>title</h2></li></ul>"));
+        assertNull(parseFast("<p>a</p><h2 id=\"title\">title</h2>"));
+
+        assertSameEvents("nested formats", "<p>a <strong><em>b</em></strong></p>");
+        assertSameEvents("header in list", "<p>a</p><ul><li><h2>title</h2></li></ul>");
+    }
+
+    @Test
+    void headings() throws Exception
+    {
+        assertSameEvents("levels", "<h1>Title</h1><p>text</p><h3>Sub title</h3><p>more</p><h2>Other</h2><p>end</p>");
+        assertSameEvents("same titles", "<h2>Same</h2><p>a</p><h2>Same</h2><p>b</p>");
+        assertSameEvents("paragraph first", "<p>intro</p>\n<h4>Title!</h4>");
+    }
+
+    @Test
+    void lists() throws Exception
+    {
+        assertSameEvents("items", "<ul><li>one</li><li>two <strong>bold</strong></li></ul>");
+        assertSameEvents("paragraphs", "<ol>\n  <li><p>Hello</p></li>\n  <li><p>world</p>\n    <ol>\n"
+            + "      <li><p>Hello nested</p></li>\n    </ol>\n  </li>\n</ol>");
+        assertSameEvents("list only", "<ol><li><ul><li>nested</li></ul></li></ol>");
+        assertSameEvents("two paragraphs", "<ul><li><p>a</p><p>b</p></li></ul>");
+
+        assertEquals("beginDocument\nbeginList [BULLETED]\nbeginListItem\nonWord [one]\nendListItem\n"
+            + "beginListItem\nonWord [two]\nendListItem\nendList [BULLETED]\nendDocument",
+            parseFast("<ul>\n<li>one</li>\n<li><p>two</p></li>\n</ul>"));
+    }
+
+    @Test
+    void tables() throws Exception
+    {
+        assertSameEvents("cells",
+            "<table><tr><th>head</th><th>other</th></tr><tr><td>cell</td><td>1</td></tr></table>");
+        assertSameEvents("body", "<table>\n  <tbody>\n    <tr>\n      <td><p>a</p><p>b <em>c</em></p></td>\n"
+            + "    </tr>\n  </tbody>\n</table>");
+        assertSameEvents("attributes", "<table><tr><td colspan=\"2\">cell</td></tr></table><p>a</p>");
+    }
+
+    @Test
+    void formats() throws Exception
+    {
+        assertSameEvents("formats", "<p>a <strong>b</strong>, <em>c</em> <b>d</b> <i>e</i> <u>f</u> <ins>g</ins>"
+            + " <s>h</s> <del>i</del> <strike>j</strike> x<sup>2</sup> H<sub>2</sub>O</p>");
+        assertSameEvents("space in format", "<p>a <strong>b </strong>c</p>");
+        assertSameEvents("adjacent formats", "<p><strong>a</strong><em>b</em></p>");
+    }
+
+    @Test
+    void fallback() throws Exception
+    {
+        List<String> fallbackParts = new ArrayList<>();
+        String content = "<p>before</p><ac:structured-macro ac:name=\"info\"><ac:rich-text-body><p>inside</p>"
+            + "</ac:rich-text-body></ac:structured-macro>\n<p>after</p>";
+        assertSameEvents("macro", content);
+        parseFast(content, fallbackParts);
+        assertEquals(List.of("<ac:structured-macro ac:name=\"info\"><ac:rich-text-body><p>inside</p>"
+            + "</ac:rich-text-body></ac:structured-macro>\n"), fallbackParts);
+
+        assertSameEvents("link", "<p>a</p><p>see <ac:link><ri:page ri:content-title=\"Other &amp; more\"/>"
+            + "</ac:link></p>");
+        assertSameEvents("code", "<h1>Code</h1><ac:structured-macro ac:name=\"code\"><ac:plain-text-body>"
+            + "<![CDATA[a < b && c]]></ac:plain-text-body></ac:structured-macro><p>done</p>");
+        assertSameEvents("inline elements", "<p>a</p><ac:emoticon ac:name=\"smile\"/> <ac:image><ri:attachment"
+            + " ri:filename=\"a.png\"/></ac:image><h2>title</h2>");
+        assertSameEvents("styled paragraph", "<h1>Title</h1><p style=\"color: red;\">styled</p><p>plain</p>");
+    }
+
+    @Test
+    void bigContents() throws Exception
+    {
+        // Around the size under which the XHTML parser tries the fast path, the result must stay the same
+        for (int length : new int[] { 8180, 8192, 8193, 20000 }) {
+            StringBuilder content = new StringBuilder("<p>");
+            while (content.length() < length - 4) {
+                content.append(content.length() % 20 == 10 ? ' ' : 'a');
+            }
+            content.setLength(length - 4);
+            content.append('b').append("</p>");
+
+            assertSameEvents("big " + length, content.toString());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.parser.xhtml.internal.wikimodel;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Validate {@link EntityCache}.
+ *
+ * @version $Id$
+ */
+class EntityCacheTest
+{
+    private static final String DOCTYPE = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\""
+        + " \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">";
+
+    private final EntityCache cache = new EntityCache();
+
+    private final StringBuilder text = new StringBuilder();
+
+    private final Map<String, String> attributes = new HashMap<>();
+
+    private void parse(String content, boolean validating) throws Exception
+    {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setValidating(validating);
+        factory.newSAXParser().parse(new InputSource(new StringReader(content)), new DefaultHandler()
+        {
+            @Override
+            public InputSource resolveEntity(String publicId, String systemId)
+            {
+                return cache.resolve(publicId, systemId);
+            }
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts)
+            {
+                for (int i = 0; i < atts.getLength(); i++) {
+                    attributes.put(qName + '@' + atts.getQName(i), atts.getValue(i));
+                }
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length)
+            {
+                text.append(ch, start, length);
+            }
+
+            @Override
+            public void error(SAXParseException e) throws SAXParseException
+            {
+                throw e;
+            }
+        });
+    }
+
+    @Test
+    void resolveEntities() throws Exception
+    {
+        parse(DOCTYPE + "<void><p>&nbsp;&eacute;&euro;&hellip;&alpha;&lt;&amp;</p></void>", false);
+
+        assertEquals("\u00A0\u00E9\u20AC\u2026\u03B1<&", this.text.toString());
+    }
+
+    @Test
+    void attributeDefaults() throws Exception
+    {
+        parse(DOCTYPE + "<void><table><tr><td>cell</td></tr></table><pre>code</pre></void>", false);
+
+        assertEquals("1", this.attributes.get("td@colspan"));
+        assertEquals("preserve", this.attributes.get("pre@xml:space"));
+    }
+
+    @Test
+    void validDocument() throws Exception
+    {
+        // Make sure the bundled DTD is complete
+        parse(DOCTYPE + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>&copy;</title></head><body>"
+            + "<h1>Title</h1><p><a href=\"#\">link</a> <img src=\"a.png\" alt=\"\" /></p>"
+            + "<ul><li>item</li></ul><table><tbody><tr><th>head</th><td>cell</td></tr></tbody></table>"
+            + "</body></html>", true);
+
+        assertEquals("rect", this.attributes.get("a@shape"));
+    }
+
+    @Test
+    void unknownEntitiesAreEmpty() throws Exception
+    {
+        parse("<!DOCTYPE void SYSTEM \"http://unknown.example/unknown.dtd\"><void>text</void>", false);
+
+        assertEquals("text", this.text.toString());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xwiki.contrib.confluence.filter.internal.input.PackageContent;
+import org.xwiki.filter.input.InputStreamInputSource;
+
+/**
+ * The content of an attachment of a Confluence package. Nothing is read from the package until
+ * {@link #getInputStream()} is called.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class AttachmentContent implements InputStreamInputSource
+{
+    private final PackageContent content;
+
+    private final String path;
+
+    private InputStream stream;
+
+    AttachmentContent(PackageContent content, String path)
+    {
+        this.content = content;
+        this.path = path;
+    }
+
+    /**
+     * @return the size of the content in bytes, -1 if unknown
+     */
+    public long getSize()
+    {
+        return this.content.getSize(this.path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+        if (this.stream == null) {
+            this.stream = this.content.open(this.path);
+        }
+
+        return this.stream;
+    }
+
+    @Override
+    public boolean restartSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (this.stream != null) {
+            this.stream.close();
+            this.stream = null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.path;
+    }
+}
@@ -55,9 +55,16 @@ import org.xwiki.rendering.syntax.Syntax;
  */
 public class ConfluenceInputProperties extends DefaultFilterStreamProperties
 {
+    /**
+     * The default maximum size, in bytes, of the object properties kept in memory while indexing the package. Also used
+     * by {@link ConfluenceXMLPackage} when the size is not set.
+     */
+    static final long DEFAULT_INDEXING_CACHE_SIZE = 32L * 1024 * 1024;
+
     private static final String XWIKI_ADMIN_GROUP_NAME = "XWikiAdminGroup";
     private static final String XWIKI_ALL_GROUP_NAME = "XWikiAllGroup";
     private static final String CLEANUP_SYNC = "SYNC";
+    private static final long DEFAULT_CONVERSION_CACHE_SIZE = 16L * 1024 * 1024;
     private static final String WEB_HOME = "WebHome";
     private static final String CONFLUENCE_UNDERSCORE = "confluence_";
     private static final String DEFAULT_GROUP_FORMAT = "${group._clean}";
@@ -320,6 +327,61 @@ public class ConfluenceInputProperties extends DefaultFilterStreamProperties
     private OverwriteProtectionMode overwriteProtectionMode =
         OverwriteProtectionMode.NONCONFLUENCE;
 
+    /**
+     * @see #getPackageStorage()
+     */
+    private PackageStorage packageStorage = PackageStorage.DIRECTORY;
+
+    /**
+     * @see #getIndexingCacheSize()
+     */
+    private long indexingCacheSize = DEFAULT_INDEXING_CACHE_SIZE;
+
+    /**
+     * @see #getIndexingThreads()
+     */
+    private int indexingThreads = 1;
+
+    /**
+     * @see #isBodyCompression()
+     */
+    private boolean bodyCompression;
+
+    /**
+     * @see #getConversionThreads()
+     */
+    private int conversionThreads = 1;
+
+    /**
+     * @see #getConversionCacheSize()
+     */
+    private long conversionCacheSize = DEFAULT_CONVERSION_CACHE_SIZE;
+
+    /**
+     * @see #getPrefetchDepth()
+     */
+    private int prefetchDepth;
+
+    /**
+     * @see #getSpaceThreads()
+     */
+    private int spaceThreads = 1;
+
+    /**
+     * @see #getLinkMappingFile()
+     */
+    private String linkMappingFile;
+
+    /**
+     * @see #getReferenceCacheSize()
+     */
+    private int referenceCacheSize = 100000;
+
+    /**
+     * @see #isFastXHTMLParser()
+     */
+    private boolean fastXHTMLParser;
+
     /**
      * @return The source to load the wiki from
      */
@@ -1690,4 +1752,257 @@ public class ConfluenceInputProperties extends DefaultFilterStreamProperties
     {
         this.overwriteProtectionMode = overwriteProtectionMode;
     }
+
+    /**
+     * @return how the objects indexed from the package are stored in the working directory
+     * @since 9.96.0
+     */
+    @PropertyName("Package storage")
+    @PropertyDescription("How to store the objects indexed from the Confluence package in the working directory. "
+        + "Possible values: "
+        + "DIRECTORY - one file per object, in a folder hierarchy; "
+        + "SINGLE_FILE - all objects in a single data file, which is much lighter on the file system for big packages. "
+        + "Default: DIRECTORY.")
+    public PackageStorage getPackageStorage()
+    {
+        return packageStorage;
+    }
+
+    /**
+     * @param packageStorage how the objects indexed from the package are stored in the working directory
+     * @since 9.96.0
+     */
+    public void setPackageStorage(PackageStorage packageStorage)
+    {
+        this.packageStorage = packageStorage == null ? PackageStorage.DIRECTORY : packageStorage;
+    }
+
+    /**
+     * @return the maximum size, in bytes, of the object properties kept in memory while indexing the package
+     * @since 9.96.0
+     */
+    @PropertyName("Indexing cache size")
+    @PropertyDescription("The maximum size, in bytes, of the object properties kept in memory while indexing the "
+        + "Confluence package, before writing them to the working directory. A bigger cache means fewer writes for "
+        + "pages with many comments, revisions or labels. 0 disables the cache. Default: 33554432 (32 MB).")
+    public long getIndexingCacheSize()
+    {
+        return indexingCacheSize;
+    }
+
+    /**
+     * @param indexingCacheSize the maximum size, in bytes, of the object properties kept in memory while indexing
+     *     the package
+     * @since 9.96.0
+     */
+    public void setIndexingCacheSize(long indexingCacheSize)
+    {
+        this.indexingCacheSize = indexingCacheSize;
+    }
+
+    /**
+     * @return the number of threads parsing the objects of the package while indexing it
+     * @since 9.96.0
+     */
+    @PropertyName("Indexing threads")
+    @PropertyDescription("The number of threads parsing the objects of the Confluence package while indexing it. "
+        + "The objects are still saved in the order in which they appear in the package, so the result does not "
+        + "depend on this value. 1 means the package is parsed sequentially. Default: 1.")
+    public int getIndexingThreads()
+    {
+        return indexingThreads;
+    }
+
+    /**
+     * @param indexingThreads the number of threads parsing the objects of the package while indexing it
+     * @since 9.96.0
+     */
+    public void setIndexingThreads(int indexingThreads)
+    {
+        this.indexingThreads = indexingThreads;
+    }
+
+    /**
+     * @return true if the bodies of the pages should be compressed in the working directory
+     * @since 9.96.0
+     */
+    @PropertyName("Compress page bodies")
+    @PropertyDescription("Compress the content of the pages stored in the working directory while indexing the "
+        + "Confluence package. This saves disk space at the expense of some CPU time. Default: false.")
+    public boolean isBodyCompression()
+    {
+        return bodyCompression;
+    }
+
+    /**
+     * @param bodyCompression true if the bodies of the pages should be compressed in the working directory
+     * @since 9.96.0
+     */
+    public void setBodyCompression(boolean bodyCompression)
+    {
+        this.bodyCompression = bodyCompression;
+    }
+
+    /**
+     * @return the number of threads converting the content of the pages while sending them
+     * @since 9.96.0
+     */
+    @PropertyName("Conversion threads")
+    @PropertyDescription("The number of threads converting the content of the upcoming pages and revisions while "
+        + "the current one is being sent. The pages are still sent in the same order and with the same content, so "
+        + "the result does not depend on this value. 1 means the content is converted sequentially. Default: 1.")
+    public int getConversionThreads()
+    {
+        return conversionThreads;
+    }
+
+    /**
+     * @param conversionThreads the number of threads converting the content of the pages while sending them
+     * @since 9.96.0
+     */
+    public void setConversionThreads(int conversionThreads)
+    {
+        this.conversionThreads = conversionThreads;
+    }
+
+    /**
+     * @return the maximum size, in bytes, of the converted contents kept in memory to be reused by identical revisions
+     * @since 9.96.0
+     */
+    @PropertyName("Conversion cache size")
+    @PropertyDescription("The maximum size, in bytes, of the converted contents kept in memory so that the identical "
+        + "contents of other revisions of the same page are not converted again. Only used when converting to XWiki "
+        + "syntax with the history enabled. 0 disables the cache. Default: 16777216 (16 MB).")
+    public long getConversionCacheSize()
+    {
+        return conversionCacheSize;
+    }
+
+    /**
+     * @param conversionCacheSize the maximum size, in bytes, of the converted contents kept in memory to be reused by
+     *     identical revisions
+     * @since 9.96.0
+     */
+    public void setConversionCacheSize(long conversionCacheSize)
+    {
+        this.conversionCacheSize = conversionCacheSize;
+    }
+
+    /**
+     * @return the maximum number of upcoming pages loaded from the package while the current one is being sent
+     * @since 9.96.0
+     */
+    @PropertyName("Prefetch depth")
+    @PropertyDescription("The maximum number of upcoming pages of which the properties, revisions, attachments, "
+        + "comments and tags are loaded from the package while the current page is being sent. This avoids waiting "
+        + "for the disk between pages and does not change the result. 0 disables prefetching. Default: 0.")
+    public int getPrefetchDepth()
+    {
+        return prefetchDepth;
+    }
+
+    /**
+     * @param prefetchDepth the maximum number of upcoming pages loaded from the package while the current one is
+     *     being sent
+     * @since 9.96.0
+     */
+    public void setPrefetchDepth(int prefetchDepth)
+    {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * @return the number of spaces sent at the same time
+     * @since 9.96.0
+     */
+    @PropertyName("Space threads")
+    @PropertyDescription("The number of Confluence spaces sent at the same time. The events of each space are kept in "
+        + "memory until the previous spaces are sent, so that the spaces are still sent in the same order and with the "
+        + "same content. Up to 10000 events (with the content of the pages, but not of the attachments) are kept per "
+        + "space, after which the space waits for the previous ones: the additional memory used grows with the number "
+        + "of threads, not with the size of the spaces. Spaces are sent one by one when a maximum page count or object "
+        + "id ranges are set. Default: 1.")
+    public int getSpaceThreads()
+    {
+        return spaceThreads;
+    }
+
+    /**
+     * @param spaceThreads the number of spaces sent at the same time
+     * @since 9.96.0
+     */
+    public void setSpaceThreads(int spaceThreads)
+    {
+        this.spaceThreads = spaceThreads;
+    }
+
+    /**
+     * @return the path of a file containing a link mapping too big to be given in the link mapping property
+     * @since 9.96.0
+     */
+    @PropertyName("Link Mapping File")
+    @PropertyDescription("The path of a file containing a link mapping, used for the pages not found in the link "
+        + "mapping property. It can be in the same JSON format as the link mapping property, in which case it is read "
+        + "as a stream and its references are only resolved when they are needed, or compiled beforehand with "
+        + "MappedLinkMapping.compile, in which case it is memory mapped and does not use any heap.")
+    public String getLinkMappingFile()
+    {
+        return linkMappingFile;
+    }
+
+    /**
+     * @param linkMappingFile the path of a file containing a link mapping
+     * @since 9.96.0
+     */
+    public void setLinkMappingFile(String linkMappingFile)
+    {
+        this.linkMappingFile = linkMappingFile;
+    }
+
+    /**
+     * @return the maximum number of references kept in each of the caches of the references resolved outside the
+     *     package
+     * @since 9.96.0
+     */
+    @PropertyName("Reference cache size")
+    @PropertyDescription("The maximum number of references kept in each of the caches of the references resolved "
+        + "with the Confluence resolvers, by page id and by page title. The least recently used references are "
+        + "forgotten first. The hits, misses and evictions of these caches are logged every 5 minutes while sending "
+        + "the pages and at the end of the import. 0 means no limit. Default: 100000.")
+    public int getReferenceCacheSize()
+    {
+        return referenceCacheSize;
+    }
+
+    /**
+     * @param referenceCacheSize the maximum number of references kept in each of the reference caches
+     * @since 9.96.0
+     */
+    public void setReferenceCacheSize(int referenceCacheSize)
+    {
+        this.referenceCacheSize = referenceCacheSize;
+    }
+
+    /**
+     * @return true if the simple paragraphs, headings, lists and tables of the bodies should be converted without going
+     *     through the XHTML parser
+     * @since 9.96.0
+     */
+    @PropertyName("Fast XHTML parser")
+    @PropertyDescription("Convert the simple paragraphs, headings, lists and tables of the bodies, which most comments "
+        + "are made of, without going through the XHTML parser. The other elements are parsed as usual.")
+    public boolean isFastXHTMLParser()
+    {
+        return fastXHTMLParser;
+    }
+
+    /**
+     * @param fastXHTMLParser true if the simple paragraphs, headings, lists and tables of the bodies should be
+     *     converted without going through the XHTML parser
+     * @since 9.96.0
+     */
+    public void setFastXHTMLParser(boolean fastXHTMLParser)
+    {
+        this.fastXHTMLParser = fastXHTMLParser;
+    }
 }
@@ -21,14 +21,13 @@ package org.xwiki.contrib.confluence.filter.input;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.URI;
@@ -38,22 +37,27 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -81,8 +85,22 @@ import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.contrib.confluence.filter.internal.WithoutControlCharactersReader;
+import org.xwiki.contrib.confluence.filter.internal.hierarchy.PageHierarchy;
 import org.xwiki.contrib.confluence.filter.internal.input.ConfluenceCanceledException;
+import org.xwiki.contrib.confluence.filter.internal.input.DeferredChildren;
+import org.xwiki.contrib.confluence.filter.internal.input.DirectoryPackageContent;
+import org.xwiki.contrib.confluence.filter.internal.input.EntitiesSplitter;
+import org.xwiki.contrib.confluence.filter.internal.input.ObjectLocations;
+import org.xwiki.contrib.confluence.filter.internal.input.PackageContent;
 import org.xwiki.contrib.confluence.filter.internal.input.PropertiesConfluenceTask;
+import org.xwiki.contrib.confluence.filter.internal.input.StateSnapshot;
+import org.xwiki.contrib.confluence.filter.internal.input.ZipPackageContent;
+import org.xwiki.contrib.confluence.filter.internal.store.BodyConfluencePropertiesStore;
+import org.xwiki.contrib.confluence.filter.internal.store.BodyStore;
+import org.xwiki.contrib.confluence.filter.internal.store.CachingConfluencePropertiesStore;
+import org.xwiki.contrib.confluence.filter.internal.store.ConfluencePropertiesStore;
+import org.xwiki.contrib.confluence.filter.internal.store.DirectoryConfluencePropertiesStore;
+import org.xwiki.contrib.confluence.filter.internal.store.SingleFileConfluencePropertiesStore;
 import org.xwiki.contrib.confluence.filter.task.ConfluenceTask;
 import org.xwiki.environment.Environment;
 import org.xwiki.filter.FilterException;
@@ -668,6 +686,15 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
     private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
 
+    // StAX factories are not guaranteed to be thread safe
+    private static final ThreadLocal<XMLInputFactory> OBJECT_INPUT_FACTORY =
+        ThreadLocal.withInitial(XMLInputFactory::newInstance);
+
+    // How many objects each indexing thread can parse ahead of the objects being saved
+    private static final int PENDING_OBJECTS_PER_THREAD = 64;
+
+    private static final int INDEXING_STEPS = 100;
+
     private static final String FOLDER_INTERNALUSER = "internalusers";
 
     private static final String FOLDER_USERIMPL = "userimpls";
@@ -756,7 +783,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
     };
 
     private static final String RESTORING_FROM_ANOTHER_VERSION_UNSUPPORTED_WARNING =
-        "Restoring from a different version is unsupported and may lead to unexpected results.";
+        "Restoring from a different version is unsupported, the package will be analyzed again.";
 
     private static final String PROPERTY_CLASS_SUFFIX = "--class";
 
@@ -766,6 +793,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
     private static final String KEY = KEY_SPACE_KEY;
     private static final String KEY_NAME = KEY_SPACE_NAME;
     private static final String STATE = "state";
+
     private static final String LONG_VALUE = "longValue";
     private static final String DATE_VALUE = "dateValue";
     private static final String STRING_VALUE = "stringValue";
@@ -812,33 +840,31 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     private boolean temporaryDirectory;
 
-    private File entities;
-
-    private File descriptor;
+    // The files of the package, either extracted in a directory or read directly from the ZIP file
+    private PackageContent content;
 
     private File tree;
 
-    private String workingDirectory;
+    private PackageStorage storage = PackageStorage.DIRECTORY;
+
+    private ConfluencePropertiesStore store;
 
-    private File tasks;
+    private long indexingCacheSize = ConfluenceInputProperties.DEFAULT_INDEXING_CACHE_SIZE;
 
-    // Maps a space id to all the pages in this space
-    private final Map<Long, List<Long>> pages = new LinkedHashMap<>();
+    private int indexingThreads = 1;
 
-    // Maps a space id to all the blog pages in this space
-    private final Map<Long, List<Long>> blogPages = new LinkedHashMap<>();
+    private boolean bodyCompression;
 
-    // Maps a page id to its direct non-blog children
-    private final Map<Long, List<Long>> pageChildren = new LinkedHashMap<>();
+    // Children to add to their parent once the whole package is read
+    private final DeferredChildren deferredChildren = new DeferredChildren();
 
-    // List of parent pages that have not been seen
-    private final Map<Long, Set<Long>> missingParents = new LinkedHashMap<>();
+    private String workingDirectory;
 
-    // maps a space id to its home page
-    private final Map<Long, Long> homePages = new LinkedHashMap<>();
+    // The path of the tasks file, until the tasks are read
+    private String tasks;
 
-    // maps a space id it to its orphan pages
-    private final Map<Long, List<Long>> orphans = new LinkedHashMap<>();
+    // The pages, blog pages, children, home page, orphans and missing parents of each space
+    private final PageHierarchy hierarchy = new PageHierarchy();
 
     // maps a space key to its id
     private final Map<String, Long> casePreservingSpacesByKey = new HashMap<>();
@@ -847,6 +873,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
     // maps a space id to a lowercase title to page id mapping
     private final Map<Long, Map<String, Long>> pagesBySpaceAndLowerTitle = new HashMap<>();
 
+    // maps an object id to the location of its properties in the store (which also tells its type)
+    private final ObjectLocations objectLocations = new ObjectLocations();
+
     private String spaceKeyToImport;
     private long spaceIdToImport;
 
@@ -877,7 +906,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public List<Long> getPageChildren(Long pageId)
     {
-        return pageChildren.getOrDefault(pageId, Collections.emptyList());
+        return pageId == null ? Collections.emptyList() : this.hierarchy.getChildren(pageId);
     }
 
     /**
@@ -887,7 +916,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Long getHomePage(Long spaceId)
     {
-        return homePages.get(spaceId);
+        return this.hierarchy.getHomePage(spaceId);
     }
 
     /**
@@ -897,10 +926,10 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public List<Long> getOrphans(Long spaceId)
     {
-        List<Long> spaceOrphans = this.orphans.getOrDefault(spaceId, Collections.emptyList());
-        Collection<Long> spaceMissingParents = this.missingParents.get(spaceId);
+        List<Long> spaceOrphans = this.hierarchy.getOrphans(spaceId);
+        List<Long> spaceMissingParents = this.hierarchy.getMissingParents(spaceId);
 
-        if (spaceMissingParents == null || spaceMissingParents.isEmpty()) {
+        if (spaceMissingParents.isEmpty()) {
             return spaceOrphans;
         }
 
@@ -978,9 +1007,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
             }
         }
 
-        this.entities = new File(this.directory, FILE_ENTITIES);
-        this.descriptor = new File(this.directory, FILE_DESCRIPTOR);
-        this.tasks = new File(this.directory, FILE_TASKS);
+        this.tasks = FILE_TASKS;
     }
 
     /**
@@ -1044,19 +1071,21 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
     private void saveState() throws IllegalAccessException, IOException, FilterException
     {
+        this.store.flush();
         File state = new File(this.tree, STATE);
         if (!state.isDirectory() && !state.mkdir()) {
             throw new FilterException("Could not create the state directory");
         }
         Files.write(getExtractedPackageVersionPath(state), getVersion().getBytes());
+        Map<String, Map<?, ?>> snapshot = new LinkedHashMap<>();
         for (Field field : this.getClass().getDeclaredFields()) {
             if (isStateField(field)) {
-                try (FileOutputStream fos = new FileOutputStream(new File(state, field.getName()));
-                     ObjectOutputStream myObjectOutStream = new ObjectOutputStream(fos)) {
-                    myObjectOutStream.writeObject(field.get(this));
-                }
+                snapshot.put(field.getName(), (Map<?, ?>) field.get(this));
             }
         }
+        snapshot.putAll(this.hierarchy.getState());
+        snapshot.putAll(this.objectLocations.getState());
+        StateSnapshot.write(new File(state, StateSnapshot.FILE_NAME), getVersion(), snapshot);
     }
 
     private void clearState()
@@ -1070,20 +1099,16 @@ public class ConfluenceXMLPackage implements AutoCloseable
                     logger.error("Unexpected error when clearing the state of field [{}]", field.getName(), e);
                     continue;
                 }
-                if (f instanceof Collection) {
-                    ((Collection<?>) f).clear();
-                } else if (f instanceof Map) {
-                    ((Map<?, ?>) f).clear();
-                }
+                ((Map<?, ?>) f).clear();
             }
         }
+        this.hierarchy.clear();
+        this.objectLocations.clear();
     }
 
     private static boolean isStateField(Field field)
     {
-        Class<?> type = field.getType();
-        return !Modifier.isStatic(field.getModifiers())
-            && (Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type));
+        return !Modifier.isStatic(field.getModifiers()) && Map.class.isAssignableFrom(field.getType());
     }
 
     private String getVersion()
@@ -1103,41 +1128,82 @@ public class ConfluenceXMLPackage implements AutoCloseable
             return false;
         }
 
-        checkExtractedPackageVersion(tree, state);
+        if (!isExtractedPackageVersionCompatible(tree, state)) {
+            cleanWorkingDirectory(tree);
+            return false;
+        }
+
+        Map<String, Map<Object, Object>> snapshot;
+        try {
+            snapshot = StateSnapshot.read(new File(state, StateSnapshot.FILE_NAME), getVersion());
+        } catch (IOException e) {
+            logger.warn("Could not restore the package state, the package will be analyzed again: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+            cleanWorkingDirectory(tree);
+            return false;
+        }
 
         for (Field field : this.getClass().getDeclaredFields()) {
-            if (isStateField(field) && !restoreStateField(field, state)) {
+            if (isStateField(field) && !restoreStateField(field, snapshot)) {
                 clearState();
+                cleanWorkingDirectory(tree);
                 return false;
             }
         }
+        if (!this.hierarchy.restoreState(snapshot)) {
+            logger.warn("Could not restore the package state: the page hierarchy is incomplete");
+            clearState();
+            cleanWorkingDirectory(tree);
+            return false;
+        }
+        if (!this.objectLocations.restoreState(snapshot)) {
+            logger.warn("Could not restore the package state: the object locations are missing");
+            clearState();
+            cleanWorkingDirectory(tree);
+            return false;
+        }
 
+        ConfluencePropertiesStore objectStore = null;
+        try {
+            // The storage used when extracting the package wins over the configured one
+            objectStore = SingleFileConfluencePropertiesStore.isStore(tree)
+                ? new SingleFileConfluencePropertiesStore(tree)
+                : new DirectoryConfluencePropertiesStore(tree);
+            if (BodyStore.isStore(tree)) {
+                objectStore = new BodyConfluencePropertiesStore(objectStore,
+                    new BodyStore(tree, this.bodyCompression), KEY_PAGE_BODY);
+            }
+        } catch (IOException e) {
+            if (objectStore != null) {
+                // The object store was opened but not the body store
+                try {
+                    objectStore.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            logger.warn("Could not restore the package state: the object store is unreadable", e);
+            clearState();
+            cleanWorkingDirectory(tree);
+            return false;
+        }
+
+        this.store = objectStore;
         this.tree = tree;
 
         return true;
     }
 
-    private boolean restoreStateField(Field field, File state)
+    private boolean restoreStateField(Field field, Map<String, Map<Object, Object>> snapshot)
     {
         String name = field.getName();
-        Object property;
-        try (FileInputStream fis = new FileInputStream(new File(state, name));
-             ObjectInputStream objectInput = new ObjectInputStream(fis)) {
-            property = objectInput.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            logger.warn("Could not restore the package state: field [{}] is unreadable", name, e);
+        Map<Object, Object> property = snapshot.get(name);
+        if (property == null) {
+            logger.warn("Could not restore the package state: field [{}] is missing", name);
             return false;
         }
         try {
-            Object f = field.get(this);
-            if (f instanceof Collection && property instanceof Collection) {
-                ((Collection) f).addAll((Collection) property);
-            } else if (f instanceof Map && property instanceof Map) {
-                ((Map) f).putAll((Map) property);
-            } else {
-                logger.warn("Could not restore the package state: wrong type for field [{}]", name);
-                return false;
-            }
+            ((Map) field.get(this)).putAll(property);
         } catch (IllegalAccessException e) {
             logger.warn("Could not restore the Confluence package state", e);
             return false;
@@ -1145,21 +1211,50 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return true;
     }
 
-    private void checkExtractedPackageVersion(File tree, File state)
+    private boolean isExtractedPackageVersionCompatible(File tree, File state)
     {
         logger.info("Restoring from extracted Confluence package found at [{}]", tree.getPath());
         try {
             String version = Files.readString(getExtractedPackageVersionPath(state)).trim();
             if (!getVersion().equals(version)) {
-                this.logger.warn(
-                    "The package was extracted by version [{}]. Current version is [{}]. "
-                        + RESTORING_FROM_ANOTHER_VERSION_UNSUPPORTED_WARNING, version, getVersion());
+                this.logger.warn("The package was extracted by version [{}]. Current version is [{}]. "
+                    + RESTORING_FROM_ANOTHER_VERSION_UNSUPPORTED_WARNING, version, getVersion());
+                return false;
             }
         } catch (IOException e) {
-            this.logger.warn(
-                "Could not determine the version of the extracted package. "
+            this.logger.warn("Could not determine the version of the extracted package. "
                 + RESTORING_FROM_ANOTHER_VERSION_UNSUPPORTED_WARNING, e);
+            return false;
         }
+
+        return true;
+    }
+
+    private void cleanWorkingDirectory(File tree)
+    {
+        // What's left would otherwise be mixed with the result of the new analysis. The working directory can be
+        // provided by the user so only what the analysis writes in it is deleted.
+        try {
+            if (SingleFileConfluencePropertiesStore.isStore(tree)) {
+                SingleFileConfluencePropertiesStore.delete(tree);
+            } else {
+                for (String folder : getStoreFolders()) {
+                    FileUtils.deleteDirectory(new File(tree, folder));
+                }
+            }
+            BodyStore.delete(tree);
+            FileUtils.deleteDirectory(new File(tree, STATE));
+        } catch (IOException e) {
+            logger.warn("Failed to clean the working directory [{}]", tree, e);
+        }
+    }
+
+    private List<String> getStoreFolders()
+    {
+        // The top level folders in which the objects are saved when using the directory store
+        return List.of(getSpacesFolder(), getSpaceDescriptorFolder(), getPagesFolder(),
+            getContentPermissionSetsFolder(), getInternalUserFolder(), getUserImplFolder(), getGroupsFolder(),
+            getObjectsFolder(FOLDER_OBJECTS), getObjectsFolder(FOLDER_BODY_CONTENTS), FOLDER_SPACE_PAGE_TEMPLATE);
     }
 
     private static Path getExtractedPackageVersionPath(File state)
@@ -1180,7 +1275,18 @@ public class ConfluenceXMLPackage implements AutoCloseable
     {
         if (file.isDirectory()) {
             this.directory = file;
+            this.content = new DirectoryPackageContent(file);
         } else {
+            try {
+                // Read the entries in place instead of extracting the whole package, attachments included
+                this.content = new ZipPackageContent(file, this.environment.getTemporaryDirectory().toPath());
+
+                return;
+            } catch (IOException e) {
+                logger.warn("Failed to open the Confluence package [{}] as a ZIP file, extracting it instead: {}",
+                    file, ExceptionUtils.getRootCauseMessage(e));
+            }
+
             try (FileInputStream stream = new FileInputStream(file)) {
                 fromStream(stream);
             } catch (IOException e) {
@@ -1213,6 +1319,8 @@ public class ConfluenceXMLPackage implements AutoCloseable
                 FileUtils.copyInputStreamToFile(CloseShieldInputStream.wrap(zais), file);
             }
         }
+
+        this.content = new DirectoryPackageContent(this.directory);
     }
 
     /**
@@ -1429,7 +1537,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Map<Long, List<Long>> getPages()
     {
-        return this.pages;
+        return this.hierarchy.getPages();
     }
 
     /**
@@ -1438,7 +1546,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Map<Long, List<Long>> getBlogPages()
     {
-        return this.blogPages;
+        return this.hierarchy.getBlogPages();
     }
 
     /**
@@ -1459,6 +1567,45 @@ public class ConfluenceXMLPackage implements AutoCloseable
         this.workingDirectory = workingDirectory;
     }
 
+    /**
+     * @param storage how to store the objects indexed from the package in the working directory. Has no effect when
+     *     the state is restored from an existing working directory, since the storage it uses is kept.
+     * @since 9.96.0
+     */
+    public void setPackageStorage(PackageStorage storage)
+    {
+        this.storage = storage == null ? PackageStorage.DIRECTORY : storage;
+    }
+
+    /**
+     * @param indexingCacheSize the maximum size, in bytes, of the properties kept in memory while indexing the
+     *     package before being written to the working directory. 0 disables the cache.
+     * @since 9.96.0
+     */
+    public void setIndexingCacheSize(long indexingCacheSize)
+    {
+        this.indexingCacheSize = indexingCacheSize;
+    }
+
+    /**
+     * @param bodyCompression true if the bodies of the pages should be compressed in the working directory
+     * @since 9.96.0
+     */
+    public void setBodyCompression(boolean bodyCompression)
+    {
+        this.bodyCompression = bodyCompression;
+    }
+
+    /**
+     * @param indexingThreads the number of threads parsing the objects of the package while indexing it. 1 (or less)
+     *     means the package is parsed sequentially.
+     * @since 9.96.0
+     */
+    public void setIndexingThreads(int indexingThreads)
+    {
+        this.indexingThreads = indexingThreads;
+    }
+
     private void createTree()
         throws XMLStreamException, FactoryConfigurationError, IOException, ConfigurationException, FilterException,
         ConfluenceCanceledException
@@ -1467,40 +1614,42 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
         getJobStatus();
 
-        try (CountingInputStream s = new CountingInputStream(new BufferedInputStream(new FileInputStream(entities)))) {
-            XMLStreamReader xmlReader = XML_INPUT_FACTORY.createXMLStreamReader(new WithoutControlCharactersReader(s));
-
-            xmlReader.nextTag();
+        CachingConfluencePropertiesStore cache = null;
+        if (this.indexingCacheSize > 0) {
+            cache = new CachingConfluencePropertiesStore(this.store, this.indexingCacheSize);
+            this.store = cache;
+        }
 
-            long size = entities.length();
-            int steps = 100;
-            progress.pushLevelProgress(steps, this);
-            boolean inStep = false;
-            long stepSize = size / steps;
-            long nextStepPos = stepSize;
-            for (xmlReader.nextTag(); xmlReader.isStartElement(); xmlReader.nextTag()) {
-                if (!inStep) {
-                    progress.startStep(this);
-                    inStep = true;
-                }
-                String elementName = xmlReader.getLocalName();
+        try {
+            readEntities();
+            if (cache != null) {
+                // Normally already done when saving the state, but this must not depend on it
+                cache.flush();
+            }
+        } finally {
+            if (cache != null) {
+                this.store = cache.getStore();
+                logger.info("Indexing cache statistics: [{}] hits, [{}] misses, [{}] flushes", cache.getHits(),
+                    cache.getMisses(), cache.getFlushes());
+            }
+        }
+    }
 
-                if (elementName.equals("object")) {
-                    readObject(xmlReader);
-                } else {
-                    StAXUtils.skipElement(xmlReader);
-                }
-                long pos = s.getByteCount();
-                if (pos >= nextStepPos) {
-                    progress.endStep(this);
-                    nextStepPos += stepSize;
-                    inStep = false;
-                }
+    private void readEntities()
+        throws XMLStreamException, FactoryConfigurationError, IOException, ConfigurationException, FilterException,
+        ConfluenceCanceledException
+    {
+        try (CountingInputStream s = new CountingInputStream(new BufferedInputStream(content.open(FILE_ENTITIES)))) {
+            progress.pushLevelProgress(INDEXING_STEPS, this);
+            IndexingProgress indexingProgress = new IndexingProgress(s, content.getSize(FILE_ENTITIES));
+            if (this.indexingThreads > 1) {
+                readObjectsConcurrently(new WithoutControlCharactersReader(s), indexingProgress);
+            } else {
+                readObjects(new WithoutControlCharactersReader(s), indexingProgress);
             }
+            saveDeferredChildren();
             cleanUpUnwantedSpaces();
-            if (inStep) {
-                progress.endStep(this);
-            }
+            indexingProgress.end();
             try {
                 saveState();
             } catch (IllegalAccessException | IOException e) {
@@ -1510,6 +1659,94 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
+    private void readObjects(InputStream stream, IndexingProgress indexingProgress)
+        throws XMLStreamException, ConfigurationException, FilterException, ConfluenceCanceledException
+    {
+        XMLStreamReader xmlReader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+
+        xmlReader.nextTag();
+
+        for (xmlReader.nextTag(); xmlReader.isStartElement(); xmlReader.nextTag()) {
+            indexingProgress.startStep();
+            String elementName = xmlReader.getLocalName();
+
+            if (elementName.equals("object")) {
+                readObject(xmlReader);
+            } else {
+                StAXUtils.skipElement(xmlReader);
+            }
+            indexingProgress.update();
+        }
+    }
+
+    /**
+     * Parse the objects in a pool of threads while the main thread splits the document and saves the parsed objects
+     * in document order, so that the result is the same as when reading the objects sequentially.
+     */
+    private void readObjectsConcurrently(InputStream stream, IndexingProgress indexingProgress)
+        throws IOException, XMLStreamException, ConfigurationException, FilterException, ConfluenceCanceledException
+    {
+        EntitiesSplitter splitter = new EntitiesSplitter(stream);
+        ExecutorService executor = Executors.newFixedThreadPool(this.indexingThreads);
+        Deque<Future<ParsedObject>> pending = new ArrayDeque<>();
+        int maxPending = this.indexingThreads * PENDING_OBJECTS_PER_THREAD;
+        try {
+            for (byte[] fragment = splitter.next(); fragment != null; fragment = splitter.next()) {
+                String encoding = splitter.getEncoding();
+                pending.add(executor.submit(() -> parseObject(fragment, encoding)));
+                if (pending.size() >= maxPending) {
+                    readObject(pending.poll(), indexingProgress);
+                }
+            }
+            while (!pending.isEmpty()) {
+                readObject(pending.poll(), indexingProgress);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ParsedObject parseObject(byte[] fragment, String encoding) throws XMLStreamException, FilterException
+    {
+        XMLStreamReader xmlReader =
+            OBJECT_INPUT_FACTORY.get().createXMLStreamReader(new ByteArrayInputStream(fragment), encoding);
+        try {
+            xmlReader.nextTag();
+            return parseObject(xmlReader);
+        } finally {
+            xmlReader.close();
+        }
+    }
+
+    private void readObject(Future<ParsedObject> future, IndexingProgress indexingProgress)
+        throws XMLStreamException, ConfigurationException, FilterException, ConfluenceCanceledException
+    {
+        getCancelledJob();
+        indexingProgress.startStep();
+
+        ParsedObject object;
+        try {
+            object = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FilterException("Interrupted while indexing the package", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XMLStreamException) {
+                throw (XMLStreamException) cause;
+            }
+            if (cause instanceof FilterException) {
+                throw (FilterException) cause;
+            }
+            throw new FilterException("Failed to parse an object of the package", cause);
+        }
+
+        if (object != null) {
+            readObject(object);
+        }
+        indexingProgress.update();
+    }
+
     /**
      * @return the revisions of a content by id.
      * @param pageProperties The page for which to get the revisions
@@ -1520,14 +1757,32 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Map<Long, ConfluenceProperties> getRevisionsById(ConfluenceProperties pageProperties,
         boolean includeIgnored, boolean throwOnError) throws ConfigurationException
+    {
+        return getRevisionsById(pageProperties, includeIgnored, throwOnError, Collections.emptyMap());
+    }
+
+    /**
+     * @return the revisions of a content by id.
+     * @param pageProperties The page for which to get the revisions
+     * @param includeIgnored Whether to include deleted or draft pages
+     * @param throwOnError Whether to throw if something wrong happens
+     * @param loadedRevisions the revisions which were already loaded, by id, and don't need to be read again
+     * @throws ConfigurationException if something wrong happens
+     * @since 9.96.0
+     */
+    public Map<Long, ConfluenceProperties> getRevisionsById(ConfluenceProperties pageProperties,
+        boolean includeIgnored, boolean throwOnError, Map<Long, ConfluenceProperties> loadedRevisions)
+        throws ConfigurationException
     {
         // Note: revisions can appear several times in the list
         List<Long> revisionIds = getLongList(pageProperties, ConfluenceXMLPackage.KEY_PAGE_REVISIONS);
         Map<Long, ConfluenceProperties> revisionsById = new HashMap<>(revisionIds.size());
         for (Long revisionId : revisionIds) {
-            ConfluenceProperties revisionProperties = null;
+            ConfluenceProperties revisionProperties = loadedRevisions.get(revisionId);
             try {
-                revisionProperties = getPageProperties(revisionId, false);
+                if (revisionProperties == null) {
+                    revisionProperties = getPageProperties(revisionId, false);
+                }
                 if (revisionProperties == null) {
                     this.logger.warn("Can't find page revision with id [{}]", revisionId);
                 }
@@ -1557,6 +1812,14 @@ public class ConfluenceXMLPackage implements AutoCloseable
         if (!this.tree.isDirectory() && !this.tree.mkdir()) {
             throw new IOException("Could not create the working directory to extract the Confluence package");
         }
+
+        if (this.store == null) {
+            ConfluencePropertiesStore objectStore = this.storage == PackageStorage.SINGLE_FILE
+                ? new SingleFileConfluencePropertiesStore(this.tree)
+                : new DirectoryConfluencePropertiesStore(this.tree);
+            this.store = new BodyConfluencePropertiesStore(objectStore, new BodyStore(this.tree, this.bodyCompression),
+                KEY_PAGE_BODY);
+        }
     }
 
     private void getJobStatus()
@@ -1610,89 +1873,120 @@ public class ConfluenceXMLPackage implements AutoCloseable
     {
         getCancelledJob();
 
-        String type = xmlReader.getAttributeValue(null, ATTRIBUTE_CLASS);
-
-        if (type != null) {
-            switch (type) {
-                case OBJECT_TYPE_PAGE:
-                    readPageObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_SPACE:
-                    readSpaceObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_SPACE_DESCRIPTION:
-                    readSpaceDescriptorObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_INTERNAL_USER:
-                    readInternalUserObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_CONFLUENCE_USER_IMPL:
-                    readUserImplObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_INTERNAL_GROUP:
-                    readGroupObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_HIBERNATE_MEMBERSHIP:
-                    readMembershipObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_BODY_CONTENT:
-                    readBodyContentObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_PAGE_TEMPLATE:
-                    readPageTemplateObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_SPACE_PERMISSION:
-                    readSpacePermissionObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_CONTENT_PERMISSION:
-                    readContentPermissionObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_CONTENT_PERMISSION_SET:
-                    readContentPermissionSetObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_ATTACHMENT:
-                    readAttachmentObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_COMMENT:
-                    readCommentObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_BLOG_POST:
-                    readBlogPostObject(xmlReader);
-                    break;
-                case OBJECT_TYPE_LABELLING:
-                    readLabellingObject(xmlReader);
-                    break;
-                default:
-                    readGenericObject(xmlReader);
-            }
+        ParsedObject object = parseObject(xmlReader);
+        if (object != null) {
+            readObject(object);
         }
     }
 
-    private void getCancelledJob() throws ConfluenceCanceledException
+    /**
+     * Read the properties of the object at the current position of the reader. This does not depend on (nor modify)
+     * the state of the package, so it can be done concurrently.
+     */
+    private ParsedObject parseObject(XMLStreamReader xmlReader) throws XMLStreamException, FilterException
     {
-        if (this.jobStatus != null && this.jobStatus.isCanceled()) {
-            throw new ConfluenceCanceledException();
+        String type = xmlReader.getAttributeValue(null, ATTRIBUTE_CLASS);
+
+        if (type == null) {
+            return null;
+        }
+
+        ConfluenceProperties properties = new ConfluenceProperties();
+        String idProperty = KEY_ID;
+        switch (type) {
+            case OBJECT_TYPE_PAGE:
+            case OBJECT_TYPE_BLOG_POST:
+                setClass(OBJECT_TYPE_PAGE, properties);
+                break;
+            case OBJECT_TYPE_SPACE:
+                setClass(OBJECT_TYPE_SPACE, properties);
+                break;
+            case OBJECT_TYPE_SPACE_DESCRIPTION:
+                setClass(OBJECT_TYPE_SPACE_DESCRIPTION, properties);
+                break;
+            case OBJECT_TYPE_CONFLUENCE_USER_IMPL:
+                idProperty = KEY;
+                break;
+            case OBJECT_TYPE_BODY_CONTENT:
+                properties.disableListDelimiter();
+                break;
+            default:
+                // Nothing to prepare
         }
+
+        String id = readObjectProperties(xmlReader, properties, idProperty);
+
+        return new ParsedObject(type, properties, id);
     }
 
-    private void readGenericObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readObject(ParsedObject object) throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-        long id = readObjectProperties(xmlReader, properties);
-        saveObjectProperties(properties, Long.toString(id));
+        ConfluenceProperties properties = object.properties;
+        switch (object.type) {
+            case OBJECT_TYPE_PAGE:
+                readPageObject(properties, object.getLongId(), false);
+                break;
+            case OBJECT_TYPE_SPACE:
+                readSpaceObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_SPACE_DESCRIPTION:
+                readSpaceDescriptorObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_INTERNAL_USER:
+                readInternalUserObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_CONFLUENCE_USER_IMPL:
+                readUserImplObject(properties, object.id);
+                break;
+            case OBJECT_TYPE_INTERNAL_GROUP:
+                readGroupObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_HIBERNATE_MEMBERSHIP:
+                readMembershipObject(properties);
+                break;
+            case OBJECT_TYPE_BODY_CONTENT:
+                readBodyContentObject(properties);
+                break;
+            case OBJECT_TYPE_PAGE_TEMPLATE:
+                readPageTemplateObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_SPACE_PERMISSION:
+                readSpacePermissionObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_CONTENT_PERMISSION:
+                readContentPermissionObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_CONTENT_PERMISSION_SET:
+                readContentPermissionSetObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_ATTACHMENT:
+                readAttachmentObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_COMMENT:
+                readCommentObject(properties, object.getLongId());
+                break;
+            case OBJECT_TYPE_BLOG_POST:
+                readPageObject(properties, object.getLongId(), true);
+                break;
+            case OBJECT_TYPE_LABELLING:
+                readLabellingObject(properties, object.getLongId());
+                break;
+            default:
+                readGenericObject(properties, object.getLongId());
+        }
     }
 
-    private long readObjectProperties(XMLStreamReader xmlReader, ConfluenceProperties properties)
-        throws XMLStreamException, FilterException
+    private void getCancelledJob() throws ConfluenceCanceledException
     {
-        return Long.parseLong(readObjectProperties(xmlReader, properties, KEY_ID));
+        if (this.jobStatus != null && this.jobStatus.isCanceled()) {
+            throw new ConfluenceCanceledException();
+        }
     }
 
-    private String readImplObjectProperties(XMLStreamReader xmlReader, ConfluenceProperties properties)
-        throws XMLStreamException, FilterException
+    private void readGenericObject(ConfluenceProperties properties, long id)
+        throws FilterException, ConfigurationException
     {
-        return readObjectProperties(xmlReader, properties, KEY);
+        saveObjectProperties(properties, Long.toString(id));
     }
 
     private String readObjectProperties(XMLStreamReader xmlReader, ConfluenceProperties properties, String idProperty)
@@ -1731,13 +2025,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return id;
     }
 
-    private void readAttachmentObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readAttachmentObject(ConfluenceProperties properties, long attachmentId)
+        throws FilterException, ConfigurationException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long attachmentId = readObjectProperties(xmlReader, properties);
-
         Long pageId = getAttachmentPageId(properties);
 
         if (pageId != null) {
@@ -1745,13 +2035,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
-    private void readCommentObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readCommentObject(ConfluenceProperties properties, long commentId)
+        throws FilterException, ConfigurationException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long commentId = readObjectProperties(xmlReader, properties);
-
         saveObjectProperties(properties, Long.toString(commentId));
 
         saveInParent(properties, KEY_COMMENT_CONTAINERCONTENT, OBJECT_TYPE_PAGE, KEY_PAGE_COMMENTS, commentId);
@@ -1764,18 +2050,66 @@ public class ConfluenceXMLPackage implements AutoCloseable
         if (parentId == null) {
             return;
         }
-        ConfluenceProperties parentProperties = getParentObjectByType(parentType, parentId, false);
-        if (parentProperties == null) {
-            return;
-        }
-        List<Long> childIds = getLongList(parentProperties, childrenInParentField);
-        if (childIds == null) {
-            childIds = new ArrayList<>();
+        String parentPath = getParentObjectPath(parentType, parentId);
+        if (parentPath != null) {
+            this.deferredChildren.add(parentPath, childrenInParentField, childId);
         }
-        if (!childIds.contains(childId)) {
-            childIds.add(childId);
-            parentProperties.setProperty(childrenInParentField, childIds);
+    }
+
+    /**
+     * Add the children collected while reading the package to their parents. This is done once per parent, in the
+     * order in which children were read, skipping the ones already listed in the parent.
+     */
+    private void saveDeferredChildren() throws ConfigurationException
+    {
+        for (String parentPath : this.deferredChildren.getParents()) {
+            ConfluenceProperties parentProperties = this.store.get(parentPath, true);
+            for (Map.Entry<String, long[]> entry : this.deferredChildren.getChildren(parentPath).entrySet()) {
+                String field = entry.getKey();
+                List<Long> childIds = getLongList(parentProperties, field);
+                childIds = childIds == null ? new ArrayList<>() : new ArrayList<>(childIds);
+                // Group members are not deduplicated
+                boolean unique = !field.equals(KEY_GROUP_MEMBERUSERS) && !field.equals(KEY_GROUP_MEMBERGROUPS);
+                Set<Long> seen = unique ? new HashSet<>(childIds) : null;
+                for (long childId : entry.getValue()) {
+                    if (seen == null || seen.add(childId)) {
+                        childIds.add(childId);
+                    }
+                }
+                parentProperties.setProperty(field, childIds);
+            }
             parentProperties.save();
+            // The parent might only exist as a stub holding its children
+            this.objectLocations.add(parentPath);
+        }
+        this.deferredChildren.clear();
+    }
+
+    private String getParentObjectPath(String type, long id) throws ConfigurationException
+    {
+        switch (type) {
+            case OBJECT_TYPE_SPACE:
+                return getSpacePropertiesFile(id);
+            case OBJECT_TYPE_SPACE_DESCRIPTION:
+                return getSpaceDescriptorPropertiesFile(id);
+            case OBJECT_TYPE_CONTENT_ENTITY_OBJECT:
+                return getContentEntityPathForBodyContent(id);
+            case OBJECT_TYPE_PAGE:
+            case OBJECT_TYPE_BLOG_POST:
+                return getPagePropertiesFile(id);
+            case OBJECT_TYPE_CONTENT_PERMISSION_SET:
+                return getContentPermissionSetPropertiesFile(id);
+            case OBJECT_TYPE_COMMENT:
+                return getObjectPropertiesFile(FOLDER_OBJECTS, Long.toString(id));
+            case OBJECT_TYPE_PAGE_TEMPLATE:
+                String templatePath = getSpacePageTemplatePropertiesFile(id);
+                return this.store.exists(templatePath) ? templatePath : null;
+            default:
+                logger.error(
+                    "Unexpected type [{}] for parent object id [{}]."
+                    + "This is a bug in confluence-xml, please report.",
+                    type, id);
+                return null;
         }
     }
 
@@ -1842,25 +2176,28 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     private ConfluenceProperties getContentEntityPropertiesForBodyContent(long id) throws ConfigurationException
     {
-        ConfluenceProperties properties = getPageProperties(id, false);
-
-        if (properties == null) {
-            properties = getSpaceDescriptorProperties(id, false);
-        }
+        String objectId = Long.toString(id);
+        String path = getContentEntityPathForBodyContent(id);
+        boolean lookForBody = !path.equals(getObjectPropertiesFile(FOLDER_BODY_CONTENTS, objectId));
 
-        if (properties == null) {
-            properties = getCommentProperties(id, false);
-        }
+        return getObjectProperties(objectId, path, true, lookForBody);
+    }
 
-        if (properties == null) {
-            properties = getSpacePageTemplateProperties(id, false);
+    private String getContentEntityPathForBodyContent(long id) throws ConfigurationException
+    {
+        if (getPageProperties(id, false) != null) {
+            return getPagePropertiesFile(id);
         }
 
-        if (properties == null) {
-            properties = getBodyContentProperties(Long.toString(id), true);
+        String objectId = Long.toString(id);
+        for (String path : List.of(getSpaceDescriptorPropertiesFile(id),
+            getObjectPropertiesFile(FOLDER_OBJECTS, objectId), getSpacePageTemplatePropertiesFile(id))) {
+            if (this.store.exists(path)) {
+                return path;
+            }
         }
 
-        return properties;
+        return getObjectPropertiesFile(FOLDER_BODY_CONTENTS, objectId);
     }
 
     private Long getAttachmentPageId(ConfluenceProperties properties)
@@ -1895,23 +2232,15 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
         }
         Predicate<Long> spaceIdNotToImport = spaceId -> spaceId != spaceIdToImport;
-        pages.keySet().removeIf(spaceIdNotToImport);
-        blogPages.keySet().removeIf(spaceIdNotToImport);
-        homePages.keySet().removeIf(spaceIdNotToImport);
-        orphans.keySet().removeIf(spaceIdNotToImport);
+        this.hierarchy.removeSpaces(spaceIdNotToImport);
         pagesBySpaceAndLowerTitle.keySet().removeIf(spaceIdNotToImport);
         casePreservingSpacesByKey.keySet().removeIf(spaceKey -> !spaceKey.equals(spaceKeyToImport));
         lowerSpacesByKey.keySet().removeIf(spaceKey -> !spaceKey.equalsIgnoreCase(spaceKeyToImport));
     }
 
-    private void readSpaceObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readSpaceObject(ConfluenceProperties properties, long spaceId)
+        throws FilterException, ConfigurationException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        setClass(OBJECT_TYPE_SPACE, properties);
-
-        long spaceId = readObjectProperties(xmlReader, properties);
         String spaceKey = properties.getString(KEY_SPACE_KEY);
         if (spaceKeyToImport != null) {
             if (spaceKeyToImport.equals(spaceKey)) {
@@ -1931,7 +2260,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
         maybeUpdateHomePage(properties, spaceId);
 
-        this.pages.computeIfAbsent(spaceId, k -> new LinkedList<>());
+        this.hierarchy.addSpace(spaceId);
     }
 
     private void maybeUpdateHomePage(ConfluenceProperties properties, long spaceId) throws ConfigurationException
@@ -1940,7 +2269,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
         if (homePageId == null) {
             return;
         }
-        Long formerHome = homePages.get(spaceId);
+        Long formerHome = this.hierarchy.getHomePage(spaceId);
         if (!homePageId.equals(formerHome)) {
             ConfluenceProperties homePageProperties = getPageProperties(homePageId, true);
             homePageProperties.setProperty(KEY_PAGE_HOMEPAGE, true);
@@ -1950,20 +2279,16 @@ public class ConfluenceXMLPackage implements AutoCloseable
                 if (formerHomePageProperties != null) {
                     formerHomePageProperties.clearProperty(KEY_PAGE_HOMEPAGE);
                     formerHomePageProperties.save();
-                    orphans.computeIfAbsent(spaceId, k -> new ArrayList<>()).add(formerHome);
+                    this.hierarchy.addOrphan(spaceId, formerHome);
                 }
             }
-            setHomePage(spaceId, homePageId);
+            this.hierarchy.setHomePage(spaceId, homePageId);
         }
     }
 
-    private void readPageTemplateObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readPageTemplateObject(ConfluenceProperties properties, long templateId)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long templateId = readObjectProperties(xmlReader, properties);
-
         Long spaceId = properties.getLong(KEY_PAGE_SPACE, null);
         if (spaceId != null && !shouldIgnoreSpace(spaceId)) {
             saveSpacePageTemplateProperties(properties, spaceId, templateId);
@@ -1972,13 +2297,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
-    private void readSpacePermissionObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readSpacePermissionObject(ConfluenceProperties properties, long permissionId)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long permissionId = readObjectProperties(xmlReader, properties);
-
         Long spaceId = properties.getLong(KEY_PAGE_SPACE, null);
         if (spaceId != null && !shouldIgnoreSpace(spaceId)) {
             saveSpacePermissionProperties(properties, spaceId, permissionId);
@@ -1987,13 +2308,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
-    private void readContentPermissionObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readContentPermissionObject(ConfluenceProperties properties, long permissionId)
+        throws FilterException, ConfigurationException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long permissionId = readObjectProperties(xmlReader, properties);
-
         Long contentPermissionSetId = properties.getLong(KEY_CONTENT_PERMISSION_OWNING_SET, null);
         if (contentPermissionSetId != null) {
             saveContentPermissionProperties(properties, contentPermissionSetId, permissionId);
@@ -2002,13 +2319,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
-    private void readContentPermissionSetObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
+    private void readContentPermissionSetObject(ConfluenceProperties properties, long permissionSetId)
+        throws FilterException, ConfigurationException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long permissionSetId = readObjectProperties(xmlReader, properties);
-
         saveContentPermissionSetProperties(properties, permissionSetId);
 
         Long owningContentId = properties.getLong(KEY_CONTENT_PERMISSION_SET_OWNING_CONTENT, null);
@@ -2018,14 +2331,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         }
     }
 
-    private void readBodyContentObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readBodyContentObject(ConfluenceProperties properties)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-        properties.disableListDelimiter();
-
-        readObjectProperties(xmlReader, properties);
-
         // We save properties of the body content object in the corresponding page object.
         Long parentId = properties.getLong(KEY_BODY_CONTENT_CONTENT, null);
         if (parentId != null) {
@@ -2065,15 +2373,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         properties.setProperty(attributeName + PROPERTY_CLASS_SUFFIX, className);
     }
 
-    private void readSpaceDescriptorObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readSpaceDescriptorObject(ConfluenceProperties properties, long sdId)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        setClass(OBJECT_TYPE_SPACE_DESCRIPTION, properties);
-
-        long sdId = readObjectProperties(xmlReader, properties);
-
         Long spaceId = properties.getLong(KEY_PAGE_SPACE, null);
         if (spaceId != null && shouldIgnoreSpace(spaceId)) {
             return;
@@ -2082,27 +2384,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
         saveSpaceDescriptorProperties(properties, sdId);
     }
 
-    private void readPageObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
-    {
-        readPageObject(xmlReader, false);
-    }
-
-    private void readBlogPostObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
-    {
-        readPageObject(xmlReader, true);
-    }
-
-    private void readPageObject(XMLStreamReader xmlReader, boolean isBlog)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readPageObject(ConfluenceProperties properties, long pageId, boolean isBlog)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        setClass(OBJECT_TYPE_PAGE, properties);
-
-        long pageId = readObjectProperties(xmlReader, properties);
-
         Long spaceId = properties.getLong(KEY_PAGE_SPACE, null);
         if (spaceId != null && shouldIgnoreSpace(spaceId)) {
             return;
@@ -2135,15 +2419,12 @@ public class ConfluenceXMLPackage implements AutoCloseable
 
     private void registerPage(boolean isBlog, ConfluenceProperties properties, long pageId, long spaceId)
     {
-        Set<Long> missingParentsForSpace = missingParents.get(spaceId);
-        if (missingParentsForSpace != null) {
-            missingParentsForSpace.remove(pageId);
-        }
+        this.hierarchy.removeMissingParent(spaceId, pageId);
 
         if (!isBlog) {
             handleHomePageAndOrphans(properties, spaceId, pageId);
         }
-        (isBlog ? this.blogPages : this.pages).computeIfAbsent(spaceId, k -> new LinkedList<>()).add(pageId);
+        this.hierarchy.addPage(spaceId, pageId, isBlog);
         String title = properties.getString(KEY_PAGE_TITLE, null);
         if (title != null) {
             // FIXME: we could probably reuse the already existing lowerTitle property, but I don't think we can rely on
@@ -2156,34 +2437,21 @@ public class ConfluenceXMLPackage implements AutoCloseable
     {
         Long parent = properties.getLong(KEY_PAGE_PARENT, null);
         if (parent == null) {
-            Long homePage = homePages.get(spaceId);
+            Long homePage = this.hierarchy.getHomePage(spaceId);
             if (homePage == null || !homePage.equals(pageId)) {
-                orphans.computeIfAbsent(spaceId, k -> new ArrayList<>()).add(pageId);
+                this.hierarchy.addOrphan(spaceId, pageId);
             }
         } else {
-            pageChildren.computeIfAbsent(parent, k -> new ArrayList<>()).add(pageId);
-            if (!this.pages.getOrDefault(spaceId, Collections.emptyList()).contains(parent)) {
-                missingParents.computeIfAbsent(spaceId, k -> new LinkedHashSet<>()).add(parent);
+            this.hierarchy.addChild(parent, pageId);
+            if (!this.hierarchy.isPage(spaceId, parent)) {
+                this.hierarchy.addMissingParent(spaceId, parent);
             }
         }
     }
 
-    private void setHomePage(Long spaceId, long pageId)
+    private void readLabellingObject(ConfluenceProperties properties, long labellingId)
+        throws FilterException, ConfigurationException
     {
-        homePages.put(spaceId, pageId);
-        Collection<Long> spaceOrphans = orphans.get(spaceId);
-        if (spaceOrphans != null) {
-            spaceOrphans.remove(pageId);
-        }
-    }
-
-    private void readLabellingObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, FilterException, ConfigurationException
-    {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long labellingId = readObjectProperties(xmlReader, properties);
-
         // Since Confluence 8.0, the labellings are not part of the Page Object anymore (most probably because it can be
         // associated to a space or a PageTemplate object too).
         Long parentId = properties.getLong(KEY_LABELLING_CONTENT, null);
@@ -2207,78 +2475,53 @@ public class ConfluenceXMLPackage implements AutoCloseable
                 return;
             }
 
-            ConfluenceProperties parent = getParentObjectByType(parentClass, parentId, false);
-
-            if (parent != null && !parent.getList(KEY_LABELLINGS).contains(labellingId)) {
-                parent.addProperty(KEY_LABELLINGS, labellingId);
-                parent.save();
+            String parentPath = getParentObjectPath(parentClass, parentId);
+            if (parentPath != null) {
+                this.deferredChildren.add(parentPath, KEY_LABELLINGS, labellingId);
             }
         }
 
         saveObjectProperties(properties, Long.toString(labellingId));
     }
 
-    private void readInternalUserObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readInternalUserObject(ConfluenceProperties properties, long pageId)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long pageId = readObjectProperties(xmlReader, properties);
-
         saveObjectProperties(FOLDER_INTERNALUSER, properties, Long.toString(pageId));
     }
 
-    private void readUserImplObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readUserImplObject(ConfluenceProperties properties, String key)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        String key = readImplObjectProperties(xmlReader, properties);
-
         saveObjectProperties(FOLDER_USERIMPL, properties, key);
     }
 
-    private void readGroupObject(XMLStreamReader xmlReader)
-        throws XMLStreamException, ConfigurationException, FilterException
+    private void readGroupObject(ConfluenceProperties properties, long pageId)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        long pageId = readObjectProperties(xmlReader, properties);
-
         saveObjectProperties(FOLDER_GROUP, properties, Long.toString(pageId));
     }
 
-    private void readMembershipObject(XMLStreamReader xmlReader)
-        throws ConfigurationException, XMLStreamException, FilterException
+    private void readMembershipObject(ConfluenceProperties properties)
+        throws ConfigurationException, FilterException
     {
-        ConfluenceProperties properties = new ConfluenceProperties();
-
-        readObjectProperties(xmlReader, properties);
-
         Long parentGroup = properties.getLong("parentGroup", null);
 
         if (parentGroup != null) {
-            ConfluenceProperties groupProperties = getGroupProperties(parentGroup);
+            String groupPath = getObjectPropertiesFile(FOLDER_GROUP, Long.toString(parentGroup));
+            this.deferredChildren.touch(groupPath);
 
             Long userMember = properties.getLong("userMember", null);
 
             if (userMember != null) {
-                List<Long> users =
-                    new ArrayList<>(getLongList(groupProperties, KEY_GROUP_MEMBERUSERS, Collections.emptyList()));
-                users.add(userMember);
-                groupProperties.setProperty(KEY_GROUP_MEMBERUSERS, users);
+                this.deferredChildren.add(groupPath, KEY_GROUP_MEMBERUSERS, userMember);
             }
 
             Long groupMember = properties.getLong("groupMember", null);
 
             if (groupMember != null) {
-                List<Long> groups = new ArrayList<>(
-                    getLongList(groupProperties, KEY_GROUP_MEMBERGROUPS, Collections.emptyList()));
-                groups.add(groupMember);
-                groupProperties.setProperty(KEY_GROUP_MEMBERGROUPS, groups);
+                this.deferredChildren.add(groupPath, KEY_GROUP_MEMBERGROUPS, groupMember);
             }
-
-            saveObjectProperties(FOLDER_GROUP, groupProperties, Long.toString(parentGroup));
         }
     }
 
@@ -2388,102 +2631,97 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return set;
     }
 
-    private File getSpacesFolder()
+    private static String getPath(String folder, String name)
     {
-        return new File(this.tree, "spaces");
+        return folder + ConfluencePropertiesStore.SEPARATOR + name;
     }
 
-    private File getContentPermissionSetsFolder()
+    private String getSpacesFolder()
     {
-        return new File(this.tree, KEY_CONTENT_CONTENT_PERMISSION_SETS);
+        return "spaces";
     }
 
-    private File getSpaceFolder(long spaceId)
+    private String getContentPermissionSetsFolder()
     {
-        return new File(getSpacesFolder(), String.valueOf(spaceId));
+        return KEY_CONTENT_CONTENT_PERMISSION_SETS;
     }
 
-    private File getSpaceDescriptorFolder()
+    private String getSpaceFolder(long spaceId)
     {
-        return new File(this.tree, "spacedescriptors");
+        return getPath(getSpacesFolder(), String.valueOf(spaceId));
     }
 
-    private File getPagesFolder()
+    private String getSpaceDescriptorFolder()
     {
-        return new File(this.tree, "pages");
+        return "spacedescriptors";
     }
 
-    private File getObjectsFolder(String folderName)
+    private String getPagesFolder()
     {
-        return new File(this.tree, escapeWindowsFolderName(folderName));
+        return "pages";
     }
 
-    private File getObjectFolder(File folder, String objectId)
+    private String getObjectsFolder(String folderName)
     {
-        return new File(folder, escapeWindowsFolderName(objectId));
+        return escapeWindowsFolderName(folderName);
     }
 
-    private File getInternalUserFolder()
+    private String getInternalUserFolder()
     {
         return getObjectsFolder(FOLDER_INTERNALUSER);
     }
 
-    private File getUserImplFolder()
+    private String getUserImplFolder()
     {
         return getObjectsFolder(FOLDER_USERIMPL);
     }
 
-    private File getGroupsFolder()
+    private String getGroupsFolder()
     {
         return getObjectsFolder(FOLDER_GROUP);
     }
 
-    private File getSpaceDescriptorFolder(long spaceDescriptorId)
+    private String getSpaceDescriptorFolder(long spaceDescriptorId)
     {
-        return new File(getSpaceDescriptorFolder(), String.valueOf(spaceDescriptorId));
+        return getPath(getSpaceDescriptorFolder(), String.valueOf(spaceDescriptorId));
     }
 
-    private File getPageFolder(long pageId)
+    private String getPageFolder(long pageId)
     {
-        return new File(getPagesFolder(), String.valueOf(pageId));
+        return getPath(getPagesFolder(), String.valueOf(pageId));
     }
 
-    private File getObjectFolder(String folderName, String objectId)
+    private String getObjectFolder(String folderName, String objectId)
     {
-        return new File(getObjectsFolder(folderName), escapeWindowsFolderName(objectId));
+        return getPath(getObjectsFolder(folderName), escapeWindowsFolderName(objectId));
     }
 
-    private File getSpaceDescriptorPropertiesFile(long spaceDescriptorId)
+    private String getSpaceDescriptorPropertiesFile(long spaceDescriptorId)
     {
-        File folder = getSpaceDescriptorFolder(spaceDescriptorId);
+        String folder = getSpaceDescriptorFolder(spaceDescriptorId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getPagePropertiesFile(long pageId)
+    private String getPagePropertiesFile(long pageId)
     {
-        File folder = getPageFolder(pageId);
+        String folder = getPageFolder(pageId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getTaskPropertiesFile(long pageId, long taskId)
+    private String getTaskPropertiesFile(long pageId, long taskId)
     {
-        File folder = getPageFolder(pageId);
+        String folder = getPageFolder(pageId);
 
-        return new File(new File(folder, "tasks"), String.valueOf(taskId));
+        return getPath(getPath(folder, "tasks"), String.valueOf(taskId));
     }
 
-    private File getObjectPropertiesFile(File folder, String propertyId)
+    private String getObjectPropertiesFile(String folderName, String propertyId)
     {
-        return new File(getObjectFolder(folder, propertyId), PROPERTIES_FILENAME);
-    }
-
-    private File getObjectPropertiesFile(String folderName, String propertyId)
-    {
-        File folder = getObjectFolder(folderName, propertyId);
+        String folder = getObjectFolder(folderName, propertyId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
     /**
@@ -2492,12 +2730,12 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Collection<Long> getAttachments(long pageId)
     {
-        File folder = getAttachmentsFolder(pageId);
+        String folder = getAttachmentsFolder(pageId);
 
-        Collection<Long> attachments;
-        if (folder.exists()) {
-            String[] attachmentFolders = folder.list();
+        Collection<String> attachmentFolders = this.store.list(folder);
 
+        Collection<Long> attachments;
+        if (!attachmentFolders.isEmpty()) {
             attachments = new TreeSet<>();
             for (String attachmentIdString : attachmentFolders) {
                 if (NumberUtils.isCreatable(attachmentIdString)) {
@@ -2511,87 +2749,87 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return attachments;
     }
 
-    private File getAttachmentsFolder(long pageId)
+    private String getAttachmentsFolder(long pageId)
     {
-        return new File(getPageFolder(pageId), ATTACHMENTS);
+        return getPath(getPageFolder(pageId), ATTACHMENTS);
     }
 
-    private File getSpacePermissionFolder(long spaceId)
+    private String getSpacePermissionFolder(long spaceId)
     {
-        return new File(getSpaceFolder(spaceId), FOLDER_SPACE_PERMISSIONS);
+        return getPath(getSpaceFolder(spaceId), FOLDER_SPACE_PERMISSIONS);
     }
 
-    private File getContentPermissionSetFolder(long permissionSetId)
+    private String getContentPermissionSetFolder(long permissionSetId)
     {
-        return new File(getContentPermissionSetsFolder(), String.valueOf(permissionSetId));
+        return getPath(getContentPermissionSetsFolder(), String.valueOf(permissionSetId));
     }
 
-    private File getContentPermissionFolder(long permissionSetId)
+    private String getContentPermissionFolder(long permissionSetId)
     {
-        return new File(getContentPermissionSetFolder(permissionSetId), String.valueOf(permissionSetId));
+        return getPath(getContentPermissionSetFolder(permissionSetId), String.valueOf(permissionSetId));
     }
 
-    private File getAttachmentFolder(long pageId, long attachmentId)
+    private String getAttachmentFolder(long pageId, long attachmentId)
     {
-        return new File(getAttachmentsFolder(pageId), String.valueOf(attachmentId));
+        return getPath(getAttachmentsFolder(pageId), String.valueOf(attachmentId));
     }
 
-    private File getSpacePageTemplateFolder(long templateId)
+    private String getSpacePageTemplateFolder(long templateId)
     {
-        return new File(new File(this.tree, FOLDER_SPACE_PAGE_TEMPLATE), String.valueOf(templateId));
+        return getPath(FOLDER_SPACE_PAGE_TEMPLATE, String.valueOf(templateId));
     }
 
-    private File getSpacePermissionFolder(long spaceId, long permissionId)
+    private String getSpacePermissionFolder(long spaceId, long permissionId)
     {
-        return new File(getSpacePermissionFolder(spaceId), String.valueOf(permissionId));
+        return getPath(getSpacePermissionFolder(spaceId), String.valueOf(permissionId));
     }
 
-    private File getContentPermissionFolder(long permissionSetId, long permissionId)
+    private String getContentPermissionFolder(long permissionSetId, long permissionId)
     {
-        return new File(getContentPermissionFolder(permissionSetId), String.valueOf(permissionId));
+        return getPath(getContentPermissionFolder(permissionSetId), String.valueOf(permissionId));
     }
 
-    private File getAttachmentPropertiesFile(long pageId, long attachmentId)
+    private String getAttachmentPropertiesFile(long pageId, long attachmentId)
     {
-        File folder = getAttachmentFolder(pageId, attachmentId);
+        String folder = getAttachmentFolder(pageId, attachmentId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getSpacePageTemplatePropertiesFile(long templateId)
+    private String getSpacePageTemplatePropertiesFile(long templateId)
     {
-        File folder = getSpacePageTemplateFolder(templateId);
+        String folder = getSpacePageTemplateFolder(templateId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
 
-    private File getSpacePermissionPropertiesFile(long spaceId, long permissionId)
+    private String getSpacePermissionPropertiesFile(long spaceId, long permissionId)
     {
-        File folder = getSpacePermissionFolder(spaceId, permissionId);
+        String folder = getSpacePermissionFolder(spaceId, permissionId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getContentPermissionSetPropertiesFile(long permissionSetId)
+    private String getContentPermissionSetPropertiesFile(long permissionSetId)
     {
-        File folder = getContentPermissionSetFolder(permissionSetId);
+        String folder = getContentPermissionSetFolder(permissionSetId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getContentPermissionPropertiesFile(long permissionSetId, long permissionId)
+    private String getContentPermissionPropertiesFile(long permissionSetId, long permissionId)
     {
-        File folder = getContentPermissionFolder(permissionSetId, permissionId);
+        String folder = getContentPermissionFolder(permissionSetId, permissionId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
-    private File getSpacePropertiesFile(long spaceId)
+    private String getSpacePropertiesFile(long spaceId)
     {
-        File folder = getSpaceFolder(spaceId);
+        String folder = getSpaceFolder(spaceId);
 
-        return new File(folder, PROPERTIES_FILENAME);
+        return getPath(folder, PROPERTIES_FILENAME);
     }
 
     /**
@@ -2603,7 +2841,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public ConfluenceProperties getSpaceDescriptorProperties(long spaceDescriptorId, boolean create)
         throws ConfigurationException
     {
-        File file = getSpaceDescriptorPropertiesFile(spaceDescriptorId);
+        String file = getSpaceDescriptorPropertiesFile(spaceDescriptorId);
 
         return getObjectProperties(Long.toString(spaceDescriptorId), file, create, true);
     }
@@ -2616,7 +2854,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public ConfluenceProperties getPageProperties(long pageId, boolean create) throws ConfigurationException
     {
-        File file = getPagePropertiesFile(pageId);
+        String file = getPagePropertiesFile(pageId);
         ConfluenceProperties props = getObjectProperties(Long.toString(pageId), file, create, true);
         if (!create && (props == null || props.getLong(ConfluenceXMLPackage.KEY_ID, null) == null)) {
             // Null ID can happen when the home page is missing. ConfluenceXMLPackage has set the homePage property
@@ -2637,8 +2875,8 @@ public class ConfluenceXMLPackage implements AutoCloseable
     private ConfluenceProperties getTaskProperties(long pageId, long taskId, boolean create)
             throws ConfigurationException
     {
-        File file = getTaskPropertiesFile(pageId, taskId);
-        return (create || file.exists()) ? ConfluenceProperties.create(file) : null;
+        String file = getTaskPropertiesFile(pageId, taskId);
+        return this.store.get(file, create);
     }
 
     /**
@@ -2689,14 +2927,13 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return getObjectProperties(objectId, getObjectPropertiesFile(folder, objectId), create, lookForBody);
     }
 
-    private ConfluenceProperties getObjectProperties(String objectId, File propertiesFile, boolean create,
+    private ConfluenceProperties getObjectProperties(String objectId, String propertiesFile, boolean create,
         boolean lookForBody) throws ConfigurationException
     {
-        ConfluenceProperties confluenceProperties =
-            (create || propertiesFile.exists()) ? ConfluenceProperties.create(propertiesFile) : null;
+        ConfluenceProperties confluenceProperties = this.store.get(propertiesFile, create);
         if (confluenceProperties != null && lookForBody) {
-            String body = confluenceProperties.getString(KEY_PAGE_BODY);
-            if (body == null) {
+            // Don't read the body, it might be large and is loaded only when needed
+            if (!confluenceProperties.containsKey(KEY_PAGE_BODY)) {
                 ConfluenceProperties bodyContentProperties = getBodyContentProperties(objectId, false);
                 if (bodyContentProperties != null) {
                     confluenceProperties.copy(bodyContentProperties);
@@ -2754,9 +2991,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
             return Collections.emptyList();
         }
 
-        String idStr = Long.toString(id);
-
-        Long parent = getObjectParent(idStr);
+        Long parent = getObjectParent(id);
         if (parent == null) {
             return new ArrayList<>();
         }
@@ -2769,7 +3004,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return ancestors;
     }
 
-    private Long getObjectParent(String id) throws ConfigurationException
+    private Long getObjectParent(Long id) throws ConfigurationException
     {
         ConfluenceProperties properties = getConfluenceProperties(id);
         if (properties == null) {
@@ -2786,52 +3021,14 @@ public class ConfluenceXMLPackage implements AutoCloseable
         return null;
     }
 
-    private ConfluenceProperties getConfluenceProperties(String objectId) throws ConfigurationException
+    private ConfluenceProperties getConfluenceProperties(Long objectId) throws ConfigurationException
     {
-        File objectFolder = findObjectFolder(this.tree, objectId);
-        if (objectFolder == null) {
+        String location = this.objectLocations.get(objectId.longValue());
+        if (location == null) {
             return null;
         }
 
-        return getObjectProperties(objectId, getObjectPropertiesFile(objectFolder, objectId), false, true);
-    }
-
-    /**
-     * @param folder the folder inside which to search.
-     * @param id the Confluence object id.
-     * @return the sub-folder of the object in this folder.
-     * @since 9.35.0
-     */
-    private File findObjectFolder(File folder, String id)
-    {
-        if (!folder.isDirectory()) {
-            return null;
-        }
-
-        String[] list = folder.list();
-        if (list.length == 0) {
-            return null;
-        }
-
-        char firstChar = list[0].charAt(0);
-        if (firstChar >= '0' && firstChar <= '9') {
-            // we assume the folder contains objects.
-            for (String child : list) {
-                if (id.equals(child)) {
-                    return folder;
-                }
-            }
-        }
-
-        // the folder contains sub-folders
-        for (String child : list) {
-            File p = findObjectFolder(new File(folder, child), id);
-            if (p != null) {
-                return p;
-            }
-        }
-
-        return null;
+        return getObjectProperties(objectId.toString(), location, false, true);
     }
 
     /**
@@ -2865,20 +3062,16 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Collection<Long> getInternalUsers()
     {
-        File folder = getInternalUserFolder();
+        Collection<String> userFolders = this.store.list(getInternalUserFolder());
 
-        if (folder.exists()) {
-            String[] userFolders = folder.list();
-
-            if (userFolders != null) {
-                Collection<Long> users = new TreeSet<>();
-                for (String userIdString : userFolders) {
-                    if (NumberUtils.isCreatable(userIdString)) {
-                        users.add(Long.valueOf(userIdString));
-                    }
+        if (!userFolders.isEmpty()) {
+            Collection<Long> users = new TreeSet<>();
+            for (String userIdString : userFolders) {
+                if (NumberUtils.isCreatable(userIdString)) {
+                    users.add(Long.valueOf(userIdString));
                 }
-                return users;
             }
+            return users;
         }
 
         return Collections.emptyList();
@@ -2889,13 +3082,10 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Collection<String> getUsersImpl()
     {
-        File folder = getUserImplFolder();
+        Collection<String> list = this.store.list(getUserImplFolder());
 
-        if (folder.exists()) {
-            String[] list = folder.list();
-            if (list != null) {
-                return new TreeSet<>(Arrays.asList(list));
-            }
+        if (!list.isEmpty()) {
+            return new TreeSet<>(list);
         }
 
         return Collections.emptyList();
@@ -2906,19 +3096,16 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public Collection<Long> getGroups()
     {
-        File folder = getGroupsFolder();
+        Collection<String> groupFolders = this.store.list(getGroupsFolder());
 
-        if (folder.exists()) {
-            String[] groupFolders = folder.list();
-            if (groupFolders != null) {
-                Collection<Long> groups = new TreeSet<>();
-                for (String groupIdString : groupFolders) {
-                    if (NumberUtils.isCreatable(groupIdString)) {
-                        groups.add(Long.valueOf(groupIdString));
-                    }
+        if (!groupFolders.isEmpty()) {
+            Collection<Long> groups = new TreeSet<>();
+            for (String groupIdString : groupFolders) {
+                if (NumberUtils.isCreatable(groupIdString)) {
+                    groups.add(Long.valueOf(groupIdString));
                 }
-                return groups;
             }
+            return groups;
         }
 
         return Collections.emptyList();
@@ -2942,9 +3129,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public ConfluenceProperties getAttachmentProperties(long pageId, long attachmentId) throws ConfigurationException
     {
-        File file = getAttachmentPropertiesFile(pageId, attachmentId);
+        String file = getAttachmentPropertiesFile(pageId, attachmentId);
 
-        return ConfluenceProperties.create(file);
+        return this.store.get(file, true);
     }
 
     /**
@@ -2971,7 +3158,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public ConfluenceProperties getSpacePageTemplateProperties(long templateId, boolean create)
         throws ConfigurationException
     {
-        File file = getSpacePageTemplatePropertiesFile(templateId);
+        String file = getSpacePageTemplatePropertiesFile(templateId);
 
         return getObjectProperties(Long.toString(templateId), file, create, true);
     }
@@ -2986,9 +3173,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public ConfluenceProperties getSpacePermissionProperties(long spaceId, long permissionId)
         throws ConfigurationException
     {
-        File file = getSpacePermissionPropertiesFile(spaceId, permissionId);
+        String file = getSpacePermissionPropertiesFile(spaceId, permissionId);
 
-        return ConfluenceProperties.create(file);
+        return this.store.get(file, true);
     }
 
     /**
@@ -3001,9 +3188,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public ConfluenceProperties getContentPermissionProperties(long permissionSetId, long permissionId)
             throws ConfigurationException
     {
-        File file = getContentPermissionPropertiesFile(permissionSetId, permissionId);
+        String file = getContentPermissionPropertiesFile(permissionSetId, permissionId);
 
-        return ConfluenceProperties.create(file);
+        return this.store.get(file, true);
     }
 
     /**
@@ -3014,9 +3201,9 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public ConfluenceProperties getContentPermissionSetProperties(long permissionSetId)
             throws ConfigurationException
     {
-        File file = getContentPermissionSetPropertiesFile(permissionSetId);
+        String file = getContentPermissionSetPropertiesFile(permissionSetId);
 
-        return ConfluenceProperties.create(file);
+        return this.store.get(file, true);
     }
 
     /**
@@ -3026,28 +3213,21 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public ConfluenceProperties getSpaceProperties(long spaceId) throws ConfigurationException
     {
-        File file = getSpacePropertiesFile(spaceId);
+        String file = getSpacePropertiesFile(spaceId);
 
-        return ConfluenceProperties.create(file);
+        return this.store.get(file, true);
     }
 
     private void saveSpaceDescriptorProperties(ConfluenceProperties properties, long spaceDescriptorId)
         throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getSpaceDescriptorProperties(spaceDescriptorId, true);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getSpaceDescriptorPropertiesFile(spaceDescriptorId),
+            getSpaceDescriptorProperties(spaceDescriptorId, true), properties);
     }
 
     private void savePageProperties(ConfluenceProperties properties, long pageId) throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getPageProperties(pageId, true);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getPagePropertiesFile(pageId), getPageProperties(pageId, true), properties);
     }
 
     private void saveObjectProperties(ConfluenceProperties properties, String objectId) throws ConfigurationException
@@ -3058,70 +3238,62 @@ public class ConfluenceXMLPackage implements AutoCloseable
     private void saveObjectProperties(String folder, ConfluenceProperties properties, String objectKey)
         throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getObjectProperties(folder, objectKey, true);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getObjectPropertiesFile(folder, objectKey),
+            getObjectProperties(folder, objectKey, true), properties);
     }
 
     private void saveAttachmentProperties(ConfluenceProperties properties, long pageId, long attachmentId)
         throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getAttachmentProperties(pageId, attachmentId);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getAttachmentPropertiesFile(pageId, attachmentId),
+            getAttachmentProperties(pageId, attachmentId), properties);
     }
 
     private void saveSpacePageTemplateProperties(ConfluenceProperties properties, long spaceId, long templateId)
         throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getSpacePageTemplateProperties(spaceId, templateId, true);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getSpacePageTemplatePropertiesFile(templateId),
+            getSpacePageTemplateProperties(spaceId, templateId, true), properties);
     }
 
     private void saveSpacePermissionProperties(ConfluenceProperties properties, long spaceId, long permissionId)
         throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getSpacePermissionProperties(spaceId, permissionId);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getSpacePermissionPropertiesFile(spaceId, permissionId),
+            getSpacePermissionProperties(spaceId, permissionId), properties);
     }
 
     private void saveContentPermissionSetProperties(ConfluenceProperties properties, long permissionSetId)
             throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getContentPermissionSetProperties(permissionSetId);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getContentPermissionSetPropertiesFile(permissionSetId),
+            getContentPermissionSetProperties(permissionSetId), properties);
     }
 
     private void saveContentPermissionProperties(ConfluenceProperties properties,
         long contentPermissionSetId, long permissionId) throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getContentPermissionProperties(contentPermissionSetId, permissionId);
-
-        fileProperties.copy(properties);
-
-        fileProperties.save();
+        copyAndSave(getContentPermissionPropertiesFile(contentPermissionSetId, permissionId),
+            getContentPermissionProperties(contentPermissionSetId, permissionId), properties);
     }
 
     private void saveSpaceProperties(ConfluenceProperties properties, long spaceId) throws ConfigurationException
     {
-        ConfluenceProperties fileProperties = getSpaceProperties(spaceId);
+        copyAndSave(getSpacePropertiesFile(spaceId), getSpaceProperties(spaceId), properties);
+    }
+
+    private void copyAndSave(String path, ConfluenceProperties fileProperties, ConfluenceProperties properties)
+        throws ConfigurationException
+    {
+        // The object's own properties replace the children collected before it was read, as if they had been saved
+        // in the object right away
+        this.deferredChildren.discard(path, properties.getKeys());
 
         fileProperties.copy(properties);
 
         fileProperties.save();
+
+        this.objectLocations.add(path);
     }
 
     /**
@@ -3129,7 +3301,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public File getEntities()
     {
-        return this.entities;
+        return getPackageFile(FILE_ENTITIES);
     }
 
     /**
@@ -3137,7 +3309,20 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public File getDescriptor()
     {
-        return this.descriptor;
+        return getPackageFile(FILE_DESCRIPTOR);
+    }
+
+    private File getPackageFile(String path)
+    {
+        if (this.content == null) {
+            return null;
+        }
+
+        try {
+            return this.content.getFile(path);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
@@ -3148,11 +3333,11 @@ public class ConfluenceXMLPackage implements AutoCloseable
      */
     public String getDescriptorField(String field)
     {
-        if (this.descriptor == null) {
+        if (this.content == null || !this.content.exists(FILE_DESCRIPTOR)) {
             return null;
         }
 
-        try (Scanner scanner = new Scanner(this.descriptor)) {
+        try (Scanner scanner = new Scanner(this.content.open(FILE_DESCRIPTOR))) {
             String lineStart = field + '=';
             while (scanner.hasNextLine()) {
                 String line = scanner.nextLine();
@@ -3160,7 +3345,7 @@ public class ConfluenceXMLPackage implements AutoCloseable
                     return line.substring(lineStart.length()).trim();
                 }
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             // ignore
         }
         return null;
@@ -3176,18 +3361,19 @@ public class ConfluenceXMLPackage implements AutoCloseable
      *       the tasks are currently found in the AO_BAF3AA_AOINLINE_TASK.csv file. This method could evolve to return
      *       tasks from other places as well in the future if we find out other places listing tasks)
      */
-    public void readTasks() throws FilterException
+    public synchronized void readTasks() throws FilterException
     {
         if (this.tasks == null) {
             return;
         }
 
-        if (!this.tasks.exists()) {
+        if (!this.content.exists(this.tasks)) {
             this.tasks = null;
             return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(this.tasks.toPath(), StandardCharsets.UTF_8)) {
+        try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(this.content.open(this.tasks), StandardCharsets.UTF_8))) {
             mkdirTree();
             CSVParser p = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(reader);
             logger.info("Reading tasks...");
@@ -3247,21 +3433,51 @@ public class ConfluenceXMLPackage implements AutoCloseable
      * @param version the version of the attachment
      * @return the file containing the attachment content
      * @throws FileNotFoundException when failing to find the attachment content file
+     * @deprecated use {@link #getAttachmentContent(long, long, long)} instead, which does not require the
+     *     attachment to be extracted from the package
      */
+    @Deprecated(since = "9.96.0")
     public File getAttachmentFile(long pageId, long attachmentId, long version) throws FileNotFoundException
     {
-        File attachmentsFolder = new File(this.directory, ATTACHMENTS);
-        File attachmentsPageFolder = new File(attachmentsFolder, String.valueOf(pageId));
-        File attachmentFolder = new File(attachmentsPageFolder, String.valueOf(attachmentId));
+        String path = getAttachmentContentPath(pageId, attachmentId, version);
+        if (this.content.exists(path)) {
+            try {
+                return this.content.getFile(path);
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new FileNotFoundException(String.format("Failed to extract [%s]: %s", path,
+                    ExceptionUtils.getRootCauseMessage(e)));
+            }
+        }
 
-        // In old version the file name is the version
-        File file = new File(attachmentFolder, String.valueOf(version));
+        throw new FileNotFoundException(path);
+    }
 
-        if (file.exists()) {
-            return file;
+    /**
+     * @param pageId the identifier of the page were the attachment is located
+     * @param attachmentId the identifier of the attachment
+     * @param version the version of the attachment
+     * @return the content of the attachment, read from the package only when the returned source is opened
+     * @throws FileNotFoundException when failing to find the attachment content in the package
+     * @since 9.96.0
+     */
+    public AttachmentContent getAttachmentContent(long pageId, long attachmentId, long version)
+        throws FileNotFoundException
+    {
+        String path = getAttachmentContentPath(pageId, attachmentId, version);
+        if (this.content.exists(path)) {
+            return new AttachmentContent(this.content, path);
         }
 
-        throw new FileNotFoundException(file.getAbsolutePath());
+        throw new FileNotFoundException(path);
+    }
+
+    private static String getAttachmentContentPath(long pageId, long attachmentId, long version)
+    {
+        // In old version the file name is the version
+        return getPath(getPath(getPath(ATTACHMENTS, String.valueOf(pageId)), String.valueOf(attachmentId)),
+            String.valueOf(version));
     }
 
     /**
@@ -3273,6 +3489,16 @@ public class ConfluenceXMLPackage implements AutoCloseable
     public void close() throws IOException
     {
         logger.info("Closing the Confluence package.");
+        if (this.store != null) {
+            this.store.close();
+            this.store = null;
+        }
+
+        if (this.content != null) {
+            this.content.close();
+            this.content = null;
+        }
+
         if (this.tree != null) {
             FileUtils.deleteDirectory(this.tree);
         }
@@ -3445,4 +3671,73 @@ public class ConfluenceXMLPackage implements AutoCloseable
             return def;
         }
     }
+
+    /**
+     * The properties of an object read from the package, not yet saved.
+     */
+    private static final class ParsedObject
+    {
+        private final String type;
+
+        private final ConfluenceProperties properties;
+
+        private final String id;
+
+        ParsedObject(String type, ConfluenceProperties properties, String id)
+        {
+            this.type = type;
+            this.properties = properties;
+            this.id = id;
+        }
+
+        long getLongId()
+        {
+            return Long.parseLong(this.id);
+        }
+    }
+
+    /**
+     * Report the progress of the indexing of the package according to the position in the entities file.
+     */
+    private final class IndexingProgress
+    {
+        private final CountingInputStream stream;
+
+        private final long stepSize;
+
+        private long nextStepPos;
+
+        private boolean inStep;
+
+        IndexingProgress(CountingInputStream stream, long size)
+        {
+            this.stream = stream;
+            this.stepSize = size / INDEXING_STEPS;
+            this.nextStepPos = this.stepSize;
+        }
+
+        void startStep()
+        {
+            if (!this.inStep) {
+                progress.startStep(ConfluenceXMLPackage.this);
+                this.inStep = true;
+            }
+        }
+
+        void update()
+        {
+            if (this.stream.getByteCount() >= this.nextStepPos) {
+                progress.endStep(ConfluenceXMLPackage.this);
+                this.nextStepPos += this.stepSize;
+                this.inStep = false;
+            }
+        }
+
+        void end()
+        {
+            if (this.inStep) {
+                progress.endStep(ConfluenceXMLPackage.this);
+            }
+        }
+    }
 }
@@ -31,8 +31,17 @@ import java.io.InputStream;
  */
 public class WithoutControlCharactersReader extends InputStream
 {
+    private static final int BUFFER_SIZE = 8192;
+
     private final InputStream is;
 
+    // Only used by read(), block reads are filtered in place in the caller's array
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
     /**
      * Convert this input stream into a reader that skips the BS characters.
      * @param is the input stream from which to ignore the BS characters.
@@ -45,28 +54,85 @@ public class WithoutControlCharactersReader extends InputStream
     @Override
     public int read(byte[] b, int off, int len) throws IOException
     {
-        for (int i = 0; i < len; i++) {
-            int c = read();
-            if (c == -1) {
-                if (i == 0) {
-                    return -1;
-                }
-                return i;
-            }
-            b[off + i] = (byte) c;
+        if (len == 0) {
+            return 0;
+        }
+
+        // Start with what's left from single byte reads
+        if (this.position < this.limit) {
+            int n = Math.min(len, this.limit - this.position);
+            System.arraycopy(this.buffer, this.position, b, off, n);
+            this.position += n;
+            return n;
         }
-        return len;
+
+        int n;
+        do {
+            int read = is.read(b, off, len);
+            if (read == -1) {
+                return -1;
+            }
+            n = strip(b, off, read);
+        } while (n == 0);
+
+        return n;
     }
 
     @Override
     public int read() throws IOException
     {
-        int c1 = is.read();
-        // Ignore ASCII control characters apart from the line feed (10) and carriage return (13) characters
-        while (c1 > 0 && c1 < 32 && c1 != 10 && c1 != 13) {
-            c1 = is.read();
+        if (this.position >= this.limit) {
+            if (this.buffer == null) {
+                this.buffer = new byte[BUFFER_SIZE];
+            }
+            this.position = 0;
+            this.limit = 0;
+            int n = read(this.buffer, 0, BUFFER_SIZE);
+            if (n == -1) {
+                return -1;
+            }
+            this.limit = n;
         }
-        return c1;
+
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Remove the control characters from the given part of the array, moving the kept bytes to its start.
+     *
+     * @return the number of kept bytes
+     */
+    private static int strip(byte[] b, int off, int len)
+    {
+        int end = off + len;
+
+        // Nothing to move until the first control character
+        int w = off;
+        while (w < end && keep(b[w])) {
+            w++;
+        }
+
+        for (int r = w + 1; r < end; r++) {
+            byte c = b[r];
+            if (keep(c)) {
+                b[w++] = c;
+            }
+        }
+
+        return w - off;
+    }
+
+    private static boolean keep(byte c)
+    {
+        // Ignore ASCII control characters apart from the line feed (10) and carriage return (13) characters. Bytes
+        // above 127 are negative.
+        return c <= 0 || c >= 32 || c == 10 || c == 13;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return this.limit - this.position;
     }
 
     @Override
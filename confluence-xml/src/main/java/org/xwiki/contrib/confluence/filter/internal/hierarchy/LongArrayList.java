@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.hierarchy;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of primitive longs. Seen as a {@link java.util.List}, it is read only: use {@link #addLong(long)}
+ * to add values.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess
+{
+    private long[] values;
+
+    private int size;
+
+    /**
+     * Create an empty list.
+     */
+    public LongArrayList()
+    {
+        this(4);
+    }
+
+    /**
+     * @param capacity the initial capacity of the list
+     */
+    public LongArrayList(int capacity)
+    {
+        this.values = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * @param value the value to add at the end of the list
+     */
+    public void addLong(long value)
+    {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size + (this.size >> 1) + 1);
+        }
+        this.values[this.size++] = value;
+    }
+
+    /**
+     * @param index the index of the value
+     * @return the value at the given index
+     */
+    public long getLong(int index)
+    {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return this.values[index];
+    }
+
+    @Override
+    public Long get(int index)
+    {
+        return getLong(index);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    public long[] toLongArray()
+    {
+        return Arrays.copyOf(this.values, this.size);
+    }
+}
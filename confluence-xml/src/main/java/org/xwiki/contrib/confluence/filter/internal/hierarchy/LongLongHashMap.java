@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.hierarchy;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive longs to primitive longs, without removal.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class LongLongHashMap
+{
+    private long[] keys;
+
+    private long[] values;
+
+    private boolean[] used;
+
+    private int size;
+
+    /**
+     * Create an empty map.
+     */
+    public LongLongHashMap()
+    {
+        allocate(16);
+    }
+
+    static int hash(long key)
+    {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int length)
+    {
+        this.keys = new long[length];
+        this.values = new long[length];
+        this.used = new boolean[length];
+    }
+
+    private int find(long key)
+    {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.used[slot] && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * @param key the key
+     * @param defaultValue the value to return if the key is not in the map
+     * @return the value associated with the key, or the default value
+     */
+    public long get(long key, long defaultValue)
+    {
+        int slot = find(key);
+
+        return this.used[slot] ? this.values[slot] : defaultValue;
+    }
+
+    /**
+     * @param key the key
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(long key)
+    {
+        return this.used[find(key)];
+    }
+
+    /**
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put(long key, long value)
+    {
+        int slot = find(key);
+        if (!this.used[slot]) {
+            if ((this.size + 1) * 4L > this.keys.length * 3L) {
+                grow();
+                slot = find(key);
+            }
+            this.used[slot] = true;
+            this.keys[slot] = key;
+            this.size++;
+        }
+        this.values[slot] = value;
+    }
+
+    /**
+     * @return the number of keys in the map
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Remove all the keys.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    /**
+     * Iterate the map by slots: {@code for (int slot = map.nextSlot(0); slot >= 0; slot = map.nextSlot(slot + 1))}.
+     *
+     * @param from the first slot to consider
+     * @return the first used slot starting at the given one, -1 if there is none
+     */
+    public int nextSlot(int from)
+    {
+        for (int slot = from; slot < this.used.length; slot++) {
+            if (this.used[slot]) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param slot a used slot
+     * @return the key in this slot
+     */
+    public long keyAt(int slot)
+    {
+        return this.keys[slot];
+    }
+
+    /**
+     * @param slot a used slot
+     * @return the value in this slot
+     */
+    public long valueAt(int slot)
+    {
+        return this.values[slot];
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = this.keys;
+        long[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                this.used[slot] = true;
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+}
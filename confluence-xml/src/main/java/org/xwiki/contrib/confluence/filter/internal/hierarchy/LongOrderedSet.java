@@ -0,0 +1,203 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.hierarchy;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * A set of primitive longs keeping the insertion order, with constant time membership, insertion and removal. Seen as
+ * a {@link java.util.List} (in insertion order), it is read only: use {@link #addLong(long)} and
+ * {@link #removeLong(long)} to modify it.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class LongOrderedSet extends AbstractList<Long> implements RandomAccess
+{
+    private long[] values = new long[4];
+
+    // Number of used positions in values, including the removed ones
+    private int positions;
+
+    // Positions of the removed values, compacted lazily
+    private final BitSet removed = new BitSet();
+
+    private int removedCount;
+
+    // Open addressing index of the values: position + 1, 0 for an empty slot
+    private int[] table = new int[8];
+
+    /**
+     * @param value the value to add
+     * @return true if the value was not already in the set
+     */
+    public boolean addLong(long value)
+    {
+        int slot = find(value);
+        if (slot >= 0 && !this.removed.get(this.table[slot] - 1)) {
+            return false;
+        }
+
+        if ((this.positions + 1) * 4L > this.table.length * 3L) {
+            rehash();
+        }
+        // Appending may compact the values, and thus reindex them
+        int position = append(value);
+        slot = find(value);
+        // A value added back goes at the end, its former position stays removed
+        this.table[slot >= 0 ? slot : -slot - 1] = position + 1;
+
+        return true;
+    }
+
+    /**
+     * @param value the value to remove
+     * @return true if the value was in the set
+     */
+    public boolean removeLong(long value)
+    {
+        int slot = find(value);
+        if (slot < 0) {
+            return false;
+        }
+
+        int position = this.table[slot] - 1;
+        if (this.removed.get(position)) {
+            return false;
+        }
+        this.removed.set(position);
+        this.removedCount++;
+
+        return true;
+    }
+
+    /**
+     * @param value the value to look for
+     * @return true if the value is in the set
+     */
+    public boolean containsLong(long value)
+    {
+        int slot = find(value);
+
+        return slot >= 0 && !this.removed.get(this.table[slot] - 1);
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof Long && containsLong((Long) o);
+    }
+
+    @Override
+    public int indexOf(Object o)
+    {
+        if (!contains(o)) {
+            return -1;
+        }
+
+        return super.indexOf(o);
+    }
+
+    @Override
+    public Long get(int index)
+    {
+        compact();
+        if (index >= this.positions) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return this.values[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return this.positions - this.removedCount;
+    }
+
+    private int append(long value)
+    {
+        if (this.positions == this.values.length) {
+            compact();
+            if (this.positions == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.positions + (this.positions >> 1) + 1);
+            }
+        }
+        this.values[this.positions] = value;
+
+        return this.positions++;
+    }
+
+    /**
+     * @return the slot of the value if found, -(the empty slot where it should be inserted) - 1 otherwise
+     */
+    private int find(long value)
+    {
+        int mask = this.table.length - 1;
+        for (int slot = LongLongHashMap.hash(value) & mask;; slot = (slot + 1) & mask) {
+            int entry = this.table[slot];
+            if (entry == 0) {
+                return -slot - 1;
+            }
+            if (this.values[entry - 1] == value) {
+                return slot;
+            }
+        }
+    }
+
+    private void compact()
+    {
+        if (this.removedCount == 0) {
+            return;
+        }
+
+        int w = 0;
+        for (int r = 0; r < this.positions; r++) {
+            if (!this.removed.get(r)) {
+                this.values[w++] = this.values[r];
+            }
+        }
+        this.positions = w;
+        this.removed.clear();
+        this.removedCount = 0;
+        reindex(this.table.length);
+    }
+
+    private void rehash()
+    {
+        compact();
+        int length = this.table.length;
+        while ((this.positions + 1) * 4L > length * 3L) {
+            length <<= 1;
+        }
+        reindex(length);
+    }
+
+    private void reindex(int length)
+    {
+        this.table = new int[length];
+        for (int position = 0; position < this.positions; position++) {
+            this.table[-find(this.values[position]) - 1] = position + 1;
+        }
+    }
+}
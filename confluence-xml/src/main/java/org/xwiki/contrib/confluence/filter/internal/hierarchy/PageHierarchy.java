@@ -0,0 +1,466 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.hierarchy;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The page hierarchy of a Confluence package: pages and blog posts of each space, children of each page, home page,
+ * orphans and missing parents of each space.
+ * <p>
+ * Everything indexed by page is stored in primitive structures: children of all the pages are chained in shared
+ * arrays and membership tests are done in hash tables of primitive longs. Lists returned by this class are read only
+ * views.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class PageHierarchy
+{
+    /**
+     * Name of the state section containing the pages of each space.
+     */
+    public static final String PAGES = "pages";
+
+    /**
+     * Name of the state section containing the blog posts of each space.
+     */
+    public static final String BLOG_PAGES = "blogPages";
+
+    /**
+     * Name of the state section containing the children of each page.
+     */
+    public static final String PAGE_CHILDREN = "pageChildren";
+
+    /**
+     * Name of the state section containing the missing parents of each space.
+     */
+    public static final String MISSING_PARENTS = "missingParents";
+
+    /**
+     * Name of the state section containing the home page of each space.
+     */
+    public static final String HOME_PAGES = "homePages";
+
+    /**
+     * Name of the state section containing the orphans of each space.
+     */
+    public static final String ORPHANS = "orphans";
+
+    private static final long NONE = -1;
+
+    private final Map<Long, LongArrayList> pages = new LinkedHashMap<>();
+
+    private final Map<Long, LongArrayList> blogPages = new LinkedHashMap<>();
+
+    private final Map<Long, Long> homePages = new LinkedHashMap<>();
+
+    private final Map<Long, LongOrderedSet> orphans = new LinkedHashMap<>();
+
+    private final Map<Long, LongOrderedSet> missingParents = new LinkedHashMap<>();
+
+    // The index of each page or parent in the node arrays
+    private final LongLongHashMap nodes = new LongLongHashMap();
+
+    // The space of each node, NONE if the node is not a registered (non blog) page
+    private long[] nodeSpaces = new long[16];
+
+    // The first and last child of each node, as indexes in childValues, -1 if the node has no child
+    private int[] firstChild = new int[16];
+
+    private int[] lastChild = new int[16];
+
+    private int nodeCount;
+
+    private int parentCount;
+
+    private long[] childValues = new long[16];
+
+    // The index of the next child of the same parent, -1 for the last one
+    private int[] childNext = new int[16];
+
+    private int childCount;
+
+    /**
+     * @param spaceId the space to register, even if it does not contain any page
+     */
+    public void addSpace(long spaceId)
+    {
+        this.pages.computeIfAbsent(spaceId, k -> new LongArrayList());
+    }
+
+    /**
+     * @param spaceId the space of the page
+     * @param pageId the page to register
+     * @param blog true if the page is a blog post
+     */
+    public void addPage(long spaceId, long pageId, boolean blog)
+    {
+        (blog ? this.blogPages : this.pages).computeIfAbsent(spaceId, k -> new LongArrayList()).addLong(pageId);
+        if (!blog) {
+            // node() might grow the arrays
+            int node = node(pageId);
+            this.nodeSpaces[node] = spaceId;
+        }
+    }
+
+    /**
+     * @param spaceId the space
+     * @param pageId the page
+     * @return true if the page was registered as a (non blog) page of the space
+     */
+    public boolean isPage(long spaceId, long pageId)
+    {
+        long node = this.nodes.get(pageId, NONE);
+
+        return node != NONE && this.nodeSpaces[(int) node] == spaceId;
+    }
+
+    /**
+     * @return the pages of each space
+     */
+    public Map<Long, List<Long>> getPages()
+    {
+        return Collections.unmodifiableMap(this.pages);
+    }
+
+    /**
+     * @return the blog posts of each space
+     */
+    public Map<Long, List<Long>> getBlogPages()
+    {
+        return Collections.unmodifiableMap(this.blogPages);
+    }
+
+    /**
+     * @param parentId the parent page
+     * @param childId the child page to add at the end of the children of the parent
+     */
+    public void addChild(long parentId, long childId)
+    {
+        if (this.childCount == this.childValues.length) {
+            int length = this.childCount + (this.childCount >> 1) + 1;
+            this.childValues = Arrays.copyOf(this.childValues, length);
+            this.childNext = Arrays.copyOf(this.childNext, length);
+        }
+        int index = this.childCount++;
+        this.childValues[index] = childId;
+        this.childNext[index] = -1;
+
+        int node = node(parentId);
+        if (this.firstChild[node] == -1) {
+            this.firstChild[node] = index;
+            this.parentCount++;
+        } else {
+            this.childNext[this.lastChild[node]] = index;
+        }
+        this.lastChild[node] = index;
+    }
+
+    private int node(long id)
+    {
+        long node = this.nodes.get(id, NONE);
+        if (node != NONE) {
+            return (int) node;
+        }
+
+        if (this.nodeCount == this.nodeSpaces.length) {
+            int length = this.nodeCount + (this.nodeCount >> 1) + 1;
+            this.nodeSpaces = Arrays.copyOf(this.nodeSpaces, length);
+            this.firstChild = Arrays.copyOf(this.firstChild, length);
+            this.lastChild = Arrays.copyOf(this.lastChild, length);
+        }
+        int index = this.nodeCount++;
+        this.nodeSpaces[index] = NONE;
+        this.firstChild[index] = -1;
+        this.lastChild[index] = -1;
+        this.nodes.put(id, index);
+
+        return index;
+    }
+
+    /**
+     * @param parentId the parent page
+     * @return the children of the page, in the order they were added
+     */
+    public List<Long> getChildren(long parentId)
+    {
+        long node = this.nodes.get(parentId, NONE);
+        if (node == NONE || this.firstChild[(int) node] == -1) {
+            return Collections.emptyList();
+        }
+
+        return collectChildren((int) node);
+    }
+
+    private LongArrayList collectChildren(int node)
+    {
+        LongArrayList children = new LongArrayList();
+        for (int index = this.firstChild[node]; index != -1; index = this.childNext[index]) {
+            children.addLong(this.childValues[index]);
+        }
+
+        return children;
+    }
+
+    /**
+     * @param spaceId the space
+     * @return the home page of the space, null if unknown
+     */
+    public Long getHomePage(Long spaceId)
+    {
+        return this.homePages.get(spaceId);
+    }
+
+    /**
+     * Set the home page of a space, which is then not an orphan anymore.
+     *
+     * @param spaceId the space
+     * @param pageId the home page
+     */
+    public void setHomePage(long spaceId, long pageId)
+    {
+        this.homePages.put(spaceId, pageId);
+        LongOrderedSet spaceOrphans = this.orphans.get(spaceId);
+        if (spaceOrphans != null) {
+            spaceOrphans.removeLong(pageId);
+        }
+    }
+
+    /**
+     * @param spaceId the space
+     * @param pageId the page without parent
+     */
+    public void addOrphan(long spaceId, long pageId)
+    {
+        this.orphans.computeIfAbsent(spaceId, k -> new LongOrderedSet()).addLong(pageId);
+    }
+
+    /**
+     * @param spaceId the space
+     * @return the pages of the space without parent
+     */
+    public List<Long> getOrphans(Long spaceId)
+    {
+        List<Long> spaceOrphans = this.orphans.get(spaceId);
+
+        return spaceOrphans == null ? Collections.emptyList() : Collections.unmodifiableList(spaceOrphans);
+    }
+
+    /**
+     * @param spaceId the space
+     * @param parentId a parent of a page of the space which was not registered yet
+     */
+    public void addMissingParent(long spaceId, long parentId)
+    {
+        this.missingParents.computeIfAbsent(spaceId, k -> new LongOrderedSet()).addLong(parentId);
+    }
+
+    /**
+     * @param spaceId the space
+     * @param pageId a page which is not missing anymore
+     */
+    public void removeMissingParent(long spaceId, long pageId)
+    {
+        LongOrderedSet spaceMissingParents = this.missingParents.get(spaceId);
+        if (spaceMissingParents != null) {
+            spaceMissingParents.removeLong(pageId);
+        }
+    }
+
+    /**
+     * @param spaceId the space
+     * @return the parents of pages of the space which were never registered
+     */
+    public List<Long> getMissingParents(Long spaceId)
+    {
+        List<Long> spaceMissingParents = this.missingParents.get(spaceId);
+
+        return spaceMissingParents == null
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(spaceMissingParents);
+    }
+
+    /**
+     * Forget the pages, blog posts, home page and orphans of some spaces.
+     *
+     * @param spaceFilter the spaces to forget
+     */
+    public void removeSpaces(Predicate<Long> spaceFilter)
+    {
+        this.pages.keySet().removeIf(spaceFilter);
+        this.blogPages.keySet().removeIf(spaceFilter);
+        this.homePages.keySet().removeIf(spaceFilter);
+        this.orphans.keySet().removeIf(spaceFilter);
+    }
+
+    /**
+     * Forget everything.
+     */
+    public void clear()
+    {
+        this.pages.clear();
+        this.blogPages.clear();
+        this.homePages.clear();
+        this.orphans.clear();
+        this.missingParents.clear();
+        this.nodes.clear();
+        this.nodeCount = 0;
+        this.parentCount = 0;
+        this.childCount = 0;
+    }
+
+    /**
+     * @return the content of the hierarchy, as named maps to save
+     */
+    public Map<String, Map<?, ?>> getState()
+    {
+        Map<String, Map<?, ?>> state = new LinkedHashMap<>();
+        state.put(PAGES, this.pages);
+        state.put(BLOG_PAGES, this.blogPages);
+        state.put(PAGE_CHILDREN, new ChildrenMap());
+        state.put(MISSING_PARENTS, this.missingParents);
+        state.put(HOME_PAGES, this.homePages);
+        state.put(ORPHANS, this.orphans);
+
+        return state;
+    }
+
+    /**
+     * @param state the content of the hierarchy, as returned by {@link #getState()}
+     * @return false if the state is incomplete, in which case the hierarchy is left empty
+     */
+    public boolean restoreState(Map<String, ? extends Map<?, ?>> state)
+    {
+        clear();
+
+        Map<?, ?> statePages = state.get(PAGES);
+        Map<?, ?> stateBlogPages = state.get(BLOG_PAGES);
+        Map<?, ?> stateChildren = state.get(PAGE_CHILDREN);
+        Map<?, ?> stateMissingParents = state.get(MISSING_PARENTS);
+        Map<?, ?> stateHomePages = state.get(HOME_PAGES);
+        Map<?, ?> stateOrphans = state.get(ORPHANS);
+        if (statePages == null || stateBlogPages == null || stateChildren == null || stateMissingParents == null
+            || stateHomePages == null || stateOrphans == null) {
+            return false;
+        }
+
+        for (Map.Entry<?, ?> entry : statePages.entrySet()) {
+            long spaceId = (Long) entry.getKey();
+            addSpace(spaceId);
+            for (Object pageId : (Collection<?>) entry.getValue()) {
+                addPage(spaceId, (Long) pageId, false);
+            }
+        }
+        for (Map.Entry<?, ?> entry : stateBlogPages.entrySet()) {
+            for (Object pageId : (Collection<?>) entry.getValue()) {
+                addPage((Long) entry.getKey(), (Long) pageId, true);
+            }
+        }
+        for (Map.Entry<?, ?> entry : stateChildren.entrySet()) {
+            for (Object childId : (Collection<?>) entry.getValue()) {
+                addChild((Long) entry.getKey(), (Long) childId);
+            }
+        }
+        for (Map.Entry<?, ?> entry : stateMissingParents.entrySet()) {
+            for (Object parentId : (Collection<?>) entry.getValue()) {
+                addMissingParent((Long) entry.getKey(), (Long) parentId);
+            }
+        }
+        for (Map.Entry<?, ?> entry : stateHomePages.entrySet()) {
+            this.homePages.put((Long) entry.getKey(), (Long) entry.getValue());
+        }
+        for (Map.Entry<?, ?> entry : stateOrphans.entrySet()) {
+            for (Object pageId : (Collection<?>) entry.getValue()) {
+                addOrphan((Long) entry.getKey(), (Long) pageId);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read only view of the children of each page, materializing the lists of children while iterating.
+     */
+    private final class ChildrenMap extends AbstractMap<Long, List<Long>>
+    {
+        @Override
+        public Set<Entry<Long, List<Long>>> entrySet()
+        {
+            return new AbstractSet<>()
+            {
+                @Override
+                public Iterator<Entry<Long, List<Long>>> iterator()
+                {
+                    return new Iterator<>()
+                    {
+                        private int slot = nextParentSlot(0);
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return this.slot >= 0;
+                        }
+
+                        @Override
+                        public Entry<Long, List<Long>> next()
+                        {
+                            if (this.slot < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<Long, List<Long>> entry = new SimpleImmutableEntry<>(nodes.keyAt(this.slot),
+                                collectChildren((int) nodes.valueAt(this.slot)));
+                            this.slot = nextParentSlot(this.slot + 1);
+
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return parentCount;
+                }
+            };
+        }
+
+        private int nextParentSlot(int from)
+        {
+            int slot = nodes.nextSlot(from);
+            while (slot >= 0 && firstChild[(int) nodes.valueAt(slot)] == -1) {
+                slot = nodes.nextSlot(slot + 1);
+            }
+
+            return slot;
+        }
+    }
+}
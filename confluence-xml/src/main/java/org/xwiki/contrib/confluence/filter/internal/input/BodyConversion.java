@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.xwiki.logging.LogQueue;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+
+/**
+ * The conversion of the body of a page revision, along with what the conversion collected while analysing it (macros,
+ * inline comments, teasers, used locales, logs). Each conversion has its own state so that several conversions can
+ * run at the same time on different threads.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class BodyConversion
+{
+    private final Map<String, Integer> macroIds;
+
+    private final Map<String, String> inlineComments;
+
+    private final List<ResourceReference> teasers;
+
+    private final LogQueue logs = new LogQueue();
+
+    private Collection<Locale> usedLocales = Collections.emptyList();
+
+    private String content;
+
+    private QueueListener events;
+
+    private Exception error;
+
+    /**
+     * Create a conversion with its own state.
+     */
+    BodyConversion()
+    {
+        this(new HashMap<>(), new HashMap<>(), new ArrayList<>());
+    }
+
+    /**
+     * Create a conversion filling the given state.
+     *
+     * @param macroIds the macros found in the content, with the number of occurrences
+     * @param inlineComments the inline comments found in the content
+     * @param teasers the teasers found in the content
+     */
+    BodyConversion(Map<String, Integer> macroIds, Map<String, String> inlineComments,
+        List<ResourceReference> teasers)
+    {
+        this.macroIds = macroIds;
+        this.inlineComments = inlineComments;
+        this.teasers = teasers;
+    }
+
+    /**
+     * @return the macros found in the content, with the number of occurrences
+     */
+    Map<String, Integer> getMacroIds()
+    {
+        return this.macroIds;
+    }
+
+    /**
+     * @return the inline comments found in the content
+     */
+    Map<String, String> getInlineComments()
+    {
+        return this.inlineComments;
+    }
+
+    /**
+     * @return the teasers found in the content
+     */
+    List<ResourceReference> getTeasers()
+    {
+        return this.teasers;
+    }
+
+    /**
+     * @return the logs of the conversion when it ran on another thread, to be sent with the page
+     */
+    LogQueue getLogs()
+    {
+        return this.logs;
+    }
+
+    /**
+     * @return the locales advertised as used in the content when the conversion did not run in the context of the
+     *     page
+     */
+    Collection<Locale> getUsedLocales()
+    {
+        return this.usedLocales;
+    }
+
+    /**
+     * @param usedLocales the locales advertised as used in the content
+     */
+    void setUsedLocales(Collection<Locale> usedLocales)
+    {
+        this.usedLocales = usedLocales;
+    }
+
+    /**
+     * @return the converted content, null if the content was converted to events or if the conversion failed
+     */
+    String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @param content the converted content
+     */
+    void setContent(String content)
+    {
+        this.content = content;
+    }
+
+    /**
+     * @return the events produced by parsing the content, null if the content was converted to a string
+     */
+    QueueListener getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @param events the events produced by parsing the content
+     */
+    void setEvents(QueueListener events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * @return the error which interrupted the conversion, null if it succeeded
+     */
+    Exception getError()
+    {
+        return this.error;
+    }
+
+    /**
+     * @param error the error which interrupted the conversion
+     */
+    void setError(Exception error)
+    {
+        this.error = error;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cache of converted contents, addressed by a hash of the content and of the context in which it was converted.
+ * <p>
+ * Many revisions of a page only differ by their metadata: with this cache, their content is only converted once. The
+ * cache is bounded by the (estimated) size of the converted contents and evicts the least recently used ones first.
+ * The logs of a conversion are kept with it so that reusing it logs the same as converting the content again.
+ * <p>
+ * This class is not thread safe: it must only be used by the thread sending the events.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class BodyConversionCache
+{
+    // Rough estimation of the memory used by an entry besides its content
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static final char SEPARATOR = '\0';
+
+    private final long maxSize;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final MessageDigest digest;
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    private static final class Entry
+    {
+        private final BodyConversion conversion;
+
+        private final long size;
+
+        Entry(BodyConversion conversion)
+        {
+            this.conversion = conversion;
+            this.size = estimateSize(conversion);
+        }
+    }
+
+    /**
+     * @param maxSize the maximum estimated size of the cached contents, in bytes
+     */
+    BodyConversionCache(long maxSize)
+    {
+        this.maxSize = maxSize;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long estimateSize(BodyConversion conversion)
+    {
+        long size = ENTRY_OVERHEAD + 2L * conversion.getContent().length();
+        for (Map.Entry<String, String> comment : conversion.getInlineComments().entrySet()) {
+            size += 2L * (comment.getKey().length() + String.valueOf(comment.getValue()).length());
+        }
+        size += (long) ENTRY_OVERHEAD
+            * (conversion.getMacroIds().size() + conversion.getTeasers().size() + conversion.getLogs().size());
+
+        return size;
+    }
+
+    /**
+     * @param bodyContent the content to convert
+     * @param bodyType the type of the content
+     * @param pageId the page in which the content is converted
+     * @param spaceKey the space in which the content is converted
+     * @param locale the locale in which the content is converted
+     * @return the key of the conversion of the content in this context
+     */
+    String getKey(String bodyContent, int bodyType, Long pageId, String spaceKey, Locale locale)
+    {
+        this.digest.reset();
+        String context = String.valueOf(bodyType) + SEPARATOR + pageId + SEPARATOR + spaceKey + SEPARATOR + locale
+            + SEPARATOR;
+        this.digest.update(context.getBytes(StandardCharsets.UTF_8));
+        this.digest.update(bodyContent.getBytes(StandardCharsets.UTF_8));
+
+        return Base64.getEncoder().encodeToString(this.digest.digest());
+    }
+
+    /**
+     * @param key the key of the conversion, as returned by {@link #getKey(String, int, Long, String, Locale)}
+     * @return true if the conversion is in the cache
+     */
+    boolean contains(String key)
+    {
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * @param key the key of the conversion, as returned by {@link #getKey(String, int, Long, String, Locale)}
+     * @return a copy of the cached conversion, or null if it is not in the cache
+     */
+    BodyConversion get(String key)
+    {
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return copy(entry.conversion);
+    }
+
+    /**
+     * Cache a successful conversion to a string. Other conversions are ignored.
+     *
+     * @param key the key of the conversion, as returned by {@link #getKey(String, int, Long, String, Locale)}
+     * @param conversion the conversion to cache
+     */
+    void put(String key, BodyConversion conversion)
+    {
+        if (conversion.getError() != null || conversion.getContent() == null || this.maxSize <= 0) {
+            return;
+        }
+
+        Entry entry = new Entry(copy(conversion));
+        if (entry.size > this.maxSize) {
+            return;
+        }
+
+        Entry previous = this.entries.put(key, entry);
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += entry.size;
+
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (this.size > this.maxSize && it.hasNext()) {
+            this.size -= it.next().size;
+            it.remove();
+        }
+    }
+
+    private static BodyConversion copy(BodyConversion conversion)
+    {
+        // The maps are filled by the sent pages, the cached ones must not change
+        BodyConversion copy = new BodyConversion(new HashMap<>(conversion.getMacroIds()),
+            new HashMap<>(conversion.getInlineComments()), new ArrayList<>(conversion.getTeasers()));
+        copy.setContent(conversion.getContent());
+        copy.setUsedLocales(new ArrayList<>(conversion.getUsedLocales()));
+        // The logs of the conversion are logged again each time it is reused
+        copy.getLogs().addAll(conversion.getLogs());
+
+        return copy;
+    }
+
+    /**
+     * @return the number of conversions served from the cache
+     */
+    long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of conversions which were not in the cache
+     */
+    long getMisses()
+    {
+        return this.misses;
+    }
+}
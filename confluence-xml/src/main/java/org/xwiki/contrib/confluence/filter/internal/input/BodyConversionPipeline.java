@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Converts the bodies of page revisions on a pool of threads, ahead of the thread sending the filter events.
+ * <p>
+ * The sending thread asks for the conversions it will need soon with {@link #prefetch(String, Callable)} and then
+ * takes their results with {@link #take(String)}, in the order in which it sends the revisions. A conversion which was
+ * not prefetched (for instance because too many conversions are already pending) is expected to be done by the
+ * sending thread itself, so the sent events never depend on what was converted in advance.
+ * <p>
+ * This class is not thread safe: it must only be used by the sending thread.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class BodyConversionPipeline implements Closeable
+{
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final Map<String, Future<BodyConversion>> pending = new HashMap<>();
+
+    /**
+     * @param executor the threads converting the bodies
+     * @param maxPending the maximum number of conversions converted in advance and not taken yet
+     */
+    BodyConversionPipeline(ExecutorService executor, int maxPending)
+    {
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param key the identifier of the conversion
+     * @param conversion the conversion to run in advance
+     * @return false if the conversion could not be scheduled because too many conversions are pending
+     */
+    boolean prefetch(String key, Callable<BodyConversion> conversion)
+    {
+        if (this.pending.containsKey(key)) {
+            return true;
+        }
+
+        if (isFull()) {
+            return false;
+        }
+
+        this.pending.put(key, this.executor.submit(conversion));
+
+        return true;
+    }
+
+    /**
+     * @return true if no more conversion can be prefetched until some are taken
+     */
+    boolean isFull()
+    {
+        return this.pending.size() >= this.maxPending;
+    }
+
+    /**
+     * @param key the identifier of the conversion
+     * @return true if the conversion was prefetched and not taken yet
+     */
+    boolean isPending(String key)
+    {
+        return this.pending.containsKey(key);
+    }
+
+    /**
+     * @param key the identifier of the conversion
+     * @return the result of the conversion, waiting for it if needed, or null if the conversion was not prefetched or
+     *     could not complete
+     */
+    BodyConversion take(String key)
+    {
+        Future<BodyConversion> future = this.pending.remove(key);
+        if (future == null) {
+            return null;
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // The conversion catches its own errors, let the caller convert again to report this one
+        }
+
+        return null;
+    }
+
+    /**
+     * Forget a prefetched conversion which is not needed anymore.
+     *
+     * @param key the identifier of the conversion
+     */
+    void discard(String key)
+    {
+        Future<BodyConversion> future = this.pending.remove(key);
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        for (Future<BodyConversion> future : this.pending.values()) {
+            future.cancel(true);
+        }
+        this.pending.clear();
+        this.executor.shutdownNow();
+    }
+}
@@ -19,9 +19,16 @@
  */
 package org.xwiki.contrib.confluence.filter.internal.input;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
@@ -31,6 +38,7 @@ import javax.inject.Singleton;
 
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.contrib.usercommon.formatter.UserFormatterFactory;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
@@ -52,6 +60,7 @@ import org.xwiki.contrib.confluence.resolvers.ConfluenceSpaceKeyResolver;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.SpaceReference;
@@ -118,6 +127,9 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
     @Named("compactwiki")
     private EntityReferenceSerializer<String> compactWikiSerializer;
 
+    @Inject
+    private Provider<EntityReferenceResolver<String>> entityReferenceResolverProvider;
+
     @Inject
     private Provider<XWikiContext> contextProvider;
 
@@ -139,6 +151,10 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
     @Inject
     private UserFormatterFactory userFormatterFactory;
 
+    // The link mapping compiled outside of an import, along with the link mapping it was compiled from
+    private final AtomicReference<Pair<Map<String, Map<String, EntityReference>>, LinkMappingIndex>>
+        standaloneLinkMappingIndex = new AtomicReference<>();
+
     /**
      * @param name the name to validate
      * @return the validated name
@@ -439,6 +455,11 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
      */
     public EntityReference convertDocumentReference(long pageId, boolean asSpace)
     {
+        EntityReference indexedRef = getIndexedPageReference(pageId);
+        if (indexedRef != null) {
+            return getDocumentReference(indexedRef, asSpace, false);
+        }
+
         EntityReference ref = null;
         try {
             ConfluenceXMLPackage confluencePackage = context.getConfluencePackage();
@@ -529,6 +550,11 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
 
             Long pageId = confluencePackage.getPageId(ciSpaceKey, ciPageTitle);
             if (pageId != null) {
+                EntityReference indexedRef = getIndexedPageReference(pageId);
+                if (indexedRef != null) {
+                    return getDocumentReference(indexedRef, false, false);
+                }
+
                 try {
                     ConfluenceProperties pageProperties = confluencePackage.getPageProperties(pageId, false);
                     if (pageProperties != null) {
@@ -569,8 +595,7 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
     private EntityReference getDocRefFromLinkMapping(String ciSpaceKey, String ciPageTitle, boolean asSpace,
         boolean warn)
     {
-        EntityReference ref = maybeAsSpace(context.getProperties().getLinkMapping()
-            .getOrDefault(ciSpaceKey, Collections.emptyMap()).get(ciPageTitle), asSpace);
+        EntityReference ref = maybeAsSpace(getLinkMappingIndex().get(ciSpaceKey, ciPageTitle), asSpace);
 
         if (ref == null && pageTitleResolver != null && this.context.getProperties().isUseConfluenceResolvers()) {
             ref = maybeAsSpace(getDocumentByTitleUsingResolver(ciSpaceKey, ciPageTitle), asSpace);
@@ -622,19 +647,9 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
 
     private EntityReference getDocRefFromLinkMapping(long pageId, boolean asSpace)
     {
-        String pageIdString = Long.toString(pageId);
-        Map<String, Map<String, EntityReference>> linkMapping = context.getProperties().getLinkMapping();
-        for (Map.Entry<String, Map<String, EntityReference>> mappingEntry : linkMapping.entrySet()) {
-            // FIXME: this loop might be inefficient, should we group all the [spaceKey]:ids entries once and for all?
-            if (mappingEntry.getKey().endsWith(":ids")) {
-                Map<String, EntityReference> spaceMapping = mappingEntry.getValue();
-                if (spaceMapping != null) {
-                    EntityReference docRef = spaceMapping.get(pageIdString);
-                    if (docRef != null) {
-                        return maybeAsSpace(docRef, asSpace);
-                    }
-                }
-            }
+        EntityReference docRef = getLinkMappingIndex().get(pageId);
+        if (docRef != null) {
+            return maybeAsSpace(docRef, asSpace);
         }
 
         if (pageIdResolver != null && this.context.getProperties().isUseConfluenceResolvers()) {
@@ -705,6 +720,159 @@ public class ConfluenceConverter implements ConfluenceFilterReferenceConverter
         return getDocumentReference(newEntityReference(convertedName, EntityType.SPACE, parent), asSpace, isBlogPost);
     }
 
+    private ConfluenceImportContext getImportContext()
+    {
+        if (!(this.context instanceof DefaultConfluenceInputContext)) {
+            return null;
+        }
+
+        return ((DefaultConfluenceInputContext) this.context).getImportContext();
+    }
+
+    private LinkMappingIndex getLinkMappingIndex()
+    {
+        ConfluenceImportContext importContext = getImportContext();
+        if (importContext == null) {
+            return getStandaloneLinkMappingIndex();
+        }
+
+        return importContext.getLinkMappingIndex(() -> {
+            ConfluenceInputProperties properties = importContext.getProperties();
+            LinkMappingIndex index = LinkMappingIndex.of(properties.getLinkMapping());
+            this.logger.debug("Compiled the link mapping: [{}] page ids, [{}] page titles, about [{}] bytes",
+                index.getIdCount(), index.getTitleCount(), index.getEstimatedMemory());
+            if (StringUtils.isNotEmpty(properties.getLinkMappingFile())) {
+                index.setFallback(openLinkMappingFile(properties.getLinkMappingFile()));
+            }
+            return index;
+        });
+    }
+
+    private LinkMappingIndex getStandaloneLinkMappingIndex()
+    {
+        // Compiled again only when the link mapping is replaced
+        Map<String, Map<String, EntityReference>> linkMapping = this.context.getProperties().getLinkMapping();
+        Pair<Map<String, Map<String, EntityReference>>, LinkMappingIndex> cached =
+            this.standaloneLinkMappingIndex.get();
+        if (cached == null || cached.getKey() != linkMapping) {
+            cached = Pair.of(linkMapping, LinkMappingIndex.of(linkMapping));
+            this.standaloneLinkMappingIndex.set(cached);
+        }
+
+        return cached.getValue();
+    }
+
+    private LinkMappingLookup openLinkMappingFile(String file)
+    {
+        EntityReferenceResolver<String> resolver = this.entityReferenceResolverProvider.get();
+        try {
+            LinkMappingLookup lookup =
+                LinkMappingLoader.open(Paths.get(file), reference -> resolver.resolve(reference, EntityType.DOCUMENT));
+            if (lookup instanceof LinkMappingIndex) {
+                LinkMappingIndex index = (LinkMappingIndex) lookup;
+                this.logger.info("Loaded the link mapping file [{}]: [{}] page ids, [{}] page titles, about [{}] bytes",
+                    file, index.getIdCount(), index.getTitleCount(), index.getEstimatedMemory());
+            }
+            return lookup;
+        } catch (IOException e) {
+            this.logger.error("Failed to load the link mapping file [{}], it will be ignored", file, e);
+            return null;
+        }
+    }
+
+    private EntityReference getIndexedPageReference(long pageId)
+    {
+        ConfluenceImportContext importContext = getImportContext();
+        if (importContext == null || importContext.getConfluencePackage() == null) {
+            return null;
+        }
+
+        return importContext.getPageReferenceIndex(this::indexPageReferences).get(pageId);
+    }
+
+    /**
+     * Compute the references of the pages of the package, as spaces, in one walk of the page hierarchy of each space,
+     * from the home page and the orphans down. Only the pages of which the reference is fully determined by the
+     * package are indexed: pages with a missing parent and blog posts are left to
+     * {@link #toNestedDocumentReference(String, ConfluenceProperties, boolean, boolean)}, which may use the link
+     * mapping and report the problems.
+     */
+    private Map<Long, EntityReference> indexPageReferences()
+    {
+        ConfluenceXMLPackage confluencePackage = this.context.getConfluencePackage();
+        Map<Long, EntityReference> index = new HashMap<>();
+        for (Long spaceId : confluencePackage.getSpaces()) {
+            EntityReference spaceRef;
+            try {
+                spaceRef = fromSpaceKey(confluencePackage.getSpaceKey(spaceId));
+            } catch (ConfigurationException e) {
+                this.logger.warn("Failed to get the key of space [{}] while indexing the page references", spaceId);
+                continue;
+            }
+            if (spaceRef == null) {
+                continue;
+            }
+
+            Set<Long> orphans = new HashSet<>(confluencePackage.getOrphans(spaceId));
+            Deque<Long> pages = new ArrayDeque<>(orphans);
+            Long homePageId = confluencePackage.getHomePage(spaceId);
+            if (homePageId != null) {
+                pages.push(homePageId);
+            }
+
+            while (!pages.isEmpty()) {
+                Long pageId = pages.pop();
+                if (index.containsKey(pageId)) {
+                    continue;
+                }
+
+                EntityReference pageRef = indexPageReference(pageId, spaceId, spaceRef, orphans, index);
+                if (pageRef != null) {
+                    index.put(pageId, pageRef);
+                    pages.addAll(confluencePackage.getPageChildren(pageId));
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private EntityReference indexPageReference(long pageId, Long spaceId, EntityReference spaceRef, Set<Long> orphans,
+        Map<Long, EntityReference> index)
+    {
+        ConfluenceProperties pageProperties;
+        try {
+            pageProperties = this.context.getConfluencePackage().getPageProperties(pageId, false);
+        } catch (ConfigurationException e) {
+            return null;
+        }
+
+        if (pageProperties == null || !spaceId.equals(pageProperties.getLong(ConfluenceXMLPackage.KEY_PAGE_SPACE, null))
+            || pageProperties.getBoolean(ConfluenceXMLPackage.KEY_PAGE_BLOGPOST, false)) {
+            return null;
+        }
+
+        if (pageProperties.containsKey(ConfluenceXMLPackage.KEY_PAGE_HOMEPAGE)) {
+            return spaceRef;
+        }
+
+        Long parentId = pageProperties.getLong(ConfluenceXMLPackage.KEY_PAGE_PARENT, null);
+        EntityReference parent;
+        if (parentId == null) {
+            parent = orphans.contains(pageId) ? spaceRef : null;
+        } else {
+            parent = index.get(parentId);
+        }
+
+        String title = pageProperties.getString("title");
+        if (parent == null || StringUtils.isEmpty(title)) {
+            return null;
+        }
+
+        String convertedName = toEntityName(title);
+        return StringUtils.isEmpty(convertedName) ? null : new EntityReference(convertedName, EntityType.SPACE, parent);
+    }
+
     private static EntityReference getDocumentReference(EntityReference space, boolean asSpace, boolean isBlogPost)
     {
         if (asSpace || space == null) {
@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * The state of one import, shared by all the threads working on it. Each import has its own instance, so several
+ * imports can run at the same time, and it can be used from any thread.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public final class ConfluenceImportContext
+{
+    private final ConfluenceXMLPackage confluencePackage;
+
+    private final ConfluenceInputProperties properties;
+
+    private final Map<String, String> spaceTargets;
+
+    private final Locale defaultLocale;
+
+    private static final char SEPARATOR = '\0';
+
+    private final ReferenceCache<String> titleReferenceCache;
+
+    private final ReferenceCache<Long> idReferenceCache;
+
+    private Map<Long, EntityReference> pageReferenceIndex;
+
+    private LinkMappingIndex linkMappingIndex;
+
+    /**
+     * @param confluencePackage the Confluence input package
+     * @param properties the Confluence input properties
+     * @param spaceTargets where the spaces are migrated
+     * @param defaultLocale the locale in which the content is imported by default
+     */
+    ConfluenceImportContext(ConfluenceXMLPackage confluencePackage, ConfluenceInputProperties properties,
+        Map<String, String> spaceTargets, Locale defaultLocale)
+    {
+        this.confluencePackage = confluencePackage;
+        this.properties = properties;
+        this.spaceTargets = spaceTargets;
+        this.defaultLocale = defaultLocale;
+
+        int referenceCacheSize = properties == null ? 0 : properties.getReferenceCacheSize();
+        this.titleReferenceCache = new ReferenceCache<>(referenceCacheSize);
+        this.idReferenceCache = new ReferenceCache<>(referenceCacheSize);
+    }
+
+    /**
+     * @return the Confluence input package
+     */
+    public ConfluenceXMLPackage getConfluencePackage()
+    {
+        return this.confluencePackage;
+    }
+
+    /**
+     * @return the Confluence input properties
+     */
+    public ConfluenceInputProperties getProperties()
+    {
+        return this.properties;
+    }
+
+    /**
+     * @return where the spaces are migrated
+     */
+    public Map<String, String> getSpaceTargets()
+    {
+        return this.spaceTargets;
+    }
+
+    /**
+     * @return the locale in which the content is imported by default
+     */
+    public Locale getDefaultLocale()
+    {
+        return this.defaultLocale;
+    }
+
+    /**
+     * @param pageId the page id corresponding to the cached reference to find
+     * @param supplier the function to call to get the value if not found (the result will be added to the cache)
+     * @return the cached reference
+     */
+    public EntityReference getCachedReference(long pageId, Supplier<EntityReference> supplier)
+    {
+        return this.idReferenceCache.get(pageId, supplier);
+    }
+
+    /**
+     * @param spaceKey the spaceKey corresponding to the cached reference to find
+     * @param pageTitle the title corresponding to the cached reference to find
+     * @param supplier the function to call to get the value if not found (the result will be added to the cache)
+     * @return the cached reference
+     */
+    public EntityReference getCachedReference(String spaceKey, String pageTitle, Supplier<EntityReference> supplier)
+    {
+        return this.titleReferenceCache.get(spaceKey + SEPARATOR + pageTitle, supplier);
+    }
+
+    /**
+     * @return the cache of the references resolved from a page title
+     */
+    ReferenceCache<String> getTitleReferenceCache()
+    {
+        return this.titleReferenceCache;
+    }
+
+    /**
+     * @return the cache of the references resolved from a page id
+     */
+    ReferenceCache<Long> getIdReferenceCache()
+    {
+        return this.idReferenceCache;
+    }
+
+    /**
+     * @param builder computes the index the first time it is needed
+     * @return the references of the pages of the package, as spaces, by page id
+     */
+    public synchronized Map<Long, EntityReference> getPageReferenceIndex(
+        Supplier<Map<Long, EntityReference>> builder)
+    {
+        if (this.pageReferenceIndex == null) {
+            this.pageReferenceIndex = Collections.unmodifiableMap(builder.get());
+        }
+
+        return this.pageReferenceIndex;
+    }
+
+    /**
+     * @param builder compiles the link mapping the first time it is needed
+     * @return the link mapping of the input properties, compiled for lookups
+     */
+    public synchronized LinkMappingIndex getLinkMappingIndex(Supplier<LinkMappingIndex> builder)
+    {
+        if (this.linkMappingIndex == null) {
+            this.linkMappingIndex = builder.get();
+        }
+
+        return this.linkMappingIndex;
+    }
+}
@@ -19,18 +19,19 @@
  */
 package org.xwiki.contrib.confluence.filter.internal.input;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -39,6 +40,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -50,16 +56,22 @@ import javax.inject.Provider;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.contrib.confluence.filter.ConfluenceFilterReferenceConverter;
 import org.xwiki.contrib.confluence.filter.PageIdentifier;
 import org.xwiki.contrib.confluence.filter.event.ConfluenceFilteredEvent;
 import org.xwiki.contrib.confluence.filter.event.ConfluenceFilteringEvent;
+import org.xwiki.contrib.confluence.filter.input.AttachmentContent;
 import org.xwiki.contrib.confluence.filter.input.ConfluenceInputContext;
 import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
 import org.xwiki.contrib.confluence.filter.input.OverwriteProtectionMode;
@@ -73,6 +85,7 @@ import org.xwiki.contrib.confluence.parser.confluence.internal.ConfluenceParser;
 import org.xwiki.contrib.confluence.parser.xhtml.ConfluenceURLConverter;
 import org.xwiki.contrib.confluence.parser.xhtml.ConfluenceXHTMLInputProperties;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.ConfluenceXHTMLParser;
+import org.xwiki.contrib.confluence.parser.xhtml.internal.ConfluenceXHTMLParserPool;
 import org.xwiki.contrib.confluence.parser.xhtml.internal.InternalConfluenceXHTMLInputProperties;
 import org.xwiki.filter.FilterEventParameters;
 import org.xwiki.filter.FilterException;
@@ -84,7 +97,6 @@ import org.xwiki.filter.event.user.UserFilter;
 import org.xwiki.filter.input.AbstractBeanInputFilterStream;
 import org.xwiki.filter.input.BeanInputFilterStream;
 import org.xwiki.filter.input.BeanInputFilterStreamFactory;
-import org.xwiki.filter.input.DefaultFileInputSource;
 import org.xwiki.filter.input.InputFilterStreamFactory;
 import org.xwiki.filter.input.InputSource;
 import org.xwiki.filter.input.StringInputSource;
@@ -93,12 +105,16 @@ import org.xwiki.job.JobContext;
 import org.xwiki.job.event.status.CancelableJobStatus;
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.logging.event.LogQueueListener;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.QueueListener;
 import org.xwiki.rendering.listener.reference.AttachmentResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.parser.ParseException;
@@ -183,6 +199,9 @@ public class ConfluenceInputFilterStream
 
     private static final String ONE = "1";
 
+    // How often the statistics of the reference caches are logged while sending the pages
+    private static final long REFERENCE_CACHE_STATISTICS_PERIOD = TimeUnit.MINUTES.toNanos(5);
+
     private static final String IMAGE = "image";
 
     @Inject
@@ -193,6 +212,14 @@ public class ConfluenceInputFilterStream
     @Named(ConfluenceXHTMLParser.SYNTAX_STRING)
     private InputFilterStreamFactory confluenceXHTMLParserFactory;
 
+    @Inject
+    @Named(ConfluenceXHTMLParser.SYNTAX_STRING)
+    private Provider<StreamParser> confluenceXHTMLParserProvider;
+
+    @Inject
+    @Named(ConfluenceInputFilterStreamFactory.ROLEHINT)
+    private Provider<InputFilterStreamFactory> confluenceXMLFactoryProvider;
+
     @Inject
     private Provider<ConfluenceConverterListener> converterProvider;
 
@@ -234,12 +261,37 @@ public class ConfluenceInputFilterStream
     @Inject
     private ConfluenceSpaceHelpers spaceHelpers;
 
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Provider<LoggerManager> loggerManagerProvider;
+
     private final Map<String, Integer> macrosIds = new HashMap<>();
 
     private final Map<String, String> inlineComments = new HashMap<>();
 
     private final List<ResourceReference> teasers = new ArrayList<>();
 
+    private BodyConversionPipeline conversionPipeline;
+
+    private BodyConversionCache conversionCache;
+
+    private SortedRevisions sortedRevisions;
+
+    private PagePrefetcher pagePrefetcher;
+
+    private ConfluenceXHTMLParserPool xhtmlParserPool;
+
+    private ConfluenceInputFilterStream parentStream = this;
+
+    private PrefetchedPage prefetchedPage;
+
+    private long referenceCacheStatisticsTime;
+
     private final Map<String, String> spaceTargets = new HashMap<>();
 
     private ConfluenceIdRangeList objectIdRanges;
@@ -256,16 +308,16 @@ public class ConfluenceInputFilterStream
     {
         private final long attachmentId;
         private final long size;
-        private final File contentFile;
+        private final AttachmentContent content;
         private final long revision;
         private final FilterEventParameters parameters;
 
-        private AttachmentInfo(long attachmentId, long size, File contentFile, long revision,
+        private AttachmentInfo(long attachmentId, long size, AttachmentContent content, long revision,
             FilterEventParameters parameters)
         {
             this.attachmentId = attachmentId;
             this.size = size;
-            this.contentFile = contentFile;
+            this.content = content;
             this.revision = revision;
             this.parameters = parameters;
         }
@@ -285,14 +337,153 @@ public class ConfluenceInputFilterStream
         }
 
         try {
+            this.referenceCacheStatisticsTime = System.nanoTime();
+            startConversionPipeline();
+            startPagePrefetcher();
             readInternal(filter, proxyFilter);
         } finally {
+            stopPagePrefetcher();
+            stopConversionPipeline();
             if (this.context instanceof DefaultConfluenceInputContext) {
+                logReferenceCacheStatistics(((DefaultConfluenceInputContext) this.context).getImportContext());
                 ((DefaultConfluenceInputContext) this.context).remove();
             }
         }
     }
 
+    private void startConversionPipeline()
+    {
+        long cacheSize = this.properties.getConversionCacheSize();
+        // The key of a cached conversion contains the page, so only the other revisions of the page can reuse it
+        if (cacheSize > 0 && this.properties.isConvertToXWiki() && this.properties.isHistoryEnabled()) {
+            this.conversionCache = new BodyConversionCache(cacheSize);
+        }
+
+        int threads = this.properties.getConversionThreads();
+        if (threads <= 1 || !(this.context instanceof DefaultConfluenceInputContext)) {
+            return;
+        }
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool(threads, createThreadFactory("Confluence content conversion "));
+        this.conversionPipeline = new BodyConversionPipeline(executor, 2 * threads);
+    }
+
+    private ThreadFactory createThreadFactory(String namePrefix)
+    {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            // Threads are created by the thread sending the events, which is the one having a usable execution context
+            ExecutionContext executionContext = cloneExecutionContext();
+            Thread thread = new Thread(() -> {
+                if (executionContext != null) {
+                    this.execution.setContext(executionContext);
+                }
+                try {
+                    runnable.run();
+                } finally {
+                    if (executionContext != null) {
+                        this.execution.removeContext();
+                    }
+                }
+            }, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private ExecutionContext cloneExecutionContext()
+    {
+        ExecutionContext executionContext = this.execution.getContext();
+        if (executionContext == null) {
+            return null;
+        }
+
+        try {
+            return this.executionContextManager.clone(executionContext);
+        } catch (ExecutionContextException e) {
+            this.logger.warn("Failed to clone the execution context for a content conversion thread: [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+            return null;
+        }
+    }
+
+    private void stopConversionPipeline()
+    {
+        if (this.conversionCache != null) {
+            this.logger.info("Conversion cache statistics: [{}] hits, [{}] misses", this.conversionCache.getHits(),
+                this.conversionCache.getMisses());
+            this.conversionCache = null;
+        }
+
+        if (this.conversionPipeline != null) {
+            this.conversionPipeline.close();
+            this.conversionPipeline = null;
+        }
+    }
+
+    /**
+     * Log the statistics of the reference caches from time to time so that they can be followed during long imports.
+     */
+    private void logReferenceCacheStatisticsPeriodically()
+    {
+        long now = System.nanoTime();
+        if (now - this.referenceCacheStatisticsTime < REFERENCE_CACHE_STATISTICS_PERIOD
+            || !(this.context instanceof DefaultConfluenceInputContext)) {
+            return;
+        }
+
+        this.referenceCacheStatisticsTime = now;
+        logReferenceCacheStatistics(((DefaultConfluenceInputContext) this.context).getImportContext());
+    }
+
+    private void logReferenceCacheStatistics(ConfluenceImportContext importContext)
+    {
+        if (importContext == null) {
+            return;
+        }
+
+        ReferenceCache<Long> idCache = importContext.getIdReferenceCache();
+        ReferenceCache<String> titleCache = importContext.getTitleReferenceCache();
+        if (idCache.getMisses() == 0 && titleCache.getMisses() == 0) {
+            // The Confluence resolvers were not used
+            return;
+        }
+
+        this.logger.info("Reference cache statistics: by id [{}] hits, [{}] misses, [{}] evictions, [{}] entries; "
+            + "by title [{}] hits, [{}] misses, [{}] evictions, [{}] entries", idCache.getHits(), idCache.getMisses(),
+            idCache.getEvictions(), idCache.getSize(), titleCache.getHits(), titleCache.getMisses(),
+            titleCache.getEvictions(), titleCache.getSize());
+    }
+
+    private void startPagePrefetcher()
+    {
+        int depth = this.properties.getPrefetchDepth();
+        if (depth <= 0) {
+            return;
+        }
+
+        // A single thread reads the pages in the order they are sent
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Confluence page prefetching");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pagePrefetcher = new PagePrefetcher(executor, depth);
+    }
+
+    private void stopPagePrefetcher()
+    {
+        if (this.pagePrefetcher != null) {
+            this.logger.info("Page prefetching statistics: [{}] hits, [{}] misses, [{}] ms waiting for the pages",
+                this.pagePrefetcher.getHits(), this.pagePrefetcher.getMisses(), this.pagePrefetcher.getStallTime());
+            this.pagePrefetcher.close();
+            this.pagePrefetcher = null;
+        }
+
+        this.prefetchedPage = null;
+    }
+
     /**
      *  @return if the object should be sent and not ignored, given the object id ranges provided in the properties.
      *  It is very important that each object is only checked once.
@@ -427,6 +618,10 @@ public class ConfluenceInputFilterStream
             this.progress.pushLevelProgress(steps, this);
             if (!restored) {
                 this.confluencePackage.setWorkingDirectory(wd);
+                this.confluencePackage.setPackageStorage(this.properties.getPackageStorage());
+                this.confluencePackage.setIndexingCacheSize(this.properties.getIndexingCacheSize());
+                this.confluencePackage.setIndexingThreads(this.properties.getIndexingThreads());
+                this.confluencePackage.setBodyCompression(this.properties.isBodyCompression());
                 this.confluencePackage.read();
             }
         } catch (Exception e) {
@@ -513,6 +708,11 @@ public class ConfluenceInputFilterStream
             rootSpaces.addAll(blogPages.keySet());
             rootSpaces.removeAll(disabledSpaces);
 
+            if (isSendingSpacesConcurrently()) {
+                sendSpacesConcurrently(filter, proxyFilter, pages, blogPages, rootSpaces, root);
+                return;
+            }
+
             for (Long spaceId : rootSpaces) {
                 if (spaceId == null) {
                     this.logger.error("A null space has been found. This likely means that there is a bug. Skipping.");
@@ -539,6 +739,126 @@ public class ConfluenceInputFilterStream
         }
     }
 
+    private boolean isSendingSpacesConcurrently()
+    {
+        if (this.properties.getSpaceThreads() <= 1 || !(this.context instanceof DefaultConfluenceInputContext)) {
+            return false;
+        }
+
+        if (this.objectIdRanges != null || this.remainingPages != -1) {
+            // Which pages are sent depends on the pages sent before them
+            this.logger.info("Sending the spaces one by one because a maximum page count or object id ranges are set");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Send several spaces at the same time. Each space is sent by its own instance of this stream to a recording
+     * filter, and the recorded events are sent to the actual filter in the order of the spaces. The recording of a
+     * space waits when too many of its events are not sent yet.
+     */
+    private void sendSpacesConcurrently(Object filter, ConfluenceFilter proxyFilter, Map<Long, List<Long>> pages,
+        Map<Long, List<Long>> blogPages, Collection<Long> rootSpaces, EntityReference root) throws FilterException
+    {
+        int threads = this.properties.getSpaceThreads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, createThreadFactory("Confluence space "));
+        Deque<SpaceRecording> pending = new ArrayDeque<>(threads);
+        DefaultConfluenceInputContext.State state = ((DefaultConfluenceInputContext) this.context).getState();
+        Iterator<Long> spaceIterator = rootSpaces.iterator();
+        try {
+            while (spaceIterator.hasNext() || !pending.isEmpty()) {
+                // Keep as many spaces recorded in advance as there are threads
+                while (pending.size() < threads && spaceIterator.hasNext()) {
+                    Long spaceId = spaceIterator.next();
+                    if (spaceId == null) {
+                        this.logger.error(
+                            "A null space has been found. This likely means that there is a bug. Skipping.");
+                        continue;
+                    }
+
+                    List<Long> regularPageIds = pages.getOrDefault(spaceId, Collections.emptyList());
+                    List<Long> blogPageIds = blogPages.getOrDefault(spaceId, Collections.emptyList());
+                    if (!regularPageIds.isEmpty() || !blogPageIds.isEmpty()) {
+                        SpaceRecording recording = new SpaceRecording(SpaceRecording.DEFAULT_CAPACITY, this.logger);
+                        executor.execute(() -> recordSpace(state, recording, spaceId, filter, blogPageIds, root));
+                        pending.add(recording);
+                    }
+                }
+
+                if (!pending.isEmpty() && sendRecordedSpace(pending.poll(), proxyFilter)) {
+                    return;
+                }
+            }
+        } finally {
+            // Interrupt the recordings which won't be sent
+            executor.shutdownNow();
+        }
+    }
+
+    private void recordSpace(DefaultConfluenceInputContext.State state, SpaceRecording recording, long spaceId,
+        Object filter, List<Long> blogPageIds, EntityReference root)
+    {
+        boolean stop = false;
+        Exception error = null;
+        try {
+            ConfluenceInputFilterStream spaceStream = createSpaceStream();
+            stop = ((DefaultConfluenceInputContext) this.context).call(state, null, null, () -> {
+                // The logs are sent with the events so that they end up in the log of the job, in the order of the
+                // spaces
+                LoggerManager loggerManager = this.loggerManagerProvider.get();
+                loggerManager.pushLogListener(recording.getLogListener());
+                try {
+                    return spaceStream.sendConfluenceRootSpace(spaceId, filter, recording.getFilter(), blogPageIds,
+                        root);
+                } finally {
+                    loggerManager.popLogListener();
+                }
+            });
+        } catch (CancellationException e) {
+            // The recorded events won't be sent
+            return;
+        } catch (Exception e) {
+            error = e;
+        }
+
+        try {
+            recording.end(stop, error);
+        } catch (CancellationException e) {
+            // The recorded events won't be sent
+        }
+    }
+
+    private ConfluenceInputFilterStream createSpaceStream() throws FilterException
+    {
+        ConfluenceInputFilterStream spaceStream = (ConfluenceInputFilterStream)
+            ((BeanInputFilterStreamFactory<ConfluenceInputProperties>) this.confluenceXMLFactoryProvider.get())
+                .createInputFilterStream(this.properties);
+
+        // The space stream works on the package read by this stream and reports to it
+        spaceStream.confluencePackage = this.confluencePackage;
+        spaceStream.spaceTargets.putAll(this.spaceTargets);
+        spaceStream.jobStatus = this.jobStatus;
+        spaceStream.parentStream = this;
+        spaceStream.xhtmlParserPool = getXHTMLParserPool();
+
+        return spaceStream;
+    }
+
+    /**
+     * @return whether the import should stop
+     */
+    private boolean sendRecordedSpace(SpaceRecording recording, ConfluenceFilter proxyFilter) throws FilterException
+    {
+        try {
+            return recording.replay(proxyFilter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
     private void prepareNextObjectRangeId() throws FilterException
     {
         Long nextIdForObjectIdRanges = this.objectIdRanges.getNextId();
@@ -712,6 +1032,9 @@ public class ConfluenceInputFilterStream
                 stop = sendBlog(spaceKey, blogPages, spaceRef, filter, proxyFilter);
             }
         } finally {
+            if (this.pagePrefetcher != null) {
+                this.pagePrefetcher.clear();
+            }
             endWebPreferences(proxyFilter);
             // < WikiSpace
             proxyFilter.endWikiSpace(spaceEntityName, FilterEventParameters.EMPTY);
@@ -907,7 +1230,7 @@ public class ConfluenceInputFilterStream
             revisionParameters.put(WikiDocumentFilter.PARAMETER_HIDDEN, true);
             prepareRevisionMetadata(templateProperties, revisionParameters);
             beginPageRevision(false, templateProperties, filter, proxyFilter, version,
-                   revisionParameters, ConfluenceXMLPackage.KEY_CONTENT);
+                   revisionParameters, ConfluenceXMLPackage.KEY_CONTENT, null);
             readPageTags(templateProperties, proxyFilter);
             proxyFilter.endWikiDocumentRevision(version, revisionParameters);
         } finally {
@@ -987,13 +1310,17 @@ public class ConfluenceInputFilterStream
         ConfluenceFilter proxyFilter,  boolean hide, EntityReference spaceRef, Collection<Long> sentChildren)
     {
         Long homePageId = confluencePackage.getHomePage(confluencePackage.getSpaceId(spaceKey));
-        for (Long pageId : pages) {
+        for (int i = 0; i < pages.size(); i++) {
+            Long pageId = pages.get(i);
             if (Objects.equals(pageId, homePageId)) {
                 logger.info("The home page (id: [{}]) of space [{}] is a child of another page, "
                         + "not sending it a second time", pageId, spaceKey);
                 continue;
             }
+            prefetchPages(pages, i, homePageId, blog);
+            prefetchPageConversions(pages, i, homePageId, blog, filter);
             ConfluencePageSending cps = sendPage(pageId, spaceKey, blog, filter, proxyFilter, hide, spaceRef, false);
+            discardConversion(pageId, this.context.getDefaultLocale());
 
             if (cps != null && cps.sent && sentChildren != null) {
                 sentChildren.add(pageId);
@@ -1218,6 +1545,20 @@ public class ConfluenceInputFilterStream
         }
     }
 
+    private static final class SortedRevisions
+    {
+        private final Long pageId;
+        private final List<Map.Entry<Long, ConfluenceProperties>> entries;
+        private final boolean buggyVersions;
+
+        SortedRevisions(Long pageId, List<Map.Entry<Long, ConfluenceProperties>> entries, boolean buggyVersions)
+        {
+            this.pageId = pageId;
+            this.entries = entries;
+            this.buggyVersions = buggyVersions;
+        }
+    }
+
     private static class ConfluencePageSending
     {
         private final Collection<ConfluenceRight> inheritedRights;
@@ -1692,7 +2033,13 @@ public class ConfluenceInputFilterStream
             return null;
         }
 
-        ConfluenceProperties pageProperties = getPageProperties(pageId);
+        ConfluenceProperties pageProperties = null;
+        if (this.prefetchedPage != null && this.prefetchedPage.getPageId() == pageId) {
+            pageProperties = this.prefetchedPage.takePageProperties();
+        }
+        if (pageProperties == null) {
+            pageProperties = getPageProperties(pageId);
+        }
 
         if (pageProperties == null) {
             this.logger.error("Can't find page with id [{}]", createPageIdentifier(pageId, spaceKey));
@@ -1711,6 +2058,7 @@ public class ConfluenceInputFilterStream
     private ConfluencePageSending readPageAndChildren(Long pageId, String spaceKey, boolean blog, Object filter,
         ConfluenceFilter proxyFilter, boolean hide, EntityReference spaceRef, boolean isHome) throws FilterException
     {
+        takePrefetchedPage(pageId);
         ConfluenceProperties pageProperties = pageId == null ? null : readPageGetPageProperties(pageId, spaceKey);
         String title = pageProperties == null ? null : pageProperties.getString(ConfluenceXMLPackage.KEY_PAGE_TITLE);
 
@@ -1723,7 +2071,7 @@ public class ConfluenceInputFilterStream
 
         try {
             if (pageProperties == null) {
-                emptyStep();
+                emptyStep(proxyFilter);
                 if (isHome && CollectionUtils.isEmpty(properties.getIncludedPages())) {
                     // no home page, we send a minimal one to avoid overly confusing space trees
                     // but only if we are not sending a specific list of pages
@@ -1733,7 +2081,7 @@ public class ConfluenceInputFilterStream
                 this.logger.warn("Found a page without a title (id={}). Skipping it.",
                         createPageIdentifier(pageId, spaceKey));
 
-                emptyStep();
+                emptyStep(proxyFilter);
             } else {
                 spaceName = confluenceConverter.toEntityName(title);
                 if (!blogOrHome) {
@@ -1800,10 +2148,37 @@ public class ConfluenceInputFilterStream
         }
     }
 
-    private void emptyStep()
+    private void emptyStep(ConfluenceFilter proxyFilter)
+    {
+        startStep(proxyFilter);
+        endStep(proxyFilter);
+    }
+
+    private void startStep(ConfluenceFilter proxyFilter)
+    {
+        SpaceRecording recording = SpaceRecording.get(proxyFilter);
+        if (recording == null) {
+            this.progress.startStep(this);
+        } else {
+            // The progress is reported by the stream sending the recorded events
+            ConfluenceInputFilterStream stream = this.parentStream;
+            recording.record(f -> stream.progress.startStep(stream));
+        }
+    }
+
+    private void endStep(ConfluenceFilter proxyFilter)
     {
-        this.progress.startStep(this);
-        this.progress.endStep(this);
+        SpaceRecording recording = SpaceRecording.get(proxyFilter);
+        if (recording == null) {
+            this.progress.endStep(this);
+            logReferenceCacheStatisticsPeriodically();
+        } else {
+            ConfluenceInputFilterStream stream = this.parentStream;
+            recording.record(f -> {
+                stream.progress.endStep(stream);
+                stream.logReferenceCacheStatisticsPeriodically();
+            });
+        }
     }
 
     private ConfluencePageSending sendTerminalDoc(boolean blog, Object filter, ConfluenceFilter proxyFilter,
@@ -1812,7 +2187,7 @@ public class ConfluenceInputFilterStream
             throws FilterException
     {
         Collection<ConfluenceRight> inheritedRights = blog ? null : new ArrayList<>();
-        this.progress.startStep(this);
+        startStep(proxyFilter);
         boolean sent = false;
         boolean stop = false;
         try {
@@ -1847,7 +2222,7 @@ public class ConfluenceInputFilterStream
                 }
             }
         } finally {
-            this.progress.endStep(this);
+            endStep(proxyFilter);
         }
 
         return new ConfluencePageSending(inheritedRights, sent, stop);
@@ -1899,27 +2274,22 @@ public class ConfluenceInputFilterStream
 
         try {
             if (properties.isHistoryEnabled() && pageProperties.containsKey(ConfluenceXMLPackage.KEY_PAGE_REVISIONS)) {
-                Map<Long, ConfluenceProperties> revisionsById;
-                try {
-                    revisionsById = confluencePackage.getRevisionsById(pageProperties, false, false);
-                } catch (ConfigurationException e) {
-                    logger.error("Failed to get revisions of page [{}]. This should not happen.",
-                        createPageIdentifier(pageProperties), e);
+                SortedRevisions revisions = getSortedRevisions(pageProperties);
+                if (revisions == null) {
                     return false;
                 }
 
-                boolean buggyVersions = areThereBuggyVersions(pageProperties, revisionsById);
+                boolean buggyVersions = revisions.buggyVersions;
+                List<Map.Entry<Long, ConfluenceProperties>> sortedRevisionEntries = revisions.entries;
 
-                Iterable<Map.Entry<Long, ConfluenceProperties>> sortedRevisionEntries = revisionsById
-                    .entrySet()
-                    .stream()
-                    .sorted(buggyVersions
-                        ? getDateComparator(ConfluenceXMLPackage.KEY_PAGE_REVISION_DATE, REVISION, null)
-                        : getVersionComparator(pageProperties))
-                    ::iterator;
+                List<ConfluenceProperties> bodies = new ArrayList<>(sortedRevisionEntries.size() + 1);
+                sortedRevisionEntries.forEach(entry -> bodies.add(entry.getValue()));
+                bodies.add(pageProperties);
 
                 int version = 0;
-                for (Map.Entry<Long, ConfluenceProperties> entry : sortedRevisionEntries) {
+                for (int i = 0; i < sortedRevisionEntries.size(); i++) {
+                    Map.Entry<Long, ConfluenceProperties> entry = sortedRevisionEntries.get(i);
+                    prefetchRevisionConversions(bodies, i, blog, filter);
                     Long revisionId = entry.getKey();
                     ConfluenceProperties revisionProperties = entry.getValue();
                     if (buggyVersions) {
@@ -1935,6 +2305,7 @@ public class ConfluenceInputFilterStream
                         logger.error("Failed to filter the page revision with id [{}]",
                             createPageIdentifier(revisionId, spaceKey), e);
                     }
+                    discardConversion(revisionId, this.context.getCurrentLocale());
                     if (isCanceled()) {
                         return true;
                     }
@@ -1955,6 +2326,46 @@ public class ConfluenceInputFilterStream
         return false;
     }
 
+    /**
+     * @return the sorted revisions of the page, null if they could not be loaded. The revisions of the last page are
+     *     kept so that they are not loaded and sorted again for each of its locales.
+     */
+    private SortedRevisions getSortedRevisions(ConfluenceProperties pageProperties)
+    {
+        Long pageId = pageProperties.getLong(ConfluenceXMLPackage.KEY_ID, null);
+        if (this.sortedRevisions != null && pageId != null && pageId.equals(this.sortedRevisions.pageId)) {
+            return this.sortedRevisions;
+        }
+
+        this.sortedRevisions = null;
+
+        Map<Long, ConfluenceProperties> revisionsById;
+        try {
+            PrefetchedPage page = getPrefetchedPage(pageId);
+            revisionsById = page == null
+                ? confluencePackage.getRevisionsById(pageProperties, false, false)
+                : confluencePackage.getRevisionsById(pageProperties, false, false, page.takeRevisions());
+        } catch (ConfigurationException e) {
+            logger.error("Failed to get revisions of page [{}]. This should not happen.",
+                createPageIdentifier(pageProperties), e);
+            return null;
+        }
+
+        boolean buggyVersions = areThereBuggyVersions(pageProperties, revisionsById);
+
+        List<Map.Entry<Long, ConfluenceProperties>> sortedRevisionEntries = revisionsById
+            .entrySet()
+            .stream()
+            .sorted(buggyVersions
+                ? getDateComparator(ConfluenceXMLPackage.KEY_PAGE_REVISION_DATE, REVISION, null)
+                : getVersionComparator(pageProperties))
+            .collect(Collectors.toList());
+
+        this.sortedRevisions = new SortedRevisions(pageId, sortedRevisionEntries, buggyVersions);
+
+        return this.sortedRevisions;
+    }
+
     private boolean areThereBuggyVersions(ConfluenceProperties pageProperties,
         Map<Long, ConfluenceProperties> revisionsById)
     {
@@ -2257,7 +2668,7 @@ public class ConfluenceInputFilterStream
         prepareRevisionMetadata(pageProperties, docRevisionParameters);
 
         beginPageRevision(blog, pageProperties, filter, proxyFilter, revision, docRevisionParameters,
-            ConfluenceXMLPackage.KEY_PAGE_BODY);
+            ConfluenceXMLPackage.KEY_PAGE_BODY, getConversionKey(pageId, this.context.getCurrentLocale()));
 
         if (this.properties.isRightsEnabled()) {
             sendPageRights(proxyFilter, pageProperties, inheritedRights);
@@ -2330,7 +2741,7 @@ public class ConfluenceInputFilterStream
 
     private void beginPageRevision(boolean isBlog, ConfluenceProperties pageProperties,
         Object filter, ConfluenceFilter proxyFilter, String revision, FilterEventParameters docRevisionParameters,
-        String keyPageBody) throws FilterException
+        String keyPageBody, String conversionKey) throws FilterException
     {
         String bodyContent = pageProperties.getString(keyPageBody, null);
         if (this.properties.isContentsEnabled()) {
@@ -2340,15 +2751,27 @@ public class ConfluenceInputFilterStream
                 // No bodyType means old Confluence syntax
                 int bodyType = pageProperties.getInt(ConfluenceXMLPackage.KEY_PAGE_BODY_TYPE, 0);
 
-                if (!isBlog && this.properties.isContentEvents() && filter instanceof Listener) {
+                if (isContentEvents(isBlog, filter)) {
                     // > WikiDocumentRevision
                     proxyFilter.beginWikiDocumentRevision(revision, docRevisionParameters);
 
-                    try {
-                        parse(bodyContent, bodyType, this.properties.getMacroContentSyntax(), proxyFilter);
-                    } catch (Exception e) {
-                        this.logger.error("Failed to parse content of page with id [{}]",
-                            createPageIdentifier(pageProperties), e);
+                    BodyConversion conversion = takeConversion(conversionKey);
+                    if (conversion == null) {
+                        try {
+                            parse(bodyContent, bodyType, this.properties.getMacroContentSyntax(), proxyFilter,
+                                newConversion());
+                        } catch (Exception e) {
+                            this.logger.error("Failed to parse content of page with id [{}]",
+                                createPageIdentifier(pageProperties), e);
+                        }
+                    } else {
+                        if (conversion.getEvents() != null) {
+                            conversion.getEvents().consumeEvents(proxyFilter);
+                        }
+                        if (conversion.getError() != null) {
+                            this.logger.error("Failed to parse content of page with id [{}]",
+                                createPageIdentifier(pageProperties), conversion.getError());
+                        }
                     }
                     return;
                 }
@@ -2356,12 +2779,13 @@ public class ConfluenceInputFilterStream
                 Syntax bodySyntax = getBodySyntax(pageProperties, bodyType);
 
                 if (this.properties.isConvertToXWiki()) {
-                    try {
-                        bodyContent = convertToXWiki21(bodyContent, bodyType);
+                    BodyConversion conversion = convertPageBody(bodyContent, bodyType, conversionKey);
+                    if (conversion.getError() == null) {
+                        bodyContent = conversion.getContent();
                         bodySyntax = Syntax.XWIKI_2_1;
-                    } catch (Exception e) {
+                    } else {
                         this.logger.error("Failed to convert content of the page with id [{}]",
-                            createPageIdentifier(pageProperties), e);
+                            createPageIdentifier(pageProperties), conversion.getError());
                     }
                 }
 
@@ -2381,6 +2805,375 @@ public class ConfluenceInputFilterStream
         maybeSendBlogObject(isBlog, pageProperties, proxyFilter, bodyContent);
     }
 
+    private boolean isContentEvents(boolean isBlog, Object filter)
+    {
+        return !isBlog && this.properties.isContentEvents() && filter instanceof Listener;
+    }
+
+    private BodyConversion newConversion()
+    {
+        // Synchronous conversions directly fill the state of the page being sent
+        return new BodyConversion(this.macrosIds, this.inlineComments, this.teasers);
+    }
+
+    private static String getConversionKey(Long id, Locale locale)
+    {
+        return id + "_" + locale;
+    }
+
+    private BodyConversion convertBody(String bodyContent, int bodyType, boolean events, BodyConversion conversion)
+    {
+        try {
+            if (events) {
+                QueueListener queue = new QueueListener();
+                // Keep the events parsed before a failure, like when they are directly sent
+                conversion.setEvents(queue);
+                parse(bodyContent, bodyType, this.properties.getMacroContentSyntax(), queue, conversion);
+            } else {
+                conversion.setContent(convertToXWiki21(bodyContent, bodyType, conversion));
+            }
+        } catch (Exception e) {
+            conversion.setError(e);
+        }
+
+        return conversion;
+    }
+
+    private BodyConversion convertPageBody(String bodyContent, int bodyType, String conversionKey)
+    {
+        BodyConversion conversion = takeConversion(conversionKey);
+        String cacheKey = getConversionCacheKey(bodyContent, bodyType, this.context.getCurrentPage(),
+            this.context.getCurrentLocale());
+        if (cacheKey == null) {
+            return conversion != null ? conversion : convertBody(bodyContent, bodyType, false, newConversion());
+        }
+
+        if (conversion == null) {
+            conversion = this.conversionCache.get(cacheKey);
+            if (conversion != null) {
+                // Log again what converting the content logged, like for a content converted again
+                conversion.getLogs().log(this.logger);
+                applyConversion(conversion);
+                return conversion;
+            }
+
+            // Convert on the side to know what to replay when the cached conversion is reused
+            Collection<Locale> previousLocales = getCurrentlyUsedLocales();
+            LogQueue logs = new LogQueue();
+            LoggerManager loggerManager = this.loggerManagerProvider.get();
+            loggerManager.pushLogListener(new LogQueueListener(LogQueueListener.class.getName(), logs));
+            Map<Locale, BodyConversion> translations;
+            try {
+                translations = convertTranslations(bodyContent, bodyType);
+                if (translations != null) {
+                    conversion = translations.remove(this.context.getCurrentLocale());
+                } else {
+                    conversion = convertBody(bodyContent, bodyType, false, new BodyConversion());
+                }
+            } finally {
+                loggerManager.popLogListener();
+            }
+            logs.log(this.logger);
+            conversion.getLogs().addAll(logs);
+            Collection<Locale> usedLocales = getCurrentlyUsedLocales();
+            usedLocales.removeAll(previousLocales);
+            conversion.setUsedLocales(usedLocales);
+            applyConversion(conversion);
+
+            if (translations != null) {
+                // The other translations of the page will find their content in the cache
+                for (Map.Entry<Locale, BodyConversion> translation : translations.entrySet()) {
+                    translation.getValue().getLogs().addAll(logs);
+                    translation.getValue().setUsedLocales(usedLocales);
+                    this.conversionCache.put(getConversionCacheKey(bodyContent, bodyType,
+                        this.context.getCurrentPage(), translation.getKey()), translation.getValue());
+                }
+            }
+        }
+
+        this.conversionCache.put(cacheKey, conversion);
+
+        return conversion;
+    }
+
+    /**
+     * Convert the content once for all the remaining translations of the current page.
+     *
+     * @return the conversions of the content by locale, or null if the content should be converted for each locale
+     */
+    private Map<Locale, BodyConversion> convertTranslations(String bodyContent, int bodyType)
+    {
+        Locale currentLocale = this.context.getCurrentLocale();
+        if (!this.properties.isTranslationsEnabled() || currentLocale == null
+            || currentLocale.equals(this.context.getDefaultLocale())) {
+            return null;
+        }
+
+        Collection<Locale> locales = getCurrentlyUsedLocales();
+        locales.remove(this.context.getDefaultLocale());
+        if (locales.size() < 2 || !locales.contains(currentLocale)) {
+            return null;
+        }
+
+        DefaultConfluenceInputContext inputContext = (DefaultConfluenceInputContext) this.context;
+        LocaleSplitter splitter = new LocaleSplitter();
+        BodyConversion conversion = new BodyConversion(splitter.getMacroCounter(), new HashMap<>(), new ArrayList<>());
+        inputContext.setLocaleSplitter(splitter);
+        try {
+            parse(bodyContent, bodyType, Syntax.XWIKI_2_1, splitter.getListener(), conversion);
+        } catch (Exception e) {
+            // The usual conversion will report the error
+            return null;
+        } finally {
+            inputContext.setLocaleSplitter(null);
+        }
+
+        // Inline comments and teasers found in the content of a translation cannot be told apart
+        if (!splitter.isSplittable() || !splitter.getLocales().isEmpty()
+            && (!conversion.getInlineComments().isEmpty() || !conversion.getTeasers().isEmpty())) {
+            return null;
+        }
+
+        Map<Locale, BodyConversion> conversions = new HashMap<>();
+        for (Locale locale : locales) {
+            DefaultWikiPrinter printer = new DefaultWikiPrinter();
+            splitter.send(locale, this.xwiki21Factory.createRenderer(printer));
+            BodyConversion localeConversion = new BodyConversion(splitter.getMacroIds(locale),
+                new HashMap<>(conversion.getInlineComments()), new ArrayList<>(conversion.getTeasers()));
+            localeConversion.setContent(printer.toString());
+            conversions.put(locale, localeConversion);
+        }
+
+        return conversions;
+    }
+
+    private Collection<Locale> getCurrentlyUsedLocales()
+    {
+        Collection<Locale> usedLocales = this.context.getCurrentlyUsedLocales();
+        return usedLocales == null ? new ArrayList<>() : new ArrayList<>(usedLocales);
+    }
+
+    private String getConversionCacheKey(String bodyContent, int bodyType, Long pageId, Locale locale)
+    {
+        if (this.conversionCache == null) {
+            return null;
+        }
+
+        return this.conversionCache.getKey(bodyContent, bodyType, pageId, this.context.getCurrentSpace(), locale);
+    }
+
+    /**
+     * @return the conversion done in advance for the given key, null if it should be done now
+     */
+    private BodyConversion takeConversion(String conversionKey)
+    {
+        if (this.conversionPipeline == null || conversionKey == null) {
+            return null;
+        }
+
+        BodyConversion conversion = this.conversionPipeline.take(conversionKey);
+        if (conversion != null) {
+            conversion.getLogs().log(this.logger);
+            applyConversion(conversion);
+        }
+
+        return conversion;
+    }
+
+    private void applyConversion(BodyConversion conversion)
+    {
+        this.macrosIds.putAll(conversion.getMacroIds());
+        this.inlineComments.putAll(conversion.getInlineComments());
+        this.teasers.addAll(conversion.getTeasers());
+        for (Locale usedLocale : conversion.getUsedLocales()) {
+            this.context.addUsedLocale(usedLocale);
+        }
+    }
+
+    private void discardConversion(Long id, Locale locale)
+    {
+        if (this.conversionPipeline != null) {
+            this.conversionPipeline.discard(getConversionKey(id, locale));
+        }
+    }
+
+    private boolean isConversionNeeded(boolean blog, Object filter)
+    {
+        return this.conversionPipeline != null && this.properties.isContentsEnabled()
+            && (this.properties.isConvertToXWiki() || isContentEvents(blog, filter));
+    }
+
+    private void prefetchRevisionConversions(List<ConfluenceProperties> bodies, int current, boolean blog,
+        Object filter)
+    {
+        if (!isConversionNeeded(blog, filter)) {
+            return;
+        }
+
+        Long pageId = this.context.getCurrentPage();
+        Locale locale = this.context.getCurrentLocale();
+        for (int i = current; i < bodies.size() && !this.conversionPipeline.isFull(); i++) {
+            prefetchConversion(bodies.get(i), pageId, locale, blog, filter);
+        }
+    }
+
+    private void prefetchPages(List<Long> pages, int current, Long homePageId, boolean blog)
+    {
+        if (this.pagePrefetcher == null) {
+            return;
+        }
+
+        // Walk the pages in the order they are sent: each page is directly followed by its children
+        for (int i = current; i < pages.size() && !this.pagePrefetcher.isFull(); i++) {
+            Long pageId = pages.get(i);
+            if (pageId == null || Objects.equals(pageId, homePageId)) {
+                continue;
+            }
+
+            if (!this.pagePrefetcher.isPending(pageId)) {
+                this.pagePrefetcher.prefetch(pageId, () -> loadPage(pageId));
+            }
+
+            if (!blog) {
+                prefetchPages(this.confluencePackage.getPageChildren(pageId), 0, homePageId, false);
+            }
+        }
+    }
+
+    /**
+     * Load the records of a page which will be needed to send it. This is called from the prefetching thread: errors
+     * are not reported here, the sending thread loads what is missing again and reports them.
+     */
+    private PrefetchedPage loadPage(long pageId) throws ConfigurationException
+    {
+        ConfluenceProperties pageProperties = this.confluencePackage.getPageProperties(pageId, false);
+        PrefetchedPage page = new PrefetchedPage(pageId, pageProperties);
+        if (pageProperties == null) {
+            return page;
+        }
+
+        for (Long revisionId : this.confluencePackage.getLongList(pageProperties,
+            ConfluenceXMLPackage.KEY_PAGE_REVISIONS, Collections.emptyList())) {
+            ConfluenceProperties revisionProperties = this.confluencePackage.getPageProperties(revisionId, false);
+            if (revisionProperties != null) {
+                page.putRevision(revisionId, revisionProperties);
+            }
+        }
+
+        Collection<Long> attachmentIds = this.confluencePackage.getAttachments(pageId);
+        for (Long attachmentId : attachmentIds) {
+            page.putAttachment(attachmentId, this.confluencePackage.getAttachmentProperties(pageId, attachmentId));
+        }
+        page.setAttachmentIds(attachmentIds);
+
+        for (Long commentId : this.confluencePackage.getPageComments(pageProperties)) {
+            page.putObject(commentId, this.confluencePackage.getObjectProperties(commentId));
+        }
+
+        if (this.properties.isTagsEnabled()) {
+            for (Long tagId : this.confluencePackage.getLongList(pageProperties, ConfluenceXMLPackage.KEY_LABELLINGS,
+                Collections.emptyList())) {
+                page.putObject(tagId, this.confluencePackage.getObjectProperties(tagId));
+            }
+        }
+
+        return page;
+    }
+
+    private void takePrefetchedPage(Long pageId)
+    {
+        this.prefetchedPage = this.pagePrefetcher == null || pageId == null ? null : this.pagePrefetcher.take(pageId);
+    }
+
+    private PrefetchedPage getPrefetchedPage(Long pageId)
+    {
+        if (this.prefetchedPage == null || pageId == null || this.prefetchedPage.getPageId() != pageId) {
+            return null;
+        }
+
+        return this.prefetchedPage;
+    }
+
+    private ConfluenceProperties takePrefetchedObject(long objectId)
+    {
+        return this.prefetchedPage == null ? null : this.prefetchedPage.takeObject(objectId);
+    }
+
+    private void prefetchPageConversions(List<Long> pages, int current, Long homePageId, boolean blog, Object filter)
+    {
+        if (!isConversionNeeded(blog, filter)) {
+            return;
+        }
+
+        // The current version of the pages is first converted in the default locale, see DefaultConfluenceInputContext
+        Locale locale = this.context.getDefaultLocale();
+        for (int i = current; i < pages.size() && !this.conversionPipeline.isFull(); i++) {
+            Long pageId = pages.get(i);
+            if (pageId == null || Objects.equals(pageId, homePageId) || !this.properties.isIncluded(pageId)
+                || this.conversionPipeline.isPending(getConversionKey(pageId, locale))) {
+                continue;
+            }
+
+            ConfluenceProperties pageProperties;
+            try {
+                pageProperties = this.confluencePackage.getPageProperties(pageId, false);
+            } catch (ConfigurationException e) {
+                // Will be reported when actually sending the page
+                continue;
+            }
+            if (pageProperties != null) {
+                prefetchConversion(pageProperties, pageId, locale, blog, filter);
+            }
+        }
+    }
+
+    private void prefetchConversion(ConfluenceProperties bodyProperties, Long pageId, Locale locale, boolean blog,
+        Object filter)
+    {
+        Long id = bodyProperties.getLong(ConfluenceXMLPackage.KEY_ID, null);
+        if (id == null) {
+            return;
+        }
+
+        String conversionKey = getConversionKey(id, locale);
+        if (this.conversionPipeline.isPending(conversionKey)) {
+            return;
+        }
+
+        // Everything the conversion needs is read now: the properties are not meant to be shared between threads
+        String bodyContent = bodyProperties.getString(ConfluenceXMLPackage.KEY_PAGE_BODY, null);
+        if (bodyContent == null) {
+            return;
+        }
+        int bodyType = bodyProperties.getInt(ConfluenceXMLPackage.KEY_PAGE_BODY_TYPE, 0);
+        boolean events = isContentEvents(blog, filter);
+        if (!events) {
+            String cacheKey = getConversionCacheKey(bodyContent, bodyType, pageId, locale);
+            if (cacheKey != null && this.conversionCache.contains(cacheKey)) {
+                // Will be taken from the cache
+                return;
+            }
+        }
+        DefaultConfluenceInputContext inputContext = (DefaultConfluenceInputContext) this.context;
+        DefaultConfluenceInputContext.State state = inputContext.getState();
+
+        this.conversionPipeline.prefetch(conversionKey, () -> inputContext.call(state, pageId, locale, () -> {
+            BodyConversion conversion = new BodyConversion();
+            // The log listeners are per thread: the logs are sent when the conversion is taken, in the order of the
+            // pages
+            LoggerManager loggerManager = this.loggerManagerProvider.get();
+            loggerManager.pushLogListener(
+                new LogQueueListener(LogQueueListener.class.getName(), conversion.getLogs()));
+            try {
+                convertBody(bodyContent, bodyType, events, conversion);
+            } finally {
+                loggerManager.popLogListener();
+            }
+            conversion.setUsedLocales(new ArrayList<>(inputContext.getCurrentlyUsedLocales()));
+            return conversion;
+        }));
+    }
+
     private void maybeSendBlogObject(boolean isBlog, ConfluenceProperties pageProperties, ConfluenceFilter proxyFilter,
         String bodyContent) throws FilterException
     {
@@ -2465,6 +3258,10 @@ public class ConfluenceInputFilterStream
         if (!shouldSendObject(commentId)) {
             return null;
         }
+        ConfluenceProperties prefetched = takePrefetchedObject(commentId);
+        if (prefetched != null) {
+            return prefetched;
+        }
         try {
             return this.confluencePackage.getObjectProperties(commentId);
         } catch (ConfigurationException e) {
@@ -2589,6 +3386,11 @@ public class ConfluenceInputFilterStream
             return null;
         }
 
+        ConfluenceProperties prefetched = takePrefetchedObject(tagId);
+        if (prefetched != null) {
+            return prefetched;
+        }
+
         try {
             return this.confluencePackage.getObjectProperties(tagId);
         } catch (ConfigurationException e) {
@@ -2606,6 +3408,12 @@ public class ConfluenceInputFilterStream
             return null;
         }
 
+        PrefetchedPage page = getPrefetchedPage(pageId);
+        ConfluenceProperties prefetched = page == null ? null : page.takeAttachment(attachmentId);
+        if (prefetched != null) {
+            return prefetched;
+        }
+
         try {
             return this.confluencePackage.getAttachmentProperties(pageId, attachmentId);
         } catch (ConfigurationException e) {
@@ -2624,6 +3432,13 @@ public class ConfluenceInputFilterStream
             return;
         }
 
+        SpaceRecording recording = SpaceRecording.get(proxyFilter);
+        if (recording != null) {
+            // The content of the attachments is only opened when the recorded events are sent
+            recording.record(f -> readAttachments(pageProperties, attachments, f));
+            return;
+        }
+
         for (Map.Entry<String, List<AttachmentInfo>> attachmentEntry : attachments.entrySet()) {
             String attachmentName = attachmentEntry.getKey();
             List<AttachmentInfo> attachmentsWithThisName = attachmentEntry.getValue();
@@ -2642,8 +3457,8 @@ public class ConfluenceInputFilterStream
         if (attachments.size() == 1 || !properties.isHistoryEnabled()) {
             // if there is only one attachment to send, send it with wikiAttachment to match whatever confluence-xml
             // has always done things
-            try (FileInputStream fis = new FileInputStream(a.contentFile)) {
-                proxyFilter.onWikiAttachment(attachmentName, fis, a.size, a.parameters);
+            try (AttachmentContent content = a.content) {
+                proxyFilter.onWikiAttachment(attachmentName, content.getInputStream(), a.size, a.parameters);
             } catch (Exception e) {
                 this.logger.error("Failed to read attachment [{}] for the page [{}].", a.attachmentId,
                     createPageIdentifier(pageProperties), e);
@@ -2657,7 +3472,7 @@ public class ConfluenceInputFilterStream
             return;
         }
 
-        try (InputSource fis = new DefaultFileInputSource(a.contentFile)) {
+        try (InputSource fis = a.content) {
             proxyFilter.beginWikiDocumentAttachment(attachmentName, fis, a.size, a.parameters);
             try {
                 readWikiAttachmentRevisions(pageProperties, proxyFilter, attachments);
@@ -2665,9 +3480,9 @@ public class ConfluenceInputFilterStream
                 proxyFilter.endWikiDocumentAttachment(attachmentName, fis, a.size, a.parameters);
             }
         } catch (IOException e) {
-            logger.error("Failed to read attachment content at [{}]", a.contentFile, e);
+            logger.error("Failed to read attachment content at [{}]", a.content, e);
         } catch (FilterException e) {
-            logger.error("Failed to send attachment [{}] in page [{}]", a.contentFile,
+            logger.error("Failed to send attachment [{}] in page [{}]", a.content,
                 createPageIdentifier(pageProperties), e);
         }
     }
@@ -2688,13 +3503,13 @@ public class ConfluenceInputFilterStream
     private void readAttachmentRevision(ConfluenceProperties pageProperties, AttachmentInfo a,
         ConfluenceFilter proxyFilter)
     {
-        try (InputSource fis = new DefaultFileInputSource(a.contentFile)) {
+        try (InputSource fis = a.content) {
             proxyFilter.beginWikiAttachmentRevision(Long.toString(a.revision), fis, a.size, a.parameters);
             proxyFilter.endWikiAttachmentRevision(Long.toString(a.revision), fis, a.size, a.parameters);
         } catch (IOException e) {
-            logger.error("Failed to read attachment revision content at [{}]", a.contentFile, e);
+            logger.error("Failed to read attachment revision content at [{}]", a.content, e);
         } catch (FilterException e) {
-            logger.error("Failed to send attachment revision [{}] in page [{}]", a.contentFile,
+            logger.error("Failed to send attachment revision [{}] in page [{}]", a.content,
                 createPageIdentifier(pageProperties), e);
         }
     }
@@ -2709,7 +3524,13 @@ public class ConfluenceInputFilterStream
             return Collections.emptyMap();
         }
 
-        for (Long attachmentId : this.confluencePackage.getAttachments(pageId)) {
+        PrefetchedPage page = getPrefetchedPage(pageId);
+        Collection<Long> attachmentIds = page == null ? null : page.takeAttachmentIds();
+        if (attachmentIds == null) {
+            attachmentIds = this.confluencePackage.getAttachments(pageId);
+        }
+
+        for (Long attachmentId : attachmentIds) {
             ConfluenceProperties attachmentProperties = getAttachmentProperties(pageId, attachmentId, pageProperties);
             if (attachmentProperties == null
                 || this.confluencePackage.getAttachementVersion(attachmentProperties) == null
@@ -2784,45 +3605,46 @@ public class ConfluenceInputFilterStream
         }
     }
 
-    private String convertToXWiki21(String bodyContent, int bodyType) throws FilterException, ParseException
+    private String convertToXWiki21(String bodyContent, int bodyType, BodyConversion conversion)
+        throws FilterException, ParseException
     {
         DefaultWikiPrinter printer = new DefaultWikiPrinter();
         PrintRenderer renderer = this.xwiki21Factory.createRenderer(printer);
 
-        parse(bodyContent, bodyType, Syntax.XWIKI_2_1, renderer);
+        parse(bodyContent, bodyType, Syntax.XWIKI_2_1, renderer, conversion);
 
         return printer.toString();
     }
 
-    private ConfluenceConverterListener createConverter(Listener listener)
+    private ConfluenceConverterListener createConverter(Listener listener, BodyConversion conversion)
     {
         ConfluenceConverterListener converterListener = this.converterProvider.get();
         converterListener.setWrappedListener(listener);
-        converterListener.setMacroIds(macrosIds);
-        converterListener.setInlineComments(inlineComments);
-        converterListener.setTeasers(teasers);
+        converterListener.setMacroIds(conversion.getMacroIds());
+        converterListener.setInlineComments(conversion.getInlineComments());
+        converterListener.setTeasers(conversion.getTeasers());
 
         return converterListener;
     }
 
-    private Listener wrap(Listener listener)
+    private Listener wrap(Listener listener, BodyConversion conversion)
     {
         if (this.properties.isConvertToXWiki()) {
-            return createConverter(listener);
+            return createConverter(listener, conversion);
         }
 
         return listener;
     }
 
-    private void parse(String bodyContent, int bodyType, Syntax macroContentSyntax, Listener listener)
-        throws FilterException, ParseException
+    private void parse(String bodyContent, int bodyType, Syntax macroContentSyntax, Listener listener,
+        BodyConversion conversion) throws FilterException, ParseException
     {
         switch (bodyType) {
             case 0:
-                this.confluenceWIKIParser.parse(new StringReader(bodyContent), wrap(listener));
+                this.confluenceWIKIParser.parse(new StringReader(bodyContent), wrap(listener, conversion));
                 break;
             case 2:
-                createSyntaxFilter(bodyContent, macroContentSyntax).read(listener);
+                createSyntaxFilter(bodyContent, macroContentSyntax, conversion).read(listener);
                 break;
             default:
                 break;
@@ -2830,7 +3652,7 @@ public class ConfluenceInputFilterStream
     }
 
     private BeanInputFilterStream<ConfluenceXHTMLInputProperties> createSyntaxFilter(String bodyContent,
-        Syntax macroContentSyntax) throws FilterException
+        Syntax macroContentSyntax, BodyConversion conversion) throws FilterException
     {
         InternalConfluenceXHTMLInputProperties filterProperties = new InternalConfluenceXHTMLInputProperties();
         filterProperties.setSource(new StringInputSource(bodyContent));
@@ -2838,9 +3660,11 @@ public class ConfluenceInputFilterStream
         filterProperties.setReferenceConverter(confluenceConverter);
         filterProperties.setURLConverter(urlConverter);
         filterProperties.setMacroSupport(macroSupport);
+        filterProperties.setParserPool(getXHTMLParserPool());
+        filterProperties.setFastParser(this.properties.isFastXHTMLParser());
 
         if (this.properties.isConvertToXWiki()) {
-            filterProperties.setConverterProvider(this::createConverter);
+            filterProperties.setConverterProvider(listener -> createConverter(listener, conversion));
         }
 
         BeanInputFilterStreamFactory<ConfluenceXHTMLInputProperties> syntaxFilterFactory =
@@ -2849,6 +3673,16 @@ public class ConfluenceInputFilterStream
         return syntaxFilterFactory.createInputFilterStream(filterProperties);
     }
 
+    private synchronized ConfluenceXHTMLParserPool getXHTMLParserPool()
+    {
+        if (this.xhtmlParserPool == null) {
+            this.xhtmlParserPool =
+                new ConfluenceXHTMLParserPool(() -> (ConfluenceXHTMLParser) this.confluenceXHTMLParserProvider.get());
+        }
+
+        return this.xhtmlParserPool;
+    }
+
     private AttachmentInfo getAttachmentInfo(Long stableId, String attachmentName, ConfluenceProperties pageProperties,
         ConfluenceProperties attachmentProperties)
     {
@@ -2867,9 +3701,9 @@ public class ConfluenceInputFilterStream
         if (stableAttachmentId == null) {
             stableAttachmentId = attachmentId;
         }
-        File contentFile;
+        AttachmentContent content;
         try {
-            contentFile = this.confluencePackage.getAttachmentFile(stableId, stableAttachmentId, version);
+            content = this.confluencePackage.getAttachmentContent(stableId, stableAttachmentId, version);
         } catch (FileNotFoundException e) {
             this.logger.warn("Failed to find file corresponding to version [{}] attachment [{}] in page [{}]",
                 version, attachmentName, createPageIdentifier(pageProperties));
@@ -2889,8 +3723,8 @@ public class ConfluenceInputFilterStream
 
         long attachmentSize = attachmentContentProperties.getLong(ConfluenceXMLPackage.KEY_ATTACHMENT_CONTENT_FILESIZE,
             -1);
-        if (attachmentSize == -1 && contentFile != null) {
-            attachmentSize = contentFile.length();
+        if (attachmentSize == -1 && content != null) {
+            attachmentSize = content.getSize();
         }
 
         FilterEventParameters attachmentParameters = new FilterEventParameters();
@@ -2906,7 +3740,7 @@ public class ConfluenceInputFilterStream
                 attachmentProperties.getString(ConfluenceXMLPackage.KEY_ATTACHMENT_REVISION_COMMENT));
         }
 
-        return new AttachmentInfo(attachmentId, attachmentSize, contentFile, version, attachmentParameters);
+        return new AttachmentInfo(attachmentId, attachmentSize, content, version, attachmentParameters);
     }
 
     private Date fillAttachmentDates(ConfluenceProperties pageProperties, ConfluenceProperties attachmentProperties,
@@ -3067,7 +3901,7 @@ public class ConfluenceInputFilterStream
             if (commentBodyContent != null && this.properties.isConvertToXWiki()) {
                 try {
                     int commentBodyType = this.confluencePackage.getCommentBodyType(commentProperties);
-                    commentText = convertToXWiki21(commentBodyContent, commentBodyType);
+                    commentText = convertToXWiki21(commentBodyContent, commentBodyType, newConversion());
                 } catch (Exception e) {
                     this.logger.error("Failed to convert content of the comment with id [{}] for page [{}]",
                         commentId, createPageIdentifier(pageProperties), e);
@@ -265,6 +265,11 @@ final class ConfluenceWrappingListener extends WrappingListener
         }
     }
 
+    boolean isQueueing()
+    {
+        return !this.queuedListeners.isEmpty();
+    }
+
     void setMacroIds(Map<String, Integer> macroIds)
     {
         this.macroIds = macroIds;
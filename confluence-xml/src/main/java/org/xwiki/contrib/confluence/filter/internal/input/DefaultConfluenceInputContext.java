@@ -30,11 +30,11 @@ import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
 import org.xwiki.model.reference.EntityReference;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 
 import com.xpn.xwiki.XWiki;
@@ -42,6 +42,10 @@ import com.xpn.xwiki.XWikiContext;
 
 /**
  * Default implementation of {@link ConfluenceInputContext}.
+ * <p>
+ * The state of each import is held by its own {@link ConfluenceImportContext}. This component only tells which import
+ * each thread works on, and where it is in this import, so that the existing callers keep finding what they need
+ * without being given the import explicitly.
  * 
  * @version $Id$
  * @since 9.7
@@ -50,28 +54,59 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class DefaultConfluenceInputContext implements ConfluenceInputContext
 {
-    private final ThreadLocal<ConfluenceInputProperties> properties = new ThreadLocal<>();
+    private final ThreadLocal<Position> position = new ThreadLocal<>();
 
-    private final ThreadLocal<ConfluenceXMLPackage> confluencePackage = new ThreadLocal<>();
+    @Inject
+    private Provider<XWikiContext> contextProvider;
 
-    private final ThreadLocal<String> currentSpace = new ThreadLocal<>();
+    /**
+     * Where a thread is in an import.
+     */
+    private static final class Position
+    {
+        private final ConfluenceImportContext importContext;
+
+        private String currentSpace;
 
-    private final ThreadLocal<Long> currentPage = new ThreadLocal<>();
+        private Long currentPage;
 
-    private final ThreadLocal<Map<String, Map<String, EntityReference>>> titleReferenceCache = new ThreadLocal<>();
+        private Locale currentLocale;
 
-    private final ThreadLocal<Map<Long, EntityReference>> idReferenceCache = new ThreadLocal<>();
+        private Set<Locale> currentlyUsedLocales;
 
-    private final ThreadLocal<Map<String, String>> spaceTargets = new ThreadLocal<>();
+        private LocaleSplitter localeSplitter;
 
-    private final ThreadLocal<Locale> currentLocale = new ThreadLocal<>();
+        private Position(ConfluenceImportContext importContext)
+        {
+            this.importContext = importContext;
+        }
+    }
 
-    private final ThreadLocal<Locale> defaultLocale = new ThreadLocal<>();
+    /**
+     * The state of the context of a thread, used to initialize the context of another thread working on its behalf.
+     *
+     * @since 9.96.0
+     */
+    public static final class State
+    {
+        private final ConfluenceImportContext importContext;
 
-    private final ThreadLocal<Set<Locale>> currentlyUsedLocales = new ThreadLocal<>();
+        private final String currentSpace;
 
-    @Inject
-    private Provider<XWikiContext> contextProvider;
+        private State(ConfluenceImportContext importContext, String currentSpace)
+        {
+            this.importContext = importContext;
+            this.currentSpace = currentSpace;
+        }
+
+        /**
+         * @return the import the thread works on
+         */
+        public ConfluenceImportContext getImportContext()
+        {
+            return this.importContext;
+        }
+    }
 
     /**
      * @param confluencePackage the Confluence input package
@@ -81,12 +116,76 @@ public class DefaultConfluenceInputContext implements ConfluenceInputContext
     public void set(ConfluenceXMLPackage confluencePackage, ConfluenceInputProperties properties,
             Map<String, String> spaceTargets)
     {
-        this.confluencePackage.set(confluencePackage);
-        this.properties.set(properties);
-        this.titleReferenceCache.set(new HashMap<>());
-        this.idReferenceCache.set(new HashMap<>());
-        this.spaceTargets.set(spaceTargets);
-        initializeDefaultLocale();
+        ConfluenceImportContext importContext =
+            new ConfluenceImportContext(confluencePackage, properties, spaceTargets, getDefaultLocale(properties));
+        this.position.set(new Position(importContext));
+    }
+
+    /**
+     * @return the import the current thread works on, null if none
+     * @since 9.96.0
+     */
+    public ConfluenceImportContext getImportContext()
+    {
+        Position p = this.position.get();
+        return p == null ? null : p.importContext;
+    }
+
+    /**
+     * @return the state of the context of the current thread
+     * @since 9.96.0
+     */
+    public State getState()
+    {
+        Position p = this.position.get();
+        return p == null ? new State(null, null) : new State(p.importContext, p.currentSpace);
+    }
+
+    /**
+     * Initialize the context of the current thread so that it can work on a page on behalf of another thread. The
+     * locales used in the content are collected separately from the ones of the other thread.
+     *
+     * @param state the state of the context of the other thread, as returned by {@link #getState()}
+     * @param pageId the page being worked on
+     * @param locale the locale in which the content is analysed
+     * @since 9.96.0
+     */
+    public void setState(State state, Long pageId, Locale locale)
+    {
+        Position p = new Position(state.importContext);
+        p.currentSpace = state.currentSpace;
+        p.currentPage = pageId;
+        p.currentlyUsedLocales = new LinkedHashSet<>();
+        p.currentLocale = locale;
+        this.position.set(p);
+    }
+
+    /**
+     * Run a task in the current thread on behalf of another thread, and then restore the context the current thread
+     * had before. This lets the threads of a pool work for several imports.
+     *
+     * @param <T> the type of the result of the task
+     * @param state the state of the context of the other thread, as returned by {@link #getState()}
+     * @param pageId the page being worked on
+     * @param locale the locale in which the content is analysed
+     * @param task the task to run
+     * @return the result of the task
+     * @throws Exception when the task fails
+     * @since 9.96.0
+     */
+    public <T> T call(State state, Long pageId, Locale locale, Callable<T> task) throws Exception
+    {
+        Position previous = this.position.get();
+        setState(state, pageId, locale);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                this.position.remove();
+            } else {
+                this.position.set(previous);
+            }
+        }
     }
 
     /**
@@ -94,7 +193,10 @@ public class DefaultConfluenceInputContext implements ConfluenceInputContext
      */
     public void setCurrentSpace(String space)
     {
-        currentSpace.set(space);
+        Position p = this.position.get();
+        if (p != null) {
+            p.currentSpace = space;
+        }
     }
 
     /**
@@ -102,14 +204,17 @@ public class DefaultConfluenceInputContext implements ConfluenceInputContext
      */
     public void setCurrentPage(long pageId)
     {
-        currentPage.set(pageId);
-        this.currentlyUsedLocales.set(new LinkedHashSet<>());
-        this.currentLocale.set(defaultLocale.get());
+        Position p = this.position.get();
+        if (p != null) {
+            p.currentPage = pageId;
+            p.currentlyUsedLocales = new LinkedHashSet<>();
+            p.currentLocale = p.importContext.getDefaultLocale();
+        }
     }
 
-    private void initializeDefaultLocale()
+    private Locale getDefaultLocale(ConfluenceInputProperties properties)
     {
-        Locale dl = this.properties.get().getDefaultLocale();
+        Locale dl = properties.getDefaultLocale();
         if (dl == null || dl == Locale.ROOT) {
             XWikiContext xcontext = contextProvider.get();
             if (xcontext != null) {
@@ -122,112 +227,124 @@ public class DefaultConfluenceInputContext implements ConfluenceInputContext
         if (dl == null || dl == Locale.ROOT) {
             dl = Locale.ENGLISH;
         }
-        this.defaultLocale.set(dl);
+        return dl;
     }
 
     @Override
     public Locale getDefaultLocale()
     {
-        return this.defaultLocale.get();
+        ConfluenceImportContext importContext = getImportContext();
+        return importContext == null ? null : importContext.getDefaultLocale();
     }
 
     @Override
     public void setCurrentLocale(Locale locale)
     {
-        this.currentLocale.set(locale);
+        Position p = this.position.get();
+        if (p != null) {
+            p.currentLocale = locale;
+        }
     }
 
     @Override
     public void addUsedLocale(Locale locale)
     {
-        Set<Locale> locales = this.currentlyUsedLocales.get();
-        if (locales != null) {
-            locales.add(locale);
+        Position p = this.position.get();
+        if (p != null && p.currentlyUsedLocales != null) {
+            p.currentlyUsedLocales.add(locale);
         }
     }
 
     @Override
     public Collection<Locale> getCurrentlyUsedLocales()
     {
-        return this.currentlyUsedLocales.get();
+        Position p = this.position.get();
+        return p == null ? null : p.currentlyUsedLocales;
     }
+
+    /**
+     * @return the recorder splitting the content being converted by locale, null if the content is only converted for
+     *     the current locale
+     * @since 9.96.0
+     */
+    public LocaleSplitter getLocaleSplitter()
+    {
+        Position p = this.position.get();
+        return p == null ? null : p.localeSplitter;
+    }
+
+    /**
+     * @param splitter the recorder splitting the content being converted by locale, null to only convert the content
+     *     for the current locale
+     * @since 9.96.0
+     */
+    public void setLocaleSplitter(LocaleSplitter splitter)
+    {
+        Position p = this.position.get();
+        if (p != null) {
+            p.localeSplitter = splitter;
+        }
+    }
+
     /**
      * Clean the current context.
      */
     public void remove()
     {
-        this.confluencePackage.remove();
-        this.properties.remove();
-        this.currentPage.remove();
-        this.currentSpace.remove();
-        this.titleReferenceCache.remove();
-        this.idReferenceCache.remove();
-        this.currentLocale.remove();
-        this.currentlyUsedLocales.remove();
-        this.defaultLocale.remove();
-        this.spaceTargets.remove();
+        this.position.remove();
     }
 
     @Override
     public ConfluenceInputProperties getProperties()
     {
-        return this.properties.get();
+        ConfluenceImportContext importContext = getImportContext();
+        return importContext == null ? null : importContext.getProperties();
     }
 
     @Override
     public ConfluenceXMLPackage getConfluencePackage()
     {
-        return this.confluencePackage.get();
+        ConfluenceImportContext importContext = getImportContext();
+        return importContext == null ? null : importContext.getConfluencePackage();
     }
 
     @Override
     public String getCurrentSpace()
     {
-        return currentSpace.get();
+        Position p = this.position.get();
+        return p == null ? null : p.currentSpace;
     }
 
     @Override
     public Long getCurrentPage()
     {
-        return currentPage.get();
+        Position p = this.position.get();
+        return p == null ? null : p.currentPage;
     }
 
     @Override
     public EntityReference getCachedReference(long pageId, Supplier<EntityReference> supplier)
     {
-        Map<Long, EntityReference> m = idReferenceCache.get();
-        EntityReference ref = m.get(pageId);
-        if (ref == null && !m.containsKey(pageId)) {
-            // don't replace with compute if absent because null is a valid value
-            ref = supplier.get();
-            m.put(pageId, ref);
-        }
-        return ref;
+        return getImportContext().getCachedReference(pageId, supplier);
     }
 
     @Override
     public EntityReference getCachedReference(String spaceKey, String pageTitle, Supplier<EntityReference> supplier)
     {
-        Map<String, Map<String, EntityReference>> m = titleReferenceCache.get();
-        Map<String, EntityReference> space = m.computeIfAbsent(spaceKey, k -> new HashMap<>());
-        EntityReference ref = space.get(pageTitle);
-        if (ref == null && !space.containsKey(pageTitle)) {
-            // don't replace with compute if absent because null is a valid value
-            ref = supplier.get();
-            space.put(pageTitle, ref);
-        }
-        return ref;
+        return getImportContext().getCachedReference(spaceKey, pageTitle, supplier);
     }
 
     @Override
     public Locale getCurrentLocale()
     {
-        return currentLocale.get();
+        Position p = this.position.get();
+        return p == null ? null : p.currentLocale;
     }
 
     @Override
     public Map<String, String> getSpaceTargets()
     {
-        return spaceTargets.get();
+        ConfluenceImportContext importContext = getImportContext();
+        return importContext == null ? null : importContext.getSpaceTargets();
     }
 }
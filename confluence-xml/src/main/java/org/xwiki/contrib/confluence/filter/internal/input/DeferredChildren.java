@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parent to children relationships collected while indexing a Confluence package, to be written once per parent at
+ * the end instead of once per child.
+ * <p>
+ * Parents are identified by an arbitrary string (typically where their properties are stored) and children are
+ * grouped by the parent field in which they will be written. Children identifiers are kept in growable primitive
+ * arrays, in the order in which they were added.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class DeferredChildren
+{
+    private final Map<String, Map<String, LongList>> children = new LinkedHashMap<>();
+
+    private static final class LongList
+    {
+        private long[] values = new long[4];
+
+        private int size;
+
+        void add(long value)
+        {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size + (this.size >> 1) + 1);
+            }
+            this.values[this.size++] = value;
+        }
+
+        long[] toArray()
+        {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+
+    /**
+     * Make sure the parent is part of the deferred parents, even if no child is ever added to it.
+     *
+     * @param parent the parent
+     */
+    public void touch(String parent)
+    {
+        this.children.computeIfAbsent(parent, k -> new LinkedHashMap<>());
+    }
+
+    /**
+     * @param parent the parent
+     * @param field the field of the parent in which the child should be added
+     * @param child the identifier of the child
+     */
+    public void add(String parent, String field, long child)
+    {
+        this.children.computeIfAbsent(parent, k -> new LinkedHashMap<>())
+            .computeIfAbsent(field, k -> new LongList())
+            .add(child);
+    }
+
+    /**
+     * Forget the children added so far to some fields of a parent.
+     *
+     * @param parent the parent
+     * @param fields the fields to forget
+     */
+    public void discard(String parent, Iterator<String> fields)
+    {
+        Map<String, LongList> parentChildren = this.children.get(parent);
+        if (parentChildren != null) {
+            while (fields.hasNext()) {
+                parentChildren.remove(fields.next());
+            }
+        }
+    }
+
+    /**
+     * @return the parents, in the order in which they were first seen
+     */
+    public Collection<String> getParents()
+    {
+        return new ArrayList<>(this.children.keySet());
+    }
+
+    /**
+     * @param parent the parent
+     * @return the identifiers of the children of the parent, by field
+     */
+    public Map<String, long[]> getChildren(String parent)
+    {
+        Map<String, LongList> parentChildren = this.children.get(parent);
+        if (parentChildren == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, long[]> result = new LinkedHashMap<>(parentChildren.size());
+        for (Map.Entry<String, LongList> entry : parentChildren.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true if there is no deferred parent
+     */
+    public boolean isEmpty()
+    {
+        return this.children.isEmpty();
+    }
+
+    /**
+     * Forget everything.
+     */
+    public void clear()
+    {
+        this.children.clear();
+    }
+}
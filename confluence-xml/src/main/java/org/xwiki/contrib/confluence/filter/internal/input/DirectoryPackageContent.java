@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * A Confluence package extracted in a directory.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class DirectoryPackageContent implements PackageContent
+{
+    private final File directory;
+
+    /**
+     * @param directory the directory containing the package
+     */
+    public DirectoryPackageContent(File directory)
+    {
+        this.directory = directory;
+    }
+
+    @Override
+    public boolean exists(String path)
+    {
+        return new File(this.directory, path).isFile();
+    }
+
+    @Override
+    public long getSize(String path)
+    {
+        File file = new File(this.directory, path);
+
+        return file.isFile() ? file.length() : -1;
+    }
+
+    @Override
+    public InputStream open(String path) throws FileNotFoundException
+    {
+        return new FileInputStream(new File(this.directory, path));
+    }
+
+    @Override
+    public File getFile(String path) throws FileNotFoundException
+    {
+        File file = new File(this.directory, path);
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+
+        return file;
+    }
+
+    @Override
+    public void close()
+    {
+        // Nothing to release, deleting the directory (if needed) is the responsibility of whoever created it
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Split the content of a Confluence entities.xml file into the serialized top level {@code <object>} elements it
+ * contains, without parsing them, so that the actual parsing can be distributed.
+ * <p>
+ * Only the structure of the document is followed: tags (taking quoted attribute values into account), comments,
+ * CDATA sections, processing instructions and DOCTYPE declarations. This works at the byte level and thus supports
+ * ASCII compatible encodings like UTF-8, which is what Confluence produces. The returned fragments are in the
+ * encoding of the document, given by {@link #getEncoding()}.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class EntitiesSplitter
+{
+    private static final String OBJECT = "object";
+
+    private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final InputStream stream;
+
+    private final ByteArrayOutputStream fragment = new ByteArrayOutputStream();
+
+    private boolean capturing;
+
+    private int depth;
+
+    private String encoding = StandardCharsets.UTF_8.name();
+
+    /**
+     * @param stream the stream to split, which should be buffered
+     */
+    public EntitiesSplitter(InputStream stream)
+    {
+        this.stream = stream;
+    }
+
+    /**
+     * @return the encoding of the document, as declared in its XML declaration, UTF-8 otherwise
+     */
+    public String getEncoding()
+    {
+        return this.encoding;
+    }
+
+    /**
+     * @return the next top level object element, or null if the end of the document is reached
+     * @throws IOException when failing to read the stream or if the document is truncated
+     */
+    public byte[] next() throws IOException
+    {
+        for (int c = read(); c != -1; c = read()) {
+            if (c == '<') {
+                byte[] object = readMarkup();
+                if (object != null) {
+                    return object;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private byte[] readMarkup() throws IOException
+    {
+        int c = read();
+        if (c == '?') {
+            String instruction = readUntil("?>", true);
+            if (instruction.startsWith("xml")) {
+                Matcher matcher = ENCODING_PATTERN.matcher(instruction);
+                if (matcher.find()) {
+                    this.encoding = matcher.group(1);
+                }
+            }
+        } else if (c == '!') {
+            readDeclaration();
+        } else if (c == '/') {
+            readUntil(">");
+            this.depth--;
+            if (this.capturing && this.depth == 1) {
+                return endCapture();
+            }
+        } else if (c != -1) {
+            readStartTag(c);
+            if (this.capturing && this.depth == 1) {
+                // Self closing object element
+                return endCapture();
+            }
+        }
+
+        return null;
+    }
+
+    private void readDeclaration() throws IOException
+    {
+        int c = read();
+        if (c == '-') {
+            // Comment
+            read();
+            readUntil("-->");
+        } else if (c == '[') {
+            // CDATA section
+            readUntil("]]>");
+        } else {
+            // DOCTYPE, possibly with an internal subset
+            int brackets = 0;
+            for (; c != -1; c = read()) {
+                if (c == '[') {
+                    brackets++;
+                } else if (c == ']') {
+                    brackets--;
+                } else if (c == '>' && brackets == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readStartTag(int first) throws IOException
+    {
+        if (!this.capturing && this.depth == 1) {
+            StringBuilder name = new StringBuilder();
+            int c = first;
+            for (; c != -1 && !isNameEnd(c); c = read()) {
+                name.append((char) c);
+            }
+            if (name.toString().equals(OBJECT)) {
+                this.capturing = true;
+                this.fragment.reset();
+                this.fragment.write('<');
+                this.fragment.write(OBJECT.getBytes(StandardCharsets.US_ASCII));
+                this.fragment.write(c);
+            }
+            if (c == '>' || c == -1) {
+                this.depth++;
+                return;
+            }
+            if (c == '/') {
+                readTagEnd(c);
+                return;
+            }
+        }
+
+        readTagEnd(first);
+    }
+
+    private void readTagEnd(int first) throws IOException
+    {
+        int quote = 0;
+        int previous = 0;
+        for (int c = first; c != -1; c = read()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                if (previous != '/') {
+                    this.depth++;
+                }
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private static boolean isNameEnd(int c)
+    {
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+
+    private String readUntil(String end) throws IOException
+    {
+        return readUntil(end, false);
+    }
+
+    private String readUntil(String end, boolean keep) throws IOException
+    {
+        StringBuilder builder = keep ? new StringBuilder() : null;
+        int[] window = new int[end.length()];
+        int position = 0;
+        for (int c = read(); c != -1; c = read()) {
+            if (builder != null) {
+                builder.append((char) c);
+            }
+            window[position++ % window.length] = c;
+            if (position >= window.length && endsWith(window, position, end)) {
+                if (builder != null) {
+                    builder.setLength(builder.length() - end.length());
+                    return builder.toString();
+                }
+                return null;
+            }
+        }
+
+        throw new IOException(String.format("Unexpected end of document while looking for [%s]", end));
+    }
+
+    private static boolean endsWith(int[] window, int position, String end)
+    {
+        for (int i = 0; i < window.length; i++) {
+            if (window[(position + i) % window.length] != end.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private byte[] endCapture()
+    {
+        this.capturing = false;
+        return this.fragment.toByteArray();
+    }
+
+    private int read() throws IOException
+    {
+        int c = this.stream.read();
+        if (this.capturing && c != -1) {
+            this.fragment.write(c);
+        }
+        return c;
+    }
+}
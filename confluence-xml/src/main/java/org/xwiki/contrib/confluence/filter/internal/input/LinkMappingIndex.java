@@ -0,0 +1,454 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * A link mapping compiled for lookups: page ids are kept in a primitive open addressing table, whatever their space,
+ * and page titles in a map by case folded space key and title. The first reference added for a page wins.
+ * <p>
+ * References can also be added in their serialized form, in which case they are only resolved when they are looked
+ * up. They are then stored as a chain of segments shared with the other references of the same spaces, which keeps
+ * huge link mappings small.
+ * <p>
+ * The index is filled from one thread and can then be read from any number of threads, provided it was safely
+ * published.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public final class LinkMappingIndex implements ConfluenceLinkMappingReceiver, LinkMappingLookup
+{
+    private static final String IDS_SUFFIX = ":ids";
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Rough sizes, assuming compressed references
+    private static final int REFERENCE_SIZE = 4;
+
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    private static final int MAP_ENTRY_SIZE = 32;
+
+    private static final int STRING_SIZE = 40;
+
+    private static final int SEGMENT_SIZE = 24;
+
+    private final Function<String, EntityReference> resolver;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    // EntityReference or ReferenceSegment values
+    private Object[] idReferences = new Object[INITIAL_CAPACITY];
+
+    private int idCount;
+
+    private final Map<String, Map<String, Object>> titleReferences = new HashMap<>();
+
+    private int titleCount;
+
+    private long titleMemory;
+
+    private Map<ReferenceSegment, ReferenceSegment> segments = new HashMap<>();
+
+    private Map<String, String> segmentNames = new HashMap<>();
+
+    private long segmentMemory;
+
+    private LinkMappingLookup fallback;
+
+    /**
+     * A segment of a serialized reference, as found between the unescaped separators.
+     */
+    private static final class ReferenceSegment
+    {
+        private final ReferenceSegment parent;
+
+        private final String name;
+
+        private final int hash;
+
+        ReferenceSegment(ReferenceSegment parent, String name)
+        {
+            this.parent = parent;
+            this.name = name;
+            this.hash = 31 * (parent == null ? 0 : parent.hash) + name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ReferenceSegment)) {
+                return false;
+            }
+            ReferenceSegment other = (ReferenceSegment) obj;
+            // Parents are interned
+            return this.hash == other.hash && this.parent == other.parent && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        private void serialize(StringBuilder builder)
+        {
+            if (this.parent != null) {
+                this.parent.serialize(builder);
+                builder.append('.');
+            }
+            builder.append(this.name);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            serialize(builder);
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Create an index holding resolved references only.
+     */
+    public LinkMappingIndex()
+    {
+        this(null);
+    }
+
+    /**
+     * @param resolver resolves the references added in their serialized form, when they are looked up
+     */
+    public LinkMappingIndex(Function<String, EntityReference> resolver)
+    {
+        this.resolver = resolver;
+    }
+
+    /**
+     * @param linkMapping the link mapping, as found in the input properties
+     * @return the compiled link mapping
+     */
+    public static LinkMappingIndex of(Map<String, Map<String, EntityReference>> linkMapping)
+    {
+        LinkMappingIndex index = new LinkMappingIndex();
+        if (linkMapping == null) {
+            return index;
+        }
+
+        for (Map.Entry<String, Map<String, EntityReference>> entry : linkMapping.entrySet()) {
+            String spaceKey = entry.getKey();
+            Map<String, EntityReference> spaceMapping = entry.getValue();
+            if (spaceKey == null || spaceMapping == null) {
+                continue;
+            }
+
+            if (spaceKey.endsWith(IDS_SUFFIX)) {
+                spaceKey = spaceKey.substring(0, spaceKey.length() - IDS_SUFFIX.length());
+                for (Map.Entry<String, EntityReference> mapping : spaceMapping.entrySet()) {
+                    Long pageId = parsePageId(mapping.getKey());
+                    if (pageId != null) {
+                        index.addPage(spaceKey, pageId, mapping.getValue());
+                    }
+                }
+            } else {
+                for (Map.Entry<String, EntityReference> mapping : spaceMapping.entrySet()) {
+                    index.addPage(spaceKey, mapping.getKey(), mapping.getValue());
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @param pageId a page id from the link mapping
+     * @return the page id, or null if it's not a valid one, in which case it could never be matched anyway
+     */
+    static Long parsePageId(String pageId)
+    {
+        try {
+            return Long.parseLong(pageId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param fallback where to look for the pages which are not in this index
+     */
+    public void setFallback(LinkMappingLookup fallback)
+    {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void addPage(String spaceKey, long pageId, EntityReference reference)
+    {
+        if (reference != null) {
+            putPageId(pageId, reference);
+        }
+    }
+
+    /**
+     * @param spaceKey the space key
+     * @param pageId the page id
+     * @param reference the serialized reference, resolved when it is looked up
+     */
+    public void addPage(String spaceKey, long pageId, String reference)
+    {
+        if (reference != null) {
+            putPageId(pageId, toSegment(reference));
+        }
+    }
+
+    @Override
+    public void addPage(String spaceKey, String pageTitle, EntityReference reference)
+    {
+        if (reference != null) {
+            putPageTitle(spaceKey, pageTitle, reference);
+        }
+    }
+
+    /**
+     * @param spaceKey the space key
+     * @param pageTitle the page title
+     * @param reference the serialized reference, resolved when it is looked up
+     */
+    public void addPage(String spaceKey, String pageTitle, String reference)
+    {
+        if (reference != null) {
+            putPageTitle(spaceKey, pageTitle, toSegment(reference));
+        }
+    }
+
+    private void putPageId(long pageId, Object reference)
+    {
+        if ((this.idCount + 1) * 2 > this.ids.length) {
+            resize(this.ids.length * 2);
+        }
+
+        int mask = this.ids.length - 1;
+        int slot = slot(pageId, mask);
+        while (this.idReferences[slot] != null) {
+            if (this.ids[slot] == pageId) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.ids[slot] = pageId;
+        this.idReferences[slot] = reference;
+        this.idCount++;
+    }
+
+    private void putPageTitle(String spaceKey, String pageTitle, Object reference)
+    {
+        if (spaceKey == null || pageTitle == null) {
+            return;
+        }
+
+        String foldedSpaceKey = fold(spaceKey);
+        Map<String, Object> spaceMapping = this.titleReferences.get(foldedSpaceKey);
+        if (spaceMapping == null) {
+            spaceMapping = new HashMap<>();
+            this.titleReferences.put(foldedSpaceKey, spaceMapping);
+            this.titleMemory += MAP_ENTRY_SIZE + stringSize(foldedSpaceKey) + REFERENCE_SIZE;
+        }
+
+        String foldedPageTitle = fold(pageTitle);
+        if (spaceMapping.putIfAbsent(foldedPageTitle, reference) == null) {
+            this.titleCount++;
+            this.titleMemory += MAP_ENTRY_SIZE + stringSize(foldedPageTitle) + REFERENCE_SIZE;
+        }
+    }
+
+    private ReferenceSegment toSegment(String reference)
+    {
+        if (this.segments == null) {
+            throw new IllegalStateException("Serialized references can't be added to a trimmed link mapping index");
+        }
+
+        ReferenceSegment segment = null;
+        int start = 0;
+        int length = reference.length();
+        for (int i = 0; i < length; i++) {
+            char c = reference.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '.') {
+                segment = internSegment(segment, reference.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        return internSegment(segment, reference.substring(start));
+    }
+
+    private ReferenceSegment internSegment(ReferenceSegment parent, String name)
+    {
+        String internedName = this.segmentNames.putIfAbsent(name, name);
+        if (internedName == null) {
+            internedName = name;
+            this.segmentMemory += MAP_ENTRY_SIZE + stringSize(name);
+        }
+
+        ReferenceSegment segment = new ReferenceSegment(parent, internedName);
+        ReferenceSegment internedSegment = this.segments.putIfAbsent(segment, segment);
+        if (internedSegment == null) {
+            this.segmentMemory += SEGMENT_SIZE;
+            return segment;
+        }
+
+        return internedSegment;
+    }
+
+    /**
+     * Forget what is only needed to share the segments of the serialized references being added. Serialized
+     * references can't be added anymore after this.
+     */
+    public void trim()
+    {
+        this.segments = null;
+        this.segmentNames = null;
+    }
+
+    @Override
+    public EntityReference get(long pageId)
+    {
+        int mask = this.ids.length - 1;
+        int slot = slot(pageId, mask);
+        Object reference = this.idReferences[slot];
+        while (reference != null) {
+            if (this.ids[slot] == pageId) {
+                return resolve(reference);
+            }
+            slot = (slot + 1) & mask;
+            reference = this.idReferences[slot];
+        }
+
+        return this.fallback == null ? null : this.fallback.get(pageId);
+    }
+
+    @Override
+    public EntityReference get(String spaceKey, String pageTitle)
+    {
+        if (spaceKey == null || pageTitle == null) {
+            return null;
+        }
+
+        Map<String, Object> spaceMapping = this.titleReferences.get(fold(spaceKey));
+        Object reference = spaceMapping == null ? null : spaceMapping.get(fold(pageTitle));
+        if (reference == null) {
+            return this.fallback == null ? null : this.fallback.get(spaceKey, pageTitle);
+        }
+
+        return resolve(reference);
+    }
+
+    private EntityReference resolve(Object reference)
+    {
+        if (reference instanceof ReferenceSegment) {
+            return this.resolver.apply(reference.toString());
+        }
+
+        return (EntityReference) reference;
+    }
+
+    /**
+     * @return the number of page ids in the index
+     */
+    public int getIdCount()
+    {
+        return this.idCount;
+    }
+
+    /**
+     * @return the number of page titles in the index
+     */
+    public int getTitleCount()
+    {
+        return this.titleCount;
+    }
+
+    /**
+     * @return an estimation of the memory used by the index, in bytes, not counting the resolved references added to
+     *     it which are shared with the link mapping
+     */
+    public long getEstimatedMemory()
+    {
+        long idMemory = 2L * ARRAY_HEADER_SIZE + (long) this.ids.length * (Long.BYTES + REFERENCE_SIZE);
+        return idMemory + this.titleMemory + this.segmentMemory;
+    }
+
+    private void resize(int capacity)
+    {
+        long[] oldIds = this.ids;
+        Object[] oldReferences = this.idReferences;
+        this.ids = new long[capacity];
+        this.idReferences = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldReferences[i] != null) {
+                int slot = slot(oldIds[i], mask);
+                while (this.idReferences[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.ids[slot] = oldIds[i];
+                this.idReferences[slot] = oldReferences[i];
+            }
+        }
+    }
+
+    static int slot(long pageId, int mask)
+    {
+        long hash = pageId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static long stringSize(String s)
+    {
+        return STRING_SIZE + (long) s.length() * Character.BYTES;
+    }
+
+    /**
+     * Same folding as the CaseInsensitiveMap used for the link mapping in the input properties.
+     *
+     * @param s the string to fold
+     * @return the folded string
+     */
+    static String fold(String s)
+    {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
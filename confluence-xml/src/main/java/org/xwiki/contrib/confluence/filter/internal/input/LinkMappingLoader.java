@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import org.xwiki.model.reference.EntityReference;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Load link mappings too big to be parsed in memory as a whole: the JSON is read as a stream and the references are
+ * only resolved when they are looked up.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public final class LinkMappingLoader
+{
+    private static final String IDS_SUFFIX = ":ids";
+
+    /**
+     * Receive the entries of a link mapping, as they are read.
+     */
+    @FunctionalInterface
+    interface EntryHandler
+    {
+        /**
+         * @param spaceKey the space key
+         * @param page the page id, or the page title
+         * @param isPageId whether the page is given by its id
+         * @param reference the serialized reference
+         * @throws IOException when the entry could not be handled
+         */
+        void onEntry(String spaceKey, String page, boolean isPageId, String reference) throws IOException;
+    }
+
+    private LinkMappingLoader()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param file a link mapping file, either as JSON or in the form produced by
+     *     {@link MappedLinkMapping#compile(InputStream, Path)}
+     * @param resolver resolves the references, when they are looked up
+     * @return the link mapping. A compiled link mapping is memory mapped instead of being loaded.
+     * @throws IOException when the link mapping could not be read
+     */
+    public static LinkMappingLookup open(Path file, Function<String, EntityReference> resolver) throws IOException
+    {
+        if (MappedLinkMapping.isCompiled(file)) {
+            return new MappedLinkMapping(file, resolver);
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return load(in, resolver);
+        }
+    }
+
+    /**
+     * @param in the link mapping, as JSON
+     * @param resolver resolves the references, when they are looked up
+     * @return the loaded link mapping
+     * @throws IOException when the link mapping could not be read
+     */
+    public static LinkMappingIndex load(InputStream in, Function<String, EntityReference> resolver)
+        throws IOException
+    {
+        LinkMappingIndex index = new LinkMappingIndex(resolver);
+        read(in, (spaceKey, page, isPageId, reference) -> {
+            if (isPageId) {
+                Long pageId = LinkMappingIndex.parsePageId(page);
+                if (pageId != null) {
+                    index.addPage(spaceKey, pageId, reference);
+                }
+            } else {
+                index.addPage(spaceKey, page, reference);
+            }
+        });
+        index.trim();
+        return index;
+    }
+
+    /**
+     * Read a link mapping one entry at a time.
+     *
+     * @param in the link mapping, as JSON
+     * @param handler receives the entries
+     * @throws IOException when the link mapping could not be read
+     */
+    static void read(InputStream in, EntryHandler handler) throws IOException
+    {
+        try (JsonParser parser = new JsonFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The link mapping is expected to be a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String spaceKey = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                boolean isPageIds = spaceKey.endsWith(IDS_SUFFIX);
+                if (isPageIds) {
+                    spaceKey = spaceKey.substring(0, spaceKey.length() - IDS_SUFFIX.length());
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String page = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        handler.onEntry(spaceKey, page, isPageIds, parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+}
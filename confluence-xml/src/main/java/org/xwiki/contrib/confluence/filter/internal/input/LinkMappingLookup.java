@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Find the reference a link mapping gives to a Confluence page.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public interface LinkMappingLookup
+{
+    /**
+     * @param pageId the id of the page
+     * @return the reference mapped to this page id, or null if there is none
+     */
+    EntityReference get(long pageId);
+
+    /**
+     * @param spaceKey the key of the space of the page, case insensitive
+     * @param pageTitle the title of the page, case insensitive
+     * @return the reference mapped to this page, or null if there is none
+     */
+    EntityReference get(String spaceKey, String pageTitle);
+}
@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.QueueListener;
+
+/**
+ * Records the events produced by converting a content once, remembering which ones only belong to a given locale, so
+ * that the content of each locale can be produced without converting the content again.
+ * <p>
+ * Translation macros call {@link #beginLocale(Locale, Listener, boolean)} and {@link #endLocale(Listener)} around the
+ * content they send instead of only sending the content of the current locale. Events sent outside of translation
+ * macros are common to all the locales. The recorded events cannot be reliably split when the content of a translation
+ * macro is not directly sent to this recorder (nested or inline content, events queued to generate anchors or
+ * selection contexts) or changes how the following events are handled. In this case, {@link #isSplittable()} returns
+ * false and the content is expected to be converted again for each locale.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class LocaleSplitter implements InvocationHandler
+{
+    private static final class Segment
+    {
+        private final Locale locale;
+
+        private final boolean excluded;
+
+        private final QueueListener events = new QueueListener();
+
+        Segment(Locale locale, boolean excluded)
+        {
+            this.locale = locale;
+            this.excluded = excluded;
+        }
+
+        boolean belongsTo(Locale target)
+        {
+            return !this.excluded && (this.locale == null || this.locale.equals(target));
+        }
+    }
+
+    /**
+     * Keeps track of the locale of the content in which the macros are counted.
+     */
+    private final class MacroCounter extends HashMap<String, Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Integer put(String id, Integer count)
+        {
+            // The converter increments the count of a macro just before sending it
+            Integer previous = super.put(id, count);
+            if (excludedDepth == 0) {
+                Locale locale = localeStack.peek();
+                Map<String, Integer> macroIds =
+                    locale == null ? commonMacroIds : localeMacroIds.computeIfAbsent(locale, k -> new HashMap<>());
+                macroIds.merge(id, count - (previous == null ? 0 : previous), Integer::sum);
+            }
+            return previous;
+        }
+    }
+
+    private final Listener listener =
+        (Listener) Proxy.newProxyInstance(Listener.class.getClassLoader(), new Class<?>[] { Listener.class }, this);
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    private final Set<Locale> locales = new LinkedHashSet<>();
+
+    private final Deque<Locale> localeStack = new ArrayDeque<>();
+
+    private final Deque<Boolean> blockMacroStack = new ArrayDeque<>();
+
+    private boolean afterBlockMacro;
+
+    private int excludedDepth;
+
+    private Segment current;
+
+    private boolean splittable = true;
+
+    private final Map<String, Integer> commonMacroIds = new HashMap<>();
+
+    private final Map<Locale, Map<String, Integer>> localeMacroIds = new HashMap<>();
+
+    private final MacroCounter macroCounter = new MacroCounter();
+
+    /**
+     * @return the listener recording the events
+     */
+    public Listener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * Mark the beginning of the content only belonging to the given locale.
+     *
+     * @param locale the locale of the following events
+     * @param target the listener to which the content is about to be sent
+     * @param inline true if the content is inline
+     * @return false if the content cannot be split and should be sent as usual
+     */
+    public boolean beginLocale(Locale locale, Listener target, boolean inline)
+    {
+        if (inline || !isRecording(target)) {
+            this.splittable = false;
+        }
+        if (!this.splittable) {
+            return false;
+        }
+
+        Locale parent = this.localeStack.peek();
+        if (parent != null && !parent.equals(locale)) {
+            // Content of a locale nested in the content of another locale does not belong to any locale
+            this.excludedDepth++;
+        }
+        this.localeStack.push(locale);
+        this.blockMacroStack.push(this.afterBlockMacro);
+        this.locales.add(locale);
+        this.current = null;
+
+        return true;
+    }
+
+    /**
+     * Mark the end of the content started with the last successful call to
+     * {@link #beginLocale(Locale, Listener, boolean)}.
+     *
+     * @param target the listener to which the content was sent
+     */
+    public void endLocale(Listener target)
+    {
+        // The handling of the following events must not depend on the locale
+        if (!isRecording(target) || this.blockMacroStack.pop() != this.afterBlockMacro) {
+            this.splittable = false;
+        }
+
+        Locale locale = this.localeStack.pop();
+        Locale parent = this.localeStack.peek();
+        if (parent != null && !parent.equals(locale)) {
+            this.excludedDepth--;
+        }
+        this.current = null;
+    }
+
+    private boolean isRecording(Listener target)
+    {
+        // Only the events directly sent to this recorder can be split
+        return target instanceof ConfluenceWrappingListener
+            && !((ConfluenceWrappingListener) target).isQueueing()
+            && ((ConfluenceWrappingListener) target).getWrappedListener() == this.listener;
+    }
+
+    /**
+     * @return true if the recorded events can be split by locale
+     */
+    public boolean isSplittable()
+    {
+        return this.splittable;
+    }
+
+    /**
+     * @param splittable false if the recorded events cannot be split by locale
+     */
+    public void setSplittable(boolean splittable)
+    {
+        this.splittable = splittable;
+    }
+
+    /**
+     * @return the locales for which some content was recorded
+     */
+    public Set<Locale> getLocales()
+    {
+        return this.locales;
+    }
+
+    /**
+     * Send the recorded events belonging to the given locale. The events stay recorded.
+     *
+     * @param locale the locale of the content to send
+     * @param target the listener receiving the events
+     */
+    public void send(Locale locale, Listener target)
+    {
+        for (Segment segment : this.segments) {
+            if (segment.belongsTo(locale)) {
+                segment.events.forEach(e -> e.eventType.fireEvent(target, e.eventParameters));
+            }
+        }
+    }
+
+    /**
+     * @return the map to give to the converter to count the macros, keeping track of the locale of each macro
+     */
+    public Map<String, Integer> getMacroCounter()
+    {
+        return this.macroCounter;
+    }
+
+    /**
+     * @param locale a locale
+     * @return the macros found in the content of the given locale, with the number of occurrences
+     */
+    public Map<String, Integer> getMacroIds(Locale locale)
+    {
+        Map<String, Integer> macroIds = new HashMap<>(this.commonMacroIds);
+        Map<String, Integer> localeMacroIds = this.localeMacroIds.get(locale);
+        if (localeMacroIds != null) {
+            localeMacroIds.forEach((id, count) -> macroIds.merge(id, count, Integer::sum));
+        }
+
+        return macroIds;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "LocaleSplitter" + this.locales;
+            }
+        }
+
+        Locale locale = this.localeStack.peek();
+        boolean excluded = this.excludedDepth > 0;
+        if (this.current == null || !Objects.equals(this.current.locale, locale) || this.current.excluded != excluded) {
+            this.current = new Segment(locale, excluded);
+            this.segments.add(this.current);
+        }
+
+        this.afterBlockMacro = "onMacro".equals(method.getName()) && !((boolean) args[3]);
+
+        try {
+            return method.invoke(this.current.events, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * A compiled link mapping, memory mapped and looked up in place so that it does not use any heap, whatever its size.
+ * <p>
+ * The file starts with a header, followed by an open addressing table of the page ids, an open addressing table of
+ * the hashes of the case folded space keys and page titles, and the strings they point to.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public final class MappedLinkMapping implements LinkMappingLookup
+{
+    private static final int MAGIC = 0x58434C4D;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int ID_ENTRY_SIZE = 16;
+
+    private static final int TITLE_ENTRY_SIZE = 24;
+
+    // Each chunk is mapped with an overlap on the next one, so that no value read from a chunk is cut
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private static final int CHUNK_OVERLAP = 1 << 20;
+
+    private static final int MAX_STRING_SIZE = CHUNK_OVERLAP - Integer.BYTES;
+
+    private static final char KEY_SEPARATOR = '\0';
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final Function<String, EntityReference> resolver;
+
+    private final MappedByteBuffer[] chunks;
+
+    private final int idMask;
+
+    private final int titleMask;
+
+    private final long titleTableOffset;
+
+    private final long poolOffset;
+
+    /**
+     * @param file the compiled link mapping
+     * @param resolver resolves the references, when they are looked up
+     * @throws IOException when the file could not be mapped, or is not a compiled link mapping
+     */
+    public MappedLinkMapping(Path file, Function<String, EntityReference> resolver) throws IOException
+    {
+        this.resolver = resolver;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(String.format("[%s] is not a compiled link mapping", file));
+            }
+
+            this.chunks = new MappedByteBuffer[(int) ((size - 1) / CHUNK_SIZE) + 1];
+            for (int i = 0; i < this.chunks.length; i++) {
+                long position = i * CHUNK_SIZE;
+                this.chunks[i] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE + CHUNK_OVERLAP,
+                        size - position));
+            }
+        }
+
+        if (getInt(0) != MAGIC || getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(String.format("[%s] is not a compiled link mapping, or has an unsupported version",
+                file));
+        }
+
+        int idCapacity = getInt(2L * Integer.BYTES);
+        int titleCapacity = getInt(4L * Integer.BYTES);
+        this.idMask = idCapacity - 1;
+        this.titleMask = titleCapacity - 1;
+        this.titleTableOffset = HEADER_SIZE + (long) idCapacity * ID_ENTRY_SIZE;
+        this.poolOffset = this.titleTableOffset + (long) titleCapacity * TITLE_ENTRY_SIZE;
+    }
+
+    /**
+     * @param file a link mapping file
+     * @return whether the file is a compiled link mapping
+     * @throws IOException when the file could not be read
+     */
+    public static boolean isCompiled(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compile a link mapping so that it can be memory mapped. The link mapping is read as a stream and only the
+     * positions of its entries are kept in memory during the compilation.
+     *
+     * @param json the link mapping, as JSON
+     * @param target where to write the compiled link mapping
+     * @throws IOException when the link mapping could not be read or written
+     */
+    public static void compile(InputStream json, Path target) throws IOException
+    {
+        Path pool = Files.createTempFile(target.toAbsolutePath().getParent(), "linkmapping", ".pool");
+        try {
+            Entries ids = new Entries(2);
+            Entries titles = new Entries(3);
+            try (PoolWriter poolWriter = new PoolWriter(Files.newOutputStream(pool))) {
+                LinkMappingLoader.read(json, (spaceKey, page, isPageId, reference) -> {
+                    if (isPageId) {
+                        Long pageId = LinkMappingIndex.parsePageId(page);
+                        if (pageId != null) {
+                            ids.add(pageId, poolWriter.write(reference));
+                        }
+                    } else {
+                        String key = toKey(spaceKey, page);
+                        long keyOffset = poolWriter.write(key);
+                        titles.add(hash(key), keyOffset, poolWriter.write(reference));
+                    }
+                });
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+                long[] idTable = ids.toIdTable();
+                long[] titleTable = titles.toTitleTable();
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(idTable.length / 2);
+                out.writeInt(ids.size);
+                out.writeInt(titleTable.length / 3);
+                out.writeInt(titles.size);
+                for (long value : idTable) {
+                    out.writeLong(value);
+                }
+                for (long value : titleTable) {
+                    out.writeLong(value);
+                }
+                Files.copy(pool, out);
+            }
+        } finally {
+            Files.deleteIfExists(pool);
+        }
+    }
+
+    @Override
+    public EntityReference get(long pageId)
+    {
+        int slot = LinkMappingIndex.slot(pageId, this.idMask);
+        while (true) {
+            long entry = HEADER_SIZE + (long) slot * ID_ENTRY_SIZE;
+            long reference = getLong(entry + Long.BYTES);
+            if (reference == 0) {
+                return null;
+            }
+            if (getLong(entry) == pageId) {
+                return this.resolver.apply(getString(this.poolOffset + reference - 1));
+            }
+            slot = (slot + 1) & this.idMask;
+        }
+    }
+
+    @Override
+    public EntityReference get(String spaceKey, String pageTitle)
+    {
+        if (spaceKey == null || pageTitle == null) {
+            return null;
+        }
+
+        String key = toKey(spaceKey, pageTitle);
+        long hash = hash(key);
+        int slot = titleSlot(hash, this.titleMask);
+        while (true) {
+            long entry = this.titleTableOffset + (long) slot * TITLE_ENTRY_SIZE;
+            long reference = getLong(entry + 2L * Long.BYTES);
+            if (reference == 0) {
+                return null;
+            }
+            if (getLong(entry) == hash && key.equals(getString(this.poolOffset + getLong(entry + Long.BYTES)))) {
+                return this.resolver.apply(getString(this.poolOffset + reference - 1));
+            }
+            slot = (slot + 1) & this.titleMask;
+        }
+    }
+
+    private ByteBuffer chunk(long offset)
+    {
+        return this.chunks[(int) (offset / CHUNK_SIZE)];
+    }
+
+    private int getInt(long offset)
+    {
+        return chunk(offset).getInt((int) (offset % CHUNK_SIZE));
+    }
+
+    private long getLong(long offset)
+    {
+        return chunk(offset).getLong((int) (offset % CHUNK_SIZE));
+    }
+
+    private String getString(long offset)
+    {
+        // Duplicate the buffer so that concurrent lookups don't share its position
+        ByteBuffer buffer = chunk(offset).duplicate();
+        buffer.position((int) (offset % CHUNK_SIZE));
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String toKey(String spaceKey, String pageTitle)
+    {
+        return LinkMappingIndex.fold(spaceKey) + KEY_SEPARATOR + LinkMappingIndex.fold(pageTitle);
+    }
+
+    private static long hash(String key)
+    {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static int titleSlot(long hash, int mask)
+    {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableCapacity(int size)
+    {
+        int capacity = 2;
+        while (capacity < size * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * The entries of one of the tables, as long tuples, while they are collected.
+     */
+    private static final class Entries
+    {
+        private final int width;
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        Entries(int width)
+        {
+            this.width = width;
+        }
+
+        void add(long... entry)
+        {
+            int position = this.size * this.width;
+            if (position + this.width > this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            }
+            System.arraycopy(entry, 0, this.values, position, this.width);
+            this.size++;
+        }
+
+        // Entries are (id, reference offset + 1), 0 marking empty slots. The first reference of an id wins.
+        long[] toIdTable()
+        {
+            int capacity = tableCapacity(this.size);
+            long[] table = new long[capacity * 2];
+            int mask = capacity - 1;
+            for (int i = 0; i < this.size; i++) {
+                long id = this.values[i * 2];
+                int slot = LinkMappingIndex.slot(id, mask);
+                while (table[slot * 2 + 1] != 0 && table[slot * 2] != id) {
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot * 2 + 1] == 0) {
+                    table[slot * 2] = id;
+                    table[slot * 2 + 1] = this.values[i * 2 + 1] + 1;
+                }
+            }
+            return table;
+        }
+
+        // Entries are (hash, key offset, reference offset + 1), 0 marking empty slots. Entries with the same key are
+        // all kept: the first one is found first since it comes first in the probe sequence.
+        long[] toTitleTable()
+        {
+            int capacity = tableCapacity(this.size);
+            long[] table = new long[capacity * 3];
+            int mask = capacity - 1;
+            for (int i = 0; i < this.size; i++) {
+                int slot = titleSlot(this.values[i * 3], mask);
+                while (table[slot * 3 + 2] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot * 3] = this.values[i * 3];
+                table[slot * 3 + 1] = this.values[i * 3 + 1];
+                table[slot * 3 + 2] = this.values[i * 3 + 2] + 1;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Write the strings of the compiled link mapping, remembering their offsets.
+     */
+    private static final class PoolWriter implements AutoCloseable
+    {
+        private final DataOutputStream out;
+
+        private long offset;
+
+        PoolWriter(OutputStream out)
+        {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        long write(String value) throws IOException
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_SIZE) {
+                throw new IOException(String.format("The link mapping contains a string longer than [%d] bytes",
+                    MAX_STRING_SIZE));
+            }
+
+            long stringOffset = this.offset;
+            this.out.writeInt(bytes.length);
+            this.out.write(bytes);
+            this.offset += Integer.BYTES + bytes.length;
+            return stringOffset;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.out.close();
+        }
+    }
+}
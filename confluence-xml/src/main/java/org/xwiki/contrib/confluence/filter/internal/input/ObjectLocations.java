@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.xwiki.contrib.confluence.filter.internal.hierarchy.LongLongHashMap;
+import org.xwiki.contrib.confluence.filter.internal.store.ConfluencePropertiesStore;
+
+/**
+ * The location of the properties of each object of a Confluence package, which also tells the type of the object.
+ * <p>
+ * Locations look like {@code <folder>/<id>/properties.properties}, sometimes nested in the folder of a parent object
+ * ({@code pages/<pageId>/attachments/<id>/properties.properties}). Instead of a full path per object, each distinct
+ * location pattern is kept once and each object only stores the code of its pattern and, for nested locations, the id
+ * of its parent in primitive maps. The path is rebuilt when asked for.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class ObjectLocations
+{
+    private static final String STATE = "objectLocations";
+
+    // Markers of the variable segments of a pattern, which cannot be found in a real path
+    private static final String ID = "\0id";
+
+    private static final String PARENT = "\0parent";
+
+    private static final long NO_PARENT = -1;
+
+    private final List<String[]> patterns = new ArrayList<>();
+
+    private final Map<String, Integer> patternCodes = new HashMap<>();
+
+    private final LongLongHashMap codes = new LongLongHashMap();
+
+    private final LongLongHashMap parents = new LongLongHashMap();
+
+    // The few locations which don't follow any pattern (e.g. nested in folders of different parents)
+    private final Map<Long, String> others = new HashMap<>();
+
+    /**
+     * Index the location of an object, unless this object already has one.
+     *
+     * @param path the location of the properties of the object, ignored if it does not end with
+     *     {@code <numeric id>/<file>}
+     */
+    public void add(String path)
+    {
+        String[] segments = StringUtils.split(path, ConfluencePropertiesStore.SEPARATOR);
+        if (segments.length < 2 || !NumberUtils.isDigits(segments[segments.length - 2])) {
+            return;
+        }
+
+        long id = Long.parseLong(segments[segments.length - 2]);
+        if (contains(id)) {
+            return;
+        }
+
+        segments[segments.length - 2] = ID;
+        long parent = NO_PARENT;
+        for (int i = 0; i < segments.length - 2; i++) {
+            if (NumberUtils.isDigits(segments[i])) {
+                long segmentId = Long.parseLong(segments[i]);
+                if (parent != NO_PARENT && parent != segmentId) {
+                    this.others.put(id, path);
+                    return;
+                }
+                parent = segmentId;
+                segments[i] = PARENT;
+            }
+        }
+
+        String key = String.join(String.valueOf(ConfluencePropertiesStore.SEPARATOR), segments);
+        Integer code = this.patternCodes.get(key);
+        if (code == null) {
+            code = this.patterns.size();
+            this.patterns.add(segments);
+            this.patternCodes.put(key, code);
+        }
+        this.codes.put(id, code);
+        if (parent != NO_PARENT) {
+            this.parents.put(id, parent);
+        }
+    }
+
+    /**
+     * @param id the id of the object
+     * @return true if the location of the object is known
+     */
+    public boolean contains(long id)
+    {
+        return this.codes.containsKey(id) || this.others.containsKey(id);
+    }
+
+    /**
+     * @param id the id of the object
+     * @return the location of the properties of the object, or null if it is unknown
+     */
+    public String get(long id)
+    {
+        long code = this.codes.get(id, -1);
+        if (code < 0) {
+            return this.others.get(id);
+        }
+
+        String[] segments = this.patterns.get((int) code);
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            if (path.length() > 0) {
+                path.append(ConfluencePropertiesStore.SEPARATOR);
+            }
+            if (ID.equals(segment)) {
+                path.append(id);
+            } else if (PARENT.equals(segment)) {
+                path.append(this.parents.get(id, NO_PARENT));
+            } else {
+                path.append(segment);
+            }
+        }
+
+        return path.toString();
+    }
+
+    /**
+     * @return the number of indexed objects
+     */
+    public int size()
+    {
+        return this.codes.size() + this.others.size();
+    }
+
+    /**
+     * Forget all the locations.
+     */
+    public void clear()
+    {
+        this.patterns.clear();
+        this.patternCodes.clear();
+        this.codes.clear();
+        this.parents.clear();
+        this.others.clear();
+    }
+
+    /**
+     * @return the locations, in a form which can be written in a state snapshot
+     */
+    public Map<String, Map<?, ?>> getState()
+    {
+        Map<String, Map<?, ?>> state = new HashMap<>();
+        state.put(STATE, new LocationsMap());
+
+        return state;
+    }
+
+    /**
+     * @param state the locations, as returned by {@link #getState()}
+     * @return false if the state does not contain the locations, in which case nothing is indexed
+     */
+    public boolean restoreState(Map<String, ? extends Map<?, ?>> state)
+    {
+        clear();
+
+        Map<?, ?> locations = state.get(STATE);
+        if (locations == null) {
+            return false;
+        }
+
+        for (Object location : locations.values()) {
+            add((String) location);
+        }
+
+        return true;
+    }
+
+    private final class LocationsMap extends AbstractMap<Long, String>
+    {
+        @Override
+        public Set<Entry<Long, String>> entrySet()
+        {
+            return new AbstractSet<>()
+            {
+                @Override
+                public Iterator<Entry<Long, String>> iterator()
+                {
+                    Iterator<Entry<Long, String>> otherIterator = others.entrySet().iterator();
+
+                    return new Iterator<>()
+                    {
+                        private int slot = codes.nextSlot(0);
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return this.slot >= 0 || otherIterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Long, String> next()
+                        {
+                            if (this.slot < 0) {
+                                if (!otherIterator.hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                return otherIterator.next();
+                            }
+                            long id = codes.keyAt(this.slot);
+                            this.slot = codes.nextSlot(this.slot + 1);
+
+                            return new SimpleImmutableEntry<>(id, ObjectLocations.this.get(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return ObjectLocations.this.size();
+                }
+            };
+        }
+    }
+}
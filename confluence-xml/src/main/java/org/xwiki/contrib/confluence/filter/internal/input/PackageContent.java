@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Give access to the files of a Confluence package, whatever the form of the package.
+ * <p>
+ * Paths are relative to the root of the package and use {@code /} as separator.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public interface PackageContent extends Closeable
+{
+    /**
+     * @param path the path of the file in the package
+     * @return true if the package contains this file
+     */
+    boolean exists(String path);
+
+    /**
+     * @param path the path of the file in the package
+     * @return the size of the file in bytes, -1 if unknown or if the file does not exist
+     */
+    long getSize(String path);
+
+    /**
+     * @param path the path of the file in the package
+     * @return a new stream to read the file
+     * @throws IOException when failing to open the file, {@link java.io.FileNotFoundException} if it does not exist
+     */
+    InputStream open(String path) throws IOException;
+
+    /**
+     * Access the file on the file system. Prefer {@link #open(String)}, which can be much cheaper.
+     *
+     * @param path the path of the file in the package
+     * @return the file on the file system, possibly extracted from the package on demand
+     * @throws IOException when failing to access the file, {@link java.io.FileNotFoundException} if it does not exist
+     */
+    File getFile(String path) throws IOException;
+}
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the records of the pages ahead of the thread sending the filter events, so that it does not wait for the disk
+ * when it reaches them.
+ * <p>
+ * The sending thread asks for the pages it will send soon with {@link #prefetch(long, Callable)}, in the order in
+ * which it will send them, and then takes them with {@link #take(long)}. Pages prefetched before the one which is
+ * taken were skipped and are discarded. A page which was not prefetched, or could not be loaded, is expected to be
+ * loaded by the sending thread itself.
+ * <p>
+ * This class is not thread safe: it must only be used by the sending thread.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class PagePrefetcher implements Closeable
+{
+    private final ExecutorService executor;
+
+    private final int depth;
+
+    private final Map<Long, Future<PrefetchedPage>> pending = new LinkedHashMap<>();
+
+    private long hits;
+
+    private long misses;
+
+    private long stallTime;
+
+    /**
+     * @param executor the threads loading the pages
+     * @param depth the maximum number of pages loaded in advance and not taken yet
+     */
+    PagePrefetcher(ExecutorService executor, int depth)
+    {
+        this.executor = executor;
+        this.depth = depth;
+    }
+
+    /**
+     * @param pageId the identifier of the page
+     * @param loader loads the records of the page
+     * @return false if the page could not be scheduled because too many pages are pending
+     */
+    boolean prefetch(long pageId, Callable<PrefetchedPage> loader)
+    {
+        if (this.pending.containsKey(pageId)) {
+            return true;
+        }
+
+        if (isFull()) {
+            return false;
+        }
+
+        this.pending.put(pageId, this.executor.submit(loader));
+
+        return true;
+    }
+
+    /**
+     * @return true if no more page can be prefetched until some are taken
+     */
+    boolean isFull()
+    {
+        return this.pending.size() >= this.depth;
+    }
+
+    /**
+     * @param pageId the identifier of the page
+     * @return true if the page was prefetched and not taken yet
+     */
+    boolean isPending(long pageId)
+    {
+        return this.pending.containsKey(pageId);
+    }
+
+    /**
+     * @param pageId the identifier of the page
+     * @return the records of the page, waiting for them if needed, or null if the page was not prefetched or could not
+     *     be loaded
+     */
+    PrefetchedPage take(long pageId)
+    {
+        if (!this.pending.containsKey(pageId)) {
+            this.misses++;
+            return null;
+        }
+
+        // The pages prefetched before this one were skipped by the traversal
+        Future<PrefetchedPage> future = null;
+        Iterator<Map.Entry<Long, Future<PrefetchedPage>>> it = this.pending.entrySet().iterator();
+        while (future == null) {
+            Map.Entry<Long, Future<PrefetchedPage>> entry = it.next();
+            it.remove();
+            if (entry.getKey() == pageId) {
+                future = entry.getValue();
+            } else {
+                entry.getValue().cancel(true);
+            }
+        }
+
+        PrefetchedPage page = null;
+        long start = System.nanoTime();
+        try {
+            page = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // Let the caller load the page again to report the error
+        } finally {
+            this.stallTime += System.nanoTime() - start;
+        }
+
+        if (page == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+
+        return page;
+    }
+
+    /**
+     * Forget all the pages which are prefetched and not taken yet.
+     */
+    void clear()
+    {
+        for (Future<PrefetchedPage> future : this.pending.values()) {
+            future.cancel(true);
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * @return the number of pages which were taken after being loaded in advance
+     */
+    long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of pages which had to be loaded by the sending thread
+     */
+    long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * @return the time, in milliseconds, the sending thread spent waiting for pages which were still being loaded
+     */
+    long getStallTime()
+    {
+        return this.stallTime / 1_000_000;
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+        this.executor.shutdownNow();
+    }
+}
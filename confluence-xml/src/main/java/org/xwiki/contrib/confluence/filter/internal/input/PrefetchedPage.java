@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * The records of a page loaded ahead of the thread sending the filter events: the page itself, its revisions, its
+ * attachments, its comments and its tags.
+ * <p>
+ * Each record is handed over at most once, so that the sending thread gets properties which nobody else uses, just
+ * like when it reads them itself. A record which is missing is expected to be read by the sending thread, which then
+ * also reports any error.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class PrefetchedPage
+{
+    private final long pageId;
+
+    private ConfluenceProperties pageProperties;
+
+    private final Map<Long, ConfluenceProperties> revisions = new HashMap<>();
+
+    private Collection<Long> attachmentIds;
+
+    private final Map<Long, ConfluenceProperties> attachments = new HashMap<>();
+
+    private final Map<Long, ConfluenceProperties> objects = new HashMap<>();
+
+    /**
+     * @param pageId the identifier of the page
+     * @param pageProperties the properties of the page
+     */
+    PrefetchedPage(long pageId, ConfluenceProperties pageProperties)
+    {
+        this.pageId = pageId;
+        this.pageProperties = pageProperties;
+    }
+
+    /**
+     * @return the identifier of the page
+     */
+    long getPageId()
+    {
+        return this.pageId;
+    }
+
+    /**
+     * @return the properties of the page, or null if they were already taken or could not be found
+     */
+    ConfluenceProperties takePageProperties()
+    {
+        ConfluenceProperties result = this.pageProperties;
+        this.pageProperties = null;
+        return result;
+    }
+
+    /**
+     * @param revisionId the identifier of the revision
+     * @param revisionProperties the properties of the revision
+     */
+    void putRevision(long revisionId, ConfluenceProperties revisionProperties)
+    {
+        this.revisions.put(revisionId, revisionProperties);
+    }
+
+    /**
+     * @return the prefetched revisions of the page, by id. They are not available anymore once taken.
+     */
+    Map<Long, ConfluenceProperties> takeRevisions()
+    {
+        Map<Long, ConfluenceProperties> result = new HashMap<>(this.revisions);
+        this.revisions.clear();
+        return result;
+    }
+
+    /**
+     * @param attachmentIds the identifiers of the attachments of the page
+     */
+    void setAttachmentIds(Collection<Long> attachmentIds)
+    {
+        this.attachmentIds = attachmentIds;
+    }
+
+    /**
+     * @return the identifiers of the attachments of the page, or null if they were already taken or not prefetched
+     */
+    Collection<Long> takeAttachmentIds()
+    {
+        Collection<Long> result = this.attachmentIds;
+        this.attachmentIds = null;
+        return result;
+    }
+
+    /**
+     * @param attachmentId the identifier of the attachment
+     * @param attachmentProperties the properties of the attachment
+     */
+    void putAttachment(long attachmentId, ConfluenceProperties attachmentProperties)
+    {
+        this.attachments.put(attachmentId, attachmentProperties);
+    }
+
+    /**
+     * @param attachmentId the identifier of the attachment
+     * @return the properties of the attachment, or null if they were already taken or not prefetched
+     */
+    ConfluenceProperties takeAttachment(long attachmentId)
+    {
+        return this.attachments.remove(attachmentId);
+    }
+
+    /**
+     * @param objectId the identifier of the object (comment or tag)
+     * @param objectProperties the properties of the object
+     */
+    void putObject(long objectId, ConfluenceProperties objectProperties)
+    {
+        this.objects.put(objectId, objectProperties);
+    }
+
+    /**
+     * @param objectId the identifier of the object (comment or tag)
+     * @return the properties of the object, or null if they were already taken or not prefetched
+     */
+    ConfluenceProperties takeObject(long objectId)
+    {
+        return this.objects.remove(objectId);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Cache of resolved references, bounded by its number of entries and evicting the least recently used ones first.
+ * Failed resolutions are cached too, so that they are not attempted again.
+ * <p>
+ * This class is thread safe. The resolution itself happens outside the lock, so two threads may resolve the same
+ * reference at the same time, the first one to finish being kept.
+ *
+ * @param <K> the type of the keys
+ * @version $Id$
+ * @since 9.96.0
+ */
+final class ReferenceCache<K>
+{
+    // Marks the cached failed resolutions
+    private static final Object NULL = new Object();
+
+    private final int maxSize;
+
+    private final LinkedHashMap<K, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * @param maxSize the maximum number of cached references, 0 or less for no limit
+     */
+    ReferenceCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param key the key of the reference
+     * @param supplier the function to call to get the reference if it is not cached (the result will be added to the
+     *     cache, even if null)
+     * @return the cached reference
+     */
+    EntityReference get(K key, Supplier<EntityReference> supplier)
+    {
+        synchronized (this) {
+            Object value = this.entries.get(key);
+            if (value != null) {
+                this.hits++;
+                return value == NULL ? null : (EntityReference) value;
+            }
+            this.misses++;
+        }
+
+        EntityReference reference = supplier.get();
+
+        synchronized (this) {
+            Object value = this.entries.putIfAbsent(key, reference == null ? NULL : reference);
+            if (value != null) {
+                return value == NULL ? null : (EntityReference) value;
+            }
+
+            if (this.maxSize > 0) {
+                Iterator<Object> it = this.entries.values().iterator();
+                while (this.entries.size() > this.maxSize && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                    this.evictions++;
+                }
+            }
+        }
+
+        return reference;
+    }
+
+    /**
+     * @return the number of cached references, including the failed resolutions
+     */
+    synchronized int getSize()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of references served from the cache
+     */
+    synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of references which were not in the cache
+     */
+    synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * @return the number of references removed from the cache to keep it under its maximum size
+     */
+    synchronized long getEvictions()
+    {
+        return this.evictions;
+    }
+}
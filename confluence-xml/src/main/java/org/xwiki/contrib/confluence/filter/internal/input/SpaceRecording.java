@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.xwiki.contrib.confluence.filter.internal.ConfluenceFilter;
+import org.xwiki.filter.FilterException;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The events of a space sent by another thread, kept until they can be sent to the actual filter in the order of the
+ * spaces.
+ * <p>
+ * The filter returned by {@link #getFilter()} records the events it receives. Anything else which has to happen at that
+ * point of the sending, like progress steps or reading the content of the attachments, is recorded with
+ * {@link #record(Action)}. The logs of the thread recording the space are recorded by {@link #getLogListener()}.
+ * <p>
+ * At most a given number of events are kept: the thread recording the space waits for the events to be sent once this
+ * limit is reached, so that the memory used does not depend on the size of the space.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+final class SpaceRecording implements InvocationHandler
+{
+    /**
+     * The default maximum number of events kept for a space.
+     */
+    static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Something to do when sending the recorded events to the actual filter.
+     */
+    @FunctionalInterface
+    interface Action
+    {
+        /**
+         * @param filter the actual filter
+         * @throws FilterException when failing to send the events
+         */
+        void run(ConfluenceFilter filter) throws FilterException;
+    }
+
+    // Marks the end of the recording
+    private static final Action END = filter -> { };
+
+    private final BlockingQueue<Action> actions;
+
+    private final ConfluenceFilter filter = (ConfluenceFilter) Proxy.newProxyInstance(
+        ConfluenceFilter.class.getClassLoader(), new Class<?>[] { ConfluenceFilter.class }, this);
+
+    private final Logger logger;
+
+    private final EventListener logListener = new LogRecorder();
+
+    // Both are set before the end of the recording is queued, which makes them visible to the sending thread
+    private boolean stop;
+
+    private Exception error;
+
+    private final class LogRecorder extends AbstractEventListener
+    {
+        LogRecorder()
+        {
+            super(LogRecorder.class.getName(), new LogEvent());
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            LogEvent log = (LogEvent) event;
+            record(target -> log.log(logger));
+        }
+    }
+
+    /**
+     * @param capacity the maximum number of events kept before they are sent
+     * @param logger the logger with which the recorded logs are sent
+     */
+    SpaceRecording(int capacity, Logger logger)
+    {
+        this.actions = new LinkedBlockingQueue<>(capacity);
+        this.logger = logger;
+    }
+
+    /**
+     * @param filter a filter
+     * @return the recording behind the given filter, or null if it does not record the events it receives
+     */
+    static SpaceRecording get(ConfluenceFilter filter)
+    {
+        if (filter != null && Proxy.isProxyClass(filter.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(filter);
+            if (handler instanceof SpaceRecording) {
+                return (SpaceRecording) handler;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the filter recording the events it receives
+     */
+    ConfluenceFilter getFilter()
+    {
+        return this.filter;
+    }
+
+    /**
+     * @return the log listener to register on the thread recording the space, to send the logs with the events
+     */
+    EventListener getLogListener()
+    {
+        return this.logListener;
+    }
+
+    /**
+     * Record something to do at this point when sending the recorded events, waiting for the previous events to be
+     * sent if too many are kept.
+     *
+     * @param action something to do at this point when sending the recorded events
+     * @throws CancellationException when interrupted while waiting, which means the events won't be sent
+     */
+    void record(Action action)
+    {
+        try {
+            this.actions.put(action);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The recording of the space was interrupted");
+        }
+    }
+
+    /**
+     * Mark the end of the recording.
+     *
+     * @param stop whether the import should stop after this space
+     * @param error the error which interrupted the recording, null if it succeeded
+     */
+    void end(boolean stop, Exception error)
+    {
+        this.stop = stop;
+        this.error = error;
+        record(END);
+    }
+
+    /**
+     * Send the recorded events to the actual filter, as they are recorded, until the end of the recording.
+     *
+     * @param target the actual filter
+     * @return whether the import should stop after this space
+     * @throws FilterException when failing to send the events, or when the recording failed
+     * @throws InterruptedException when interrupted while waiting for the events to be recorded
+     */
+    boolean replay(ConfluenceFilter target) throws FilterException, InterruptedException
+    {
+        for (Action action = this.actions.take(); action != END; action = this.actions.take()) {
+            action.run(target);
+        }
+
+        if (this.error != null) {
+            throw new FilterException("Failed to send a space", this.error);
+        }
+
+        return this.stop;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "SpaceRecording@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+        }
+
+        record(target -> {
+            try {
+                method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof FilterException) {
+                    throw (FilterException) e.getCause();
+                }
+                throw new FilterException("Failed to send a recorded event", e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new FilterException("Failed to send a recorded event", e);
+            }
+        });
+
+        return null;
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Compact binary snapshot of the state of a Confluence package index, as a set of named maps.
+ * <p>
+ * The file starts with a header (magic number, format version, version of the code which wrote it), followed by a
+ * string table, one section per map and a directory of the sections. Keys and values are stored as primitive arrays
+ * and strings as indexes in the string table, so that each section can be memory mapped and decoded in bulk.
+ * <p>
+ * Supported maps are the ones of the package state: long to list or set of longs, long to long, long to string,
+ * string to long and long to map of string to long.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public final class StateSnapshot
+{
+    /**
+     * The name of the snapshot file.
+     */
+    public static final String FILE_NAME = "state.bin";
+
+    /**
+     * The version of the format, to increase on any incompatible change.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x43584D4C;
+
+    private static final byte EMPTY = 0;
+
+    private static final byte LONG_TO_LONG_LIST = 1;
+
+    private static final byte LONG_TO_LONG_SET = 2;
+
+    private static final byte LONG_TO_LONG = 3;
+
+    private static final byte LONG_TO_STRING = 4;
+
+    private static final byte STRING_TO_LONG = 5;
+
+    private static final byte LONG_TO_STRING_TO_LONG = 6;
+
+    // The offset of the directory, at the end of the file
+    private static final int TRAILER_SIZE = 8;
+
+    private StateSnapshot()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param file the file to write
+     * @param version the version of the code writing the snapshot, checked when reading it back
+     * @param maps the maps to save, by name
+     * @throws IOException when failing to write the file or if a map is not supported
+     */
+    public static void write(File file, String version, Map<String, Map<?, ?>> maps) throws IOException
+    {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Map<String, Byte> kinds = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<?, ?>> entry : maps.entrySet()) {
+            byte kind = getKind(entry.getKey(), entry.getValue());
+            kinds.put(entry.getKey(), kind);
+            collectStrings(kind, entry.getValue(), strings);
+        }
+
+        try (CountingOutputStream counter = new CountingOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+            DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, version);
+
+            long stringsOffset = counter.getByteCount();
+            writeStrings(out, strings.keySet());
+            out.flush();
+            long stringsLength = counter.getByteCount() - stringsOffset;
+
+            List<long[]> positions = new ArrayList<>(maps.size());
+            for (Map.Entry<String, Map<?, ?>> entry : maps.entrySet()) {
+                long offset = counter.getByteCount();
+                writeSection(out, kinds.get(entry.getKey()), entry.getValue(), strings);
+                out.flush();
+                positions.add(new long[] { offset, counter.getByteCount() - offset });
+            }
+
+            long directoryOffset = counter.getByteCount();
+            out.writeLong(stringsOffset);
+            out.writeLong(stringsLength);
+            out.writeInt(maps.size());
+            int i = 0;
+            for (Map.Entry<String, Byte> entry : kinds.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeByte(entry.getValue());
+                out.writeLong(positions.get(i)[0]);
+                out.writeLong(positions.get(i)[1]);
+                i++;
+            }
+            out.writeLong(directoryOffset);
+        }
+    }
+
+    /**
+     * @param file the file to read
+     * @param version the version of the code reading the snapshot, which must be the one which wrote it
+     * @return the maps contained in the snapshot, by name
+     * @throws IOException when failing to read the file, or if it was written by another version
+     */
+    public static Map<String, Map<Object, Object>> read(File file, String version) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < TRAILER_SIZE) {
+                throw new IOException("The state snapshot is truncated");
+            }
+
+            ByteBuffer header = map(channel, 0, Math.min(size, 4096));
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a state snapshot");
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported state snapshot format [%d], expected [%d]",
+                    formatVersion, FORMAT_VERSION));
+            }
+            String snapshotVersion = readString(header);
+            if (!version.equals(snapshotVersion)) {
+                throw new IOException(String.format("The state snapshot was written by version [%s], not [%s]",
+                    snapshotVersion, version));
+            }
+
+            long directoryOffset = map(channel, size - TRAILER_SIZE, TRAILER_SIZE).getLong();
+            ByteBuffer directory = map(channel, directoryOffset, size - TRAILER_SIZE - directoryOffset);
+            String[] strings = readStrings(map(channel, directory.getLong(), directory.getLong()));
+
+            int count = directory.getInt();
+            Map<String, Map<Object, Object>> maps = new LinkedHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readString(directory);
+                byte kind = directory.get();
+                ByteBuffer section = map(channel, directory.getLong(), directory.getLong());
+                maps.put(name, readSection(kind, section, strings));
+            }
+
+            return maps;
+        } catch (RuntimeException e) {
+            // Typically a BufferUnderflowException on a corrupted file
+            throw new IOException("The state snapshot is corrupted", e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException
+    {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > channel.size()) {
+            throw new IOException(
+                String.format("Invalid state snapshot section at offset [%d] of length [%d]", offset, length));
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static byte getKind(String name, Map<?, ?> map) throws IOException
+    {
+        if (map.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map.Entry<?, ?> entry = map.entrySet().iterator().next();
+        Object key = entry.getKey();
+        Object value = entry.getValue();
+        if (key instanceof Long) {
+            if (value instanceof List) {
+                return LONG_TO_LONG_LIST;
+            } else if (value instanceof Collection) {
+                return LONG_TO_LONG_SET;
+            } else if (value instanceof Long) {
+                return LONG_TO_LONG;
+            } else if (value instanceof String) {
+                return LONG_TO_STRING;
+            } else if (value instanceof Map) {
+                return LONG_TO_STRING_TO_LONG;
+            }
+        } else if (key instanceof String && value instanceof Long) {
+            return STRING_TO_LONG;
+        }
+
+        throw new IOException(String.format("Unsupported content for map [%s]", name));
+    }
+
+    private static void collectStrings(byte kind, Map<?, ?> map, Map<String, Integer> strings)
+    {
+        switch (kind) {
+            case LONG_TO_STRING:
+                for (Object value : map.values()) {
+                    strings.putIfAbsent((String) value, strings.size());
+                }
+                break;
+            case STRING_TO_LONG:
+                for (Object key : map.keySet()) {
+                    strings.putIfAbsent((String) key, strings.size());
+                }
+                break;
+            case LONG_TO_STRING_TO_LONG:
+                for (Object value : map.values()) {
+                    for (Object key : ((Map<?, ?>) value).keySet()) {
+                        strings.putIfAbsent((String) key, strings.size());
+                    }
+                }
+                break;
+            default:
+                // No string
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException
+    {
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        for (String string : strings) {
+            encoded.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        out.writeInt(encoded.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+        int[] offsets = readInts(buffer, count + 1);
+        byte[] bytes = new byte[offsets[count]];
+        buffer.get(bytes);
+
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+
+        return strings;
+    }
+
+    private static void writeSection(DataOutputStream out, byte kind, Map<?, ?> map, Map<String, Integer> strings)
+        throws IOException
+    {
+        out.writeInt(map.size());
+        switch (kind) {
+            case LONG_TO_LONG_LIST:
+            case LONG_TO_LONG_SET:
+                writeLongKeys(out, map);
+                writeLongCollections(out, map.values());
+                break;
+            case LONG_TO_LONG:
+                writeLongKeys(out, map);
+                for (Object value : map.values()) {
+                    out.writeLong((Long) value);
+                }
+                break;
+            case LONG_TO_STRING:
+                writeLongKeys(out, map);
+                for (Object value : map.values()) {
+                    out.writeInt(strings.get(value));
+                }
+                break;
+            case STRING_TO_LONG:
+                writeStringToLong(out, map, strings);
+                break;
+            case LONG_TO_STRING_TO_LONG:
+                writeLongKeys(out, map);
+                int offset = 0;
+                out.writeInt(offset);
+                for (Object value : map.values()) {
+                    offset += ((Map<?, ?>) value).size();
+                    out.writeInt(offset);
+                }
+                for (Object value : map.values()) {
+                    writeStringToLong(out, (Map<?, ?>) value, strings);
+                }
+                break;
+            default:
+                // Empty
+        }
+    }
+
+    private static void writeLongKeys(DataOutputStream out, Map<?, ?> map) throws IOException
+    {
+        for (Object key : map.keySet()) {
+            out.writeLong((Long) key);
+        }
+    }
+
+    private static void writeLongCollections(DataOutputStream out, Collection<?> collections) throws IOException
+    {
+        int offset = 0;
+        out.writeInt(offset);
+        for (Object collection : collections) {
+            offset += ((Collection<?>) collection).size();
+            out.writeInt(offset);
+        }
+        for (Object collection : collections) {
+            for (Object value : (Collection<?>) collection) {
+                out.writeLong((Long) value);
+            }
+        }
+    }
+
+    private static void writeStringToLong(DataOutputStream out, Map<?, ?> map, Map<String, Integer> strings)
+        throws IOException
+    {
+        // Keys then values, for both the top level maps and the nested ones
+        for (Object key : map.keySet()) {
+            out.writeInt(strings.get(key));
+        }
+        for (Object value : map.values()) {
+            out.writeLong((Long) value);
+        }
+    }
+
+    private static Map<Object, Object> readSection(byte kind, ByteBuffer buffer, String[] strings)
+        throws IOException
+    {
+        int size = buffer.getInt();
+        Map<Object, Object> map = new LinkedHashMap<>(capacity(size));
+        switch (kind) {
+            case EMPTY:
+                break;
+            case LONG_TO_LONG_LIST:
+            case LONG_TO_LONG_SET:
+                readLongCollections(buffer, size, kind == LONG_TO_LONG_SET, map);
+                break;
+            case LONG_TO_LONG:
+                long[] keys = readLongs(buffer, size);
+                long[] values = readLongs(buffer, size);
+                for (int i = 0; i < size; i++) {
+                    map.put(keys[i], values[i]);
+                }
+                break;
+            case LONG_TO_STRING:
+                long[] longKeys = readLongs(buffer, size);
+                int[] stringValues = readInts(buffer, size);
+                for (int i = 0; i < size; i++) {
+                    map.put(longKeys[i], strings[stringValues[i]]);
+                }
+                break;
+            case STRING_TO_LONG:
+                readStringToLong(buffer, size, strings, map);
+                break;
+            case LONG_TO_STRING_TO_LONG:
+                long[] outerKeys = readLongs(buffer, size);
+                int[] offsets = readInts(buffer, size + 1);
+                for (int i = 0; i < size; i++) {
+                    int innerSize = offsets[i + 1] - offsets[i];
+                    Map<Object, Object> inner = new HashMap<>(capacity(innerSize));
+                    readStringToLong(buffer, innerSize, strings, inner);
+                    map.put(outerKeys[i], inner);
+                }
+                break;
+            default:
+                throw new IOException(String.format("Unknown state snapshot section kind [%d]", kind));
+        }
+
+        return map;
+    }
+
+    private static void readLongCollections(ByteBuffer buffer, int size, boolean set, Map<Object, Object> map)
+    {
+        long[] keys = readLongs(buffer, size);
+        int[] offsets = readInts(buffer, size + 1);
+        long[] values = readLongs(buffer, offsets[size]);
+        for (int i = 0; i < size; i++) {
+            int length = offsets[i + 1] - offsets[i];
+            Collection<Long> collection = set ? new LinkedHashSet<>(capacity(length)) : new ArrayList<>(length);
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                collection.add(values[j]);
+            }
+            map.put(keys[i], collection);
+        }
+    }
+
+    private static void readStringToLong(ByteBuffer buffer, int size, String[] strings, Map<Object, Object> map)
+    {
+        int[] keys = readInts(buffer, size);
+        long[] values = readLongs(buffer, size);
+        for (int i = 0; i < size; i++) {
+            map.put(strings[keys[i]], values[i]);
+        }
+    }
+
+    private static long[] readLongs(ByteBuffer buffer, int size)
+    {
+        long[] values = new long[size];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + size * Long.BYTES);
+
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int size)
+    {
+        int[] values = new int[size];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+
+        return values;
+    }
+
+    private static int capacity(int size)
+    {
+        return (int) (size / 0.75f) + 1;
+    }
+}
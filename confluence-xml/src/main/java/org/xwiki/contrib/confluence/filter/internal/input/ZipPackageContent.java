@@ -0,0 +1,121 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A Confluence package read directly from its ZIP file, without extracting it. Entries are accessed through the
+ * central directory of the archive, so only the files actually read are decompressed.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class ZipPackageContent implements PackageContent
+{
+    private final ZipFile zipFile;
+
+    private final Path temporaryRoot;
+
+    private File extracted;
+
+    /**
+     * @param file the ZIP file of the package
+     * @param temporaryRoot where to create the directory in which files are extracted when {@link #getFile(String)}
+     *     is called
+     * @throws IOException when the file cannot be read as a ZIP file
+     */
+    public ZipPackageContent(File file, Path temporaryRoot) throws IOException
+    {
+        this.zipFile = new ZipFile(file);
+        this.temporaryRoot = temporaryRoot;
+    }
+
+    private ZipArchiveEntry getEntry(String path)
+    {
+        ZipArchiveEntry entry = this.zipFile.getEntry(path);
+
+        return entry == null || entry.isDirectory() ? null : entry;
+    }
+
+    @Override
+    public boolean exists(String path)
+    {
+        return getEntry(path) != null;
+    }
+
+    @Override
+    public long getSize(String path)
+    {
+        ZipArchiveEntry entry = getEntry(path);
+
+        return entry == null ? -1 : entry.getSize();
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException
+    {
+        ZipArchiveEntry entry = getEntry(path);
+        if (entry == null) {
+            throw new FileNotFoundException(path);
+        }
+
+        return this.zipFile.getInputStream(entry);
+    }
+
+    @Override
+    public synchronized File getFile(String path) throws IOException
+    {
+        if (this.extracted == null) {
+            this.extracted = Files.createTempDirectory(this.temporaryRoot, "confluencexml").toFile();
+        }
+
+        File file = new File(this.extracted, path);
+        if (!file.exists()) {
+            try (InputStream stream = open(path)) {
+                FileUtils.copyInputStreamToFile(stream, file);
+            }
+        }
+
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try {
+            this.zipFile.close();
+        } finally {
+            if (this.extracted != null) {
+                FileUtils.deleteDirectory(this.extracted);
+                this.extracted = null;
+            }
+        }
+    }
+}
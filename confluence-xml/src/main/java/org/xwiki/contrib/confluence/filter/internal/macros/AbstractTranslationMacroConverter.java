@@ -26,6 +26,8 @@ import javax.inject.Inject;
 
 import org.xwiki.contrib.confluence.filter.ConversionException;
 import org.xwiki.contrib.confluence.filter.input.ConfluenceInputContext;
+import org.xwiki.contrib.confluence.filter.internal.input.DefaultConfluenceInputContext;
+import org.xwiki.contrib.confluence.filter.internal.input.LocaleSplitter;
 import org.xwiki.rendering.listener.Listener;
 
 abstract class AbstractTranslationMacroConverter extends AbstractParseContentMacroConverter
@@ -65,6 +67,17 @@ abstract class AbstractTranslationMacroConverter extends AbstractParseContentMac
             return;
         }
 
+        LocaleSplitter splitter = getLocaleSplitter();
+        if (splitter != null && language != null && splitter.beginLocale(language, listener, inline)) {
+            // Send the content of all the locales, the splitter will only keep the right ones for each locale
+            try {
+                sendContent(id, content, listener);
+            } finally {
+                splitter.endLocale(listener);
+            }
+            return;
+        }
+
         if (!currentLanguage.equals(language)) {
             // Languages don't match, we drop the macro
             return;
@@ -73,6 +86,15 @@ abstract class AbstractTranslationMacroConverter extends AbstractParseContentMac
         sendContent(id, content, listener);
     }
 
+    private LocaleSplitter getLocaleSplitter()
+    {
+        if (context instanceof DefaultConfluenceInputContext) {
+            return ((DefaultConfluenceInputContext) context).getLocaleSplitter();
+        }
+
+        return null;
+    }
+
     protected void sendContent(String id, String content, Listener listener)
     {
         // We import the content without any macro
@@ -0,0 +1,339 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * An append-only data file of records identified by a path, with an in-memory index from path to offset which is
+ * persisted next to it when flushing.
+ * <p>
+ * Writing an entry appends a new record and makes the index point to it, so previous versions of the entry are left
+ * behind as garbage. Each record is made of the length and the UTF-8 bytes of the path of the entry, a flag and a size
+ * left to the caller, the length of the content ({@code -1} for a removed entry) and the content. Storing the path
+ * allows rebuilding the index from the data file when the index file is missing or does not match the data file, which
+ * is what happens after a crash between appending records and flushing the index.
+ * <p>
+ * The header of a record is assembled in a single buffer so that appending or reading a record costs one or two
+ * positional calls on the file channel, and the end of the data file is tracked instead of being asked to the file
+ * system for each record.
+ * <p>
+ * This class is not thread safe: the stores using it synchronize the accesses.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class AppendLog implements Closeable
+{
+    private static final int REMOVED = -1;
+
+    // The length of the path, the flag, the size and the length of the content
+    private static final int HEADER_LENGTH = Integer.BYTES + Byte.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private final File indexFile;
+
+    private final Map<String, Long> index;
+
+    private final FileChannel data;
+
+    private long end;
+
+    /**
+     * A record read from the log.
+     *
+     * @version $Id$
+     */
+    static final class Record
+    {
+        private final byte flag;
+
+        private final int size;
+
+        private final byte[] content;
+
+        Record(byte flag, int size, byte[] content)
+        {
+            this.flag = flag;
+            this.size = size;
+            this.content = content;
+        }
+
+        /**
+         * @return the flag given when appending the record
+         */
+        byte getFlag()
+        {
+            return this.flag;
+        }
+
+        /**
+         * @return the size given when appending the record
+         */
+        int getSize()
+        {
+            return this.size;
+        }
+
+        /**
+         * @return the content of the record
+         */
+        byte[] getContent()
+        {
+            return this.content;
+        }
+    }
+
+    /**
+     * @param dataFile the data file
+     * @param indexFile the file where to persist the index
+     * @param index the map to fill with the offset of each entry, which can be sorted when the caller needs it
+     * @throws IOException when failing to open the log
+     */
+    AppendLog(File dataFile, File indexFile, Map<String, Long> index) throws IOException
+    {
+        this.indexFile = indexFile;
+        this.index = index;
+        boolean existing = dataFile.exists();
+        this.data = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.end = this.data.size();
+        if (existing && !readIndex()) {
+            rebuildIndex(dataFile);
+        }
+        // Only the writes move the position of the channel, the reads are positional
+        this.data.position(this.end);
+    }
+
+    /**
+     * Delete the files of a log which is not open.
+     *
+     * @param dataFile the data file
+     * @param indexFile the file where the index is persisted
+     * @throws IOException when failing to delete the files
+     */
+    static void delete(File dataFile, File indexFile) throws IOException
+    {
+        Files.deleteIfExists(indexFile.toPath());
+        Files.deleteIfExists(dataFile.toPath());
+    }
+
+    private boolean readIndex()
+    {
+        if (!this.indexFile.exists()) {
+            return false;
+        }
+
+        try (DataInputStream in =
+            new DataInputStream(new BufferedInputStream(Files.newInputStream(this.indexFile.toPath())))) {
+            // An index not written for the current content of the data file cannot be trusted
+            if (in.readLong() != this.end) {
+                return false;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String path = in.readUTF();
+                this.index.put(path, in.readLong());
+            }
+        } catch (IOException e) {
+            this.index.clear();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private void rebuildIndex(File dataFile) throws IOException
+    {
+        this.index.clear();
+
+        long offset = 0;
+        try (DataInputStream in =
+            new DataInputStream(new BufferedInputStream(Files.newInputStream(dataFile.toPath())))) {
+            while (offset < this.end) {
+                byte[] path = new byte[in.readInt()];
+                in.readFully(path);
+                // Skip the flag and the size
+                in.readByte();
+                in.readInt();
+                int contentLength = in.readInt();
+                long next = offset + HEADER_LENGTH + path.length + Math.max(contentLength, 0);
+                if (next > this.end) {
+                    break;
+                }
+                IOUtils.skipFully(in, Math.max(contentLength, 0));
+                if (contentLength == REMOVED) {
+                    this.index.remove(new String(path, StandardCharsets.UTF_8));
+                } else {
+                    this.index.put(new String(path, StandardCharsets.UTF_8), offset);
+                }
+                offset = next;
+            }
+        } catch (IOException e) {
+            // A record cut by a crash, dropped below
+        }
+
+        if (offset < this.end) {
+            // Don't leave a partial record before the next appended ones
+            this.data.truncate(offset);
+            this.end = offset;
+        }
+    }
+
+    /**
+     * @param path the path of the entry
+     * @return true if the log contains the entry
+     */
+    boolean contains(String path)
+    {
+        return this.index.containsKey(path);
+    }
+
+    /**
+     * @param path the path of the entry
+     * @return the record of the entry, null if there is none
+     * @throws IOException when failing to read the record
+     */
+    Record read(String path) throws IOException
+    {
+        Long offset = this.index.get(path);
+        if (offset == null) {
+            return null;
+        }
+
+        // The path is known so the whole header can be read at once
+        int pathLength = path.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + pathLength);
+        readFully(header, offset);
+        header.position(Integer.BYTES + pathLength);
+        byte flag = header.get();
+        int size = header.getInt();
+        byte[] content = new byte[header.getInt()];
+        readFully(ByteBuffer.wrap(content), offset + header.capacity());
+
+        return new Record(flag, size, content);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = this.data.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the data file at offset " + current);
+            }
+            current += read;
+        }
+    }
+
+    /**
+     * @param path the path of the entry
+     * @param flag a flag to store with the record
+     * @param size a size to store with the record
+     * @param content the content of the entry, replacing the previous one
+     * @throws IOException when failing to write the record
+     */
+    void append(String path, byte flag, int size, byte[] content) throws IOException
+    {
+        long offset = this.end;
+        write(header(path, flag, size, content.length), ByteBuffer.wrap(content));
+        this.index.put(path, offset);
+    }
+
+    /**
+     * @param path the path of the entry to remove
+     * @return true if the entry existed
+     * @throws IOException when failing to record the removal
+     */
+    boolean remove(String path) throws IOException
+    {
+        if (this.index.remove(path) == null) {
+            return false;
+        }
+
+        // Record the removal so that rebuilding the index gives the same result
+        write(header(path, (byte) 0, 0, REMOVED));
+
+        return true;
+    }
+
+    private static ByteBuffer header(String path, byte flag, int size, int contentLength)
+    {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + pathBytes.length);
+        header.putInt(pathBytes.length).put(pathBytes).put(flag).putInt(size).putInt(contentLength);
+        header.flip();
+
+        return header;
+    }
+
+    private void write(ByteBuffer... buffers) throws IOException
+    {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            long written = this.data.write(buffers);
+            remaining -= written;
+            this.end += written;
+        }
+    }
+
+    /**
+     * Make sure everything written in the log is persisted so that it can be reopened later.
+     *
+     * @throws IOException when failing to persist the log
+     */
+    void flush() throws IOException
+    {
+        this.data.force(true);
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.indexFile.toPath())))) {
+            out.writeLong(this.end);
+            out.writeInt(this.index.size());
+            for (Map.Entry<String, Long> entry : this.index.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.data.close();
+    }
+}
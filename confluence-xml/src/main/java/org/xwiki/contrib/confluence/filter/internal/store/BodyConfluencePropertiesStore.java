@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Store keeping the body of the entries of another store apart, in a {@link BodyStore}.
+ * <p>
+ * The body is removed from the properties written to the underlying store and the properties returned by
+ * {@link #get(String, boolean)} only read it from the body store when it is actually requested. Looking up the
+ * metadata of a page (title, parent, position...) thus does not require reading and parsing its whole content.
+ * Entries written before the body store existed, with the body inline, are returned as is.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class BodyConfluencePropertiesStore implements ConfluencePropertiesStore
+{
+    private final ConfluencePropertiesStore store;
+
+    private final BodyStore bodies;
+
+    private final String bodyKey;
+
+    /**
+     * @param store the underlying store, for the properties other than the body
+     * @param bodies the store for the bodies
+     * @param bodyKey the name of the body property
+     */
+    public BodyConfluencePropertiesStore(ConfluencePropertiesStore store, BodyStore bodies, String bodyKey)
+    {
+        this.store = store;
+        this.bodies = bodies;
+        this.bodyKey = bodyKey;
+    }
+
+    @Override
+    public ConfluenceProperties get(String path, boolean create) throws ConfigurationException
+    {
+        ConfluenceProperties properties = this.store.get(path, create);
+        if (properties == null) {
+            return null;
+        }
+
+        StoredConfluenceProperties result = new StoredConfluenceProperties(this, path);
+        result.copy(properties);
+        if (!result.containsKey(this.bodyKey) && this.bodies.contains(path)) {
+            result.setLazyProperty(this.bodyKey, this.bodies, path);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void save(String path, ConfluenceProperties properties) throws ConfigurationException
+    {
+        // Copying does not read a lazy body
+        StoredConfluenceProperties withoutBody = new StoredConfluenceProperties(this.store, path);
+        withoutBody.copy(properties);
+        withoutBody.clearProperty(this.bodyKey);
+
+        try {
+            saveBody(path, properties, withoutBody);
+        } catch (IOException e) {
+            throw new ConfigurationException(String.format("Failed to write the body of entry [%s]", path), e);
+        }
+
+        this.store.save(path, withoutBody);
+    }
+
+    private void saveBody(String path, ConfluenceProperties properties, ConfluenceProperties withoutBody)
+        throws IOException
+    {
+        if (properties instanceof StoredConfluenceProperties
+            && ((StoredConfluenceProperties) properties).isLazy(this.bodyKey, this.bodies, path)) {
+            // The body did not change
+            return;
+        }
+
+        Object body = properties.getProperty(this.bodyKey);
+        if (body == null) {
+            this.bodies.remove(path);
+        } else if (body instanceof String) {
+            this.bodies.put(path, (String) body);
+        } else {
+            // Not something we expect, keep it with the other properties
+            this.bodies.remove(path);
+            withoutBody.setProperty(this.bodyKey, body);
+        }
+    }
+
+    @Override
+    public boolean exists(String path)
+    {
+        return this.store.exists(path);
+    }
+
+    @Override
+    public Collection<String> list(String folder)
+    {
+        return this.store.list(folder);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        this.store.flush();
+        this.bodies.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            this.store.close();
+        } finally {
+            this.bodies.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Store keeping the bodies of the Confluence objects in a single {@link AppendLog}.
+ * <p>
+ * Bodies are by far the largest properties of the indexed objects and are only needed when actually converting the
+ * content, so keeping them apart makes reading the other properties of an object cheap. Bodies can optionally be
+ * compressed, which is recorded with each body so that a store can always be read back whatever the configuration.
+ * <p>
+ * The flag of each record tells whether the body is compressed and its size is the length of the uncompressed body.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class BodyStore implements Closeable
+{
+    /**
+     * The name of the data file.
+     */
+    public static final String DATA_FILENAME = "bodies.dat";
+
+    private static final String INDEX_FILENAME = "bodies.idx";
+
+    private static final byte RAW = 0;
+
+    private static final byte DEFLATED = 1;
+
+    // Below this size, compression is not worth it
+    private static final int MIN_COMPRESSED_SIZE = 512;
+
+    private final AppendLog log;
+
+    private final boolean compress;
+
+    /**
+     * @param root the directory where to store the data and index files
+     * @param compress true if the bodies should be compressed
+     * @throws IOException when failing to open the store
+     */
+    public BodyStore(File root, boolean compress) throws IOException
+    {
+        this.log = new AppendLog(new File(root, DATA_FILENAME), new File(root, INDEX_FILENAME), new HashMap<>());
+        this.compress = compress;
+    }
+
+    /**
+     * @param root the directory to check
+     * @return true if the directory contains a body store
+     */
+    public static boolean isStore(File root)
+    {
+        return new File(root, DATA_FILENAME).isFile();
+    }
+
+    /**
+     * Delete the body store found in the given directory, if any. The store must not be open.
+     *
+     * @param root the directory containing the store
+     * @throws IOException when failing to delete the store files
+     */
+    public static void delete(File root) throws IOException
+    {
+        AppendLog.delete(new File(root, DATA_FILENAME), new File(root, INDEX_FILENAME));
+    }
+
+    /**
+     * @param path the path of the entry
+     * @return true if a body is stored for this entry
+     */
+    public synchronized boolean contains(String path)
+    {
+        return this.log.contains(path);
+    }
+
+    /**
+     * @param path the path of the entry
+     * @return the body of the entry, null if there is none
+     * @throws IOException when failing to read the body
+     */
+    public synchronized String get(String path) throws IOException
+    {
+        AppendLog.Record record = this.log.read(path);
+        if (record == null) {
+            return null;
+        }
+
+        byte[] content = record.getContent();
+
+        return new String(record.getFlag() == DEFLATED ? inflate(content, record.getSize()) : content,
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path the path of the entry
+     * @param body the body of the entry, replacing the previous one
+     * @throws IOException when failing to write the body
+     */
+    public void put(String path, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        byte flag = RAW;
+        byte[] content = bytes;
+        if (this.compress && bytes.length >= MIN_COMPRESSED_SIZE) {
+            // Compress outside of the lock
+            byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                flag = DEFLATED;
+                content = deflated;
+            }
+        }
+
+        synchronized (this) {
+            this.log.append(path, flag, bytes.length, content);
+        }
+    }
+
+    /**
+     * @param path the path of the entry of which to remove the body
+     * @throws IOException when failing to record the removal
+     */
+    public synchronized void remove(String path) throws IOException
+    {
+        this.log.remove(path);
+    }
+
+    private static byte[] deflate(byte[] bytes)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] content, int length) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(content);
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(bytes, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IOException("Truncated compressed body");
+            }
+
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted compressed body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Make sure everything written in the store is persisted so that it can be reopened later.
+     *
+     * @throws IOException when failing to persist the store
+     */
+    public synchronized void flush() throws IOException
+    {
+        this.log.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.log.close();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Write-back cache in front of another store, bounded by the (estimated) size of the cached properties.
+ * <p>
+ * While indexing a package, the same parent properties are loaded and saved again for each child object referencing
+ * them. With this cache, they stay in memory and are only written to the underlying store when evicted or when the
+ * cache is flushed.
+ * <p>
+ * Properties returned by {@link #get(String, boolean)} and given to {@link #save(String, ConfluenceProperties)} are
+ * copied, so that, like with the underlying store, changes are only visible to others once saved. Closing the cache
+ * discards the entries which were not flushed.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class CachingConfluencePropertiesStore implements ConfluencePropertiesStore
+{
+    // Rough estimation of the memory used by a property besides its key and value
+    private static final int PROPERTY_OVERHEAD = 64;
+
+    private final ConfluencePropertiesStore store;
+
+    private final long maxSize;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    private long flushes;
+
+    private static final class Entry
+    {
+        private final ConfluenceProperties properties;
+
+        private final long size;
+
+        private boolean dirty;
+
+        Entry(ConfluenceProperties properties, boolean dirty)
+        {
+            this.properties = properties;
+            this.size = estimateSize(properties);
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * @param store the underlying store
+     * @param maxSize the maximum estimated size of the cached properties, in bytes
+     */
+    public CachingConfluencePropertiesStore(ConfluencePropertiesStore store, long maxSize)
+    {
+        this.store = store;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the underlying store
+     */
+    public ConfluencePropertiesStore getStore()
+    {
+        return this.store;
+    }
+
+    private static long estimateSize(ConfluenceProperties properties)
+    {
+        long size = 0;
+        Iterator<String> keys = properties.getKeys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            size += PROPERTY_OVERHEAD + 2L * key.length();
+            if (properties instanceof StoredConfluenceProperties
+                && ((StoredConfluenceProperties) properties).isPending(key)) {
+                // Not in memory
+                continue;
+            }
+            Object value = properties.getProperty(key);
+            if (value instanceof Collection) {
+                for (Object v : (Collection<?>) value) {
+                    size += PROPERTY_OVERHEAD + 2L * String.valueOf(v).length();
+                }
+            } else {
+                size += 2L * String.valueOf(value).length();
+            }
+        }
+
+        return size;
+    }
+
+    private ConfluenceProperties copy(String path, ConfluenceProperties properties)
+    {
+        StoredConfluenceProperties copy = new StoredConfluenceProperties(this, path);
+        copy.copy(properties);
+        return copy;
+    }
+
+    @Override
+    public synchronized ConfluenceProperties get(String path, boolean create) throws ConfigurationException
+    {
+        Entry entry = this.entries.get(path);
+        if (entry != null) {
+            this.hits++;
+            return copy(path, entry.properties);
+        }
+
+        this.misses++;
+        ConfluenceProperties properties = this.store.get(path, false);
+        if (properties == null) {
+            return create ? new StoredConfluenceProperties(this, path) : null;
+        }
+
+        put(path, new Entry(copy(path, properties), false));
+
+        return copy(path, properties);
+    }
+
+    @Override
+    public synchronized void save(String path, ConfluenceProperties properties) throws ConfigurationException
+    {
+        put(path, new Entry(copy(path, properties), true));
+    }
+
+    private void put(String path, Entry entry) throws ConfigurationException
+    {
+        Entry previous = this.entries.put(path, entry);
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += entry.size;
+
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            write(eldest.getKey(), eldest.getValue());
+            this.size -= eldest.getValue().size;
+            it.remove();
+        }
+    }
+
+    private void write(String path, Entry entry) throws ConfigurationException
+    {
+        if (entry.dirty) {
+            this.store.save(path, entry.properties);
+            entry.dirty = false;
+            this.flushes++;
+        }
+    }
+
+    private void writeAll() throws ConfigurationException
+    {
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized boolean exists(String path)
+    {
+        return this.entries.containsKey(path) || this.store.exists(path);
+    }
+
+    @Override
+    public synchronized Collection<String> list(String folder)
+    {
+        // Make sure the underlying store knows about all the entries
+        try {
+            writeAll();
+        } catch (ConfigurationException e) {
+            throw new IllegalStateException("Failed to write the cached properties", e);
+        }
+
+        return this.store.list(folder);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        try {
+            writeAll();
+        } catch (ConfigurationException e) {
+            throw new IOException("Failed to write the cached properties", e);
+        }
+
+        this.store.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.entries.clear();
+        this.size = 0;
+        this.store.close();
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of lookups which had to go to the underlying store
+     */
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * @return the number of properties written to the underlying store
+     */
+    public synchronized long getFlushes()
+    {
+        return this.flushes;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Storage of the properties of the objects indexed from a Confluence package.
+ * <p>
+ * Entries are identified by a path relative to the root of the store, using {@code /} as separator (e.g.
+ * {@code pages/42/properties.properties}). The path hierarchy is what allows listing the children of a "folder".
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public interface ConfluencePropertiesStore extends Closeable
+{
+    /**
+     * The path separator used in the store.
+     */
+    char SEPARATOR = '/';
+
+    /**
+     * @param path the path of the entry
+     * @param create true if the properties should be returned even if the entry does not exist yet
+     * @return the properties of the entry, which are written back to the store when calling
+     *     {@link ConfluenceProperties#save()}, or null if the entry does not exist and create is false
+     * @throws ConfigurationException when failing to read the entry
+     */
+    ConfluenceProperties get(String path, boolean create) throws ConfigurationException;
+
+    /**
+     * @param path the path of the entry
+     * @param properties the properties to write in the entry, replacing its previous content
+     * @throws ConfigurationException when failing to write the entry
+     */
+    void save(String path, ConfluenceProperties properties) throws ConfigurationException;
+
+    /**
+     * @param path the path of the entry
+     * @return true if the entry exists
+     */
+    boolean exists(String path);
+
+    /**
+     * @param folder the path of the folder, empty for the root of the store
+     * @return the names of the direct children of the folder, empty if the folder does not exist
+     */
+    Collection<String> list(String folder);
+
+    /**
+     * Make sure everything written in the store is persisted so that it can be reopened later.
+     *
+     * @throws IOException when failing to persist the store
+     */
+    void flush() throws IOException;
+}
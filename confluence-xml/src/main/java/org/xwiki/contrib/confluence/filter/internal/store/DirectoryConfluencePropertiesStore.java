@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Store keeping each entry in its own file in a directory tree. This is the historical layout of the extracted
+ * package.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class DirectoryConfluencePropertiesStore implements ConfluencePropertiesStore
+{
+    private static final String ENCODING = "UTF-8";
+
+    private final File root;
+
+    /**
+     * @param root the root directory of the store
+     */
+    public DirectoryConfluencePropertiesStore(File root)
+    {
+        this.root = root;
+    }
+
+    private File getFile(String path)
+    {
+        return new File(this.root, path);
+    }
+
+    @Override
+    public ConfluenceProperties get(String path, boolean create) throws ConfigurationException
+    {
+        File file = getFile(path);
+        if (!file.exists()) {
+            return create ? new StoredConfluenceProperties(this, path) : null;
+        }
+
+        StoredConfluenceProperties properties = new StoredConfluenceProperties(this, path);
+        FileHandler handler = new FileHandler(properties);
+        handler.setEncoding(ENCODING);
+        handler.load(file);
+
+        return properties;
+    }
+
+    @Override
+    public void save(String path, ConfluenceProperties properties) throws ConfigurationException
+    {
+        FileHandler handler = new FileHandler(properties);
+        handler.setEncoding(ENCODING);
+        handler.save(getFile(path));
+    }
+
+    @Override
+    public boolean exists(String path)
+    {
+        return getFile(path).exists();
+    }
+
+    @Override
+    public Collection<String> list(String folder)
+    {
+        String[] children = getFile(folder).list();
+        if (children == null) {
+            return Collections.emptyList();
+        }
+
+        return Arrays.asList(children);
+    }
+
+    @Override
+    public void flush()
+    {
+        // Each entry is written to its file when saved.
+    }
+
+    @Override
+    public void close()
+    {
+        // Nothing to release.
+    }
+}
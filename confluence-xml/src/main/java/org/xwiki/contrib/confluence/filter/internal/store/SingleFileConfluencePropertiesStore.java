@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Store keeping all the entries in a single {@link AppendLog}, the content of each record being the UTF-8 properties
+ * of the entry.
+ * <p>
+ * Saving an entry leaves its previous versions behind as garbage. This is fine since the store only lives as long as
+ * the package is being imported and avoids creating one file (and one folder) per Confluence object, which is what
+ * hurts on large packages.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+public class SingleFileConfluencePropertiesStore implements ConfluencePropertiesStore
+{
+    /**
+     * The name of the data file.
+     */
+    public static final String DATA_FILENAME = "objects.dat";
+
+    private static final String INDEX_FILENAME = "objects.idx";
+
+    private static final byte PROPERTIES = 0;
+
+    // Sorted to list the children of a folder
+    private final NavigableMap<String, Long> index = new TreeMap<>();
+
+    private final AppendLog log;
+
+    /**
+     * @param root the directory where to store the data and index files
+     * @throws IOException when failing to open the store
+     */
+    public SingleFileConfluencePropertiesStore(File root) throws IOException
+    {
+        this.log = new AppendLog(new File(root, DATA_FILENAME), new File(root, INDEX_FILENAME), this.index);
+    }
+
+    /**
+     * @param root the directory to check
+     * @return true if the directory contains a single file store
+     */
+    public static boolean isStore(File root)
+    {
+        return new File(root, DATA_FILENAME).isFile();
+    }
+
+    /**
+     * Delete the single file store found in the given directory, if any. The store must not be open.
+     *
+     * @param root the directory containing the store
+     * @throws IOException when failing to delete the store files
+     */
+    public static void delete(File root) throws IOException
+    {
+        AppendLog.delete(new File(root, DATA_FILENAME), new File(root, INDEX_FILENAME));
+    }
+
+    @Override
+    public synchronized ConfluenceProperties get(String path, boolean create) throws ConfigurationException
+    {
+        try {
+            AppendLog.Record record = this.log.read(path);
+            if (record == null) {
+                return create ? new StoredConfluenceProperties(this, path) : null;
+            }
+
+            StoredConfluenceProperties properties = new StoredConfluenceProperties(this, path);
+            properties.read(new StringReader(new String(record.getContent(), StandardCharsets.UTF_8)));
+
+            return properties;
+        } catch (IOException e) {
+            throw new ConfigurationException(String.format("Failed to read entry [%s]", path), e);
+        }
+    }
+
+    @Override
+    public synchronized void save(String path, ConfluenceProperties properties) throws ConfigurationException
+    {
+        try {
+            StringWriter writer = new StringWriter();
+            properties.write(writer);
+            byte[] content = writer.toString().getBytes(StandardCharsets.UTF_8);
+            this.log.append(path, PROPERTIES, content.length, content);
+        } catch (IOException e) {
+            throw new ConfigurationException(String.format("Failed to write entry [%s]", path), e);
+        }
+    }
+
+    @Override
+    public synchronized boolean exists(String path)
+    {
+        return this.log.contains(path);
+    }
+
+    @Override
+    public synchronized Collection<String> list(String folder)
+    {
+        String prefix = folder.isEmpty() ? folder : folder + SEPARATOR;
+        Set<String> children = new LinkedHashSet<>();
+        for (String path : this.index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet()) {
+            int end = path.indexOf(SEPARATOR, prefix.length());
+            children.add(end == -1 ? path.substring(prefix.length()) : path.substring(prefix.length(), end));
+        }
+
+        return children;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        this.log.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.log.close();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.ex.ConfigurationRuntimeException;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+
+/**
+ * Properties of an entry of a {@link ConfluencePropertiesStore}, written back to the store when saved.
+ * <p>
+ * One of the properties can be lazy: it is listed with the other properties but its value is only read from a
+ * {@link BodyStore} when actually requested. Setting or clearing the property makes it a regular one.
+ *
+ * @version $Id$
+ * @since 9.96.0
+ */
+class StoredConfluenceProperties extends ConfluenceProperties
+{
+    private final ConfluencePropertiesStore store;
+
+    private final String path;
+
+    // The lazy property, null if there is none
+    private String lazyKey;
+
+    // Where to read the value of the lazy property from
+    private BodyStore lazyStore;
+
+    private String lazyPath;
+
+    private String lazyValue;
+
+    /**
+     * @param store the store where to save the properties
+     * @param path the path of the entry in the store
+     */
+    StoredConfluenceProperties(ConfluencePropertiesStore store, String path)
+    {
+        this.store = store;
+        this.path = path;
+        setIOFactory(new JupIOFactory(false));
+    }
+
+    /**
+     * @param key the name of the lazy property
+     * @param bodyStore the store containing the value of the property
+     * @param bodyPath the path of the value in the body store
+     */
+    void setLazyProperty(String key, BodyStore bodyStore, String bodyPath)
+    {
+        clearProperty(key);
+        this.lazyKey = key;
+        this.lazyStore = bodyStore;
+        this.lazyPath = bodyPath;
+        this.lazyValue = null;
+    }
+
+    /**
+     * @param key the name of a property
+     * @return true if the property is lazy and was not read yet
+     */
+    boolean isPending(String key)
+    {
+        return key.equals(this.lazyKey) && this.lazyValue == null;
+    }
+
+    /**
+     * @param key the name of a property
+     * @param bodyStore a body store
+     * @param bodyPath a path in the body store
+     * @return true if the property is lazy and its value is the one stored at the given place
+     */
+    boolean isLazy(String key, BodyStore bodyStore, String bodyPath)
+    {
+        return key.equals(this.lazyKey) && this.lazyStore == bodyStore && this.lazyPath.equals(bodyPath);
+    }
+
+    private boolean isLazy(String key)
+    {
+        return key.equals(this.lazyKey);
+    }
+
+    private void dropLazyProperty()
+    {
+        this.lazyKey = null;
+        this.lazyStore = null;
+        this.lazyPath = null;
+        this.lazyValue = null;
+    }
+
+    private synchronized String getLazyValue()
+    {
+        if (this.lazyValue == null) {
+            try {
+                this.lazyValue = this.lazyStore.get(this.lazyPath);
+            } catch (IOException e) {
+                throw new ConfigurationRuntimeException(
+                    String.format("Failed to read property [%s] of entry [%s]", this.lazyKey, this.path), e);
+            }
+        }
+
+        return this.lazyValue;
+    }
+
+    @Override
+    protected Object getPropertyInternal(String key)
+    {
+        return isLazy(key) ? getLazyValue() : super.getPropertyInternal(key);
+    }
+
+    @Override
+    protected boolean containsKeyInternal(String key)
+    {
+        return isLazy(key) || super.containsKeyInternal(key);
+    }
+
+    @Override
+    protected Iterator<String> getKeysInternal()
+    {
+        Iterator<String> keys = super.getKeysInternal();
+
+        return this.lazyKey == null
+            ? keys
+            : IteratorUtils.chainedIterator(keys, IteratorUtils.singletonIterator(this.lazyKey));
+    }
+
+    @Override
+    protected boolean isEmptyInternal()
+    {
+        return this.lazyKey == null && super.isEmptyInternal();
+    }
+
+    @Override
+    protected int sizeInternal()
+    {
+        return this.lazyKey == null ? super.sizeInternal() : super.sizeInternal() + 1;
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object value)
+    {
+        if (isLazy(key)) {
+            // Adding a value to the property makes it a regular one, keeping its current value
+            String currentValue = getLazyValue();
+            dropLazyProperty();
+            super.addPropertyDirect(key, currentValue);
+        }
+        super.addPropertyDirect(key, value);
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key)
+    {
+        if (isLazy(key)) {
+            dropLazyProperty();
+        }
+        super.clearPropertyDirect(key);
+    }
+
+    @Override
+    protected void clearInternal()
+    {
+        dropLazyProperty();
+        super.clearInternal();
+    }
+
+    @Override
+    public void copy(Configuration c)
+    {
+        if (c instanceof StoredConfluenceProperties && ((StoredConfluenceProperties) c).lazyKey != null) {
+            // Copy the lazy property without reading its value
+            StoredConfluenceProperties source = (StoredConfluenceProperties) c;
+            String key = source.lazyKey;
+            for (Iterator<String> keys = source.getKeys(); keys.hasNext();) {
+                String k = keys.next();
+                if (!k.equals(key)) {
+                    setProperty(k, source.getProperty(k));
+                }
+            }
+            setLazyProperty(key, source.lazyStore, source.lazyPath);
+        } else {
+            super.copy(c);
+        }
+    }
+
+    @Override
+    public void save() throws ConfigurationException
+    {
+        this.store.save(this.path, this);
+    }
+}
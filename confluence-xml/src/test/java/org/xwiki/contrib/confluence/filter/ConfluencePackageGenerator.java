@@ -0,0 +1,1069 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Write synthetic Confluence packages of any size, to test and benchmark imports at scale without customer exports.
+ * <p>
+ * The package is streamed to disk in constant memory: the identifiers, titles and dates of all the objects are
+ * computed from their position in the package, so nothing has to be remembered while writing. The same seed and
+ * parameters always produce the same bytes.
+ *
+ * @version $Id$
+ */
+public class ConfluencePackageGenerator
+{
+    /**
+     * The elements page bodies are made of.
+     *
+     * @version $Id$
+     */
+    public enum BodyElement
+    {
+        /**
+         * A paragraph of words.
+         */
+        PARAGRAPH,
+
+        /**
+         * A section heading.
+         */
+        HEADING,
+
+        /**
+         * A bulleted list.
+         */
+        LIST,
+
+        /**
+         * A table with a header row.
+         */
+        TABLE,
+
+        /**
+         * A link to another page of the same space, by title.
+         */
+        LINK,
+
+        /**
+         * A user mention.
+         */
+        MENTION,
+
+        /**
+         * An info macro with a rich text body.
+         */
+        INFO_MACRO,
+
+        /**
+         * A code macro with a plain text body.
+         */
+        CODE_MACRO,
+
+        /**
+         * An expand macro with a rich text body.
+         */
+        EXPAND_MACRO,
+
+        /**
+         * A table of contents macro.
+         */
+        TOC_MACRO,
+
+        /**
+         * An image, taken from the attachments of the page when it has some.
+         */
+        IMAGE,
+
+        /**
+         * A task list.
+         */
+        TASK_LIST,
+
+        /**
+         * A paragraph ending with an emoticon.
+         */
+        EMOTICON
+    }
+
+    /**
+     * The name of the file containing the objects of the package.
+     */
+    public static final String ENTITIES = "entities.xml";
+
+    private static final long ID_RANGE = 1_000_000_000_000L;
+
+    private static final long USER_IDS = ID_RANGE;
+
+    private static final long GROUP_IDS = 2 * ID_RANGE;
+
+    private static final long MEMBERSHIP_IDS = 3 * ID_RANGE;
+
+    private static final long LABEL_IDS = 4 * ID_RANGE;
+
+    private static final long SPACE_IDS = 5 * ID_RANGE;
+
+    private static final long SPACE_PERMISSION_IDS = 6 * ID_RANGE;
+
+    private static final long PAGE_IDS = 7 * ID_RANGE;
+
+    // 2020-01-01 00:00:00 UTC
+    private static final long START_DATE = 1_577_836_800_000L;
+
+    private static final long SECOND = 1000L;
+
+    private static final long MINUTE = 60 * SECOND;
+
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT).withZone(ZoneOffset.UTC);
+
+    private static final String[] WORDS = { "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel",
+        "india", "juliett", "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango",
+        "uniform", "victor", "whiskey", "xray", "yankee", "zulu" };
+
+    private static final String[] SPACE_PERMISSION_TYPES =
+        { "VIEWSPACE", "EDITSPACE", "COMMENT", "CREATEATTACHMENT", "REMOVEPAGE", "SETSPACEPERMISSIONS" };
+
+    private static final String[] CONTENT_PERMISSION_TYPES = { "View", "Edit" };
+
+    private static final String[][] ATTACHMENT_TYPES =
+        { { "png", "image/png" }, { "pdf", "application/pdf" }, { "txt", "text/plain" } };
+
+    private static final String[] EMOTICONS = { "smile", "sad", "thumbs-up", "information", "tick", "warning" };
+
+    private static final String PAGES_PACKAGE = "com.atlassian.confluence.pages";
+
+    private static final String SPACES_PACKAGE = "com.atlassian.confluence.spaces";
+
+    private static final String SECURITY_PACKAGE = "com.atlassian.confluence.security";
+
+    private static final String LABELS_PACKAGE = "com.atlassian.confluence.labels";
+
+    private static final String CORE_PACKAGE = "com.atlassian.confluence.core";
+
+    private static final String USER_PACKAGE = "com.atlassian.confluence.user";
+
+    private static final String CROWD_USER_PACKAGE = "com.atlassian.crowd.model.user";
+
+    private static final String CROWD_GROUP_PACKAGE = "com.atlassian.crowd.model.group";
+
+    private static final String PAGE = "Page";
+
+    private static final String SPACE = "Space";
+
+    private static final String COMMENT = "Comment";
+
+    private static final String BODY_CONTENT = "BodyContent";
+
+    private static final String CONTENT_PERMISSION_SET = "ContentPermissionSet";
+
+    private static final String INTERNAL_USER = "InternalUser";
+
+    private static final String INTERNAL_GROUP = "InternalGroup";
+
+    private static final String ID = "id";
+
+    private static final String NAME = "name";
+
+    private static final String LOWER_NAME = "lowerName";
+
+    private static final String TYPE = "type";
+
+    private static final String VERSION = "version";
+
+    private static final String CREATOR = "creator";
+
+    private static final String LAST_MODIFIER = "lastModifier";
+
+    private static final String CREATION_DATE = "creationDate";
+
+    private static final String LAST_MODIFICATION_DATE = "lastModificationDate";
+
+    private static final String CONTENT_STATUS = "contentStatus";
+
+    private static final String CURRENT = "current";
+
+    private static final String CONTAINER_CONTENT = "containerContent";
+
+    private static final String ACTIVE = "active";
+
+    private static final String TRUE = "true";
+
+    private static final String OBJECT_END = "</object>\n";
+
+    private static final String PARAGRAPH_BEGIN = "<p>";
+
+    private static final String PARAGRAPH_END = "</p>";
+
+    private static final String MACRO_END = "</ac:structured-macro>";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private long seed;
+
+    private int spaces = 1;
+
+    private int pagesPerSpace = 10;
+
+    private int depth = 3;
+
+    private int revisions = 1;
+
+    private int comments;
+
+    private int labels;
+
+    private int labelsPerPage;
+
+    private int attachments;
+
+    private int attachmentVersions = 1;
+
+    private int attachmentSize = 1024;
+
+    private int users = 1;
+
+    private int groups;
+
+    private int memberships;
+
+    private int spacePermissions;
+
+    private int permissionSets;
+
+    private int bodyElements = 5;
+
+    private Map<BodyElement, Integer> bodyMix = defaultBodyMix();
+
+    private int bodyMixTotal;
+
+    private int fanout;
+
+    private static Map<BodyElement, Integer> defaultBodyMix()
+    {
+        Map<BodyElement, Integer> mix = new EnumMap<>(BodyElement.class);
+        for (BodyElement element : BodyElement.values()) {
+            mix.put(element, 1);
+        }
+        mix.put(BodyElement.PARAGRAPH, 8);
+        mix.put(BodyElement.HEADING, 2);
+        mix.put(BodyElement.LINK, 2);
+
+        return mix;
+    }
+
+    /**
+     * @param seed the seed of the pseudo random choices, the same seed producing the same package
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param spaces the number of spaces
+     */
+    public void setSpaces(int spaces)
+    {
+        this.spaces = spaces;
+    }
+
+    /**
+     * @param pagesPerSpace the number of pages in each space, including the home page
+     */
+    public void setPagesPerSpace(int pagesPerSpace)
+    {
+        this.pagesPerSpace = pagesPerSpace;
+    }
+
+    /**
+     * @param depth the maximum depth of the page hierarchy below the home page of each space
+     */
+    public void setDepth(int depth)
+    {
+        this.depth = depth;
+    }
+
+    /**
+     * @param revisions the number of versions of each page, including the current one
+     */
+    public void setRevisions(int revisions)
+    {
+        this.revisions = revisions;
+    }
+
+    /**
+     * @param comments the number of comments on each page
+     */
+    public void setComments(int comments)
+    {
+        this.comments = comments;
+    }
+
+    /**
+     * @param labels the number of distinct labels
+     */
+    public void setLabels(int labels)
+    {
+        this.labels = labels;
+    }
+
+    /**
+     * @param labelsPerPage the number of labels on each page, at most the number of distinct labels
+     */
+    public void setLabelsPerPage(int labelsPerPage)
+    {
+        this.labelsPerPage = labelsPerPage;
+    }
+
+    /**
+     * @param attachments the number of attachments on each page
+     */
+    public void setAttachments(int attachments)
+    {
+        this.attachments = attachments;
+    }
+
+    /**
+     * @param attachmentVersions the number of versions of each attachment, including the current one
+     */
+    public void setAttachmentVersions(int attachmentVersions)
+    {
+        this.attachmentVersions = attachmentVersions;
+    }
+
+    /**
+     * @param attachmentSize the size in bytes of each attachment version
+     */
+    public void setAttachmentSize(int attachmentSize)
+    {
+        this.attachmentSize = attachmentSize;
+    }
+
+    /**
+     * @param users the number of users, at least one
+     */
+    public void setUsers(int users)
+    {
+        this.users = users;
+    }
+
+    /**
+     * @param groups the number of groups
+     */
+    public void setGroups(int groups)
+    {
+        this.groups = groups;
+    }
+
+    /**
+     * @param memberships the number of groups each user is a member of, at most the number of groups
+     */
+    public void setMemberships(int memberships)
+    {
+        this.memberships = memberships;
+    }
+
+    /**
+     * @param spacePermissions the number of permissions granted on each space
+     */
+    public void setSpacePermissions(int spacePermissions)
+    {
+        this.spacePermissions = spacePermissions;
+    }
+
+    /**
+     * @param permissionSets the number of permission sets restricting each page, at most 2 (view and edit), each set
+     *     granting the permission to a user and to a group (or another user when there are no groups)
+     */
+    public void setPermissionSets(int permissionSets)
+    {
+        this.permissionSets = permissionSets;
+    }
+
+    /**
+     * @param bodyElements the number of elements in the body of each page version
+     */
+    public void setBodyElements(int bodyElements)
+    {
+        this.bodyElements = bodyElements;
+    }
+
+    /**
+     * @param bodyMix the weight of each kind of element in page bodies, missing elements never being used
+     */
+    public void setBodyMix(Map<BodyElement, Integer> bodyMix)
+    {
+        this.bodyMix = new EnumMap<>(BodyElement.class);
+        this.bodyMix.putAll(bodyMix);
+    }
+
+    /**
+     * @param space the index of the space
+     * @return the identifier of the space
+     */
+    public long getSpaceId(int space)
+    {
+        return SPACE_IDS + space;
+    }
+
+    /**
+     * @param space the index of the space
+     * @return the key of the space
+     */
+    public String getSpaceKey(int space)
+    {
+        return "SPACE" + space;
+    }
+
+    /**
+     * @param space the index of the space
+     * @param page the index of the page in the space, 0 being the home page
+     * @return the identifier of the current version of the page
+     */
+    public long getPageId(int space, int page)
+    {
+        return PAGE_IDS + ((long) space * this.pagesPerSpace + page) * getPageBlockSize();
+    }
+
+    /**
+     * @param space the index of the space
+     * @param page the index of the page in the space, 0 being the home page
+     * @return the title of the page
+     */
+    public String getPageTitle(int space, int page)
+    {
+        if (page == 0) {
+            return "Home of space " + space;
+        }
+
+        return capitalize(WORDS[page % WORDS.length]) + ' ' + WORDS[(page / WORDS.length) % WORDS.length] + ' ' + page;
+    }
+
+    /**
+     * @param space the index of the space
+     * @param page the index of the page in the space, 0 being the home page
+     * @param attachment the index of the attachment in the page
+     * @return the identifier of the current version of the attachment, under which all its versions are stored
+     */
+    public long getAttachmentId(int space, int page, int attachment)
+    {
+        return getAttachmentId(getPageId(space, page), attachment, this.attachmentVersions);
+    }
+
+    /**
+     * @param user the index of the user
+     * @return the key of the user
+     */
+    public String getUserKey(int user)
+    {
+        return String.format(Locale.ROOT, "%032x", USER_IDS + user);
+    }
+
+    /**
+     * Write the package in the given directory.
+     *
+     * @param directory the directory where to write the package
+     * @throws IOException when failing to write the package
+     */
+    public void write(File directory) throws IOException
+    {
+        validate();
+
+        this.bodyMixTotal = this.bodyMix.values().stream().mapToInt(Integer::intValue).sum();
+        this.fanout = computeFanout();
+
+        Random random = new Random(this.seed);
+
+        try (Writer writer =
+            Files.newBufferedWriter(new File(directory, ENTITIES).toPath(), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<hibernate-generic datetime=\""
+                + date(START_DATE) + "\">\n");
+
+            for (int user = 0; user < this.users; user++) {
+                writeUser(writer, user);
+            }
+            for (int group = 0; group < this.groups; group++) {
+                writeGroup(writer, group);
+            }
+            for (int user = 0; user < this.users; user++) {
+                for (int membership = 0; membership < this.memberships; membership++) {
+                    writeMembership(writer, user, membership);
+                }
+            }
+            for (int label = 0; label < this.labels; label++) {
+                writeLabel(writer, label);
+            }
+            for (int space = 0; space < this.spaces; space++) {
+                writeSpace(writer, space);
+                for (int page = 0; page < this.pagesPerSpace; page++) {
+                    writePage(writer, random, directory, space, page);
+                }
+            }
+
+            writer.write("</hibernate-generic>\n");
+        }
+
+        writeDescriptor(directory);
+    }
+
+    private void validate()
+    {
+        check(this.spaces >= 0, "The number of spaces cannot be negative");
+        check(this.pagesPerSpace >= 1, "Each space needs at least a home page");
+        check(this.depth >= 1 || this.pagesPerSpace == 1, "A depth of at least 1 is needed to have several pages");
+        check(this.revisions >= 1, "Each page needs at least one version");
+        check(this.attachmentVersions >= 1, "Each attachment needs at least one version");
+        check(this.users >= 1, "At least one user is needed to own the content");
+        check(this.labelsPerPage <= this.labels, "There are not enough labels for each page");
+        check(this.memberships <= this.groups, "There are not enough groups for the memberships of each user");
+        check(this.permissionSets <= CONTENT_PERMISSION_TYPES.length, "A page has at most 2 permission sets");
+        check(this.bodyMix.values().stream().allMatch(weight -> weight >= 0), "Body weights cannot be negative");
+        check(this.bodyElements == 0 || this.bodyMix.values().stream().anyMatch(weight -> weight > 0),
+            "The body mix needs at least one element");
+    }
+
+    private static void check(boolean condition, String message)
+    {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private int computeFanout()
+    {
+        // The smallest number of children per page fitting all the pages of a space within the configured depth
+        int result = 1;
+        while (getCapacity(result) < this.pagesPerSpace) {
+            result++;
+        }
+
+        return result;
+    }
+
+    private long getCapacity(int candidate)
+    {
+        long capacity = 0;
+        long level = 1;
+        for (int i = 0; i <= this.depth && capacity < this.pagesPerSpace; i++) {
+            capacity += level;
+            level *= candidate;
+        }
+
+        return capacity;
+    }
+
+    private long getPageBlockSize()
+    {
+        // The page and its body, the history with bodies, the comments with bodies, the attachment versions, the
+        // labellings and the permission sets with their two permissions
+        return 2L + 2L * (this.revisions - 1) + 2L * this.comments + (long) this.attachments * this.attachmentVersions
+            + this.labelsPerPage + 3L * this.permissionSets;
+    }
+
+    private long getCommentId(long pageId, int comment)
+    {
+        return pageId + 2L * this.revisions + 2L * comment;
+    }
+
+    private long getAttachmentId(long pageId, int attachment, int version)
+    {
+        return getCommentId(pageId, this.comments) + (long) attachment * this.attachmentVersions + version - 1;
+    }
+
+    private long getLabellingId(long pageId, int labelling)
+    {
+        return getAttachmentId(pageId, this.attachments, 1) + labelling;
+    }
+
+    private long getPermissionSetId(long pageId, int permissionSet)
+    {
+        return getLabellingId(pageId, this.labelsPerPage) + 3L * permissionSet;
+    }
+
+    private String getUserName(int user)
+    {
+        return "user" + user;
+    }
+
+    private String getGroupName(int group)
+    {
+        return "group" + group;
+    }
+
+    private String getLabelName(int label)
+    {
+        return WORDS[label % WORDS.length] + '-' + label;
+    }
+
+    private String getAttachmentName(int attachment)
+    {
+        return "file" + attachment + '.' + ATTACHMENT_TYPES[attachment % ATTACHMENT_TYPES.length][0];
+    }
+
+    private static String capitalize(String word)
+    {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String date(long date)
+    {
+        return DATE_FORMAT.format(Instant.ofEpochMilli(date));
+    }
+
+    private void writeUser(Writer writer, int user) throws IOException
+    {
+        String name = getUserName(user);
+        String firstName = capitalize(WORDS[user % WORDS.length]);
+        String lastName = capitalize(WORDS[(user / WORDS.length) % WORDS.length]);
+        String date = date(START_DATE);
+
+        beginObject(writer, INTERNAL_USER, CROWD_USER_PACKAGE, ID, USER_IDS + user);
+        text(writer, NAME, name);
+        text(writer, LOWER_NAME, name);
+        property(writer, ACTIVE, TRUE);
+        property(writer, "createdDate", date);
+        property(writer, "updatedDate", date);
+        text(writer, "firstName", firstName);
+        text(writer, "lastName", lastName);
+        text(writer, "displayName", firstName + ' ' + lastName + ' ' + user);
+        text(writer, "emailAddress", name + "@example.com");
+        writer.write(OBJECT_END);
+
+        beginObject(writer, "ConfluenceUserImpl", USER_PACKAGE, "key", getUserKey(user));
+        text(writer, NAME, name);
+        text(writer, LOWER_NAME, name);
+        writer.write(OBJECT_END);
+    }
+
+    private void writeGroup(Writer writer, int group) throws IOException
+    {
+        String name = getGroupName(group);
+
+        beginObject(writer, INTERNAL_GROUP, CROWD_GROUP_PACKAGE, ID, GROUP_IDS + group);
+        text(writer, NAME, name);
+        text(writer, LOWER_NAME, name);
+        property(writer, ACTIVE, TRUE);
+        property(writer, "local", "false");
+        writer.write("    <property name=\"type\" enum-class=\"GroupType\" package=\"" + CROWD_GROUP_PACKAGE
+            + "\">GROUP</property>\n");
+        writer.write(OBJECT_END);
+    }
+
+    private void writeMembership(Writer writer, int user, int membership) throws IOException
+    {
+        beginObject(writer, "HibernateMembership", "com.atlassian.crowd.embedded.hibernate2", ID,
+            MEMBERSHIP_IDS + (long) user * this.memberships + membership);
+        reference(writer, "parentGroup", INTERNAL_GROUP, CROWD_GROUP_PACKAGE,
+            GROUP_IDS + (user + membership) % this.groups);
+        reference(writer, "userMember", INTERNAL_USER, CROWD_USER_PACKAGE, USER_IDS + user);
+        writer.write(OBJECT_END);
+    }
+
+    private void writeLabel(Writer writer, int label) throws IOException
+    {
+        beginObject(writer, "Label", LABELS_PACKAGE, ID, LABEL_IDS + label);
+        text(writer, NAME, getLabelName(label));
+        property(writer, "namespace", "global");
+        dates(writer, START_DATE, START_DATE);
+        writer.write(OBJECT_END);
+    }
+
+    private void writeSpace(Writer writer, int space) throws IOException
+    {
+        long spaceId = getSpaceId(space);
+        String key = getSpaceKey(space);
+        String creator = getUserKey(space % this.users);
+
+        beginObject(writer, SPACE, SPACES_PACKAGE, ID, spaceId);
+        text(writer, NAME, capitalize(WORDS[space % WORDS.length]) + " space " + space);
+        text(writer, "key", key);
+        text(writer, "lowerKey", key.toLowerCase(Locale.ROOT));
+        reference(writer, "homePage", PAGE, PAGES_PACKAGE, getPageId(space, 0));
+        userReference(writer, CREATOR, creator);
+        userReference(writer, LAST_MODIFIER, creator);
+        dates(writer, START_DATE, START_DATE);
+        property(writer, "spaceType", "global");
+        writer.write("    <property name=\"spaceStatus\" enum-class=\"SpaceStatus\" package=\"" + SPACES_PACKAGE
+            + "\">CURRENT</property>\n");
+        writer.write(OBJECT_END);
+
+        for (int permission = 0; permission < this.spacePermissions; permission++) {
+            beginObject(writer, "SpacePermission", SECURITY_PACKAGE, ID,
+                SPACE_PERMISSION_IDS + (long) space * this.spacePermissions + permission);
+            property(writer, TYPE, SPACE_PERMISSION_TYPES[permission % SPACE_PERMISSION_TYPES.length]);
+            if (this.groups > 0 && permission % 2 == 0) {
+                property(writer, "group", getGroupName((space + permission) % this.groups));
+            } else {
+                userReference(writer, "userSubject", getUserKey((space + permission) % this.users));
+            }
+            reference(writer, "space", SPACE, SPACES_PACKAGE, spaceId);
+            userReference(writer, CREATOR, creator);
+            dates(writer, START_DATE, START_DATE);
+            writer.write(OBJECT_END);
+        }
+    }
+
+    private void writePage(Writer writer, Random random, File directory, int space, int page) throws IOException
+    {
+        long pageId = getPageId(space, page);
+        long created = START_DATE + ((long) space * this.pagesPerSpace + page) * MINUTE;
+        String creator = getUserKey(random.nextInt(this.users));
+
+        for (int revision = 1; revision <= this.revisions; revision++) {
+            boolean current = revision == this.revisions;
+            long revisionId = current ? pageId : pageId + 2L * revision;
+            long modified = created + (revision - 1) * SECOND;
+            String modifier = revision == 1 ? creator : getUserKey(random.nextInt(this.users));
+
+            writeBody(writer, revisionId + 1, PAGE, revisionId, createBody(random, space, page));
+
+            String title = getPageTitle(space, page);
+            beginObject(writer, PAGE, PAGES_PACKAGE, ID, revisionId);
+            text(writer, "title", title);
+            text(writer, "lowerTitle", title.toLowerCase(Locale.ROOT));
+            writer.write("    <collection name=\"bodyContents\" class=\"java.util.Collection\"><element class=\""
+                + BODY_CONTENT + "\" package=\"" + CORE_PACKAGE + "\"><id name=\"id\">" + (revisionId + 1)
+                + "</id></element></collection>\n");
+            property(writer, VERSION, revision);
+            userReference(writer, CREATOR, creator);
+            userReference(writer, LAST_MODIFIER, modifier);
+            dates(writer, created, modified);
+            text(writer, "versionComment", revision == 1 ? "" : "Revision " + revision);
+            text(writer, CONTENT_STATUS, CURRENT);
+            reference(writer, "space", SPACE, SPACES_PACKAGE, getSpaceId(space));
+            if (current) {
+                if (page > 0) {
+                    reference(writer, "parent", PAGE, PAGES_PACKAGE, getPageId(space, (page - 1) / this.fanout));
+                }
+            } else {
+                reference(writer, "originalVersion", PAGE, PAGES_PACKAGE, pageId);
+            }
+            writer.write(OBJECT_END);
+        }
+
+        long modified = created + (this.revisions - 1) * SECOND;
+
+        for (int comment = 0; comment < this.comments; comment++) {
+            writeComment(writer, random, pageId, comment, modified + (comment + 1) * SECOND);
+        }
+
+        for (int attachment = 0; attachment < this.attachments; attachment++) {
+            for (int version = 1; version <= this.attachmentVersions; version++) {
+                writeAttachment(writer, directory, space, pageId, attachment, version, created + version * SECOND);
+            }
+        }
+
+        int firstLabel = this.labelsPerPage > 0 ? random.nextInt(this.labels) : 0;
+        for (int labelling = 0; labelling < this.labelsPerPage; labelling++) {
+            beginObject(writer, "Labelling", LABELS_PACKAGE, ID, getLabellingId(pageId, labelling));
+            reference(writer, "label", "Label", LABELS_PACKAGE, LABEL_IDS + (firstLabel + labelling) % this.labels);
+            reference(writer, "content", PAGE, PAGES_PACKAGE, pageId);
+            userReference(writer, "owningUser", creator);
+            dates(writer, modified, modified);
+            property(writer, "labelableId", pageId);
+            property(writer, "labelableType", "CONTENT");
+            writer.write(OBJECT_END);
+        }
+
+        for (int permissionSet = 0; permissionSet < this.permissionSets; permissionSet++) {
+            writePermissionSet(writer, random, pageId, permissionSet, modified);
+        }
+    }
+
+    private void writeComment(Writer writer, Random random, long pageId, int comment, long date) throws IOException
+    {
+        long commentId = getCommentId(pageId, comment);
+        String creator = getUserKey(random.nextInt(this.users));
+
+        writeBody(writer, commentId + 1, COMMENT, commentId, PARAGRAPH_BEGIN + sentence(random) + PARAGRAPH_END);
+
+        beginObject(writer, COMMENT, PAGES_PACKAGE, ID, commentId);
+        property(writer, VERSION, 1);
+        userReference(writer, CREATOR, creator);
+        userReference(writer, LAST_MODIFIER, creator);
+        dates(writer, date, date);
+        text(writer, CONTENT_STATUS, CURRENT);
+        reference(writer, CONTAINER_CONTENT, PAGE, PAGES_PACKAGE, pageId);
+        writer.write(OBJECT_END);
+    }
+
+    private void writeAttachment(Writer writer, File directory, int space, long pageId, int attachment, int version,
+        long date) throws IOException
+    {
+        long attachmentId = getAttachmentId(pageId, attachment, version);
+        long currentId = getAttachmentId(pageId, attachment, this.attachmentVersions);
+        String creator = getUserKey(space % this.users);
+
+        beginObject(writer, "Attachment", PAGES_PACKAGE, ID, attachmentId);
+        text(writer, "title", getAttachmentName(attachment));
+        property(writer, VERSION, version);
+        userReference(writer, CREATOR, creator);
+        userReference(writer, LAST_MODIFIER, creator);
+        dates(writer, date, date);
+        text(writer, "versionComment", "");
+        text(writer, CONTENT_STATUS, CURRENT);
+        text(writer, "contentType", ATTACHMENT_TYPES[attachment % ATTACHMENT_TYPES.length][1]);
+        property(writer, "fileSize", this.attachmentSize);
+        reference(writer, CONTAINER_CONTENT, PAGE, PAGES_PACKAGE, pageId);
+        reference(writer, "space", SPACE, SPACES_PACKAGE, getSpaceId(space));
+        if (attachmentId != currentId) {
+            reference(writer, "originalVersion", "Attachment", PAGES_PACKAGE, currentId);
+            property(writer, "originalVersionId", currentId);
+        }
+        writer.write(OBJECT_END);
+
+        // All the versions of an attachment are stored in the folder of its current version
+        File folder = new File(directory, "attachments/" + pageId + '/' + currentId);
+        Files.createDirectories(folder.toPath());
+        writeAttachmentContent(new File(folder, String.valueOf(version)), attachmentId);
+    }
+
+    private void writeAttachmentContent(File file, long attachmentId) throws IOException
+    {
+        // A dedicated generator keeps the content independent of the rest of the package
+        Random random = new Random(this.seed * 31 + attachmentId);
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(this.attachmentSize, 1))];
+        try (OutputStream stream = Files.newOutputStream(file.toPath())) {
+            for (int written = 0; written < this.attachmentSize; written += buffer.length) {
+                random.nextBytes(buffer);
+                stream.write(buffer, 0, Math.min(buffer.length, this.attachmentSize - written));
+            }
+        }
+    }
+
+    private void writePermissionSet(Writer writer, Random random, long pageId, int permissionSet, long date)
+        throws IOException
+    {
+        long permissionSetId = getPermissionSetId(pageId, permissionSet);
+        String type = CONTENT_PERMISSION_TYPES[permissionSet];
+
+        beginObject(writer, CONTENT_PERMISSION_SET, SECURITY_PACKAGE, ID, permissionSetId);
+        property(writer, TYPE, type);
+        dates(writer, date, date);
+        reference(writer, "owningContent", PAGE, PAGES_PACKAGE, pageId);
+        writer.write(OBJECT_END);
+
+        for (int permission = 1; permission <= 2; permission++) {
+            beginObject(writer, "ContentPermission", SECURITY_PACKAGE, ID, permissionSetId + permission);
+            property(writer, TYPE, type);
+            dates(writer, date, date);
+            if (permission == 2 && this.groups > 0) {
+                text(writer, "groupName", getGroupName(random.nextInt(this.groups)));
+            } else {
+                userReference(writer, "userSubject", getUserKey(random.nextInt(this.users)));
+            }
+            reference(writer, "owningSet", CONTENT_PERMISSION_SET, SECURITY_PACKAGE, permissionSetId);
+            writer.write(OBJECT_END);
+        }
+    }
+
+    private void writeBody(Writer writer, long bodyId, String contentClass, long contentId, String body)
+        throws IOException
+    {
+        beginObject(writer, BODY_CONTENT, CORE_PACKAGE, ID, bodyId);
+        text(writer, "body", body);
+        reference(writer, "content", contentClass, PAGES_PACKAGE, contentId);
+        property(writer, "bodyType", 2);
+        writer.write(OBJECT_END);
+    }
+
+    private void writeDescriptor(File directory) throws IOException
+    {
+        // Written by hand since Properties#store adds the current date
+        try (Writer writer = Files.newBufferedWriter(new File(directory, "exportDescriptor.properties").toPath(),
+            StandardCharsets.ISO_8859_1)) {
+            writer.write("exportType=all\n");
+            writer.write("source=server\n");
+            writer.write("buildNumber=8804\n");
+            writer.write("createdByBuildNumber=8804\n");
+            writer.write("backupAttachments=true\n");
+            writer.write("defaultUsersGroup=confluence-users\n");
+            writer.write("timezoneId=UTC\n");
+        }
+    }
+
+    private String createBody(Random random, int space, int page)
+    {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < this.bodyElements; i++) {
+            appendElement(body, pickElement(random), random, space, page);
+        }
+
+        return body.toString();
+    }
+
+    private BodyElement pickElement(Random random)
+    {
+        int choice = random.nextInt(this.bodyMixTotal);
+        for (Map.Entry<BodyElement, Integer> entry : this.bodyMix.entrySet()) {
+            choice -= entry.getValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+
+        throw new IllegalStateException("Unreachable");
+    }
+
+    private void appendElement(StringBuilder body, BodyElement element, Random random, int space, int page)
+    {
+        switch (element) {
+            case HEADING:
+                body.append("<h2>").append(capitalize(word(random))).append(' ').append(word(random)).append("</h2>");
+                break;
+            case LIST:
+                body.append("<ul>");
+                for (int i = 0; i < 3; i++) {
+                    body.append("<li>").append(sentence(random)).append("</li>");
+                }
+                body.append("</ul>");
+                break;
+            case TABLE:
+                body.append("<table><tbody><tr><th>").append(word(random)).append("</th><th>").append(word(random))
+                    .append("</th></tr><tr><td>").append(sentence(random)).append("</td><td>")
+                    .append(random.nextInt(1000)).append("</td></tr></tbody></table>");
+                break;
+            case LINK:
+                body.append("<p>See <ac:link><ri:page ri:content-title=\"")
+                    .append(getPageTitle(space, random.nextInt(this.pagesPerSpace)))
+                    .append("\" /></ac:link>.</p>");
+                break;
+            case MENTION:
+                body.append("<p>Ask <ac:link><ri:user ri:userkey=\"").append(getUserKey(random.nextInt(this.users)))
+                    .append("\" /></ac:link>.</p>");
+                break;
+            case INFO_MACRO:
+                body.append("<ac:structured-macro ac:name=\"info\" ac:schema-version=\"1\"><ac:rich-text-body>")
+                    .append(PARAGRAPH_BEGIN).append(sentence(random)).append(PARAGRAPH_END)
+                    .append("</ac:rich-text-body>").append(MACRO_END);
+                break;
+            case CODE_MACRO:
+                body.append("<ac:structured-macro ac:name=\"code\" ac:schema-version=\"1\">"
+                    + "<ac:parameter ac:name=\"language\">java</ac:parameter><ac:plain-text-body><![CDATA[int ")
+                    .append(word(random)).append(" = ").append(random.nextInt(1000)).append(";]]>")
+                    .append("</ac:plain-text-body>").append(MACRO_END);
+                break;
+            case EXPAND_MACRO:
+                body.append("<ac:structured-macro ac:name=\"expand\" ac:schema-version=\"1\">"
+                    + "<ac:parameter ac:name=\"title\">").append(word(random))
+                    .append("</ac:parameter><ac:rich-text-body>").append(PARAGRAPH_BEGIN).append(sentence(random))
+                    .append(PARAGRAPH_END).append("</ac:rich-text-body>").append(MACRO_END);
+                break;
+            case TOC_MACRO:
+                body.append("<ac:structured-macro ac:name=\"toc\" ac:schema-version=\"1\" />");
+                break;
+            case IMAGE:
+                appendImage(body, random);
+                break;
+            case TASK_LIST:
+                body.append("<ac:task-list><ac:task><ac:task-id>").append(random.nextInt(100) + 1)
+                    .append("</ac:task-id><ac:task-status>").append(random.nextBoolean() ? "complete" : "incomplete")
+                    .append("</ac:task-status><ac:task-body>").append(sentence(random))
+                    .append("</ac:task-body></ac:task></ac:task-list>");
+                break;
+            case EMOTICON:
+                body.append(PARAGRAPH_BEGIN).append(sentence(random)).append(" <ac:emoticon ac:name=\"")
+                    .append(EMOTICONS[random.nextInt(EMOTICONS.length)]).append("\" />").append(PARAGRAPH_END);
+                break;
+            default:
+                body.append(PARAGRAPH_BEGIN).append(sentence(random)).append(PARAGRAPH_END);
+        }
+    }
+
+    private void appendImage(StringBuilder body, Random random)
+    {
+        body.append("<p><ac:image>");
+        if (this.attachments > 0) {
+            body.append("<ri:attachment ri:filename=\"").append(getAttachmentName(random.nextInt(this.attachments)))
+                .append("\" />");
+        } else {
+            body.append("<ri:url ri:value=\"https://example.com/").append(word(random)).append(".png\" />");
+        }
+        body.append("</ac:image></p>");
+    }
+
+    private static String word(Random random)
+    {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String sentence(Random random)
+    {
+        StringBuilder sentence = new StringBuilder(capitalize(word(random)));
+        int length = 4 + random.nextInt(12);
+        for (int i = 1; i < length; i++) {
+            sentence.append(' ').append(word(random));
+        }
+
+        return sentence.append('.').toString();
+    }
+
+    private static void beginObject(Writer writer, String clazz, String pkg, String idName, Object id)
+        throws IOException
+    {
+        writer.write("<object class=\"" + clazz + "\" package=\"" + pkg + "\">\n    <id name=\"" + idName + "\">" + id
+            + "</id>\n");
+    }
+
+    private static void property(Writer writer, String name, Object value) throws IOException
+    {
+        writer.write("    <property name=\"" + name + "\">" + value + "</property>\n");
+    }
+
+    private static void text(Writer writer, String name, String value) throws IOException
+    {
+        // A CDATA section cannot contain its own end marker, which has to be split across two sections
+        writer.write("    <property name=\"" + name + "\"><![CDATA[" + value.replace("]]>", "]]]]><![CDATA[>")
+            + "]]></property>\n");
+    }
+
+    private static void reference(Writer writer, String name, String clazz, String pkg, long id) throws IOException
+    {
+        writer.write("    <property name=\"" + name + "\" class=\"" + clazz + "\" package=\"" + pkg
+            + "\"><id name=\"id\">" + id + "</id></property>\n");
+    }
+
+    private static void userReference(Writer writer, String name, String key) throws IOException
+    {
+        writer.write("    <property name=\"" + name + "\" class=\"ConfluenceUserImpl\" package=\"" + USER_PACKAGE
+            + "\"><id name=\"key\">" + key + "</id></property>\n");
+    }
+
+    private static void dates(Writer writer, long creation, long modification) throws IOException
+    {
+        property(writer, CREATION_DATE, date(creation));
+        property(writer, LAST_MODIFICATION_DATE, date(modification));
+    }
+}
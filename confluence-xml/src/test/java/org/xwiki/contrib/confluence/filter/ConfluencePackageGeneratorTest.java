@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.confluence.filter.input.AttachmentContent;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
+import org.xwiki.environment.Environment;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.test.XWikiTempDirUtil;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link ConfluencePackageGenerator}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ConfluencePackageGeneratorTest
+{
+    @InjectMockComponents
+    private ConfluenceXMLPackage confluencePackage;
+
+    @BeforeEach
+    void setup(MockitoComponentManager componentManager) throws Exception
+    {
+        Environment environment = componentManager.registerMockComponent(Environment.class);
+        when(environment.getTemporaryDirectory()).thenReturn(XWikiTempDirUtil.createTemporaryDirectory());
+
+        this.confluencePackage = componentManager.getInstance(ConfluenceXMLPackage.class);
+    }
+
+    private static ConfluencePackageGenerator createGenerator(long seed)
+    {
+        ConfluencePackageGenerator generator = new ConfluencePackageGenerator();
+        generator.setSeed(seed);
+        generator.setSpaces(2);
+        generator.setPagesPerSpace(13);
+        generator.setDepth(2);
+        generator.setRevisions(3);
+        generator.setComments(2);
+        generator.setLabels(5);
+        generator.setLabelsPerPage(2);
+        generator.setAttachments(2);
+        generator.setAttachmentVersions(2);
+        generator.setAttachmentSize(10000);
+        generator.setUsers(4);
+        generator.setGroups(3);
+        generator.setMemberships(2);
+        generator.setSpacePermissions(4);
+        generator.setPermissionSets(2);
+
+        return generator;
+    }
+
+    private static File write(ConfluencePackageGenerator generator) throws Exception
+    {
+        File directory = XWikiTempDirUtil.createTemporaryDirectory();
+        generator.write(directory);
+
+        return directory;
+    }
+
+    @Test
+    void sameSeedProducesSameBytes() throws Exception
+    {
+        File first = write(createGenerator(42));
+        File second = write(createGenerator(42));
+
+        Collection<File> files = FileUtils.listFiles(first, null, true);
+        // entities.xml, exportDescriptor.properties and 2 spaces * 13 pages * 2 attachments * 2 versions
+        assertEquals(106, files.size());
+        for (File file : files) {
+            String path = first.toPath().relativize(file.toPath()).toString();
+            assertTrue(FileUtils.contentEquals(file, new File(second, path)), path);
+        }
+        assertEquals(files.size(), FileUtils.listFiles(second, null, true).size());
+    }
+
+    @Test
+    void differentSeedProducesDifferentContent() throws Exception
+    {
+        File first = write(createGenerator(42));
+        File second = write(createGenerator(43));
+
+        assertFalse(FileUtils.contentEquals(new File(first, ConfluencePackageGenerator.ENTITIES),
+            new File(second, ConfluencePackageGenerator.ENTITIES)));
+    }
+
+    @Test
+    void readGeneratedPackage() throws Exception
+    {
+        ConfluencePackageGenerator generator = createGenerator(42);
+        File directory = write(generator);
+
+        this.confluencePackage.setSource(new DefaultFileInputSource(directory));
+        this.confluencePackage.read();
+
+        assertEquals(2, this.confluencePackage.getSpaces().size());
+        assertEquals(4, this.confluencePackage.getInternalUsers().size());
+        assertEquals(3, this.confluencePackage.getGroups().size());
+
+        long spaceId = generator.getSpaceId(1);
+        Long homePage = generator.getPageId(1, 0);
+        assertEquals(13, this.confluencePackage.getPages().get(spaceId).size());
+        assertEquals(homePage, this.confluencePackage.getHomePage(spaceId));
+        // 13 pages within a depth of 2 need 3 children per page
+        assertEquals(3, this.confluencePackage.getPageChildren(homePage).size());
+        Long pageId = generator.getPageId(1, 12);
+        assertEquals(pageId,
+            this.confluencePackage.getPageId(generator.getSpaceKey(1), generator.getPageTitle(1, 12)));
+
+        AttachmentContent content =
+            this.confluencePackage.getAttachmentContent(pageId, generator.getAttachmentId(1, 12, 1), 1);
+        assertEquals(10000, content.getSize());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Validate {@link WithoutControlCharactersReader}.
+ *
+ * @version $Id$
+ */
+class WithoutControlCharactersReaderTest
+{
+    private static byte[] allBytes()
+    {
+        byte[] bytes = new byte[256 * 3];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        return bytes;
+    }
+
+    private static byte[] expected(byte[] input)
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (byte b : input) {
+            int c = b & 0xFF;
+            if (c == 0 || c >= 32 || c == 10 || c == 13) {
+                expected.write(c);
+            }
+        }
+
+        return expected.toByteArray();
+    }
+
+    @Test
+    void readBlocks() throws IOException
+    {
+        byte[] input = allBytes();
+        try (InputStream stream = new WithoutControlCharactersReader(new ByteArrayInputStream(input))) {
+            assertArrayEquals(expected(input), IOUtils.toByteArray(stream));
+        }
+    }
+
+    @Test
+    void readBytes() throws IOException
+    {
+        byte[] input = allBytes();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream stream = new WithoutControlCharactersReader(new ByteArrayInputStream(input))) {
+            for (int c = stream.read(); c != -1; c = stream.read()) {
+                output.write(c);
+            }
+        }
+
+        assertArrayEquals(expected(input), output.toByteArray());
+    }
+
+    @Test
+    void readMixed() throws IOException
+    {
+        byte[] input = "a\u0001b\u0002\u0003c\r\nd\te".getBytes(StandardCharsets.UTF_8);
+        try (InputStream stream = new WithoutControlCharactersReader(new ByteArrayInputStream(input))) {
+            assertEquals('a', stream.read());
+            byte[] buffer = new byte[3];
+            assertEquals(3, stream.read(buffer, 0, 3));
+            assertArrayEquals("bc\r".getBytes(StandardCharsets.UTF_8), buffer);
+            assertEquals("\nde", IOUtils.toString(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void onlyControlCharacters() throws IOException
+    {
+        byte[] input = new byte[] { 1, 2, 3, 4 };
+        try (InputStream stream = new WithoutControlCharactersReader(new ByteArrayInputStream(input))) {
+            assertEquals(-1, stream.read(new byte[4], 0, 4));
+            assertEquals(-1, stream.read());
+        }
+    }
+}
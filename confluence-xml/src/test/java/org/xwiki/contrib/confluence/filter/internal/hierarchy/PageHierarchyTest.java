@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.hierarchy;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link PageHierarchy}.
+ *
+ * @version $Id$
+ */
+class PageHierarchyTest
+{
+    private PageHierarchy hierarchy;
+
+    @BeforeEach
+    void setup()
+    {
+        this.hierarchy = new PageHierarchy();
+        this.hierarchy.addSpace(1);
+        this.hierarchy.addSpace(2);
+        this.hierarchy.addPage(1, 10, false);
+        this.hierarchy.addPage(1, 11, false);
+        this.hierarchy.addPage(1, 12, true);
+        this.hierarchy.addPage(2, 20, false);
+        this.hierarchy.addChild(10, 11);
+        this.hierarchy.addChild(42, 13);
+        this.hierarchy.addChild(10, 14);
+        this.hierarchy.addMissingParent(1, 42);
+        this.hierarchy.addOrphan(1, 10);
+        this.hierarchy.addOrphan(1, 15);
+        this.hierarchy.addOrphan(1, 10);
+    }
+
+    @Test
+    void pages()
+    {
+        assertEquals(List.of(10L, 11L), this.hierarchy.getPages().get(1L));
+        assertEquals(List.of(20L), this.hierarchy.getPages().get(2L));
+        assertEquals(List.of(12L), this.hierarchy.getBlogPages().get(1L));
+        assertTrue(this.hierarchy.isPage(1, 11));
+        assertFalse(this.hierarchy.isPage(2, 11));
+        assertFalse(this.hierarchy.isPage(1, 12));
+        assertFalse(this.hierarchy.isPage(1, 42));
+    }
+
+    @Test
+    void children()
+    {
+        assertEquals(List.of(11L, 14L), this.hierarchy.getChildren(10));
+        assertEquals(List.of(13L), this.hierarchy.getChildren(42));
+        assertEquals(List.of(), this.hierarchy.getChildren(11));
+        assertEquals(List.of(), this.hierarchy.getChildren(99));
+    }
+
+    @Test
+    void homePageAndOrphans()
+    {
+        assertEquals(List.of(10L, 15L), this.hierarchy.getOrphans(1L));
+
+        this.hierarchy.setHomePage(1, 10);
+
+        assertEquals(10L, this.hierarchy.getHomePage(1L));
+        assertEquals(List.of(15L), this.hierarchy.getOrphans(1L));
+        assertTrue(this.hierarchy.getOrphans(1L).contains(15L));
+        assertEquals(List.of(), this.hierarchy.getOrphans(2L));
+    }
+
+    @Test
+    void missingParents()
+    {
+        assertEquals(List.of(42L), this.hierarchy.getMissingParents(1L));
+
+        this.hierarchy.removeMissingParent(1, 42);
+
+        assertEquals(List.of(), this.hierarchy.getMissingParents(1L));
+    }
+
+    @Test
+    void removeSpaces()
+    {
+        this.hierarchy.removeSpaces(spaceId -> spaceId != 2);
+
+        assertEquals(Map.of(2L, List.of(20L)), this.hierarchy.getPages());
+        assertEquals(Map.of(), this.hierarchy.getBlogPages());
+        assertEquals(List.of(), this.hierarchy.getOrphans(1L));
+    }
+
+    @Test
+    void restoreState()
+    {
+        this.hierarchy.setHomePage(1, 10);
+
+        Map<String, Map<Object, Object>> state = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<?, ?>> entry : this.hierarchy.getState().entrySet()) {
+            state.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        }
+
+        PageHierarchy restored = new PageHierarchy();
+        assertTrue(restored.restoreState(state));
+
+        assertEquals(this.hierarchy.getPages(), restored.getPages());
+        assertEquals(this.hierarchy.getBlogPages(), restored.getBlogPages());
+        assertEquals(List.of(11L, 14L), restored.getChildren(10));
+        assertEquals(List.of(13L), restored.getChildren(42));
+        assertEquals(10L, restored.getHomePage(1L));
+        assertEquals(List.of(15L), restored.getOrphans(1L));
+        assertEquals(List.of(42L), restored.getMissingParents(1L));
+        assertTrue(restored.isPage(1, 11));
+
+        state.remove(PageHierarchy.PAGE_CHILDREN);
+        assertFalse(restored.restoreState(state));
+        assertEquals(Map.of(), restored.getPages());
+    }
+}
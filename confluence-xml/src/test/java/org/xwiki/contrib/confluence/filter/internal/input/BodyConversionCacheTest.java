@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link BodyConversionCache}.
+ *
+ * @version $Id$
+ */
+class BodyConversionCacheTest
+{
+    private static final String BODY = "<p>Hello</p>";
+
+    private static final String SPACE = "SPACE";
+
+    private static BodyConversion conversion(String content)
+    {
+        BodyConversion conversion = new BodyConversion();
+        conversion.setContent(content);
+        conversion.getMacroIds().put("info", 1);
+        conversion.setUsedLocales(List.of(Locale.FRENCH));
+        return conversion;
+    }
+
+    @Test
+    void keys()
+    {
+        BodyConversionCache cache = new BodyConversionCache(1024);
+
+        String key = cache.getKey(BODY, 2, 42L, SPACE, Locale.ROOT);
+        assertEquals(key, cache.getKey(BODY, 2, 42L, SPACE, Locale.ROOT));
+        assertNotEquals(key, cache.getKey(BODY, 0, 42L, SPACE, Locale.ROOT));
+        assertNotEquals(key, cache.getKey(BODY, 2, 43L, SPACE, Locale.ROOT));
+        assertNotEquals(key, cache.getKey(BODY, 2, 42L, "OTHER", Locale.ROOT));
+        assertNotEquals(key, cache.getKey(BODY, 2, 42L, SPACE, Locale.FRENCH));
+        assertNotEquals(key, cache.getKey("<p>Hello!</p>", 2, 42L, SPACE, Locale.ROOT));
+    }
+
+    @Test
+    void reuse()
+    {
+        BodyConversionCache cache = new BodyConversionCache(1024 * 1024);
+        String key = cache.getKey(BODY, 2, 42L, SPACE, Locale.ROOT);
+
+        assertNull(cache.get(key));
+        cache.put(key, conversion("Hello"));
+
+        BodyConversion cached = cache.get(key);
+        assertEquals("Hello", cached.getContent());
+        assertEquals(1, cached.getMacroIds().get("info"));
+        assertEquals(List.of(Locale.FRENCH), cached.getUsedLocales());
+
+        // Changing the returned conversion does not change the cached one
+        cached.getMacroIds().put("info", 2);
+        assertEquals(1, cache.get(key).getMacroIds().get("info"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void failuresAreNotCached()
+    {
+        BodyConversionCache cache = new BodyConversionCache(1024 * 1024);
+        BodyConversion conversion = conversion("Hello");
+        conversion.setError(new Exception());
+
+        cache.put("key", conversion);
+
+        assertFalse(cache.contains("key"));
+    }
+
+    @Test
+    void eviction()
+    {
+        // Small enough to only keep one conversion
+        BodyConversionCache cache = new BodyConversionCache(700);
+
+        cache.put("first", conversion("First"));
+        cache.put("second", conversion("Second"));
+
+        assertFalse(cache.contains("first"));
+        assertTrue(cache.contains("second"));
+    }
+
+    @Test
+    void logsAreKept()
+    {
+        BodyConversionCache cache = new BodyConversionCache(1024 * 1024);
+        BodyConversion conversion = conversion("Hello");
+        conversion.getLogs().warn("Unknown macro [{}]", "foo");
+
+        cache.put("key", conversion);
+        conversion.getLogs().clear();
+
+        // Each reuse gets the logs to log them again
+        assertEquals("Unknown macro [foo]", cache.get("key").getLogs().peek().getFormattedMessage());
+        assertEquals(1, cache.get("key").getLogs().size());
+    }
+}
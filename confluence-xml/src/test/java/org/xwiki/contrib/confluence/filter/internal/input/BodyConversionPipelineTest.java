@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link BodyConversionPipeline}.
+ *
+ * @version $Id$
+ */
+class BodyConversionPipelineTest
+{
+    private BodyConversionPipeline pipeline;
+
+    @BeforeEach
+    void setup()
+    {
+        this.pipeline = new BodyConversionPipeline(Executors.newFixedThreadPool(2), 2);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.pipeline.close();
+    }
+
+    private static BodyConversion conversion(String content)
+    {
+        BodyConversion conversion = new BodyConversion();
+        conversion.setContent(content);
+        return conversion;
+    }
+
+    @Test
+    void takeInAnyOrder()
+    {
+        assertTrue(this.pipeline.prefetch("1", () -> conversion("one")));
+        assertTrue(this.pipeline.prefetch("2", () -> conversion("two")));
+
+        assertEquals("two", this.pipeline.take("2").getContent());
+        assertEquals("one", this.pipeline.take("1").getContent());
+        assertFalse(this.pipeline.isPending("1"));
+        assertNull(this.pipeline.take("1"));
+    }
+
+    @Test
+    void bounded() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(this.pipeline.prefetch("1", () -> {
+            latch.await();
+            return conversion("one");
+        }));
+        assertTrue(this.pipeline.prefetch("2", () -> conversion("two")));
+        assertTrue(this.pipeline.isFull());
+
+        // Already pending
+        assertTrue(this.pipeline.prefetch("2", () -> conversion("other")));
+        assertFalse(this.pipeline.prefetch("3", () -> conversion("three")));
+
+        this.pipeline.discard("2");
+        assertTrue(this.pipeline.prefetch("3", () -> conversion("three")));
+
+        latch.countDown();
+        assertEquals("one", this.pipeline.take("1").getContent());
+        assertEquals("three", this.pipeline.take("3").getContent());
+    }
+
+    @Test
+    void failure()
+    {
+        this.pipeline.prefetch("1", () -> {
+            throw new IllegalStateException("failure");
+        });
+
+        assertNull(this.pipeline.take("1"));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputContext;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceXMLPackage;
+import org.xwiki.contrib.confluence.resolvers.ConfluencePageIdResolver;
+import org.xwiki.contrib.confluence.resolvers.ConfluencePageTitleResolver;
+import org.xwiki.contrib.confluence.resolvers.ConfluenceSpaceKeyResolver;
+import org.xwiki.contrib.usercommon.formatter.internal.DefaultUserFormatter;
+import org.xwiki.contrib.usercommon.formatter.internal.DefaultUserFormatterFactory;
+import org.xwiki.environment.Environment;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.job.JobContext;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.validation.EntityNameValidation;
+import org.xwiki.model.validation.EntityNameValidationManager;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.XWikiTempDirUtil;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate that the page references computed from the index built by {@link ConfluenceConverter} are the same as the
+ * ones computed by walking up the ancestors of each page.
+ *
+ * @version $Id$
+ */
+@ReferenceComponentList
+@ComponentList({
+    DefaultConfluenceInputContext.class,
+    ConfluenceXMLPackage.class,
+    DefaultUserFormatter.class,
+    DefaultUserFormatterFactory.class,
+    ConfluenceConverter.class
+})
+@ComponentTest
+class ConfluenceConverterPageReferenceIndexTest
+{
+    private static final String CONTEXT_FIELD = "context";
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private EntityNameValidationManager validationManager;
+
+    @MockComponent
+    private EntityNameValidation validation;
+
+    @MockComponent
+    private ObservationManager observationManager;
+
+    @MockComponent
+    private JobProgressManager jobProgressManager;
+
+    @MockComponent
+    private JobContext jobContext;
+
+    @MockComponent
+    private XWikiContext xcontext;
+
+    @MockComponent
+    private ConfluencePageTitleResolver pageTitleResolver;
+
+    @MockComponent
+    private ConfluencePageIdResolver pageIdResolver;
+
+    @MockComponent
+    private ConfluenceSpaceKeyResolver spaceKeyResolver;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @BeforeEach
+    void setup()
+    {
+        when(this.environment.getTemporaryDirectory()).thenReturn(XWikiTempDirUtil.createTemporaryDirectory());
+        when(this.validationManager.getEntityReferenceNameStrategy()).thenReturn(this.validation);
+        when(this.validation.transform(anyString()))
+            .thenAnswer((Answer<String>) invocation -> invocation.getArgument(0));
+        XWiki wiki = mock(XWiki.class);
+        when(wiki.getDefaultLocale(any())).thenReturn(Locale.ENGLISH);
+        when(this.xcontext.getWiki()).thenReturn(wiki);
+    }
+
+    /**
+     * @return the page reference index built while converting the references
+     */
+    private Map<Long, ?> assertSameReferences(String testPackage) throws Exception
+    {
+        DefaultConfluenceInputContext context = this.componentManager.getInstance(ConfluenceInputContext.class);
+        ConfluenceXMLPackage confluencePackage = this.componentManager.getInstance(ConfluenceXMLPackage.class);
+        ConfluenceInputProperties properties = new ConfluenceInputProperties();
+        properties.setRoot(new SpaceReference("xwiki", "Root"));
+        Map<String, String> spaceTargets = new HashMap<>();
+        context.set(confluencePackage, properties, spaceTargets);
+
+        URL p = getClass().getClassLoader().getResource("confluencexml/" + testPackage);
+        confluencePackage.read(new DefaultFileInputSource(new File(p.getFile())));
+        // Every space is migrated somewhere else
+        for (String spaceKey : confluencePackage.getSpaceKeys(false)) {
+            spaceTargets.put(spaceKey, spaceKey + "Target");
+        }
+
+        ConfluenceConverter converter = this.componentManager.getInstance(ConfluenceConverter.class);
+        // Not an import context: the references are computed without the index
+        ConfluenceInputContext unindexedContext = mock(ConfluenceInputContext.class, delegatesTo(context));
+
+        List<Long> pageIds = new ArrayList<>();
+        confluencePackage.getPages().values().forEach(pageIds::addAll);
+        confluencePackage.getBlogPages().values().forEach(pageIds::addAll);
+        assertFalse(pageIds.isEmpty());
+        for (Long pageId : pageIds) {
+            ConfluenceProperties pageProperties = confluencePackage.getPageProperties(pageId, false);
+            String spaceKey =
+                confluencePackage.getSpaceKey(pageProperties.getLong(ConfluenceXMLPackage.KEY_PAGE_SPACE, null));
+            String title = pageProperties.getString(ConfluenceXMLPackage.KEY_PAGE_TITLE);
+
+            FieldUtils.writeField(converter, CONTEXT_FIELD, unindexedContext, true);
+            List<Object> expected = List.of(String.valueOf(converter.convertDocumentReference(pageId, false)),
+                String.valueOf(converter.convertDocumentReference(pageId, true)),
+                String.valueOf(converter.convertDocumentReference(spaceKey, title)));
+
+            FieldUtils.writeField(converter, CONTEXT_FIELD, context, true);
+            List<Object> actual = List.of(String.valueOf(converter.convertDocumentReference(pageId, false)),
+                String.valueOf(converter.convertDocumentReference(pageId, true)),
+                String.valueOf(converter.convertDocumentReference(spaceKey, title)));
+
+            assertEquals(expected, actual, "Page [" + pageId + "] of [" + testPackage + "]");
+        }
+
+        return context.getImportContext().getPageReferenceIndex(HashMap::new);
+    }
+
+    @Test
+    void nested() throws Exception
+    {
+        // Make sure the index is used
+        assertEquals(5, assertSameReferences("nested").size());
+    }
+
+    @Test
+    void orphans() throws Exception
+    {
+        assertSameReferences("orphans");
+    }
+
+    @Test
+    void missingParents() throws Exception
+    {
+        assertSameReferences("missingparents");
+    }
+
+    @Test
+    void blogs() throws Exception
+    {
+        assertSameReferences("blogs");
+    }
+
+    @Test
+    void pages() throws Exception
+    {
+        assertSameReferences("pages");
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceInputProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Validate {@link DefaultConfluenceInputContext}.
+ *
+ * @version $Id$
+ */
+class DefaultConfluenceInputContextTest
+{
+    private DefaultConfluenceInputContext context;
+
+    private ConfluenceInputProperties properties;
+
+    @BeforeEach
+    void setup()
+    {
+        this.context = new DefaultConfluenceInputContext();
+        this.properties = new ConfluenceInputProperties();
+        this.properties.setDefaultLocale(Locale.FRENCH);
+    }
+
+    @Test
+    void importsAreIndependent() throws Exception
+    {
+        this.context.set(null, this.properties, Map.of("A", "TargetA"));
+        ConfluenceImportContext first = this.context.getImportContext();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ConfluenceImportContext second = executor.submit(() -> {
+                assertNull(this.context.getImportContext());
+                this.context.set(null, this.properties, Map.of());
+                return this.context.getImportContext();
+            }).get();
+
+            assertNotSame(first, second);
+            assertSame(first, this.context.getImportContext());
+            assertEquals("TargetA", this.context.getSpaceTargets().get("A"));
+        } finally {
+            executor.shutdownNow();
+            this.context.remove();
+        }
+    }
+
+    @Test
+    void callRestoresThePreviousContext() throws Exception
+    {
+        this.context.set(null, this.properties, Map.of());
+        this.context.setCurrentSpace("SPACE");
+        this.context.setCurrentPage(42);
+        DefaultConfluenceInputContext.State state = this.context.getState();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                this.context.set(null, new ConfluenceInputProperties(), Map.of());
+                ConfluenceImportContext own = this.context.getImportContext();
+
+                this.context.call(state, 43L, Locale.GERMAN, () -> {
+                    assertSame(state.getImportContext(), this.context.getImportContext());
+                    assertEquals("SPACE", this.context.getCurrentSpace());
+                    assertEquals(43L, this.context.getCurrentPage());
+                    assertEquals(Locale.GERMAN, this.context.getCurrentLocale());
+                    this.context.addUsedLocale(Locale.ITALIAN);
+                    return null;
+                });
+
+                assertSame(own, this.context.getImportContext());
+                assertNull(this.context.getCurrentPage());
+                return null;
+            }).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(42L, this.context.getCurrentPage());
+        assertEquals(Locale.FRENCH, this.context.getCurrentLocale());
+        assertEquals(0, this.context.getCurrentlyUsedLocales().size());
+        this.context.remove();
+        assertNull(this.context.getImportContext());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link DeferredChildren}.
+ *
+ * @version $Id$
+ */
+class DeferredChildrenTest
+{
+    private static final String PAGE = "pages/1/properties.properties";
+
+    private static final String GROUP = "groups/2/properties.properties";
+
+    private static final String COMMENTS = "comments";
+
+    private static final String REVISIONS = "historicalVersions";
+
+    @Test
+    void addAndGet()
+    {
+        DeferredChildren children = new DeferredChildren();
+        for (long i = 0; i < 100; i++) {
+            children.add(PAGE, COMMENTS, i);
+        }
+        children.add(PAGE, REVISIONS, 42);
+        children.touch(GROUP);
+
+        assertEquals(List.of(PAGE, GROUP), children.getParents());
+        Map<String, long[]> pageChildren = children.getChildren(PAGE);
+        assertEquals(List.of(COMMENTS, REVISIONS), List.copyOf(pageChildren.keySet()));
+        assertEquals(100, pageChildren.get(COMMENTS).length);
+        assertEquals(99, pageChildren.get(COMMENTS)[99]);
+        assertArrayEquals(new long[] { 42 }, pageChildren.get(REVISIONS));
+        assertTrue(children.getChildren(GROUP).isEmpty());
+    }
+
+    @Test
+    void discard()
+    {
+        DeferredChildren children = new DeferredChildren();
+        children.add(PAGE, COMMENTS, 1);
+        children.add(PAGE, REVISIONS, 2);
+
+        children.discard(PAGE, List.of(COMMENTS, "title").iterator());
+
+        assertEquals(List.of(REVISIONS), List.copyOf(children.getChildren(PAGE).keySet()));
+
+        children.clear();
+        assertTrue(children.isEmpty());
+    }
+}
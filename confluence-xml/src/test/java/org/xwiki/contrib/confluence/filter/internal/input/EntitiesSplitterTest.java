@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Validate {@link EntitiesSplitter}.
+ *
+ * @version $Id$
+ */
+class EntitiesSplitterTest
+{
+    private static List<String> split(EntitiesSplitter splitter) throws IOException
+    {
+        List<String> objects = new ArrayList<>();
+        for (byte[] object = splitter.next(); object != null; object = splitter.next()) {
+            objects.add(new String(object, StandardCharsets.UTF_8));
+        }
+
+        return objects;
+    }
+
+    private static EntitiesSplitter splitter(String content)
+    {
+        return new EntitiesSplitter(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void split() throws IOException
+    {
+        String page = "<object class=\"Page\" package=\"com.atlassian.confluence.pages\">"
+            + "<id name=\"id\">1</id><property name=\"title\"><![CDATA[</object> <object>]]></property>"
+            + "<property name=\"space\" class=\"Space\"><id name=\"id\">2</id></property>"
+            + "<!-- </object> --><property name=\"x\" value=\"a > b\"/></object>";
+        String space = "<object class='Space' title='é'><object/></object>";
+        String empty = "<object class=\"Other\"/>";
+        EntitiesSplitter splitter = splitter("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE hibernate-generic [<!ENTITY a \"b\">]>\n"
+            + "<hibernate-generic datetime=\"2024-01-01 00:00:00\">\n"
+            + page + "\n<notanobject><object/></notanobject>\n" + space + empty + "\n</hibernate-generic>\n");
+
+        assertEquals(List.of(page, space, empty), split(splitter));
+        assertEquals("UTF-8", splitter.getEncoding());
+    }
+
+    @Test
+    void encoding() throws IOException
+    {
+        EntitiesSplitter splitter = splitter("<?xml version='1.0' encoding='ISO-8859-1'?><root><object/></root>");
+
+        assertEquals(List.of("<object/>"), split(splitter));
+        assertEquals("ISO-8859-1", splitter.getEncoding());
+    }
+
+    @Test
+    void truncated()
+    {
+        EntitiesSplitter splitter = splitter("<root><object><![CDATA[never ending");
+
+        assertThrows(IOException.class, () -> split(splitter));
+    }
+}
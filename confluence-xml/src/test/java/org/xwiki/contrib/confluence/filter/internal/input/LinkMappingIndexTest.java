@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Validate {@link LinkMappingIndex}.
+ *
+ * @version $Id$
+ */
+class LinkMappingIndexTest
+{
+    private static EntityReference docRef(String name)
+    {
+        return new EntityReference(name, EntityType.DOCUMENT, new EntityReference("Space", EntityType.SPACE));
+    }
+
+    @Test
+    void compileLinkMapping()
+    {
+        Map<String, Map<String, EntityReference>> linkMapping = new LinkedHashMap<>();
+        linkMapping.put("SpaceKey", Map.of("Page Title", docRef("Doc1")));
+        linkMapping.put("SpaceKey:ids", Map.of("42", docRef("Doc2"), "notanid", docRef("Doc3")));
+        linkMapping.put("Other:ids", Map.of("42", docRef("Doc4"), "-7", docRef("Doc5")));
+
+        LinkMappingIndex index = LinkMappingIndex.of(linkMapping);
+
+        assertEquals(docRef("Doc1"), index.get("spacekey", "PAGE TITLE"));
+        assertNull(index.get("Other", "Page Title"));
+        assertEquals(docRef("Doc2"), index.get(42));
+        assertEquals(docRef("Doc5"), index.get(-7));
+        assertNull(index.get(43));
+        assertEquals(2, index.getIdCount());
+        assertEquals(1, index.getTitleCount());
+    }
+
+    @Test
+    void manyPageIds()
+    {
+        LinkMappingIndex index = new LinkMappingIndex();
+        for (long id = 0; id < 10000; id++) {
+            index.addPage("Space", id * 65536, docRef(Long.toString(id)));
+        }
+
+        long memory = index.getEstimatedMemory();
+        for (long id = 0; id < 10000; id++) {
+            assertEquals(docRef(Long.toString(id)), index.get(id * 65536));
+        }
+        assertNull(index.get(1));
+        assertEquals(10000, index.getIdCount());
+        assertEquals(memory, index.getEstimatedMemory());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link LinkMappingLoader} and {@link MappedLinkMapping}.
+ *
+ * @version $Id$
+ */
+class LinkMappingLoaderTest
+{
+    private static final String LINK_MAPPING = "{"
+        + "\"SpaceKey\": {\"Page Title\": \"Root.Space.Page\\\\.Title.WebHome\", \"Other\": \"Root.Space.WebHome\"},"
+        + "\"SpaceKey:ids\": {\"42\": \"Root.Space.Page\\\\.Title.WebHome\", \"notanid\": \"Root.Nope\"},"
+        + "\"Ignored\": null,"
+        + "\":ids\": {\"42\": \"Root.Other.WebHome\", \"-7\": \"xwiki:Main.WebHome\"}"
+        + "}";
+
+    @TempDir
+    private Path tmpDir;
+
+    private static InputStream json()
+    {
+        return new ByteArrayInputStream(LINK_MAPPING.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static EntityReference resolve(String reference)
+    {
+        return new EntityReference(reference, EntityType.DOCUMENT);
+    }
+
+    private static void assertLinkMapping(LinkMappingLookup lookup)
+    {
+        assertEquals(resolve("Root.Space.Page\\.Title.WebHome"), lookup.get("spacekey", "PAGE TITLE"));
+        assertEquals(resolve("Root.Space.WebHome"), lookup.get("SpaceKey", "Other"));
+        assertNull(lookup.get("Ignored", "Other"));
+        assertNull(lookup.get("Other", "Page Title"));
+        assertEquals(resolve("Root.Space.Page\\.Title.WebHome"), lookup.get(42));
+        assertEquals(resolve("xwiki:Main.WebHome"), lookup.get(-7));
+        assertNull(lookup.get(43));
+    }
+
+    @Test
+    void load() throws Exception
+    {
+        LinkMappingIndex index = LinkMappingLoader.load(json(), LinkMappingLoaderTest::resolve);
+
+        assertLinkMapping(index);
+        assertEquals(2, index.getIdCount());
+        assertEquals(2, index.getTitleCount());
+    }
+
+    @Test
+    void compile() throws Exception
+    {
+        Path compiled = this.tmpDir.resolve("linkmapping.bin");
+        MappedLinkMapping.compile(json(), compiled);
+
+        assertTrue(MappedLinkMapping.isCompiled(compiled));
+        LinkMappingLookup lookup = LinkMappingLoader.open(compiled, LinkMappingLoaderTest::resolve);
+        assertTrue(lookup instanceof MappedLinkMapping);
+        assertLinkMapping(lookup);
+    }
+
+    @Test
+    void openJSON() throws Exception
+    {
+        Path file = this.tmpDir.resolve("linkmapping.json");
+        Files.write(file, LINK_MAPPING.getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(MappedLinkMapping.isCompiled(file));
+        LinkMappingLookup lookup = LinkMappingLoader.open(file, LinkMappingLoaderTest::resolve);
+        assertTrue(lookup instanceof LinkMappingIndex);
+        assertLinkMapping(lookup);
+    }
+
+    @Test
+    void fallback() throws Exception
+    {
+        Path compiled = this.tmpDir.resolve("linkmapping.bin");
+        MappedLinkMapping.compile(json(), compiled);
+        LinkMappingIndex index = new LinkMappingIndex();
+        index.addPage("SpaceKey", 42, resolve("Root.Overridden.WebHome"));
+        index.setFallback(LinkMappingLoader.open(compiled, LinkMappingLoaderTest::resolve));
+
+        assertEquals(resolve("Root.Overridden.WebHome"), index.get(42));
+        assertEquals(resolve("xwiki:Main.WebHome"), index.get(-7));
+        assertEquals(resolve("Root.Space.WebHome"), index.get("SpaceKey", "Other"));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.chaining.EventType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link LocaleSplitter}.
+ *
+ * @version $Id$
+ */
+class LocaleSplitterTest
+{
+    private LocaleSplitter splitter;
+
+    private ConfluenceWrappingListener target;
+
+    @BeforeEach
+    void setup()
+    {
+        this.splitter = new LocaleSplitter();
+        this.target = new ConfluenceWrappingListener();
+        this.target.setWrappedListener(this.splitter.getListener());
+    }
+
+    private void paragraph(String word)
+    {
+        this.target.beginParagraph(Listener.EMPTY_PARAMETERS);
+        this.target.onWord(word);
+        this.target.endParagraph(Listener.EMPTY_PARAMETERS);
+    }
+
+    private void translation(Locale locale, String word)
+    {
+        assertTrue(this.splitter.beginLocale(locale, this.target, false));
+        paragraph(word);
+        this.splitter.endLocale(this.target);
+    }
+
+    private List<Object> words(Locale locale)
+    {
+        QueueListener events = new QueueListener();
+        this.splitter.send(locale, events);
+        return events.stream()
+            .filter(event -> event.eventType == EventType.ON_WORD)
+            .map(event -> event.eventParameters[0])
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void split()
+    {
+        paragraph("common");
+        translation(Locale.FRENCH, "bonjour");
+        translation(Locale.GERMAN, "hallo");
+        paragraph("end");
+
+        assertTrue(this.splitter.isSplittable());
+        assertEquals(List.of(Locale.FRENCH, Locale.GERMAN), List.copyOf(this.splitter.getLocales()));
+        assertEquals(List.of("common", "bonjour", "end"), words(Locale.FRENCH));
+        assertEquals(List.of("common", "hallo", "end"), words(Locale.GERMAN));
+        assertEquals(List.of("common", "end"), words(Locale.ITALIAN));
+
+        // The events stay recorded
+        assertEquals(List.of("common", "bonjour", "end"), words(Locale.FRENCH));
+    }
+
+    @Test
+    void nestedLocales()
+    {
+        assertTrue(this.splitter.beginLocale(Locale.FRENCH, this.target, false));
+        paragraph("bonjour");
+        translation(Locale.GERMAN, "hallo");
+        translation(Locale.FRENCH, "salut");
+        this.splitter.endLocale(this.target);
+
+        assertEquals(List.of("bonjour", "salut"), words(Locale.FRENCH));
+        assertEquals(List.of(), words(Locale.GERMAN));
+    }
+
+    @Test
+    void inlineContentIsNotSplittable()
+    {
+        assertFalse(this.splitter.beginLocale(Locale.FRENCH, this.target, true));
+        assertFalse(this.splitter.isSplittable());
+    }
+
+    @Test
+    void otherListenerIsNotSplittable()
+    {
+        ConfluenceWrappingListener other = new ConfluenceWrappingListener();
+        other.setWrappedListener(new QueueListener());
+
+        assertFalse(this.splitter.beginLocale(Locale.FRENCH, other, false));
+        assertFalse(this.splitter.isSplittable());
+    }
+
+    @Test
+    void queuedContentIsNotSplittable()
+    {
+        this.target.queueEvents(new QueueListener());
+
+        assertFalse(this.splitter.beginLocale(Locale.FRENCH, this.target, false));
+        assertFalse(this.splitter.isSplittable());
+    }
+
+    @Test
+    void endingWithBlockMacroIsNotSplittable()
+    {
+        paragraph("common");
+        assertTrue(this.splitter.beginLocale(Locale.FRENCH, this.target, false));
+        this.target.onMacro("info", Listener.EMPTY_PARAMETERS, null, false);
+        this.splitter.endLocale(this.target);
+
+        assertFalse(this.splitter.isSplittable());
+    }
+
+    @Test
+    void macroIds()
+    {
+        this.target.setMacroIds(this.splitter.getMacroCounter());
+
+        this.target.onMacro("info", Listener.EMPTY_PARAMETERS, null, false);
+        paragraph("common");
+        assertTrue(this.splitter.beginLocale(Locale.FRENCH, this.target, false));
+        this.target.onMacro("info", Listener.EMPTY_PARAMETERS, null, false);
+        this.target.onMacro("note", Listener.EMPTY_PARAMETERS, null, false);
+        paragraph("bonjour");
+        this.splitter.endLocale(this.target);
+
+        assertEquals(Map.of("info", 2, "note", 1), this.splitter.getMacroIds(Locale.FRENCH));
+        assertEquals(Map.of("info", 1), this.splitter.getMacroIds(Locale.GERMAN));
+    }
+}
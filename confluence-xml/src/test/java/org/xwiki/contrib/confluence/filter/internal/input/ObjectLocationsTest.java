@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link ObjectLocations}.
+ *
+ * @version $Id$
+ */
+class ObjectLocationsTest
+{
+    private static final String PAGE = "pages/1/properties.properties";
+
+    private static final String OTHER_PAGE = "pages/2/properties.properties";
+
+    private static final String ATTACHMENT = "pages/1/attachments/3/properties.properties";
+
+    private static final String PERMISSION = "contentPermissionSets/4/4/5/properties.properties";
+
+    private static final String MIXED = "contentPermissionSets/6/7/8/properties.properties";
+
+    @Test
+    void addAndGet()
+    {
+        ObjectLocations locations = new ObjectLocations();
+        locations.add(PAGE);
+        locations.add(OTHER_PAGE);
+        locations.add(ATTACHMENT);
+        locations.add(PERMISSION);
+        locations.add(MIXED);
+        locations.add("spaces/key/properties.properties");
+
+        assertEquals(5, locations.size());
+        assertEquals(PAGE, locations.get(1));
+        assertEquals(OTHER_PAGE, locations.get(2));
+        assertEquals(ATTACHMENT, locations.get(3));
+        assertEquals(PERMISSION, locations.get(5));
+        assertEquals(MIXED, locations.get(8));
+        assertNull(locations.get(42));
+        assertFalse(locations.contains(42));
+    }
+
+    @Test
+    void firstLocationWins()
+    {
+        ObjectLocations locations = new ObjectLocations();
+        locations.add(PAGE);
+        locations.add("spaces/1/properties.properties");
+
+        assertEquals(PAGE, locations.get(1));
+    }
+
+    @Test
+    void state()
+    {
+        ObjectLocations locations = new ObjectLocations();
+        locations.add(PAGE);
+        locations.add(ATTACHMENT);
+        locations.add(MIXED);
+
+        Map<String, Map<?, ?>> state = locations.getState();
+        assertEquals(Map.of(1L, PAGE, 3L, ATTACHMENT, 8L, MIXED), new HashMap<>(state.get("objectLocations")));
+
+        ObjectLocations restored = new ObjectLocations();
+        assertTrue(restored.restoreState(state));
+        assertEquals(3, restored.size());
+        assertEquals(ATTACHMENT, restored.get(3));
+        assertEquals(MIXED, restored.get(8));
+
+        restored.clear();
+        assertEquals(0, restored.size());
+        assertFalse(restored.restoreState(Map.of()));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link PagePrefetcher}.
+ *
+ * @version $Id$
+ */
+class PagePrefetcherTest
+{
+    private PagePrefetcher prefetcher;
+
+    @BeforeEach
+    void setup()
+    {
+        this.prefetcher = new PagePrefetcher(Executors.newSingleThreadExecutor(), 3);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.prefetcher.close();
+    }
+
+    @Test
+    void takeInOrder()
+    {
+        assertTrue(this.prefetcher.prefetch(1, () -> new PrefetchedPage(1, null)));
+        assertTrue(this.prefetcher.prefetch(2, () -> new PrefetchedPage(2, null)));
+
+        assertEquals(1, this.prefetcher.take(1).getPageId());
+        assertEquals(2, this.prefetcher.take(2).getPageId());
+        assertNull(this.prefetcher.take(3));
+
+        assertEquals(2, this.prefetcher.getHits());
+        assertEquals(1, this.prefetcher.getMisses());
+    }
+
+    @Test
+    void skippedPagesAreDiscarded()
+    {
+        this.prefetcher.prefetch(1, () -> new PrefetchedPage(1, null));
+        this.prefetcher.prefetch(2, () -> new PrefetchedPage(2, null));
+        this.prefetcher.prefetch(3, () -> new PrefetchedPage(3, null));
+        assertTrue(this.prefetcher.isFull());
+        assertFalse(this.prefetcher.prefetch(4, () -> new PrefetchedPage(4, null)));
+
+        assertEquals(2, this.prefetcher.take(2).getPageId());
+        assertFalse(this.prefetcher.isPending(1));
+        assertTrue(this.prefetcher.isPending(3));
+        assertTrue(this.prefetcher.prefetch(4, () -> new PrefetchedPage(4, null)));
+
+        this.prefetcher.clear();
+        assertFalse(this.prefetcher.isPending(3));
+        assertNull(this.prefetcher.take(4));
+    }
+
+    @Test
+    void failure()
+    {
+        this.prefetcher.prefetch(1, () -> {
+            throw new IllegalStateException("failure");
+        });
+
+        assertNull(this.prefetcher.take(1));
+        assertEquals(1, this.prefetcher.getMisses());
+    }
+
+    @Test
+    void recordsAreTakenOnce()
+    {
+        PrefetchedPage page = new PrefetchedPage(1, null);
+        page.putObject(10, null);
+        page.putRevision(2, null);
+
+        assertEquals(1, page.takeRevisions().size());
+        assertTrue(page.takeRevisions().isEmpty());
+        assertNull(page.takeObject(10));
+        assertNull(page.takeAttachmentIds());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Validate {@link ReferenceCache}.
+ *
+ * @version $Id$
+ */
+class ReferenceCacheTest
+{
+    private static final EntityReference REFERENCE = new EntityReference("Doc", EntityType.DOCUMENT);
+
+    @Test
+    void cacheFailedResolutions()
+    {
+        ReferenceCache<Long> cache = new ReferenceCache<>(10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertNull(cache.get(1L, () -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(1L, () -> {
+            calls.incrementAndGet();
+            return REFERENCE;
+        }));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void evictLeastRecentlyUsed()
+    {
+        ReferenceCache<Long> cache = new ReferenceCache<>(2);
+        cache.get(1L, () -> REFERENCE);
+        cache.get(2L, () -> REFERENCE);
+        cache.get(1L, () -> null);
+        cache.get(3L, () -> REFERENCE);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(REFERENCE, cache.get(1L, () -> null));
+        assertNull(cache.get(2L, () -> null));
+    }
+
+    @Test
+    void unbounded()
+    {
+        ReferenceCache<Long> cache = new ReferenceCache<>(0);
+        for (long i = 0; i < 1000; i++) {
+            cache.get(i, () -> REFERENCE);
+        }
+
+        assertEquals(1000, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+    }
+}
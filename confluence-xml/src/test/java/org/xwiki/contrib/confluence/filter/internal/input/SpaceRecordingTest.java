@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.contrib.confluence.filter.internal.ConfluenceFilter;
+import org.xwiki.filter.FilterException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Validate {@link SpaceRecording}.
+ *
+ * @version $Id$
+ */
+class SpaceRecordingTest
+{
+    private final ConfluenceFilter target = mock(ConfluenceFilter.class);
+
+    @Test
+    void recordingWaitsForTheEventsToBeSent() throws Exception
+    {
+        SpaceRecording recording = new SpaceRecording(2, mock(Logger.class));
+        List<Integer> sent = new ArrayList<>();
+        AtomicInteger recorded = new AtomicInteger();
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                int value = i;
+                recording.record(filter -> sent.add(value));
+                recorded.incrementAndGet();
+            }
+            recording.end(true, null);
+        });
+        recorder.start();
+
+        while (recorder.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertEquals(2, recorded.get());
+
+        assertTrue(recording.replay(this.target));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), sent);
+        recorder.join();
+    }
+
+    @Test
+    void recordingError()
+    {
+        SpaceRecording recording = new SpaceRecording(10, mock(Logger.class));
+        List<Integer> sent = new ArrayList<>();
+        recording.record(filter -> sent.add(1));
+        Exception error = new Exception("failed");
+        recording.end(false, error);
+
+        FilterException exception = assertThrows(FilterException.class, () -> recording.replay(this.target));
+        assertEquals(error, exception.getCause());
+        assertEquals(List.of(1), sent);
+    }
+
+    @Test
+    void interruptedRecording()
+    {
+        SpaceRecording recording = new SpaceRecording(10, mock(Logger.class));
+
+        Thread.currentThread().interrupt();
+        assertThrows(CancellationException.class, () -> recording.record(filter -> { }));
+        assertTrue(Thread.interrupted());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Validate {@link StateSnapshot}.
+ *
+ * @version $Id$
+ */
+class StateSnapshotTest
+{
+    private static final String VERSION = "9.96.0";
+
+    private File file;
+
+    @BeforeEach
+    void setup()
+    {
+        this.file = new File(XWikiTempDirUtil.createTemporaryDirectory(), StateSnapshot.FILE_NAME);
+    }
+
+    private static Map<String, Map<?, ?>> createState()
+    {
+        Map<Long, List<Long>> pages = new LinkedHashMap<>();
+        pages.put(1L, new LinkedList<>(List.of(3L, 4L, 5L)));
+        pages.put(2L, new ArrayList<>());
+        Map<Long, Set<Long>> missingParents = new LinkedHashMap<>();
+        missingParents.put(7L, new LinkedHashSet<>(List.of(9L, 8L)));
+        Map<Long, Map<String, Long>> titles = new HashMap<>();
+        titles.put(1L, Map.of("home", 3L, "été", 4L));
+        titles.put(2L, Map.of());
+
+        Map<String, Map<?, ?>> state = new LinkedHashMap<>();
+        state.put("pages", pages);
+        state.put("missingParents", missingParents);
+        state.put("homePages", Map.of(1L, 3L));
+        state.put("lowerSpacesByKey", Map.of("ds", 1L, "tst", 2L));
+        state.put("pagesBySpaceAndLowerTitle", titles);
+        state.put("objectLocations", Map.of(3L, "pages/3/properties.properties"));
+        state.put("orphans", new HashMap<>());
+
+        return state;
+    }
+
+    @Test
+    void writeAndRead() throws IOException
+    {
+        Map<String, Map<?, ?>> state = createState();
+        StateSnapshot.write(this.file, VERSION, state);
+
+        Map<String, Map<Object, Object>> snapshot = StateSnapshot.read(this.file, VERSION);
+        assertEquals(state, snapshot);
+        assertEquals(List.copyOf(state.keySet()), List.copyOf(snapshot.keySet()));
+        assertInstanceOf(Set.class, snapshot.get("missingParents").get(7L));
+        assertEquals(List.of(9L, 8L), List.copyOf((Set<?>) snapshot.get("missingParents").get(7L)));
+    }
+
+    @Test
+    void readOtherVersion() throws IOException
+    {
+        StateSnapshot.write(this.file, VERSION, createState());
+
+        assertThrows(IOException.class, () -> StateSnapshot.read(this.file, "9.97.0"));
+    }
+
+    @Test
+    void readTruncated() throws IOException
+    {
+        StateSnapshot.write(this.file, VERSION, createState());
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        assertThrows(IOException.class, () -> StateSnapshot.read(this.file, VERSION));
+    }
+
+    @Test
+    void writeUnsupported()
+    {
+        assertThrows(IOException.class,
+            () -> StateSnapshot.write(this.file, VERSION, Map.of("dates", Map.of(1L, new Object()))));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link ZipPackageContent}.
+ *
+ * @version $Id$
+ */
+class ZipPackageContentTest
+{
+    private static final String ENTITIES = "entities.xml";
+
+    private static final String ATTACHMENT = "attachments/1/2/3";
+
+    private Path temporaryDirectory;
+
+    @BeforeEach
+    void setup()
+    {
+        this.temporaryDirectory = XWikiTempDirUtil.createTemporaryDirectory().toPath();
+    }
+
+    private File createPackage() throws IOException
+    {
+        File zip = this.temporaryDirectory.resolve("package.zip").toFile();
+        try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(zip))) {
+            stream.putNextEntry(new ZipEntry(ENTITIES));
+            stream.write("<hibernate-generic/>".getBytes(StandardCharsets.UTF_8));
+            stream.putNextEntry(new ZipEntry("attachments/1/2/"));
+            stream.putNextEntry(new ZipEntry(ATTACHMENT));
+            stream.write("content".getBytes(StandardCharsets.UTF_8));
+            stream.closeEntry();
+        }
+
+        return zip;
+    }
+
+    @Test
+    void read() throws IOException
+    {
+        try (PackageContent content = new ZipPackageContent(createPackage(), this.temporaryDirectory)) {
+            assertTrue(content.exists(ENTITIES));
+            assertTrue(content.exists(ATTACHMENT));
+            assertFalse(content.exists("attachments/1/2/"));
+            assertFalse(content.exists("missing"));
+
+            assertEquals(7, content.getSize(ATTACHMENT));
+            assertEquals(-1, content.getSize("missing"));
+            try (InputStream stream = content.open(ATTACHMENT)) {
+                assertEquals("content", IOUtils.toString(stream, StandardCharsets.UTF_8));
+            }
+            assertThrows(FileNotFoundException.class, () -> content.open("missing"));
+        }
+    }
+
+    @Test
+    void getFile() throws IOException
+    {
+        File extracted;
+        try (PackageContent content = new ZipPackageContent(createPackage(), this.temporaryDirectory)) {
+            extracted = content.getFile(ATTACHMENT);
+            assertEquals("content", Files.readString(extracted.toPath()));
+            assertEquals(extracted, content.getFile(ATTACHMENT));
+        }
+
+        // Extracted files are removed with the package
+        assertFalse(extracted.exists());
+    }
+}
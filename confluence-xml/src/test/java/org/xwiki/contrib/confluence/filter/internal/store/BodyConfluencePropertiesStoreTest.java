@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.File;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link BodyConfluencePropertiesStore}.
+ *
+ * @version $Id$
+ */
+class BodyConfluencePropertiesStoreTest
+{
+    private static final String PAGE = "pages/42/properties.properties";
+
+    private static final String OTHER_PAGE = "pages/43/properties.properties";
+
+    private static final String BODY = "body";
+
+    private static final String TITLE = "title";
+
+    private static final String CONTENT = "<p>" + StringUtils.repeat("Some content, with a comma. ", 100) + "</p>";
+
+    private File root;
+
+    private ConfluencePropertiesStore objects;
+
+    private BodyStore bodies;
+
+    private BodyConfluencePropertiesStore store;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.root = XWikiTempDirUtil.createTemporaryDirectory();
+        this.objects = new DirectoryConfluencePropertiesStore(this.root);
+        this.bodies = new BodyStore(this.root, true);
+        this.store = new BodyConfluencePropertiesStore(this.objects, this.bodies, BODY);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        this.store.close();
+    }
+
+    private void savePage(ConfluencePropertiesStore store, String path) throws Exception
+    {
+        ConfluenceProperties properties = store.get(path, true);
+        properties.setProperty(TITLE, "Page");
+        properties.setProperty(BODY, CONTENT);
+        properties.save();
+    }
+
+    @Test
+    void bodyIsStoredApart() throws Exception
+    {
+        savePage(this.store, PAGE);
+
+        assertFalse(this.objects.get(PAGE, false).containsKey(BODY));
+        assertTrue(this.bodies.contains(PAGE));
+
+        ConfluenceProperties properties = this.store.get(PAGE, false);
+        assertTrue(properties.containsKey(BODY));
+        assertTrue(((StoredConfluenceProperties) properties).isPending(BODY));
+        assertEquals("Page", properties.getString(TITLE));
+        assertTrue(((StoredConfluenceProperties) properties).isPending(BODY));
+        assertEquals(CONTENT, properties.getString(BODY));
+        assertFalse(((StoredConfluenceProperties) properties).isPending(BODY));
+    }
+
+    @Test
+    void saveWithoutReadingTheBody() throws Exception
+    {
+        savePage(this.store, PAGE);
+
+        ConfluenceProperties properties = this.store.get(PAGE, false);
+        properties.setProperty(TITLE, "Renamed");
+        properties.save();
+
+        ConfluenceProperties copy = this.store.get(OTHER_PAGE, true);
+        copy.copy(this.store.get(PAGE, false));
+        copy.save();
+
+        assertEquals("Renamed", this.store.get(PAGE, false).getString(TITLE));
+        assertEquals(CONTENT, this.store.get(PAGE, false).getString(BODY));
+        assertEquals(CONTENT, this.store.get(OTHER_PAGE, false).getString(BODY));
+    }
+
+    @Test
+    void changeAndRemoveTheBody() throws Exception
+    {
+        savePage(this.store, PAGE);
+
+        ConfluenceProperties properties = this.store.get(PAGE, false);
+        properties.addProperty(BODY, "more");
+        assertEquals(2, properties.getList(BODY).size());
+        properties.setProperty(BODY, "<p>new</p>");
+        properties.save();
+        assertEquals("<p>new</p>", this.store.get(PAGE, false).getString(BODY));
+
+        properties = this.store.get(PAGE, false);
+        properties.clearProperty(BODY);
+        properties.save();
+        assertFalse(this.store.get(PAGE, false).containsKey(BODY));
+        assertFalse(this.bodies.contains(PAGE));
+    }
+
+    @Test
+    void throughCache() throws Exception
+    {
+        CachingConfluencePropertiesStore cache = new CachingConfluencePropertiesStore(this.store, 1024);
+
+        savePage(cache, PAGE);
+        cache.flush();
+
+        cache = new CachingConfluencePropertiesStore(this.store, 1024);
+        ConfluenceProperties properties = cache.get(PAGE, false);
+        properties.setProperty(TITLE, "Renamed");
+        properties.save();
+        assertTrue(((StoredConfluenceProperties) cache.get(PAGE, false)).isPending(BODY));
+        cache.flush();
+
+        assertEquals("Renamed", this.store.get(PAGE, false).getString(TITLE));
+        assertEquals(CONTENT, this.store.get(PAGE, false).getString(BODY));
+    }
+
+    @Test
+    void reopen() throws Exception
+    {
+        savePage(this.store, PAGE);
+        this.store.flush();
+        this.store.close();
+
+        this.bodies = new BodyStore(this.root, false);
+        this.store = new BodyConfluencePropertiesStore(this.objects, this.bodies, BODY);
+        assertEquals(CONTENT, this.store.get(PAGE, false).getString(BODY));
+
+        this.store.get(PAGE, false).save();
+        this.store.close();
+        new File(this.root, "bodies.idx").delete();
+
+        this.bodies = new BodyStore(this.root, false);
+        this.store = new BodyConfluencePropertiesStore(this.objects, this.bodies, BODY);
+        assertEquals(CONTENT, this.store.get(PAGE, false).getString(BODY));
+        assertNull(this.store.get(OTHER_PAGE, false));
+    }
+
+    @Test
+    void inlineBody() throws Exception
+    {
+        savePage(this.objects, PAGE);
+
+        assertEquals(CONTENT, this.store.get(PAGE, false).getString(BODY));
+        assertFalse(((StoredConfluenceProperties) this.store.get(PAGE, false)).isPending(BODY));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link CachingConfluencePropertiesStore}.
+ *
+ * @version $Id$
+ */
+class CachingConfluencePropertiesStoreTest
+{
+    private static final String PAGE = "pages/42/properties.properties";
+
+    private static final String COMMENTS = "comments";
+
+    private ConfluencePropertiesStore store;
+
+    @BeforeEach
+    void setup()
+    {
+        File root = XWikiTempDirUtil.createTemporaryDirectory();
+        this.store = new DirectoryConfluencePropertiesStore(root);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        this.store.close();
+    }
+
+    private static void addComment(ConfluencePropertiesStore store, long commentId) throws Exception
+    {
+        ConfluenceProperties properties = store.get(PAGE, true);
+        properties.addProperty(COMMENTS, commentId);
+        properties.save();
+    }
+
+    @Test
+    void writeBack() throws Exception
+    {
+        CachingConfluencePropertiesStore cache = new CachingConfluencePropertiesStore(this.store, 1024 * 1024);
+
+        addComment(cache, 1);
+        addComment(cache, 2);
+        addComment(cache, 3);
+
+        assertFalse(this.store.exists(PAGE));
+        assertEquals(List.of(1L, 2L, 3L), cache.get(PAGE, false).getList(Long.class, COMMENTS));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getFlushes());
+
+        cache.flush();
+
+        assertEquals(List.of(1L, 2L, 3L), this.store.get(PAGE, false).getList(Long.class, COMMENTS));
+        assertEquals(1, cache.getFlushes());
+    }
+
+    @Test
+    void unsavedChangesAreNotVisible() throws Exception
+    {
+        CachingConfluencePropertiesStore cache = new CachingConfluencePropertiesStore(this.store, 1024 * 1024);
+
+        addComment(cache, 1);
+        cache.get(PAGE, false).addProperty(COMMENTS, 2);
+
+        assertEquals(List.of(1L), cache.get(PAGE, false).getList(Long.class, COMMENTS));
+        assertNull(cache.get("pages/43/properties.properties", false));
+    }
+
+    @Test
+    void eviction() throws Exception
+    {
+        // Small enough to only keep one page
+        CachingConfluencePropertiesStore cache = new CachingConfluencePropertiesStore(this.store, 100);
+
+        addComment(cache, 1);
+        ConfluenceProperties other = cache.get("pages/43/properties.properties", true);
+        other.setProperty("title", "Other");
+        other.save();
+
+        assertTrue(this.store.exists(PAGE));
+        assertEquals(1, cache.getFlushes());
+        assertEquals(List.of(1L), this.store.get(PAGE, false).getList(Long.class, COMMENTS));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.confluence.filter.internal.store;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.confluence.filter.input.ConfluenceProperties;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link SingleFileConfluencePropertiesStore}.
+ *
+ * @version $Id$
+ */
+class SingleFileConfluencePropertiesStoreTest
+{
+    private static final String PAGE = "pages/42/properties.properties";
+
+    private File root;
+
+    @BeforeEach
+    void setup()
+    {
+        this.root = XWikiTempDirUtil.createTemporaryDirectory();
+    }
+
+    private static void save(ConfluencePropertiesStore store, String path, String key, Object value)
+        throws Exception
+    {
+        ConfluenceProperties properties = store.get(path, true);
+        properties.setProperty(key, value);
+        properties.save();
+    }
+
+    @Test
+    void saveAndGet() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertNull(store.get(PAGE, false));
+            assertFalse(store.exists(PAGE));
+
+            save(store, PAGE, "title", "Hé, a title\nwith a new line");
+            save(store, PAGE, "comments", List.of(1L, 2L));
+
+            ConfluenceProperties properties = store.get(PAGE, false);
+            assertTrue(store.exists(PAGE));
+            assertEquals("Hé, a title\nwith a new line", properties.getString("title"));
+            assertEquals(List.of("1", "2"), properties.getList(String.class, "comments"));
+        }
+    }
+
+    @Test
+    void list() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 42);
+            save(store, "pages/42/attachments/1/properties.properties", "id", 1);
+            save(store, "pages/43/properties.properties", "id", 43);
+            save(store, "pagesextra/1/properties.properties", "id", 1);
+
+            assertEquals(Set.of("pages", "pagesextra"), Set.copyOf(store.list("")));
+            assertEquals(Set.of("42", "43"), Set.copyOf(store.list("pages")));
+            assertEquals(Set.of("properties.properties", "attachments"), Set.copyOf(store.list("pages/42")));
+            assertTrue(store.list("spaces").isEmpty());
+        }
+    }
+
+    @Test
+    void reopen() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 42);
+            store.flush();
+        }
+
+        assertTrue(SingleFileConfluencePropertiesStore.isStore(this.root));
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertEquals(42, store.get(PAGE, false).getInt("id"));
+        }
+    }
+
+    @Test
+    void reopenWithoutIndex() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 1);
+            save(store, "pages/43/properties.properties", "id", 43);
+            save(store, PAGE, "id", 42);
+        }
+
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertEquals(42, store.get(PAGE, false).getInt("id"));
+            assertEquals(43, store.get("pages/43/properties.properties", false).getInt("id"));
+        }
+    }
+
+    @Test
+    void reopenWithStaleIndex() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 1);
+            store.flush();
+            // Crash before the next flush
+            save(store, PAGE, "id", 42);
+            save(store, "pages/43/properties.properties", "id", 43);
+        }
+
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertEquals(42, store.get(PAGE, false).getInt("id"));
+            assertEquals(43, store.get("pages/43/properties.properties", false).getInt("id"));
+        }
+    }
+
+    @Test
+    void reopenWithPartialRecord() throws Exception
+    {
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 42);
+            save(store, "pages/43/properties.properties", "id", 43);
+            store.flush();
+        }
+
+        // Crash in the middle of appending the last record
+        try (RandomAccessFile data =
+            new RandomAccessFile(new File(this.root, SingleFileConfluencePropertiesStore.DATA_FILENAME), "rw")) {
+            data.setLength(data.length() - 3);
+        }
+
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertEquals(42, store.get(PAGE, false).getInt("id"));
+            assertFalse(store.exists("pages/43/properties.properties"));
+
+            save(store, "pages/44/properties.properties", "id", 44);
+            store.flush();
+        }
+
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            assertEquals(44, store.get("pages/44/properties.properties", false).getInt("id"));
+        }
+    }
+
+    @Test
+    void delete() throws Exception
+    {
+        File other = new File(this.root, "other.txt");
+        assertTrue(other.createNewFile());
+        try (ConfluencePropertiesStore store = new SingleFileConfluencePropertiesStore(this.root)) {
+            save(store, PAGE, "id", 42);
+        }
+
+        SingleFileConfluencePropertiesStore.delete(this.root);
+
+        assertFalse(SingleFileConfluencePropertiesStore.isStore(this.root));
+        assertEquals(List.of(other), List.of(this.root.listFiles()));
+    }
+}